@@ -0,0 +1,61 @@
+package com.mursaat.dungeongenerator;
+
+import java.util.Arrays;
+
+/**
+ * The default {@link TileStore}, backed by an array of references on the heap
+ */
+public class ArrayTileStore implements TileStore {
+
+	private final DungeonStructure[][] tiles;
+	private final int width;
+
+	public ArrayTileStore(int width, int height) {
+		this.tiles = new DungeonStructure[height][width];
+		this.width = width;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return tiles.length;
+	}
+
+	@Override
+	public DungeonStructure get(int x, int y) {
+		return tiles[y][x];
+	}
+
+	@Override
+	public void set(int x, int y, DungeonStructure structure) {
+		tiles[y][x] = structure;
+	}
+
+	@Override
+	public void fill(int minX, int minY, int maxX, int maxY, DungeonStructure structure, boolean overwrite) {
+		for (int y = minY; y <= maxY; y++) {
+			DungeonStructure[] row = tiles[y];
+			if (overwrite) {
+				Arrays.fill(row, minX, maxX + 1, structure);
+			} else {
+				for (int x = minX; x <= maxX; x++) {
+					if (row[x] == null) {
+						row[x] = structure;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the backing array, not a copy
+	 */
+	@Override
+	public DungeonStructure[][] toArray() {
+		return tiles;
+	}
+}
@@ -0,0 +1,433 @@
+package com.mursaat.dungeongenerator;
+
+import java.util.AbstractList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * The rooms and hallways of a dungeon, in a few arrays of primitives instead of one object per
+ * room, hallway and position. It is meant to keep many dungeons in memory : the tiles are not
+ * kept, {@link #toDungeon()} rasterizes them again.
+ * <p>
+ * {@link #getRooms()} and {@link #getHallways()} give read only views, created on each access. Two
+ * views of the same room or hallway are equal.
+ */
+public final class CompactDungeon {
+
+	private static final DungeonRoom.RoomType[] ROOM_TYPES = DungeonRoom.RoomType.values();
+	private static final RoomShape[] ROOM_SHAPES = RoomShape.values();
+
+	private final int width;
+	private final int height;
+	private final int hallwaysWidth;
+
+	/**
+	 * The rooms, one column per field
+	 */
+	private final int[] roomIds;
+	private final int[] roomXs;
+	private final int[] roomYs;
+	private final int[] roomWidths;
+	private final int[] roomHeights;
+	private final byte[] roomTypes;
+	private final byte[] roomShapes;
+
+	/**
+	 * The index of the two rooms of each hallway, or -1
+	 */
+	private final int[] hallwayRoomsFrom;
+	private final int[] hallwayRoomsTo;
+
+	/**
+	 * The corners of the path of hallway i are the pairs (x, y) of pathCoordinates from
+	 * pathOffsets[i] to pathOffsets[i + 1] excluded
+	 */
+	private final int[] pathOffsets;
+	private final int[] pathCoordinates;
+
+	private final List<DungeonRoom> rooms = new RoomList();
+	private final List<DungeonHallway> hallways = new HallwayList();
+
+	private CompactDungeon(Dungeon dungeon) {
+		width = dungeon.width;
+		height = dungeon.height;
+		hallwaysWidth = dungeon.hallwaysWidth;
+
+		int roomCount = dungeon.rooms.size();
+		roomIds = new int[roomCount];
+		roomXs = new int[roomCount];
+		roomYs = new int[roomCount];
+		roomWidths = new int[roomCount];
+		roomHeights = new int[roomCount];
+		roomTypes = new byte[roomCount];
+		roomShapes = new byte[roomCount];
+		Map<DungeonRoom, Integer> roomIndexes = new IdentityHashMap<>();
+		for (int roomId = 0; roomId < roomCount; roomId++) {
+			DungeonRoom room = dungeon.rooms.get(roomId);
+			roomIds[roomId] = room.getId();
+			roomXs[roomId] = room.getX();
+			roomYs[roomId] = room.getY();
+			roomWidths[roomId] = room.getWidth();
+			roomHeights[roomId] = room.getHeight();
+			roomTypes[roomId] = (byte) room.getType().ordinal();
+			roomShapes[roomId] = (byte) room.getShape().ordinal();
+			roomIndexes.put(room, roomId);
+		}
+
+		int hallwayCount = dungeon.hallways.size();
+		hallwayRoomsFrom = new int[hallwayCount];
+		hallwayRoomsTo = new int[hallwayCount];
+		pathOffsets = new int[hallwayCount + 1];
+		for (int hallwayId = 0; hallwayId < hallwayCount; hallwayId++) {
+			DungeonHallway hallway = dungeon.hallways.get(hallwayId);
+			hallwayRoomsFrom[hallwayId] = roomIndexes.getOrDefault(hallway.getRoomFrom(), -1);
+			hallwayRoomsTo[hallwayId] = roomIndexes.getOrDefault(hallway.getRoomTo(), -1);
+			pathOffsets[hallwayId + 1] = pathOffsets[hallwayId] + 2 * hallway.getPath().size();
+		}
+		pathCoordinates = new int[pathOffsets[hallwayCount]];
+		for (int hallwayId = 0; hallwayId < hallwayCount; hallwayId++) {
+			int offset = pathOffsets[hallwayId];
+			for (Position position : dungeon.hallways.get(hallwayId).getPath()) {
+				pathCoordinates[offset++] = position.x;
+				pathCoordinates[offset++] = position.y;
+			}
+		}
+	}
+
+	/**
+	 * Copy the rooms and hallways of a dungeon. The dungeon must not be modified during the copy.
+	 *
+	 * @param dungeon the dungeon
+	 * @return a compact copy of the dungeon
+	 */
+	public static CompactDungeon of(Dungeon dungeon) {
+		return new CompactDungeon(dungeon);
+	}
+
+	/**
+	 * @return a new dungeon with the same rooms (and ids) and hallways, in an {@link ArrayTileStore}
+	 */
+	public Dungeon toDungeon() {
+		return toDungeon(ArrayTileStore::new);
+	}
+
+	/**
+	 * @param tileStoreFactory the factory of the tile store of the dungeon
+	 * @return a new dungeon with the same rooms (and ids) and hallways
+	 */
+	public Dungeon toDungeon(TileStoreFactory tileStoreFactory) {
+		Dungeon dungeon = new Dungeon();
+		dungeon.width = width;
+		dungeon.height = height;
+		dungeon.hallwaysWidth = hallwaysWidth;
+
+		for (int roomId = 0; roomId < getRoomCount(); roomId++) {
+			DungeonRoom room = new DungeonRoom(roomIds[roomId]);
+			room.setPosition(new Position(roomXs[roomId], roomYs[roomId]));
+			room.setWidth(roomWidths[roomId]).setHeight(roomHeights[roomId]);
+			room.setType(getRoomType(roomId));
+			room.setShape(getRoomShape(roomId));
+			dungeon.addRoom(room);
+		}
+		for (int hallwayId = 0; hallwayId < getHallwayCount(); hallwayId++) {
+			DungeonRoom roomFrom = hallwayRoomsFrom[hallwayId] < 0 ? null : dungeon.rooms.get(hallwayRoomsFrom[hallwayId]);
+			DungeonRoom roomTo = hallwayRoomsTo[hallwayId] < 0 ? null : dungeon.rooms.get(hallwayRoomsTo[hallwayId]);
+			DungeonHallway hallway = new DungeonHallway(roomFrom, roomTo);
+			for (int corner = 0; corner < getPathSize(hallwayId); corner++) {
+				hallway.addPosition(new Position(getPathX(hallwayId, corner), getPathY(hallwayId, corner)));
+			}
+			dungeon.hallways.add(hallway);
+		}
+
+		dungeon.tileStore = tileStoreFactory.create(width, height);
+		DungeonGenerator.rasterizeDungeon(dungeon);
+		return dungeon;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getHallwaysWidth() {
+		return hallwaysWidth;
+	}
+
+	/**
+	 * @return read only views of the rooms
+	 */
+	public List<DungeonRoom> getRooms() {
+		return rooms;
+	}
+
+	/**
+	 * @return read only views of the hallways
+	 */
+	public List<DungeonHallway> getHallways() {
+		return hallways;
+	}
+
+	public int getRoomCount() {
+		return roomIds.length;
+	}
+
+	/**
+	 * @return the id of the room in the dungeon ({@link DungeonRoom#getId()})
+	 */
+	public int getRoomId(int room) {
+		return roomIds[room];
+	}
+
+	public int getRoomX(int room) {
+		return roomXs[room];
+	}
+
+	public int getRoomY(int room) {
+		return roomYs[room];
+	}
+
+	public int getRoomWidth(int room) {
+		return roomWidths[room];
+	}
+
+	public int getRoomHeight(int room) {
+		return roomHeights[room];
+	}
+
+	public DungeonRoom.RoomType getRoomType(int room) {
+		return ROOM_TYPES[roomTypes[room]];
+	}
+
+	public RoomShape getRoomShape(int room) {
+		return ROOM_SHAPES[roomShapes[room]];
+	}
+
+	public int getHallwayCount() {
+		return hallwayRoomsFrom.length;
+	}
+
+	/**
+	 * @return the index of the first room of the hallway, or -1
+	 */
+	public int getHallwayRoomFrom(int hallway) {
+		return hallwayRoomsFrom[hallway];
+	}
+
+	/**
+	 * @return the index of the second room of the hallway, or -1
+	 */
+	public int getHallwayRoomTo(int hallway) {
+		return hallwayRoomsTo[hallway];
+	}
+
+	/**
+	 * @return the number of corners of the path of the hallway
+	 */
+	public int getPathSize(int hallway) {
+		return (pathOffsets[hallway + 1] - pathOffsets[hallway]) / 2;
+	}
+
+	public int getPathX(int hallway, int corner) {
+		return pathCoordinates[pathOffsets[hallway] + 2 * corner];
+	}
+
+	public int getPathY(int hallway, int corner) {
+		return pathCoordinates[pathOffsets[hallway] + 2 * corner + 1];
+	}
+
+	private final class RoomList extends AbstractList<DungeonRoom> implements RandomAccess {
+		@Override
+		public DungeonRoom get(int index) {
+			if (index < 0 || index >= getRoomCount()) {
+				throw new IndexOutOfBoundsException("Room " + index);
+			}
+			return new RoomView(index);
+		}
+
+		@Override
+		public int size() {
+			return getRoomCount();
+		}
+	}
+
+	private final class HallwayList extends AbstractList<DungeonHallway> implements RandomAccess {
+		@Override
+		public DungeonHallway get(int index) {
+			if (index < 0 || index >= getHallwayCount()) {
+				throw new IndexOutOfBoundsException("Hallway " + index);
+			}
+			return new HallwayView(index);
+		}
+
+		@Override
+		public int size() {
+			return getHallwayCount();
+		}
+	}
+
+	/**
+	 * A room reading the columns
+	 */
+	private final class RoomView extends DungeonRoom {
+		private final int index;
+
+		RoomView(int index) {
+			super(roomIds[index]);
+			this.index = index;
+		}
+
+		@Override
+		public Position getPosition() {
+			return new Position(roomXs[index], roomYs[index]);
+		}
+
+		@Override
+		public int getX() {
+			return roomXs[index];
+		}
+
+		@Override
+		public int getY() {
+			return roomYs[index];
+		}
+
+		@Override
+		public int getWidth() {
+			return roomWidths[index];
+		}
+
+		@Override
+		public int getHeight() {
+			return roomHeights[index];
+		}
+
+		@Override
+		public RoomType getType() {
+			return getRoomType(index);
+		}
+
+		@Override
+		public RoomShape getShape() {
+			return getRoomShape(index);
+		}
+
+		@Override
+		public Position getCenterPosition() {
+			return new Position(roomXs[index] + roomWidths[index] / 2, roomYs[index] + roomHeights[index] / 2);
+		}
+
+		@Override
+		public void setPosition(Position position) {
+			throw new UnsupportedOperationException("The rooms of a compact dungeon are read only");
+		}
+
+		@Override
+		public DungeonRoom setWidth(int width) {
+			throw new UnsupportedOperationException("The rooms of a compact dungeon are read only");
+		}
+
+		@Override
+		public DungeonRoom setHeight(int height) {
+			throw new UnsupportedOperationException("The rooms of a compact dungeon are read only");
+		}
+
+		@Override
+		public DungeonRoom setX(int x) {
+			throw new UnsupportedOperationException("The rooms of a compact dungeon are read only");
+		}
+
+		@Override
+		public DungeonRoom setY(int y) {
+			throw new UnsupportedOperationException("The rooms of a compact dungeon are read only");
+		}
+
+		@Override
+		public void setId(int id) {
+			throw new UnsupportedOperationException("The rooms of a compact dungeon are read only");
+		}
+
+		@Override
+		public void setType(RoomType type) {
+			throw new UnsupportedOperationException("The rooms of a compact dungeon are read only");
+		}
+
+		@Override
+		public DungeonRoom setShape(RoomShape shape) {
+			throw new UnsupportedOperationException("The rooms of a compact dungeon are read only");
+		}
+	}
+
+	/**
+	 * An hallway reading the coordinate pool
+	 */
+	private final class HallwayView extends DungeonHallway {
+		private final int index;
+
+		HallwayView(int index) {
+			super(new PathView(index));
+			this.index = index;
+		}
+
+		@Override
+		public DungeonRoom getRoomFrom() {
+			return hallwayRoomsFrom[index] < 0 ? null : new RoomView(hallwayRoomsFrom[index]);
+		}
+
+		@Override
+		public DungeonRoom getRoomTo() {
+			return hallwayRoomsTo[index] < 0 ? null : new RoomView(hallwayRoomsTo[index]);
+		}
+
+		@Override
+		public void setPath(List<Position> path) {
+			throw new UnsupportedOperationException("The hallways of a compact dungeon are read only");
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof HallwayView)) return false;
+
+			HallwayView hallway = (HallwayView) o;
+			return index == hallway.index && getDungeon() == hallway.getDungeon();
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(getDungeon()) + index;
+		}
+
+		private CompactDungeon getDungeon() {
+			return CompactDungeon.this;
+		}
+	}
+
+	/**
+	 * The corners of an hallway, as new positions on each access
+	 */
+	private final class PathView extends AbstractList<Position> implements RandomAccess {
+		private final int hallway;
+
+		PathView(int hallway) {
+			this.hallway = hallway;
+		}
+
+		@Override
+		public Position get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("Corner " + index);
+			}
+			return new Position(getPathX(hallway, index), getPathY(hallway, index));
+		}
+
+		@Override
+		public int size() {
+			return getPathSize(hallway);
+		}
+	}
+}
@@ -1,6 +1,13 @@
 package com.mursaat.dungeongenerator;
 
+import com.mursaat.dungeongenerator.graphs.Graph;
+import com.mursaat.dungeongenerator.navigation.NavigationGraph;
+import com.mursaat.dungeongenerator.util.IndexedList;
+import com.mursaat.dungeongenerator.util.RectangleConsumer;
+import com.mursaat.dungeongenerator.util.RectangleIndex;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -9,7 +16,12 @@ import java.util.List;
 public class Dungeon {
 
 	/**
-	 * The rooms
+	 * The width and height of the cells of {@link #structureIndex}
+	 */
+	private static final int INDEX_CELL_SIZE = 32;
+
+	/**
+	 * The rooms. The rooms and hallways are removed by an editor without reading the whole lists.
 	 */
 	List<DungeonRoom> rooms;
 
@@ -19,10 +31,10 @@ public class Dungeon {
 	List<DungeonHallway> hallways;
 
 	/**
-	 * The rooms and hallways in an array
-	 * Each cell refers to a room, an hallway or null=wall
+	 * The rooms and hallways
+	 * Each tile refers to a room, an hallway or null=wall
 	 */
-	DungeonStructure[][] tiles;
+	TileStore tileStore;
 
 	/**
 	 * The width of the dungeon
@@ -34,9 +46,38 @@ public class Dungeon {
 	 */
 	int height;
 
+	/**
+	 * The width of the hallways
+	 */
+	int hallwaysWidth;
+
+	/**
+	 * The triangulation of the main rooms, and the graph of the edges used by the hallways (spanning
+	 * tree and additional edges). Kept for {@link DungeonEditor}.
+	 */
+	Graph triangulationGraph;
+	Graph spanningGraph;
+
+	/**
+	 * The rooms and hallway segments, built on the first region query. Hallways are inserted first,
+	 * then rooms, which is the order of precedence of the tiles. The hallways added by an editor
+	 * come after the other hallways, as in {@link #hallways}.
+	 */
+	private volatile RectangleIndex<DungeonStructure> structureIndex;
+
+	/**
+	 * The navigation graph, built on first use
+	 */
+	private volatile NavigationGraph navigationGraph;
+
+	/**
+	 * The immutable copy of the dungeon, built on first use
+	 */
+	private volatile DungeonSnapshot snapshot;
+
 	Dungeon() {
-		this.rooms = new ArrayList<>();
-		this.hallways = new ArrayList<>();
+		this.rooms = new IndexedList<>();
+		this.hallways = new IndexedList<>();
 	}
 
 	void addRoom(DungeonRoom room) {
@@ -51,8 +92,25 @@ public class Dungeon {
 		return hallways;
 	}
 
+	/**
+	 * @return the tiles in an array, indexed by [y][x]. Depending on the {@link TileStore}, it may be
+	 * a copy built on each call.
+	 */
 	public DungeonStructure[][] getTiles() {
-		return tiles;
+		return tileStore.toArray();
+	}
+
+	public TileStore getTileStore() {
+		return tileStore;
+	}
+
+	/**
+	 * @param x the column of the tile
+	 * @param y the row of the tile
+	 * @return the room or hallway at this position, or null for a wall
+	 */
+	public DungeonStructure getStructureAt(int x, int y) {
+		return tileStore.get(x, y);
 	}
 
 	public int getWidth() {
@@ -63,14 +121,205 @@ public class Dungeon {
 		return height;
 	}
 
+	public int getHallwaysWidth() {
+		return hallwaysWidth;
+	}
+
+	/**
+	 * @param x      the first column of the region
+	 * @param y      the first row of the region
+	 * @param width  the number of columns of the region
+	 * @param height the number of rows of the region
+	 * @return the rooms and hallways whose rectangles intersect the region (an hallway may be hidden
+	 * by the rooms it crosses)
+	 */
+	public List<DungeonStructure> getStructuresIn(int x, int y, int width, int height) {
+		RectangleIndex<DungeonStructure> index = getStructureIndex();
+		int[] ids = index.findIntersecting(x, y, x + width - 1, y + height - 1);
+
+		// The segments of an hallway, and the runs of a shaped room, have consecutive ids
+		List<DungeonStructure> structures = new ArrayList<>(ids.length);
+		DungeonStructure lastStructure = null;
+		for (int id : ids) {
+			DungeonStructure structure = index.getValue(id);
+			if (structure != lastStructure) {
+				structures.add(structure);
+				lastStructure = structure;
+			}
+		}
+		return structures;
+	}
+
+	/**
+	 * Copy the tiles of a region in a buffer, row by row. Tiles outside of the dungeon are walls.
+	 *
+	 * @param x      the first column of the region
+	 * @param y      the first row of the region
+	 * @param width  the number of columns of the region
+	 * @param height the number of rows of the region
+	 * @param buffer the destination, of size width * height at least
+	 */
+	public void copyTiles(int x, int y, int width, int height, DungeonStructure[] buffer) {
+		Arrays.fill(buffer, 0, width * height, null);
+		int minX = Math.max(x, 0);
+		int minY = Math.max(y, 0);
+		int maxX = Math.min(x + width, this.width) - 1;
+		int maxY = Math.min(y + height, this.height) - 1;
+		if (minX > maxX || minY > maxY) {
+			return;
+		}
+
+		if (tileStore instanceof ArrayTileStore) {
+			DungeonStructure[][] tiles = tileStore.toArray();
+			for (int row = minY; row <= maxY; row++) {
+				System.arraycopy(tiles[row], minX, buffer, (row - y) * width + minX - x, maxX - minX + 1);
+			}
+			return;
+		}
+
+		// Paint the structures of the region, hallways first, without reading the tile store
+		RectangleIndex<DungeonStructure> index = getStructureIndex();
+		for (int id : index.findIntersecting(minX, minY, maxX, maxY)) {
+			DungeonStructure structure = index.getValue(id);
+			boolean overwrite = structure instanceof DungeonRoom;
+			int rectMaxX = Math.min(index.getMaxX(id), maxX);
+			int rectMaxY = Math.min(index.getMaxY(id), maxY);
+			for (int row = Math.max(index.getMinY(id), minY); row <= rectMaxY; row++) {
+				int offset = (row - y) * width - x;
+				for (int column = Math.max(index.getMinX(id), minX); column <= rectMaxX; column++) {
+					if (overwrite || buffer[offset + column] == null) {
+						buffer[offset + column] = structure;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the graph of the portals between rooms and hallways, for hierarchical path finding
+	 */
+	public NavigationGraph getNavigationGraph() {
+		NavigationGraph graph = navigationGraph;
+		if (graph == null) {
+			synchronized (this) {
+				graph = navigationGraph;
+				if (graph == null) {
+					graph = NavigationGraph.build(this);
+					navigationGraph = graph;
+				}
+			}
+		}
+		return graph;
+	}
+
+	/**
+	 * @return an immutable copy of the dungeon, which can be shared by any number of threads. It is
+	 * built again after a change of the dungeon.
+	 */
+	public DungeonSnapshot getSnapshot() {
+		DungeonSnapshot dungeonSnapshot = snapshot;
+		if (dungeonSnapshot == null) {
+			synchronized (this) {
+				dungeonSnapshot = snapshot;
+				if (dungeonSnapshot == null) {
+					dungeonSnapshot = DungeonSnapshot.of(this);
+					snapshot = dungeonSnapshot;
+				}
+			}
+		}
+		return dungeonSnapshot;
+	}
+
+	/**
+	 * Must be called after each change of the rooms or hallways
+	 */
+	void invalidateStructureIndex() {
+		structureIndex = null;
+		navigationGraph = null;
+		snapshot = null;
+	}
+
+	/**
+	 * Build the structure index if needed. An editor keeps it up to date afterwards with {@link
+	 * #addToStructureIndex(DungeonStructure)} and {@link #removeFromStructureIndex(DungeonStructure)},
+	 * instead of building it again after each change.
+	 */
+	void ensureStructureIndex() {
+		getStructureIndex();
+	}
+
+	/**
+	 * Index a room or an hallway just added to the dungeon
+	 */
+	void addToStructureIndex(DungeonStructure structure) {
+		RectangleIndex<DungeonStructure> index = getStructureIndex();
+		if (structure instanceof DungeonHallway) {
+			((DungeonHallway) structure).forEachSegment(hallwaysWidth, width, height,
+					(minX, minY, maxX, maxY) -> index.add(minX, minY, maxX, maxY, structure));
+		} else {
+			((DungeonRoom) structure).forEachRectangle((minX, minY, maxX, maxY) -> index.add(minX, minY, maxX, maxY, structure));
+		}
+		navigationGraph = null;
+		snapshot = null;
+	}
+
+	/**
+	 * Remove a room or an hallway from the structure index, before it is moved or removed from the
+	 * dungeon
+	 */
+	void removeFromStructureIndex(DungeonStructure structure) {
+		RectangleIndex<DungeonStructure> index = getStructureIndex();
+		RectangleConsumer removeRectangle = (minX, minY, maxX, maxY) -> {
+			for (int id : index.findIntersecting(minX, minY, maxX, maxY)) {
+				if (index.getValue(id) == structure) {
+					index.remove(id);
+				}
+			}
+		};
+		if (structure instanceof DungeonHallway) {
+			((DungeonHallway) structure).forEachSegment(hallwaysWidth, width, height, removeRectangle);
+		} else {
+			((DungeonRoom) structure).forEachRectangle(removeRectangle);
+		}
+		navigationGraph = null;
+		snapshot = null;
+	}
+
+	private RectangleIndex<DungeonStructure> getStructureIndex() {
+		RectangleIndex<DungeonStructure> index = structureIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = structureIndex;
+				if (index == null) {
+					index = buildStructureIndex();
+					structureIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	private RectangleIndex<DungeonStructure> buildStructureIndex() {
+		RectangleIndex<DungeonStructure> index = new RectangleIndex<>(width, height, INDEX_CELL_SIZE);
+		for (DungeonHallway hallway : hallways) {
+			hallway.forEachSegment(hallwaysWidth, width, height,
+					(minX, minY, maxX, maxY) -> index.add(minX, minY, maxX, maxY, hallway));
+		}
+		for (DungeonRoom room : rooms) {
+			room.forEachRectangle((minX, minY, maxX, maxY) -> index.add(minX, minY, maxX, maxY, room));
+		}
+		return index;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder stringBuilder = new StringBuilder();
 		for (int y = 0; y < height; y++) {
 			for (int x = 0; x < width; x++) {
-				if (tiles[y][x] instanceof DungeonRoom)
+				DungeonStructure structure = tileStore.get(x, y);
+				if (structure instanceof DungeonRoom)
 					stringBuilder.append('X');
-				else if (tiles[y][x] instanceof DungeonHallway)
+				else if (structure instanceof DungeonHallway)
 					stringBuilder.append('O');
 				else
 					stringBuilder.append(' ');
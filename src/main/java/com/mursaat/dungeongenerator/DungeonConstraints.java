@@ -0,0 +1,142 @@
+package com.mursaat.dungeongenerator;
+
+import com.mursaat.dungeongenerator.analysis.RoomDistanceMatrix;
+
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Quality constraints on a generated dungeon. As a fitness function, a dungeon scores minus the
+ * number of constraints it violates, so 0 is the best score.
+ */
+public class DungeonConstraints implements Predicate<Dungeon>, ToDoubleFunction<Dungeon> {
+
+	/**
+	 * The minimum number of rooms, main rooms and hallway rooms
+	 */
+	private int minRoomCount = 0;
+
+	/**
+	 * If false, the hallways which couldn't be carved are not allowed
+	 */
+	private boolean emptyHallwaysAllowed = true;
+
+	/**
+	 * The minimum number of hallways between the two farthest rooms
+	 */
+	private int minDiameter = 0;
+
+	/**
+	 * The bounds of the number of additional hallways (the ones creating loops), divided by the
+	 * number of hallways of a spanning tree
+	 */
+	private float minLoopRatio = 0;
+	private float maxLoopRatio = Float.MAX_VALUE;
+
+	public int getMinRoomCount() {
+		return minRoomCount;
+	}
+
+	public DungeonConstraints setMinRoomCount(int minRoomCount) {
+		this.minRoomCount = minRoomCount;
+		return this;
+	}
+
+	public boolean isEmptyHallwaysAllowed() {
+		return emptyHallwaysAllowed;
+	}
+
+	public DungeonConstraints setEmptyHallwaysAllowed(boolean emptyHallwaysAllowed) {
+		this.emptyHallwaysAllowed = emptyHallwaysAllowed;
+		return this;
+	}
+
+	public int getMinDiameter() {
+		return minDiameter;
+	}
+
+	public DungeonConstraints setMinDiameter(int minDiameter) {
+		this.minDiameter = minDiameter;
+		return this;
+	}
+
+	public float getMinLoopRatio() {
+		return minLoopRatio;
+	}
+
+	public DungeonConstraints setMinLoopRatio(float minLoopRatio) {
+		this.minLoopRatio = minLoopRatio;
+		return this;
+	}
+
+	public float getMaxLoopRatio() {
+		return maxLoopRatio;
+	}
+
+	public DungeonConstraints setMaxLoopRatio(float maxLoopRatio) {
+		this.maxLoopRatio = maxLoopRatio;
+		return this;
+	}
+
+	/**
+	 * @return true if the dungeon meets all the constraints
+	 */
+	@Override
+	public boolean test(Dungeon dungeon) {
+		return countViolations(dungeon) == 0;
+	}
+
+	/**
+	 * @return minus the number of violated constraints
+	 */
+	@Override
+	public double applyAsDouble(Dungeon dungeon) {
+		return -countViolations(dungeon);
+	}
+
+	/**
+	 * @return the number of constraints the dungeon doesn't meet. The costly ones are only checked
+	 * when they are set.
+	 */
+	public int countViolations(Dungeon dungeon) {
+		int violations = 0;
+		if (dungeon.getRooms().size() < minRoomCount) {
+			violations++;
+		}
+
+		int emptyHallways = 0;
+		for (DungeonHallway hallway : dungeon.getHallways()) {
+			if (hallway.getPath().isEmpty()) {
+				emptyHallways++;
+			}
+		}
+		if (!emptyHallwaysAllowed && emptyHallways > 0) {
+			violations++;
+		}
+
+		float loopRatio = getLoopRatio(dungeon);
+		if (loopRatio < minLoopRatio || loopRatio > maxLoopRatio) {
+			violations++;
+		}
+
+		if (minDiameter > 0 && !RoomDistanceMatrix.hasHopDiameter(dungeon, minDiameter)) {
+			violations++;
+		}
+		return violations;
+	}
+
+	/**
+	 * @return the number of additional hallways, divided by the number of hallways of a spanning
+	 * tree of the main rooms
+	 */
+	public static float getLoopRatio(Dungeon dungeon) {
+		int mainRoomCount = 0;
+		for (DungeonRoom room : dungeon.getRooms()) {
+			if (room.getType() == DungeonRoom.RoomType.MAIN_ROOM) {
+				mainRoomCount++;
+			}
+		}
+		int treeSize = mainRoomCount - 1;
+		return treeSize <= 0 ? 0 : (float) (dungeon.getHallways().size() - treeSize) / treeSize;
+	}
+}
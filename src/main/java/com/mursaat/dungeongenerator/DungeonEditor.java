@@ -0,0 +1,493 @@
+package com.mursaat.dungeongenerator;
+
+import com.mursaat.dungeongenerator.graphs.Edge;
+import com.mursaat.dungeongenerator.graphs.Graph;
+import com.mursaat.dungeongenerator.graphs.Node;
+import com.mursaat.dungeongenerator.util.RectangleIndex;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Add, remove and move the main rooms of a generated dungeon, without generating it again.
+ * <p>
+ * Only the neighbourhood of the edited room is updated : its part of the triangulation is computed
+ * again, the spanning graph is repaired with the new edges of this neighbourhood, and only the
+ * hallways whose edges changed are removed or carved. The hallway rooms are not updated. The
+ * structures of the neighbourhood are found with spatial indexes, and the rooms, hallways and
+ * edges are removed from their lists without reading them, so an edit doesn't read all the rooms
+ * and hallways of the dungeon.
+ */
+public class DungeonEditor {
+
+	/**
+	 * The number of nearest rooms triangulated again around an added room
+	 */
+	private static final int NEIGHBORHOOD_SIZE = 6;
+
+	/**
+	 * The width and height of the cells of {@link #nodeCenters}
+	 */
+	private static final int NODE_CELL_SIZE = 32;
+
+	/**
+	 * The number of nodes searched around a region for the spanning edges which already link it
+	 */
+	private static final int LOCAL_SEARCH_SIZE = 256;
+
+	private final Dungeon dungeon;
+	private final int minSpaceBetweenRooms;
+	private final Random random;
+
+	private final Map<DungeonRoom, Node> nodesByRoom = new HashMap<>();
+
+	/**
+	 * The rooms of the dungeon
+	 */
+	private final Set<DungeonRoom> rooms = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	/**
+	 * The centers of the main rooms, for the search of the nearest ones, and their ids in the index
+	 */
+	private final RectangleIndex<Node> nodeCenters;
+	private final Map<Node, Integer> nodeCenterIds = new HashMap<>();
+
+	/**
+	 * The hallway of each edge of the spanning graph
+	 */
+	private final Map<Edge, DungeonHallway> hallwaysByEdge = new HashMap<>();
+
+	public DungeonEditor(Dungeon dungeon, DungeonParams dungeonParams) {
+		this(dungeon, dungeonParams, new Random());
+	}
+
+	/**
+	 * @param dungeon       a dungeon created by {@link DungeonGenerator}
+	 * @param dungeonParams the params used to create it
+	 * @param random        the source of randomness of the new hallways
+	 */
+	public DungeonEditor(Dungeon dungeon, DungeonParams dungeonParams, Random random) {
+		if (dungeon.triangulationGraph == null || dungeon.spanningGraph == null) {
+			throw new IllegalArgumentException("The dungeon must be created by a DungeonGenerator");
+		}
+		this.dungeon = dungeon;
+		this.minSpaceBetweenRooms = dungeonParams.getMinSpaceBetweenRooms();
+		this.random = random;
+		this.nodeCenters = new RectangleIndex<>(dungeon.width, dungeon.height, NODE_CELL_SIZE);
+
+		rooms.addAll(dungeon.rooms);
+		for (Node node : dungeon.triangulationGraph.getNodes()) {
+			nodesByRoom.put(node.getRoom(), node);
+			addNodeCenter(node);
+		}
+
+		// The generator creates one hallway per edge, between the rooms of the edge. The parallel
+		// routing doesn't add them in the order of the edges.
+		Map<Long, DungeonHallway> hallwaysByPair = new HashMap<>();
+		for (DungeonHallway hallway : dungeon.hallways) {
+			hallwaysByPair.put(pairKey(hallway.getRoomFrom(), hallway.getRoomTo()), hallway);
+		}
+		for (Edge edge : dungeon.spanningGraph.getEdges()) {
+			DungeonHallway hallway = hallwaysByPair.get(pairKey(edge));
+			if (hallway == null) {
+				throw new IllegalArgumentException("The dungeon must be created by a DungeonGenerator");
+			}
+			hallwaysByEdge.put(edge, hallway);
+		}
+	}
+
+	/**
+	 * Add a main room, and link it to its neighbours
+	 *
+	 * @return the new room
+	 * @throws IllegalArgumentException if the room is out of the dungeon, or too close to another room
+	 */
+	public DungeonRoom addRoom(int x, int y, int width, int height) {
+		dungeon.ensureStructureIndex();
+		checkRoomPlace(x, y, width, height, null);
+
+		DungeonRoom room = new DungeonRoom().setWidth(width).setHeight(height).setX(x).setY(y);
+		room.setType(DungeonRoom.RoomType.MAIN_ROOM);
+		attachRoom(room);
+		return room;
+	}
+
+	/**
+	 * Remove a room and its hallways. The hallways of its neighbours are repaired.
+	 *
+	 * @param room a room of the dungeon
+	 */
+	public void removeRoom(DungeonRoom room) {
+		if (!rooms.contains(room)) {
+			throw new IllegalArgumentException("The room " + room.getId() + " is not in the dungeon");
+		}
+		dungeon.ensureStructureIndex();
+		detachRoom(room);
+	}
+
+	/**
+	 * Move a main room. Its hallways and the hallways of its old and new neighbours are repaired.
+	 *
+	 * @param room a main room of the dungeon
+	 * @param x    the new x position of the room
+	 * @param y    the new y position of the room
+	 * @throws IllegalArgumentException if the room is out of the dungeon, or too close to another room
+	 */
+	public void moveRoom(DungeonRoom room, int x, int y) {
+		if (!nodesByRoom.containsKey(room)) {
+			throw new IllegalArgumentException("The room " + room.getId() + " is not a main room of the dungeon");
+		}
+		dungeon.ensureStructureIndex();
+		checkRoomPlace(x, y, room.getWidth(), room.getHeight(), room);
+
+		detachRoom(room);
+		room.setX(x);
+		room.setY(y);
+		attachRoom(room);
+	}
+
+	private void checkRoomPlace(int x, int y, int width, int height, DungeonRoom ignoredRoom) {
+		if (width < 1 || height < 1 || x < 0 || y < 0 || x + width > dungeon.width || y + height > dungeon.height) {
+			throw new IllegalArgumentException("The room must be inside the dungeon");
+		}
+		for (DungeonStructure structure : dungeon.getStructuresIn(x - minSpaceBetweenRooms, y - minSpaceBetweenRooms,
+				width + 2 * minSpaceBetweenRooms, height + 2 * minSpaceBetweenRooms)) {
+			if (structure instanceof DungeonRoom && structure != ignoredRoom) {
+				throw new IllegalArgumentException("The room is too close to the room " + ((DungeonRoom) structure).getId());
+			}
+		}
+	}
+
+	private void attachRoom(DungeonRoom room) {
+		dungeon.addRoom(room);
+		rooms.add(room);
+		dungeon.addToStructureIndex(room);
+		DungeonGenerator.rasterizeRoom(dungeon.tileStore, room);
+
+		Node node = new Node(room);
+		Set<Node> region = findNearestNodes(room, NEIGHBORHOOD_SIZE);
+		region.add(node);
+		addNode(node);
+
+		retriangulate(region);
+		repairSpanningGraph(region);
+	}
+
+	private void detachRoom(DungeonRoom room) {
+		Node node = nodesByRoom.get(room);
+		Set<Node> region = new LinkedHashSet<>();
+		if (node != null) {
+			for (Edge edge : dungeon.spanningGraph.getEdges(node)) {
+				dungeon.spanningGraph.removeEdge(edge);
+				removeHallway(hallwaysByEdge.remove(edge));
+			}
+			for (Edge edge : dungeon.triangulationGraph.getEdges(node)) {
+				region.add(edge.getFirstNode() == node ? edge.getSecondNode() : edge.getFirstNode());
+			}
+			dungeon.triangulationGraph.removeNode(node);
+			dungeon.spanningGraph.removeNode(node);
+			nodesByRoom.remove(room);
+			nodeCenters.remove(nodeCenterIds.remove(node));
+		}
+
+		dungeon.rooms.remove(room);
+		rooms.remove(room);
+		dungeon.removeFromStructureIndex(room);
+		clearStructure(room, room.getX(), room.getY(), room.getX() + room.getWidth() - 1, room.getY() + room.getHeight() - 1);
+
+		if (!region.isEmpty()) {
+			retriangulate(region);
+			repairSpanningGraph(region);
+		}
+	}
+
+	private void addNode(Node node) {
+		nodesByRoom.put(node.getRoom(), node);
+		addNodeCenter(node);
+		dungeon.triangulationGraph.addNode(node);
+
+		// The generator shares the list of nodes between its two graphs, found without reading it
+		if (!dungeon.spanningGraph.getNodes().contains(node)) {
+			dungeon.spanningGraph.addNode(node);
+		}
+	}
+
+	/**
+	 * Triangulate again a region and its direct neighbours, then replace the edges of the region
+	 */
+	private void retriangulate(Set<Node> region) {
+		Graph triangulation = dungeon.triangulationGraph;
+		Set<Node> localNodes = new LinkedHashSet<>(region);
+		for (Node node : region) {
+			for (Edge edge : triangulation.getEdges(node)) {
+				localNodes.add(edge.getFirstNode());
+				localNodes.add(edge.getSecondNode());
+			}
+		}
+
+		Set<Long> existingPairs = new HashSet<>();
+		for (Node node : localNodes) {
+			for (Edge edge : triangulation.getEdges(node)) {
+				boolean inRegion = region.contains(edge.getFirstNode()) && region.contains(edge.getSecondNode());
+				if (inRegion) {
+					triangulation.removeEdge(edge);
+				} else {
+					existingPairs.add(pairKey(edge));
+				}
+			}
+		}
+
+		List<DungeonRoom> localRooms = new ArrayList<>();
+		for (Node node : localNodes) {
+			localRooms.add(node.getRoom());
+		}
+		localRooms.sort(Comparator.comparingInt(DungeonRoom::getId));
+
+		List<Edge> localEdges;
+		if (localRooms.size() >= 3) {
+			localEdges = Graph.triangulate(localRooms).getEdges();
+		} else if (localRooms.size() == 2) {
+			localEdges = new ArrayList<>();
+			localEdges.add(new Edge(new Node(localRooms.get(0)), new Node(localRooms.get(1))));
+		} else {
+			return;
+		}
+
+		for (Edge localEdge : localEdges) {
+			Node first = nodesByRoom.get(localEdge.getFirstNode().getRoom());
+			Node second = nodesByRoom.get(localEdge.getSecondNode().getRoom());
+			Edge edge = new Edge(first, second);
+			if ((region.contains(first) || region.contains(second)) && existingPairs.add(pairKey(edge))) {
+				triangulation.addEdge(edge);
+			}
+		}
+	}
+
+	/**
+	 * Kruskal on the triangulation edges of the region, starting from the spanning edges outside of
+	 * the region. The hallways of the edges kept are not carved again, and the edges whose hallway
+	 * can't be carved are skipped.
+	 * <p>
+	 * The outside edges are the ones found by a search of {@link #LOCAL_SEARCH_SIZE} nodes around
+	 * the region, so the repair doesn't read the whole graph. Two nodes of the region only linked
+	 * through far away rooms are seen as not linked : the repair then adds an hallway which closes
+	 * a long loop, like the additional edges of the generator, and never disconnects the dungeon.
+	 */
+	private void repairSpanningGraph(Set<Node> region) {
+		Graph spanning = dungeon.spanningGraph;
+
+		Map<Long, Edge> oldRegionEdges = new HashMap<>();
+		Map<Node, Node> parents = new HashMap<>();
+		Set<Node> visitedNodes = new HashSet<>(region);
+		Deque<Node> nodesToVisit = new ArrayDeque<>(region);
+		while (!nodesToVisit.isEmpty()) {
+			Node node = nodesToVisit.poll();
+			for (Edge edge : spanning.getEdges(node)) {
+				Node otherNode = edge.getFirstNode() == node ? edge.getSecondNode() : edge.getFirstNode();
+				if (region.contains(node) && region.contains(otherNode)) {
+					oldRegionEdges.put(pairKey(edge), edge);
+				} else if (isLinking(hallwaysByEdge.get(edge))) {
+					union(parents, node, otherNode);
+					if (visitedNodes.size() < LOCAL_SEARCH_SIZE && visitedNodes.add(otherNode)) {
+						nodesToVisit.add(otherNode);
+					}
+				}
+			}
+		}
+
+		Set<Edge> candidates = new LinkedHashSet<>();
+		for (Node node : region) {
+			candidates.addAll(dungeon.triangulationGraph.getEdges(node));
+		}
+		List<Edge> sortedCandidates = new ArrayList<>(candidates);
+		sortedCandidates.sort(Comparator.comparingLong(Edge::getSquaredLength));
+
+		Set<Edge> keptEdges = new HashSet<>();
+		for (Edge edge : sortedCandidates) {
+			if (find(parents, edge.getFirstNode()).equals(find(parents, edge.getSecondNode()))) {
+				continue;
+			}
+
+			Edge oldEdge = oldRegionEdges.get(pairKey(edge));
+			if (oldEdge != null && isLinking(hallwaysByEdge.get(oldEdge))) {
+				keptEdges.add(oldEdge);
+			} else {
+				if (oldEdge != null) {
+					oldRegionEdges.remove(pairKey(edge));
+					spanning.removeEdge(oldEdge);
+					removeHallway(hallwaysByEdge.remove(oldEdge));
+				}
+				DungeonHallway hallway = DungeonGenerator.createHallwayFromEdge(dungeon, edge, random, true);
+				if (!isLinking(hallway)) {
+					continue;
+				}
+				spanning.addEdge(edge);
+				dungeon.hallways.add(hallway);
+				dungeon.addToStructureIndex(hallway);
+				hallwaysByEdge.put(edge, hallway);
+				DungeonGenerator.rasterizeHallway(dungeon.tileStore, hallway, dungeon.hallwaysWidth);
+			}
+			union(parents, edge.getFirstNode(), edge.getSecondNode());
+		}
+
+		for (Edge oldEdge : oldRegionEdges.values()) {
+			if (!keptEdges.contains(oldEdge)) {
+				spanning.removeEdge(oldEdge);
+				removeHallway(hallwaysByEdge.remove(oldEdge));
+			}
+		}
+	}
+
+	/**
+	 * @return true if the hallway starts next to one of its rooms and ends next to the other one. The
+	 * hallways without path, or with a straight path on the side of one room, don't link their rooms.
+	 */
+	private static boolean isLinking(DungeonHallway hallway) {
+		List<Position> path = hallway.getPath();
+		if (path.isEmpty()) {
+			return false;
+		}
+		Position first = path.get(0);
+		Position last = path.get(path.size() - 1);
+		DungeonRoom roomFrom = hallway.getRoomFrom();
+		DungeonRoom roomTo = hallway.getRoomTo();
+		return (isNextTo(first, roomFrom) && isNextTo(last, roomTo)) || (isNextTo(first, roomTo) && isNextTo(last, roomFrom));
+	}
+
+	private static boolean isNextTo(Position position, DungeonRoom room) {
+		int dx = Math.max(Math.max(room.getX() - position.x, position.x - (room.getX() + room.getWidth() - 1)), 0);
+		int dy = Math.max(Math.max(room.getY() - position.y, position.y - (room.getY() + room.getHeight() - 1)), 0);
+		return dx + dy <= 1;
+	}
+
+	private void removeHallway(DungeonHallway hallway) {
+		if (hallway == null) {
+			return;
+		}
+		dungeon.hallways.remove(hallway);
+		dungeon.removeFromStructureIndex(hallway);
+		hallway.forEachSegment(dungeon.hallwaysWidth, dungeon.width, dungeon.height,
+				(minX, minY, maxX, maxY) -> clearStructure(hallway, minX, minY, maxX, maxY));
+	}
+
+	/**
+	 * Replace the tiles of a structure by walls in a rectangle, then give back these tiles to the
+	 * hallways which were hidden by the structure
+	 */
+	private void clearStructure(DungeonStructure structure, int minX, int minY, int maxX, int maxY) {
+		TileStore tileStore = dungeon.tileStore;
+		for (int y = minY; y <= maxY; y++) {
+			for (int x = minX; x <= maxX; x++) {
+				if (tileStore.get(x, y) == structure) {
+					tileStore.set(x, y, null);
+				}
+			}
+		}
+
+		// The hallways of the region, in the order of the dungeon
+		for (DungeonStructure other : dungeon.getStructuresIn(minX, minY, maxX - minX + 1, maxY - minY + 1)) {
+			if (!(other instanceof DungeonHallway)) {
+				continue;
+			}
+			DungeonHallway hallway = (DungeonHallway) other;
+			hallway.forEachSegment(dungeon.hallwaysWidth, dungeon.width, dungeon.height, (segMinX, segMinY, segMaxX, segMaxY) -> {
+				if (segMinX <= maxX && segMaxX >= minX && segMinY <= maxY && segMaxY >= minY) {
+					tileStore.fill(Math.max(segMinX, minX), Math.max(segMinY, minY),
+							Math.min(segMaxX, maxX), Math.min(segMaxY, maxY), hallway, false);
+				}
+			});
+		}
+	}
+
+	private void addNodeCenter(Node node) {
+		Position center = node.getRoom().getCenterPosition();
+		nodeCenterIds.put(node, nodeCenters.add(center.x, center.y, center.x, center.y, node));
+	}
+
+	/**
+	 * Search the nodes in a square around the room, twice as large each time, until it holds the
+	 * wanted number of nodes closer than its half side : no node out of the square can be closer.
+	 */
+	private Set<Node> findNearestNodes(DungeonRoom room, int count) {
+		Position center = room.getCenterPosition();
+		Comparator<Node> byDistance = Comparator.comparingLong((Node node) -> getSquaredDistance(node, center))
+				.thenComparingInt(node -> node.getRoom().getId());
+		for (long radius = NODE_CELL_SIZE; ; radius *= 2) {
+			int minX = (int) Math.max(center.x - radius, Integer.MIN_VALUE);
+			int minY = (int) Math.max(center.y - radius, Integer.MIN_VALUE);
+			int maxX = (int) Math.min(center.x + radius, Integer.MAX_VALUE);
+			int maxY = (int) Math.min(center.y + radius, Integer.MAX_VALUE);
+			List<Node> nodes = new ArrayList<>();
+			int closeNodes = 0;
+			for (int id : nodeCenters.findIntersecting(minX, minY, maxX, maxY)) {
+				Node node = nodeCenters.getValue(id);
+				nodes.add(node);
+				if (getSquaredDistance(node, center) <= radius * radius) {
+					closeNodes++;
+				}
+			}
+
+			boolean wholeDungeon = minX <= 0 && minY <= 0 && maxX >= dungeon.width - 1 && maxY >= dungeon.height - 1;
+			if (closeNodes >= count || wholeDungeon) {
+				nodes.sort(byDistance);
+				return new LinkedHashSet<>(nodes.subList(0, Math.min(count, nodes.size())));
+			}
+		}
+	}
+
+	private static long getSquaredDistance(Node node, Position center) {
+		Position nodeCenter = node.getRoom().getCenterPosition();
+		long dx = nodeCenter.x - center.x;
+		long dy = nodeCenter.y - center.y;
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Union-find, with path halving
+	 *
+	 * @return true if the two nodes were in different sets
+	 */
+	private static boolean union(Map<Node, Node> parents, Node n1, Node n2) {
+		Node root1 = find(parents, n1);
+		Node root2 = find(parents, n2);
+		if (root1.equals(root2)) {
+			return false;
+		}
+		parents.put(root1, root2);
+		return true;
+	}
+
+	private static Node find(Map<Node, Node> parents, Node node) {
+		Node parent = parents.get(node);
+		while (parent != null) {
+			Node grandParent = parents.get(parent);
+			if (grandParent != null) {
+				parents.put(node, grandParent);
+			}
+			node = parent;
+			parent = parents.get(node);
+		}
+		return node;
+	}
+
+	private static long pairKey(Edge edge) {
+		return pairKey(edge.getFirstNode().getRoom(), edge.getSecondNode().getRoom());
+	}
+
+	private static long pairKey(DungeonRoom room1, DungeonRoom room2) {
+		int id1 = room1.getId();
+		int id2 = room2.getId();
+		return ((long) Math.min(id1, id2) << 32) | Math.max(id1, id2);
+	}
+}
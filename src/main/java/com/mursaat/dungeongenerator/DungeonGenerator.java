@@ -3,6 +3,7 @@ package com.mursaat.dungeongenerator;
 import com.mursaat.dungeongenerator.graphs.*;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class DungeonGenerator {
@@ -10,6 +11,9 @@ public class DungeonGenerator {
 	DungeonParams dungeonParams;
 	RoomParams roomParams;
 	RoomGenerator roomGenerator;
+	TileStoreFactory tileStoreFactory = ArrayTileStore::new;
+	GenerationListener listener = new GenerationListener() {
+	};
 
 	public DungeonGenerator() {
 		this.dungeonParams = new DungeonParams();
@@ -23,6 +27,24 @@ public class DungeonGenerator {
 		roomGenerator = new RoomGenerator(roomParams);
 	}
 
+	/**
+	 * @param tileStoreFactory the factory of the tile stores of the generated dungeons
+	 * @return this generator
+	 */
+	public DungeonGenerator setTileStoreFactory(TileStoreFactory tileStoreFactory) {
+		this.tileStoreFactory = tileStoreFactory;
+		return this;
+	}
+
+	/**
+	 * @param listener the receiver of the phases of the generations
+	 * @return this generator
+	 */
+	public DungeonGenerator setListener(GenerationListener listener) {
+		this.listener = listener;
+		return this;
+	}
+
 	/**
 	 * Select and return the N biggest rooms
 	 *
@@ -58,19 +80,51 @@ public class DungeonGenerator {
 	 * @return
 	 */
 	public Dungeon generateDungeon() {
+		return generateDungeon(ThreadLocalRandom.current());
+	}
+
+	/**
+	 * Create a dungeon from a seed. The same seed and the same params always give the same map.
+	 *
+	 * @param seed the seed of the dungeon
+	 * @return
+	 */
+	public Dungeon generateDungeon(long seed) {
+		return generateDungeon(new Random(seed));
+	}
+
+	/**
+	 * Create a dungeon, using only the given source of randomness. The generation stops with a
+	 * {@link CancellationException} if the current thread is interrupted.
+	 *
+	 * @param random the source of randomness
+	 * @return
+	 */
+	public Dungeon generateDungeon(Random random) {
 		// 1 - Initialize the main dungeon parameters
-		int roomCount = dungeonParams.getRandomRoomCount();
-		int radius = dungeonParams.getRandomRadius();
+		int roomCount = dungeonParams.getRandomRoomCount(random);
+		int radius = dungeonParams.getRandomRadius(random);
 
 		// 2 - Generate all the rooms we need
+		listener.onPhaseStart(GenerationPhase.ROOMS);
 		ArrayList<DungeonRoom> rooms = new ArrayList<>();
 		for (int roomNumber = 0; roomNumber < roomCount; roomNumber++) {
-			DungeonRoom room = roomGenerator.generateRoom(radius);
+			DungeonRoom room = roomGenerator.generateRoom(radius, random);
 			rooms.add(room);
 		}
+		listener.onPhaseEnd(GenerationPhase.ROOMS);
+		listener.onRoomsPlaced(rooms);
 
 		// 3 - Remove all collision between the rooms
-		handleRoomsCollision(rooms);
+		checkNotCancelled();
+		listener.onPhaseStart(GenerationPhase.SEPARATION);
+		if (dungeonParams.isPackedSeparation()) {
+			new SeparationKernel(rooms, dungeonParams.getMinSpaceBetweenRooms()).separate();
+		} else {
+			handleRoomsCollision(rooms);
+		}
+		listener.onPhaseEnd(GenerationPhase.SEPARATION);
+		checkNotCancelled();
 
 		// 4 - Ajust all rooms positions (remove negatives)
 		// Find min and max positions
@@ -87,14 +141,22 @@ public class DungeonGenerator {
 			roomPos.y -= minY;
 		}
 
+		listener.onRoomsSeparated(rooms);
+
 		// 5 - Select the main rooms
 		List<DungeonRoom> mainRooms = getMainRooms(rooms, rooms.size() / 2);
 
 		// 6 - Use Delaunay triangulation
+		listener.onPhaseStart(GenerationPhase.TRIANGULATION);
 		Graph triangulationGraph = Graph.triangulate(mainRooms);
+		listener.onPhaseEnd(GenerationPhase.TRIANGULATION);
+		listener.onMainRoomGraph(triangulationGraph);
 
 		// 7 - Get Minimal Spanning Tree (with 10% additional edges)
-		Graph mstGraph = triangulationGraph.getMinimumSpanningTree(0.20f);
+		listener.onPhaseStart(GenerationPhase.SPANNING_TREE);
+		Graph mstGraph = triangulationGraph.getMinimumSpanningTree(0.20f, random);
+		listener.onPhaseEnd(GenerationPhase.SPANNING_TREE);
+		listener.onSpanningTree(mstGraph);
 
 		// 8 - Get hallways rooms
 		List<DungeonRoom> hallwayRooms = new ArrayList<>(rooms.size() - mainRooms.size());
@@ -106,6 +168,9 @@ public class DungeonGenerator {
 
 		// 9 - Create the dungeon from the graph
 		Dungeon dungeon = new Dungeon();
+		dungeon.hallwaysWidth = dungeonParams.getHallwaysWidth();
+		dungeon.triangulationGraph = triangulationGraph;
+		dungeon.spanningGraph = mstGraph;
 
 		List<Node> nodes = mstGraph.getNodes();
 		List<Edge> edges = mstGraph.getEdges();
@@ -130,91 +195,143 @@ public class DungeonGenerator {
 		}
 
 		// Create the tiled map
-		dungeon.tiles = new DungeonStructure[dungeon.height][dungeon.width];
-
-		for (DungeonRoom room : dungeon.rooms) {
-			Position roomPosition = room.getPosition();
-
-			int yRoomMax = roomPosition.y + room.getHeight();
-			int xRoomMax = roomPosition.x + room.getWidth();
-			for (int y = roomPosition.y; y < yRoomMax; y++) {
-				for (int x = roomPosition.x; x < xRoomMax; x++) {
-					dungeon.tiles[y][x] = room;
-				}
+		listener.onPhaseStart(GenerationPhase.CARVING);
+		dungeon.tileStore = tileStoreFactory.create(dungeon.width, dungeon.height);
+
+		// The hallways are written one by one, as each one is routed around the previous ones
+		StripedRasterizer rasterizer = dungeonParams.isParallelRasterization() ? new StripedRasterizer() : null;
+		if (rasterizer != null) {
+			rasterizer.rasterizeRooms(dungeon.tileStore, dungeon.rooms);
+		} else {
+			for (DungeonRoom room : dungeon.rooms) {
+				rasterizeRoom(dungeon.tileStore, room);
 			}
 		}
 
-		for (Edge edge : edges) {
-			DungeonHallway hallway = createHallwayFromEdge(dungeon, edge);
-			dungeon.hallways.add(hallway);
-
-			if (!hallway.getPath().isEmpty()) {
-				Position lastPosition = hallway.getPath().get(0);
-				for (int posId = 1; posId < hallway.getPath().size(); posId++) {
-					Position currPosition = hallway.getPath().get(posId);
-					if (lastPosition.x != currPosition.x) {
-						int lowestX = Math.min(currPosition.x, lastPosition.x);
-						int greatestX = Math.max(currPosition.x, lastPosition.x);
-						for (int x = lowestX; x <= greatestX; x++) {
-							int lowestY = Math.max(currPosition.y - (dungeonParams.getHallwaysWidth() - 1) / 2, 0);
-							int greatestY = Math.min(currPosition.y + (dungeonParams.getHallwaysWidth() - 1) / 2, dungeon.height - 1);
-							for (int y = lowestY; y <= greatestY; y++) {
-								dungeon.tiles[y][x] = dungeon.tiles[y][x] == null ? hallway : dungeon.tiles[y][x];
-							}
-						}
-					}
-					if (lastPosition.y != currPosition.y) {
-						int lowestY = Math.min(currPosition.y, lastPosition.y);
-						int greatestY = Math.max(currPosition.y, lastPosition.y);
-						for (int y = lowestY; y <= greatestY; y++) {
-							int lowestX = Math.max(currPosition.x - (dungeonParams.getHallwaysWidth() - 1) / 2, 0);
-							int greatestX = Math.min(currPosition.x + (dungeonParams.getHallwaysWidth() - 1) / 2, dungeon.width - 1);
-							for (int x = lowestX; x <= greatestX; x++) {
-								dungeon.tiles[y][x] = dungeon.tiles[y][x] == null ? hallway : dungeon.tiles[y][x];
-							}
-						}
-					}
-					lastPosition = currPosition;
-				}
+		if (dungeonParams.isParallelHallwayRouting()) {
+			ParallelHallwayRouter.route(dungeon, edges, random.nextLong());
+			for (DungeonHallway hallway : dungeon.hallways) {
+				listener.onHallwayCarved(hallway);
+			}
+		} else {
+			for (Edge edge : edges) {
+				checkNotCancelled();
+				DungeonHallway hallway = createHallwayFromEdge(dungeon, edge, random, false);
+				dungeon.hallways.add(hallway);
+				rasterizeHallway(dungeon.tileStore, hallway, dungeonParams.getHallwaysWidth());
+				listener.onHallwayCarved(hallway);
 			}
 		}
 
+		listener.onPhaseEnd(GenerationPhase.CARVING);
+
 		// Add HallwayRooms
-		// 1 - Create another map just with these rooms
-		DungeonRoom[][] hallwayRoomsTiles = new DungeonRoom[dungeon.height][dungeon.width];
+		listener.onPhaseStart(GenerationPhase.HALLWAY_ROOMS);
+		// 1 - Find the hallwayRooms colliding with an hallway, and their first hallway tile
+		List<DungeonRoom> usedHallwayRooms = new ArrayList<>();
+		Map<DungeonRoom, Long> firstHallwayTiles = new HashMap<>();
 		for (DungeonRoom room : hallwayRooms) {
-			for (int y = room.getY(); y < room.getY() + room.getHeight(); y++) {
-				for (int x = room.getX(); x < room.getX() + room.getWidth(); x++) {
-					hallwayRoomsTiles[y][x] = room;
-				}
+			long firstHallwayTile = findFirstHallwayTile(dungeon, room);
+			if (firstHallwayTile >= 0) {
+				usedHallwayRooms.add(room);
+				firstHallwayTiles.put(room, firstHallwayTile);
 			}
 		}
 
-		// 2 - Add hallwayRooms colliding with
-		HashSet<DungeonRoom> usedHallwayRooms = new HashSet<>();
-		for (int y = 0; y < dungeon.height; y++) {
-			for (int x = 0; x < dungeon.width; x++) {
-				if (hallwayRoomsTiles[y][x] != null && dungeon.tiles[y][x] instanceof DungeonHallway) {
-					DungeonRoom roomToAdd = hallwayRoomsTiles[y][x];
-					if (!usedHallwayRooms.contains(roomToAdd)) {
-						for (int roomY = roomToAdd.getY();
-							 roomY < roomToAdd.getY() + roomToAdd.getHeight();
-							 roomY++) {
-							for (int roomX = roomToAdd.getX();
-								 roomX < roomToAdd.getX() + roomToAdd.getWidth();
-								 roomX++) {
-								dungeon.tiles[roomY][roomX] = roomToAdd;
-							}
-						}
-						dungeon.addRoom(roomToAdd);
-						usedHallwayRooms.add(roomToAdd);
-					}
-				}
+		// 2 - Add them, in the order of their first hallway tile (rows first)
+		usedHallwayRooms.sort(Comparator.comparingLong(firstHallwayTiles::get));
+		if (rasterizer != null) {
+			rasterizer.rasterizeRooms(dungeon.tileStore, usedHallwayRooms);
+		}
+		for (DungeonRoom room : usedHallwayRooms) {
+			if (rasterizer == null) {
+				rasterizeRoom(dungeon.tileStore, room);
 			}
+			dungeon.addRoom(room);
+		}
+		listener.onPhaseEnd(GenerationPhase.HALLWAY_ROOMS);
+
+		if (dungeonParams.isNavigationGraphGenerated()) {
+			dungeon.getNavigationGraph();
+		}
+		if (dungeonParams.isSnapshotGenerated()) {
+			dungeon.getSnapshot();
 		}
+		listener.onDungeonGenerated(dungeon);
 		return dungeon;
 	}
 
+	/**
+	 * Stop the generation if the current thread is interrupted. The interrupt status is kept.
+	 */
+	private static void checkNotCancelled() {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new CancellationException("The dungeon generation was interrupted");
+		}
+	}
+
+	/**
+	 * @param dungeon the dungeon
+	 * @param room    the room in which we search
+	 * @return the index (y * width + x) of the first hallway tile in the room, or -1 if there is none
+	 */
+	private static long findFirstHallwayTile(Dungeon dungeon, DungeonRoom room) {
+		RoomMask mask = room.getMask();
+		for (int y = room.getY(); y < room.getY() + room.getHeight(); y++) {
+			for (int x = room.getX(); x < room.getX() + room.getWidth(); x++) {
+				if ((mask == null || mask.contains(x - room.getX(), y - room.getY()))
+						&& dungeon.tileStore.get(x, y) instanceof DungeonHallway) {
+					return (long) y * dungeon.width + x;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Write the tiles of a room, over anything else
+	 *
+	 * @param tileStore the tiles
+	 * @param room      the room
+	 */
+	static void rasterizeRoom(TileStore tileStore, DungeonRoom room) {
+		room.forEachRectangle((minX, minY, maxX, maxY) -> tileStore.fill(minX, minY, maxX, maxY, room, true));
+	}
+
+	/**
+	 * Write an hallway in the tiles. It never overwrites a room or another hallway.
+	 *
+	 * @param tileStore     the tiles
+	 * @param hallway       the hallway
+	 * @param hallwaysWidth the width of the hallways
+	 */
+	static void rasterizeHallway(TileStore tileStore, DungeonHallway hallway, int hallwaysWidth) {
+		hallway.forEachSegment(hallwaysWidth, tileStore.getWidth(), tileStore.getHeight(),
+				(minX, minY, maxX, maxY) -> tileStore.fill(minX, minY, maxX, maxY, hallway, false));
+	}
+
+	/**
+	 * Write all the structures of a dungeon in its tiles, in the order of the generation : main
+	 * rooms, hallways, then hallway rooms
+	 *
+	 * @param dungeon the dungeon, with an empty tile store
+	 */
+	static void rasterizeDungeon(Dungeon dungeon) {
+		for (DungeonRoom room : dungeon.rooms) {
+			if (room.getType() == DungeonRoom.RoomType.MAIN_ROOM) {
+				rasterizeRoom(dungeon.tileStore, room);
+			}
+		}
+		for (DungeonHallway hallway : dungeon.hallways) {
+			rasterizeHallway(dungeon.tileStore, hallway, dungeon.hallwaysWidth);
+		}
+		for (DungeonRoom room : dungeon.rooms) {
+			if (room.getType() == DungeonRoom.RoomType.HALLWAY_ROOM) {
+				rasterizeRoom(dungeon.tileStore, room);
+			}
+		}
+	}
+
 	/**
 	 * Detect if there is a collision between all the rooms. If true, it makes all the rooms deviate
 	 * from each other When it finish, there are no other collisions remaining
@@ -224,6 +341,7 @@ public class DungeonGenerator {
 	private void handleRoomsCollision(List<DungeonRoom> rooms) {
 		boolean collide = true;
 		while (collide) {
+			checkNotCancelled();
 			collide = false;
 			for (DungeonRoom r1 : rooms) {
 				for (DungeonRoom r2 : rooms) {
@@ -249,7 +367,8 @@ public class DungeonGenerator {
 		if (r1.getX() - space < r2.getX() + r2.getWidth()
 				&& r1.getX() + r1.getWidth() + space > r2.getX()
 				&& r1.getY() - space < r2.getY() + r2.getHeight()
-				&& r1.getY() + r1.getHeight() + space > r2.getY()) {
+				&& r1.getY() + r1.getHeight() + space > r2.getY()
+				&& masksCollide(r1, r2, space)) {
 
 			Direction bestDir = Direction.TOP;
 			int bestDirSize = Integer.MAX_VALUE;
@@ -305,7 +424,38 @@ public class DungeonGenerator {
 		return false;
 	}
 
-	private DungeonHallway createHallwayFromEdge(Dungeon dungeon, Edge edge) {
+	/**
+	 * Test if two rooms whose rectangles are too close are too close tile by tile. Only rooms with
+	 * a shape have a mask : the tiles of the first room grown by the space are compared to the
+	 * tiles of the second one, a word at a time.
+	 *
+	 * @return true if a tile of a room is at a distance of at most space from a tile of the other
+	 */
+	static boolean masksCollide(DungeonRoom r1, DungeonRoom r2, int space) {
+		RoomMask mask1 = r1.getMask();
+		RoomMask mask2 = r2.getMask();
+		if (mask1 == null && mask2 == null) {
+			return true;
+		}
+		if (mask1 == null) {
+			mask1 = RoomShape.RECTANGLE.getMask(r1.getWidth(), r1.getHeight());
+		}
+		if (mask2 == null) {
+			mask2 = RoomShape.RECTANGLE.getMask(r2.getWidth(), r2.getHeight());
+		}
+		int radius = Math.max(space, 0);
+		return mask1.dilate(radius).intersects(mask2, r2.getX() - r1.getX() + radius, r2.getY() - r1.getY() + radius);
+	}
+
+	/**
+	 * @param dungeon       the dungeon, with its rooms in the tiles
+	 * @param edge          the two rooms linked
+	 * @param random        the source of randomness
+	 * @param crossHallways true if the hallway can go through the other hallways and the hallway
+	 *                      rooms, false if only the empty tiles can be used
+	 * @return the hallway, with an empty path if no path was found
+	 */
+	static DungeonHallway createHallwayFromEdge(Dungeon dungeon, Edge edge, Random random, boolean crossHallways) {
 		DungeonRoom roomFrom = edge.getFirstNode().getRoom();
 		DungeonRoom roomTo = edge.getSecondNode().getRoom();
 
@@ -321,70 +471,118 @@ public class DungeonGenerator {
 		int roomYSpaceDifference = topRoom.getY() + topRoom.getHeight() - bottomRoom.getY();
 		int roomXSpaceDifference = leftRoom.getX() + leftRoom.getWidth() - rightRoom.getX();
 
+		// The rectangles of shaped rooms may overlap, and their tiles may not face each other : all
+		// the kinds of tunnels are tried in turn
+		boolean shaped = roomFrom.getMask() != null || roomTo.getMask() != null;
+		boolean horizontal = roomYSpaceDifference > 0 && roomYSpaceDifference <= topRoom.getHeight();
+		boolean vertical = (shaped || !horizontal) && roomXSpaceDifference > 0 && roomXSpaceDifference <= leftRoom.getWidth();
+
 		// Test if we can create a simple horizontal tunnel
-		if (roomYSpaceDifference > 0 && roomYSpaceDifference <= topRoom.getHeight()) {
-			int doorY = bottomRoom.getY() + roomYSpaceDifference / 2;
+		if (horizontal) {
+			// The middle row first. Around shaped rooms, the other shared rows are tried next.
+			for (int step = 0; step < 2 * roomYSpaceDifference && hallway.getPath().isEmpty(); step++) {
+				int doorY = getDoorLine(bottomRoom.getY(), roomYSpaceDifference, step);
+				if (doorY < bottomRoom.getY() || doorY >= bottomRoom.getY() + roomYSpaceDifference
+						|| !hasTileInRow(leftRoom, doorY) || !hasTileInRow(rightRoom, doorY)) {
+					continue;
+				}
+				// The tiles of shaped rooms may be in the other order
+				DungeonRoom westRoom = leftRoom;
+				DungeonRoom eastRoom = rightRoom;
+				if (getRightDoor(westRoom, doorY) > getLeftDoor(eastRoom, doorY) + 1) {
+					westRoom = rightRoom;
+					eastRoom = leftRoom;
+				}
+				int startX = getRightDoor(westRoom, doorY);
+				int endX = getLeftDoor(eastRoom, doorY) + 1;
 
-			boolean collide = false;
-			for (int x = leftRoom.getX() + leftRoom.getWidth(); x < rightRoom.getX(); x++) {
-				collide |= dungeon.tiles[doorY][x] != null;
-			}
+				boolean collide = startX > endX;
+				for (int x = startX; x < endX; x++) {
+					collide |= isBlocked(dungeon, x, doorY, crossHallways);
+				}
 
-			if (!collide) {
-				hallway.addPosition(new Position(leftRoom.getX() + leftRoom.getWidth(), doorY));
-				hallway.addPosition(new Position(rightRoom.getX(), doorY));
+				if (!collide) {
+					hallway.addPosition(new Position(startX, doorY));
+					hallway.addPosition(new Position(endX, doorY));
+				}
+				if (!shaped) {
+					break;
+				}
 			}
 		}
 
 		// Test if we can create a simple vertical tunnel
-		else if (roomXSpaceDifference > 0 && roomXSpaceDifference <= leftRoom.getWidth()) {
-			int doorX = rightRoom.getX() + roomXSpaceDifference / 2;
+		if (vertical && hallway.getPath().isEmpty()) {
+			for (int step = 0; step < 2 * roomXSpaceDifference && hallway.getPath().isEmpty(); step++) {
+				int doorX = getDoorLine(rightRoom.getX(), roomXSpaceDifference, step);
+				if (doorX < rightRoom.getX() || doorX >= rightRoom.getX() + roomXSpaceDifference
+						|| !hasTileInColumn(topRoom, doorX) || !hasTileInColumn(bottomRoom, doorX)) {
+					continue;
+				}
+				DungeonRoom northRoom = topRoom;
+				DungeonRoom southRoom = bottomRoom;
+				if (getBottomDoor(northRoom, doorX) > getTopDoor(southRoom, doorX) + 1) {
+					northRoom = bottomRoom;
+					southRoom = topRoom;
+				}
+				int startY = getBottomDoor(northRoom, doorX);
+				int endY = getTopDoor(southRoom, doorX) + 1;
 
-			boolean collide = false;
-			for (int y = topRoom.getY() + topRoom.getHeight(); y < bottomRoom.getY(); y++) {
-				collide |= dungeon.tiles[y][doorX] != null;
-			}
+				boolean collide = startY > endY;
+				for (int y = startY; y < endY; y++) {
+					collide |= isBlocked(dungeon, doorX, y, crossHallways);
+				}
 
-			if (!collide) {
-				hallway.addPosition(new Position(doorX, topRoom.getY() + topRoom.getHeight()));
-				hallway.addPosition(new Position(doorX, bottomRoom.getY()));
+				if (!collide) {
+					hallway.addPosition(new Position(doorX, startY));
+					hallway.addPosition(new Position(doorX, endY));
+				}
+				if (!shaped) {
+					break;
+				}
 			}
 		}
 
-		// else, we have to create a L tunnel
-		else {
-			int firstXPos = leftRoom.getX() + leftRoom.getWidth();
+		// else (or if shaped rooms have no straight tunnel), we have to create a L tunnel
+		if (!horizontal && !vertical || shaped && hallway.getPath().isEmpty()) {
+			int firstXPos;
 			int firstYPos;
 			int secondXPos;
 			int secondYPos;
 
-			if (leftRoom == bottomRoom) {
-				secondYPos = rightRoom.getY() + rightRoom.getHeight();
-			} else {
-				secondYPos = rightRoom.getY() - 1;
-			}
-
 			List<List<Position>> possiblePaths = new ArrayList<>();
 
 			for (firstYPos = leftRoom.getY();
 				 firstYPos < leftRoom.getY() + leftRoom.getHeight();
 				 firstYPos++) {
+				if (!hasTileInRow(leftRoom, firstYPos)) {
+					continue;
+				}
+				firstXPos = getRightDoor(leftRoom, firstYPos);
 				for (secondXPos = rightRoom.getX();
 					 secondXPos < rightRoom.getX() + rightRoom.getWidth();
 					 secondXPos++) {
+					if (!hasTileInColumn(rightRoom, secondXPos)) {
+						continue;
+					}
+					if (leftRoom == bottomRoom) {
+						secondYPos = getBottomDoor(rightRoom, secondXPos);
+					} else {
+						secondYPos = getTopDoor(rightRoom, secondXPos);
+					}
 
 					boolean collide = false;
 
 					int lowerX = Math.min(firstXPos, secondXPos);
 					int greaterX = Math.max(firstXPos, secondXPos);
 					for (int x = lowerX; x <= greaterX; x++) {
-						collide |= (dungeon.tiles[firstYPos][x] != null);
+						collide |= isBlocked(dungeon, x, firstYPos, crossHallways);
 					}
 
 					int lowerY = Math.min(firstYPos, secondYPos);
 					int greaterY = Math.max(firstYPos, secondYPos);
 					for (int y = lowerY; y <= greaterY; y++) {
-						collide |= (dungeon.tiles[y][secondXPos] != null);
+						collide |= isBlocked(dungeon, secondXPos, y, crossHallways);
 					}
 
 					if (!collide) {
@@ -397,33 +595,37 @@ public class DungeonGenerator {
 				}
 			}
 
-			firstYPos = bottomRoom.getY() - 1;
-
-			if (leftRoom == bottomRoom) {
-				secondXPos = topRoom.getX() - 1;
-			} else {
-				secondXPos = topRoom.getX() + topRoom.getWidth();
-			}
-
 			for (firstXPos = bottomRoom.getX();
 				 firstXPos < bottomRoom.getX() + bottomRoom.getWidth();
 				 firstXPos++) {
+				if (!hasTileInColumn(bottomRoom, firstXPos)) {
+					continue;
+				}
+				firstYPos = getTopDoor(bottomRoom, firstXPos);
 				for (secondYPos = topRoom.getY();
 					 secondYPos < topRoom.getY() + topRoom.getHeight();
 					 secondYPos++) {
+					if (!hasTileInRow(topRoom, secondYPos)) {
+						continue;
+					}
+					if (leftRoom == bottomRoom) {
+						secondXPos = getLeftDoor(topRoom, secondYPos);
+					} else {
+						secondXPos = getRightDoor(topRoom, secondYPos);
+					}
 
 					boolean collide = false;
 
 					int lowerY = Math.min(firstYPos, secondYPos);
 					int greaterY = Math.max(firstYPos, secondYPos);
 					for (int y = lowerY; y <= greaterY; y++) {
-						collide |= (dungeon.tiles[y][firstXPos] != null);
+						collide |= isBlocked(dungeon, firstXPos, y, crossHallways);
 					}
 
 					int lowerX = Math.min(firstXPos, secondXPos);
 					int greaterX = Math.max(firstXPos, secondXPos);
 					for (int x = lowerX; x <= greaterX; x++) {
-						collide |= (dungeon.tiles[secondYPos][x] != null);
+						collide |= isBlocked(dungeon, x, secondYPos, crossHallways);
 					}
 
 					if (!collide) {
@@ -437,11 +639,93 @@ public class DungeonGenerator {
 			}
 
 			if (!possiblePaths.isEmpty()) {
-				int randIndex = ThreadLocalRandom.current().nextInt(0, possiblePaths.size());
+				int randIndex = random.nextInt(possiblePaths.size());
 				List<Position> path = possiblePaths.get(randIndex);
 				hallway.path = path;
 			}
 		}
 		return hallway;
 	}
+
+	/**
+	 * @param first the first row (or column) shared by two rooms
+	 * @param count the number of shared rows
+	 * @param step  the number of the try
+	 * @return the row of a straight tunnel : the middle one, then alternately one row more above and
+	 * below. It may be out of the shared rows.
+	 */
+	private static int getDoorLine(int first, int count, int step) {
+		int middle = first + count / 2;
+		return (step & 1) == 0 ? middle + step / 2 : middle - (step + 1) / 2;
+	}
+
+	/**
+	 * @return true if the room has a tile on the row. Rectangle rooms are considered to have tiles
+	 * on all the rows, as the door rows are always computed for them.
+	 */
+	private static boolean hasTileInRow(DungeonRoom room, int y) {
+		RoomMask mask = room.getMask();
+		return mask == null || y >= room.getY() && y < room.getY() + room.getHeight()
+				&& mask.getFirstColumn(y - room.getY()) >= 0;
+	}
+
+	/**
+	 * @return true if the room has a tile on the column, always for a rectangle room
+	 */
+	private static boolean hasTileInColumn(DungeonRoom room, int x) {
+		RoomMask mask = room.getMask();
+		return mask == null || x >= room.getX() && x < room.getX() + room.getWidth()
+				&& mask.getFirstRow(x - room.getX()) >= 0;
+	}
+
+	/**
+	 * The doors are the empty tiles next to the first or last tile of a row or a column of a room,
+	 * which is on the side of its rectangle for a rectangle room
+	 *
+	 * @return the column on the right of the last tile of the row
+	 */
+	private static int getRightDoor(DungeonRoom room, int y) {
+		RoomMask mask = room.getMask();
+		return room.getX() + (mask == null ? room.getWidth() : mask.getLastColumn(y - room.getY()) + 1);
+	}
+
+	/**
+	 * @return the column on the left of the first tile of the row
+	 */
+	private static int getLeftDoor(DungeonRoom room, int y) {
+		RoomMask mask = room.getMask();
+		return room.getX() + (mask == null ? 0 : mask.getFirstColumn(y - room.getY())) - 1;
+	}
+
+	/**
+	 * @return the row under the last tile of the column
+	 */
+	private static int getBottomDoor(DungeonRoom room, int x) {
+		RoomMask mask = room.getMask();
+		return room.getY() + (mask == null ? room.getHeight() : mask.getLastRow(x - room.getX()) + 1);
+	}
+
+	/**
+	 * @return the row above the first tile of the column
+	 */
+	private static int getTopDoor(DungeonRoom room, int x) {
+		RoomMask mask = room.getMask();
+		return room.getY() + (mask == null ? 0 : mask.getFirstRow(x - room.getX())) - 1;
+	}
+
+	/**
+	 * @return true if the tile can't be in an hallway : outside of the map, which the doors of a
+	 * shaped room overlapping the rectangle of the other room may reach, or on a structure
+	 */
+	private static boolean isBlocked(Dungeon dungeon, int x, int y, boolean crossHallways) {
+		TileStore tileStore = dungeon.tileStore;
+		if (x < 0 || y < 0 || x >= tileStore.getWidth() || y >= tileStore.getHeight()) {
+			return true;
+		}
+		DungeonStructure structure = tileStore.get(x, y);
+		if (crossHallways) {
+			return structure instanceof DungeonRoom && ((DungeonRoom) structure).getType() == DungeonRoom.RoomType.MAIN_ROOM;
+		}
+		return structure != null;
+	}
 }
@@ -1,5 +1,7 @@
 package com.mursaat.dungeongenerator;
 
+import com.mursaat.dungeongenerator.util.RectangleConsumer;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,6 +16,13 @@ public class DungeonHallway implements DungeonStructure {
 		path = new ArrayList<>();
 	}
 
+	/**
+	 * Create an hallway without rooms, for the views of {@link CompactDungeon}
+	 */
+	DungeonHallway(List<Position> path) {
+		this.path = path;
+	}
+
 	public DungeonRoom getRoomFrom() {
 		return roomFrom;
 	}
@@ -34,6 +43,39 @@ public class DungeonHallway implements DungeonStructure {
 		path.add(pos);
 	}
 
+	/**
+	 * Give the rectangles covered by each segment of the path, in order
+	 *
+	 * @param hallwaysWidth the width of the hallways
+	 * @param mapWidth      the width of the dungeon, the rectangles are cut to it
+	 * @param mapHeight     the height of the dungeon, the rectangles are cut to it
+	 * @param consumer      the receiver of the rectangles
+	 */
+	public void forEachSegment(int hallwaysWidth, int mapWidth, int mapHeight, RectangleConsumer consumer) {
+		if (path.isEmpty()) {
+			return;
+		}
+
+		int halfWidth = (hallwaysWidth - 1) / 2;
+		Position lastPosition = path.get(0);
+		for (int posId = 1; posId < path.size(); posId++) {
+			Position currPosition = path.get(posId);
+			if (lastPosition.x != currPosition.x) {
+				consumer.accept(Math.min(currPosition.x, lastPosition.x),
+						Math.max(currPosition.y - halfWidth, 0),
+						Math.max(currPosition.x, lastPosition.x),
+						Math.min(currPosition.y + halfWidth, mapHeight - 1));
+			}
+			if (lastPosition.y != currPosition.y) {
+				consumer.accept(Math.max(currPosition.x - halfWidth, 0),
+						Math.min(currPosition.y, lastPosition.y),
+						Math.min(currPosition.x + halfWidth, mapWidth - 1),
+						Math.max(currPosition.y, lastPosition.y));
+			}
+			lastPosition = currPosition;
+		}
+	}
+
 	private void initPath() {
 		// Generate the path between the two rooms (1 to 3 positions)
 
@@ -1,5 +1,6 @@
 package com.mursaat.dungeongenerator;
 
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class DungeonParams {
@@ -25,6 +26,33 @@ public class DungeonParams {
 	 */
 	private int hallwaysWidth = 3;
 
+	/**
+	 * If true, the navigation graph is built with the dungeon instead of on first use
+	 */
+	private boolean navigationGraphGenerated = false;
+
+	/**
+	 * If true, the snapshot is built with the dungeon instead of on first use
+	 */
+	private boolean snapshotGenerated = false;
+
+	/**
+	 * If true, the rooms are written in the tiles by a {@link StripedRasterizer}
+	 */
+	private boolean parallelRasterization = false;
+
+	/**
+	 * If true, the hallways are routed in parallel rounds (see {@link ParallelHallwayRouter}). The
+	 * dungeons are not the same as with the sequential routing.
+	 */
+	private boolean parallelHallwayRouting = false;
+
+	/**
+	 * If true, the rooms are separated by a {@link SeparationKernel}, which tests a room against 64
+	 * others at once. The dungeons are the same.
+	 */
+	private boolean packedSeparation = false;
+
 	public int getMinSpaceBetweenRooms() {
 		return minSpaceBetweenRooms;
 	}
@@ -66,7 +94,7 @@ public class DungeonParams {
 	}
 
 	public DungeonParams setMinRadius(int minRadius) {
-		this.minRadius = Math.min(minRadius, this.minRadius);
+		this.minRadius = Math.min(minRadius, this.maxRadius);
 		return this;
 	}
 
@@ -79,11 +107,64 @@ public class DungeonParams {
 		return this;
 	}
 
+	public boolean isNavigationGraphGenerated() {
+		return navigationGraphGenerated;
+	}
+
+	public DungeonParams setNavigationGraphGenerated(boolean navigationGraphGenerated) {
+		this.navigationGraphGenerated = navigationGraphGenerated;
+		return this;
+	}
+
+	public boolean isSnapshotGenerated() {
+		return snapshotGenerated;
+	}
+
+	public DungeonParams setSnapshotGenerated(boolean snapshotGenerated) {
+		this.snapshotGenerated = snapshotGenerated;
+		return this;
+	}
+
+	public boolean isParallelRasterization() {
+		return parallelRasterization;
+	}
+
+	public DungeonParams setParallelRasterization(boolean parallelRasterization) {
+		this.parallelRasterization = parallelRasterization;
+		return this;
+	}
+
+	public boolean isParallelHallwayRouting() {
+		return parallelHallwayRouting;
+	}
+
+	public DungeonParams setParallelHallwayRouting(boolean parallelHallwayRouting) {
+		this.parallelHallwayRouting = parallelHallwayRouting;
+		return this;
+	}
+
+	public boolean isPackedSeparation() {
+		return packedSeparation;
+	}
+
+	public DungeonParams setPackedSeparation(boolean packedSeparation) {
+		this.packedSeparation = packedSeparation;
+		return this;
+	}
+
 	public int getRandomRoomCount() {
-		return ThreadLocalRandom.current().nextInt(minRoomCount, maxRoomCount + 1);
+		return getRandomRoomCount(ThreadLocalRandom.current());
+	}
+
+	public int getRandomRoomCount(Random random) {
+		return minRoomCount + random.nextInt(maxRoomCount - minRoomCount + 1);
 	}
 
 	public int getRandomRadius() {
-		return ThreadLocalRandom.current().nextInt(minRadius, maxRadius + 1);
+		return getRandomRadius(ThreadLocalRandom.current());
+	}
+
+	public int getRandomRadius(Random random) {
+		return minRadius + random.nextInt(maxRadius - minRadius + 1);
 	}
 }
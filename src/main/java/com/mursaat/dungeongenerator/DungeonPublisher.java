@@ -0,0 +1,172 @@
+package com.mursaat.dungeongenerator;
+
+import com.mursaat.dungeongenerator.graphs.Graph;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Publish the partial results of a generation as they are computed, so the rooms can be shown long
+ * before the dungeon is complete. Each subscriber gets its own generation from the same seed, so
+ * they all get the same dungeon.
+ * <p>
+ * The results are delivered on another thread while the generation goes on, so the rooms, graphs
+ * and hallways they hold are copies.
+ * <p>
+ * The generation waits when the subscriber has not requested the next results and more than the
+ * buffer capacity is pending. It stops when the subscriber cancels its subscription, and the
+ * subscriber gets the exception of a failed generation in onError.
+ */
+public class DungeonPublisher implements Flow.Publisher<GenerationProgress> {
+
+	/**
+	 * The executor of the deliveries to the subscribers, like the default one of {@link
+	 * SubmissionPublisher}
+	 */
+	private static final Executor DELIVERY_EXECUTOR = ForkJoinPool.getCommonPoolParallelism() > 1
+			? ForkJoinPool.commonPool()
+			: runnable -> new Thread(runnable).start();
+
+	private final DungeonGenerator generator;
+	private final long seed;
+
+	/**
+	 * The executor of the generations, a new daemon thread per subscriber by default
+	 */
+	private Executor executor = runnable -> {
+		Thread thread = new Thread(runnable, "dungeon-publisher");
+		thread.setDaemon(true);
+		thread.start();
+	};
+
+	/**
+	 * The number of results which can be pending for a subscriber before the generation waits
+	 */
+	private int bufferCapacity = Flow.defaultBufferSize();
+
+	/**
+	 * @param generator the generator, whose listener is still notified
+	 * @param seed      the seed of the dungeon
+	 */
+	public DungeonPublisher(DungeonGenerator generator, long seed) {
+		this.generator = generator;
+		this.seed = seed;
+	}
+
+	/**
+	 * @param executor the executor of the generations. A generation can wait for its subscriber,
+	 *                 so the executor must not deliver the results to the subscribers too.
+	 * @return this publisher
+	 */
+	public DungeonPublisher setExecutor(Executor executor) {
+		this.executor = Objects.requireNonNull(executor);
+		return this;
+	}
+
+	/**
+	 * @param bufferCapacity the number of results which can be pending for a subscriber before the
+	 *                       generation waits (rounded up to a power of two)
+	 * @return this publisher
+	 */
+	public DungeonPublisher setBufferCapacity(int bufferCapacity) {
+		if (bufferCapacity < 1) {
+			throw new IllegalArgumentException("bufferCapacity must be at least 1");
+		}
+		this.bufferCapacity = bufferCapacity;
+		return this;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super GenerationProgress> subscriber) {
+		SubmissionPublisher<GenerationProgress> publisher = new SubmissionPublisher<>(DELIVERY_EXECUTOR, bufferCapacity);
+		publisher.subscribe(subscriber);
+		executor.execute(() -> generate(publisher));
+	}
+
+	private void generate(SubmissionPublisher<GenerationProgress> publisher) {
+		ProgressListener listener = new ProgressListener(publisher, generator.listener);
+		DungeonGenerator publishingGenerator = new DungeonGenerator(generator.dungeonParams, generator.roomParams)
+				.setTileStoreFactory(generator.tileStoreFactory)
+				.setListener(listener);
+		try {
+			Dungeon dungeon = publishingGenerator.generateDungeon(seed);
+			listener.publish(new GenerationProgress.Completed(dungeon));
+			publisher.close();
+		} catch (Throwable e) {
+			// Including the CancellationException of a cancelled subscription, which has no subscriber,
+			// and the errors, which would otherwise leave the subscriber waiting forever
+			publisher.closeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Submit the partial results to the subscriber, and stop the generation once it cancelled its
+	 * subscription
+	 */
+	private static class ProgressListener implements GenerationListener {
+		private final SubmissionPublisher<GenerationProgress> publisher;
+		private final GenerationListener listener;
+
+		ProgressListener(SubmissionPublisher<GenerationProgress> publisher, GenerationListener listener) {
+			this.publisher = publisher;
+			this.listener = listener;
+		}
+
+		void publish(GenerationProgress progress) {
+			if (!publisher.hasSubscribers()) {
+				throw new CancellationException("The subscription was cancelled");
+			}
+			publisher.submit(progress);
+		}
+
+		@Override
+		public void onPhaseStart(GenerationPhase phase) {
+			listener.onPhaseStart(phase);
+		}
+
+		@Override
+		public void onPhaseEnd(GenerationPhase phase) {
+			listener.onPhaseEnd(phase);
+		}
+
+		@Override
+		public void onRoomsPlaced(List<DungeonRoom> rooms) {
+			listener.onRoomsPlaced(rooms);
+			publish(new GenerationProgress.RoomsPlaced(rooms));
+		}
+
+		@Override
+		public void onRoomsSeparated(List<DungeonRoom> rooms) {
+			listener.onRoomsSeparated(rooms);
+			publish(new GenerationProgress.RoomsSeparated(rooms));
+		}
+
+		@Override
+		public void onMainRoomGraph(Graph graph) {
+			listener.onMainRoomGraph(graph);
+			publish(new GenerationProgress.MainRoomGraph(graph));
+		}
+
+		@Override
+		public void onSpanningTree(Graph graph) {
+			listener.onSpanningTree(graph);
+			publish(new GenerationProgress.SpanningTree(graph));
+		}
+
+		@Override
+		public void onHallwayCarved(DungeonHallway hallway) {
+			listener.onHallwayCarved(hallway);
+			publish(new GenerationProgress.HallwayCarved(hallway));
+		}
+
+		@Override
+		public void onDungeonGenerated(Dungeon dungeon) {
+			listener.onDungeonGenerated(dungeon);
+		}
+	}
+}
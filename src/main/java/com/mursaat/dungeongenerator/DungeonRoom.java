@@ -1,20 +1,40 @@
 package com.mursaat.dungeongenerator;
 
+import com.mursaat.dungeongenerator.util.RectangleConsumer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class DungeonRoom implements DungeonStructure {
 
-	private static int nextIdToGive = 1;
+	/**
+	 * Shared between all the generators, which may run on several threads
+	 */
+	private static final AtomicInteger nextIdToGive = new AtomicInteger(1);
 	private int id;
 	private Position position;
 	private int width;
 	private int height;
 	private RoomType type;
+	private RoomShape shape = RoomShape.RECTANGLE;
+
+	/**
+	 * The last mask of the shape, kept while the shape and the size don't change
+	 */
+	private RoomMask mask;
 
 	public DungeonRoom() {
-		id = nextIdToGive++;
+		id = nextIdToGive.getAndIncrement();
 		type = RoomType.HALLWAY_ROOM;
 		position = new Position();
 	}
 
+	/**
+	 * Create a room with a given id, without position nor type
+	 */
+	DungeonRoom(int id) {
+		this.id = id;
+	}
+
 	public Position getPosition() {
 		return position;
 	}
@@ -75,6 +95,48 @@ public class DungeonRoom implements DungeonStructure {
 		return this;
 	}
 
+	public RoomShape getShape() {
+		return shape;
+	}
+
+	public DungeonRoom setShape(RoomShape shape) {
+		this.shape = shape;
+		mask = null;
+		return this;
+	}
+
+	/**
+	 * @return the tiles of the room in its rectangle, or null for a rectangle room, which has all
+	 * its tiles
+	 */
+	public RoomMask getMask() {
+		RoomShape roomShape = getShape();
+		if (roomShape == RoomShape.RECTANGLE) {
+			return null;
+		}
+		RoomMask roomMask = mask;
+		if (roomMask == null || roomMask.getWidth() != getWidth() || roomMask.getHeight() != getHeight()) {
+			roomMask = roomShape.getMask(getWidth(), getHeight());
+			mask = roomMask;
+		}
+		return roomMask;
+	}
+
+	/**
+	 * Give the tiles of the room as rectangles : the whole room for a rectangle room, else the runs
+	 * of each row of its mask
+	 *
+	 * @param consumer the receiver of the rectangles, with their bounds included
+	 */
+	public void forEachRectangle(RectangleConsumer consumer) {
+		RoomMask roomMask = getMask();
+		if (roomMask == null) {
+			consumer.accept(getX(), getY(), getX() + getWidth() - 1, getY() + getHeight() - 1);
+		} else {
+			roomMask.forEachRun(getX(), getY(), consumer);
+		}
+	}
+
 	public Position getCenterPosition() {
 		return new Position(position.x + width / 2, position.y + height / 2);
 	}
@@ -0,0 +1,182 @@
+package com.mursaat.dungeongenerator;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A frozen copy of a dungeon, in arrays of primitives. All its fields are final and never written
+ * after the constructor, so once a snapshot is published, any number of threads can read it
+ * without copy nor lock.
+ * <p>
+ * The rooms and hallways are designated by their index, in the order of {@link Dungeon#getRooms()}
+ * and {@link Dungeon#getHallways()}. A tile is -1 for a wall, the index of a room, or the number of
+ * rooms + the index of an hallway.
+ */
+public final class DungeonSnapshot {
+
+	public static final int WALL = -1;
+
+	/**
+	 * The rooms and hallways
+	 */
+	private final CompactDungeon structures;
+
+	/**
+	 * The tiles, row by row
+	 */
+	private final int[] tiles;
+
+	private DungeonSnapshot(Dungeon dungeon) {
+		structures = CompactDungeon.of(dungeon);
+
+		Map<DungeonStructure, Integer> indexes = new IdentityHashMap<>();
+		for (int roomId = 0; roomId < dungeon.rooms.size(); roomId++) {
+			indexes.put(dungeon.rooms.get(roomId), roomId);
+		}
+		for (int hallwayId = 0; hallwayId < dungeon.hallways.size(); hallwayId++) {
+			indexes.put(dungeon.hallways.get(hallwayId), dungeon.rooms.size() + hallwayId);
+		}
+
+		int width = dungeon.width;
+		tiles = new int[width * dungeon.height];
+		DungeonStructure[] row = new DungeonStructure[width];
+		for (int y = 0; y < dungeon.height; y++) {
+			dungeon.copyTiles(0, y, width, 1, row);
+			for (int x = 0; x < width; x++) {
+				Integer index = row[x] == null ? null : indexes.get(row[x]);
+				tiles[y * width + x] = index == null ? WALL : index;
+			}
+		}
+	}
+
+	/**
+	 * Copy a dungeon. The dungeon must not be modified during the copy.
+	 *
+	 * @param dungeon the dungeon
+	 * @return a snapshot of the current state of the dungeon
+	 */
+	public static DungeonSnapshot of(Dungeon dungeon) {
+		return new DungeonSnapshot(dungeon);
+	}
+
+	public int getWidth() {
+		return structures.getWidth();
+	}
+
+	public int getHeight() {
+		return structures.getHeight();
+	}
+
+	public int getHallwaysWidth() {
+		return structures.getHallwaysWidth();
+	}
+
+	/**
+	 * @return the rooms and hallways, with read only views
+	 */
+	public CompactDungeon getStructures() {
+		return structures;
+	}
+
+	public int getRoomCount() {
+		return structures.getRoomCount();
+	}
+
+	/**
+	 * @return the id of the room in the dungeon ({@link DungeonRoom#getId()})
+	 */
+	public int getRoomId(int room) {
+		return structures.getRoomId(room);
+	}
+
+	public int getRoomX(int room) {
+		return structures.getRoomX(room);
+	}
+
+	public int getRoomY(int room) {
+		return structures.getRoomY(room);
+	}
+
+	public int getRoomWidth(int room) {
+		return structures.getRoomWidth(room);
+	}
+
+	public int getRoomHeight(int room) {
+		return structures.getRoomHeight(room);
+	}
+
+	public DungeonRoom.RoomType getRoomType(int room) {
+		return structures.getRoomType(room);
+	}
+
+	public int getHallwayCount() {
+		return structures.getHallwayCount();
+	}
+
+	/**
+	 * @return the index of the first room of the hallway, or -1
+	 */
+	public int getHallwayRoomFrom(int hallway) {
+		return structures.getHallwayRoomFrom(hallway);
+	}
+
+	/**
+	 * @return the index of the second room of the hallway, or -1
+	 */
+	public int getHallwayRoomTo(int hallway) {
+		return structures.getHallwayRoomTo(hallway);
+	}
+
+	/**
+	 * @return the number of corners of the path of the hallway
+	 */
+	public int getPathSize(int hallway) {
+		return structures.getPathSize(hallway);
+	}
+
+	public int getPathX(int hallway, int corner) {
+		return structures.getPathX(hallway, corner);
+	}
+
+	public int getPathY(int hallway, int corner) {
+		return structures.getPathY(hallway, corner);
+	}
+
+	/**
+	 * @param x the column of the tile
+	 * @param y the row of the tile
+	 * @return {@link #WALL}, the index of a room, or the number of rooms + the index of an hallway
+	 */
+	public int getTile(int x, int y) {
+		return tiles[y * structures.getWidth() + x];
+	}
+
+	/**
+	 * @return the index of the room at this position, or -1
+	 */
+	public int getRoomAt(int x, int y) {
+		int tile = getTile(x, y);
+		return tile < structures.getRoomCount() ? tile : -1;
+	}
+
+	/**
+	 * @return the index of the hallway at this position, or -1
+	 */
+	public int getHallwayAt(int x, int y) {
+		int tile = getTile(x, y);
+		return tile >= structures.getRoomCount() ? tile - structures.getRoomCount() : -1;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder stringBuilder = new StringBuilder();
+		for (int y = 0; y < getHeight(); y++) {
+			for (int x = 0; x < getWidth(); x++) {
+				int tile = getTile(x, y);
+				stringBuilder.append(tile == WALL ? ' ' : tile < structures.getRoomCount() ? 'X' : 'O');
+			}
+			stringBuilder.append('\n');
+		}
+		return stringBuilder.toString();
+	}
+}
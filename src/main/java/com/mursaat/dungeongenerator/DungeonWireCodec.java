@@ -0,0 +1,352 @@
+package com.mursaat.dungeongenerator;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact binary encoding of dungeons, to send them to the clients. The tiles are not sent : the
+ * client rasterizes the rooms and the hallways again, in the order of the generator.
+ * <p>
+ * All the numbers are varints (7 bits per byte, zigzag for signed values) :
+ * <ul>
+ * <li>a version byte, and a flags byte (bit 0 : a tile plane follows the hallways, bit 1 : the
+ * rooms have shapes)</li>
+ * <li>the width, the height and the hallways width</li>
+ * <li>the number of rooms, then for each room its x, y, width * 2 + 1 for a main room, its height
+ * and, if the flag is set, the ordinal of its {@link RoomShape}</li>
+ * <li>the number of hallways, then for each hallway the index + 1 of its two rooms (0 for none), its
+ * number of corners and each corner, as a signed delta from the previous one</li>
+ * <li>optionally, the tiles as runs of (length, value), the value being 0 for a wall, 1 + the index
+ * of a room, or 1 + the number of rooms + the index of an hallway</li>
+ * </ul>
+ * The tile plane is only needed for dungeons whose tiles were written by hand.
+ */
+public class DungeonWireCodec {
+
+	public static final int VERSION = 1;
+
+	private static final int FLAG_TILE_PLANE = 1;
+	private static final int FLAG_ROOM_SHAPES = 2;
+	private static final int KNOWN_FLAGS = FLAG_TILE_PLANE | FLAG_ROOM_SHAPES;
+
+	private static final RoomShape[] ROOM_SHAPES = RoomShape.values();
+
+	/**
+	 * The maximum size of a varint of an int
+	 */
+	private static final int MAX_VARINT_SIZE = 5;
+
+	private DungeonWireCodec() {
+	}
+
+	/**
+	 * @param dungeon   a dungeon
+	 * @param tilePlane true if the tile plane will be encoded
+	 * @return a size large enough for the encoded dungeon
+	 */
+	public static int getMaxEncodedSize(Dungeon dungeon, boolean tilePlane) {
+		long size = 2 + 4 * MAX_VARINT_SIZE;
+		size += (long) dungeon.rooms.size() * 5 * MAX_VARINT_SIZE;
+		for (DungeonHallway hallway : dungeon.hallways) {
+			size += (3 + 2L * hallway.getPath().size()) * MAX_VARINT_SIZE;
+		}
+		if (tilePlane) {
+			size += (long) dungeon.width * dungeon.height * 2 * MAX_VARINT_SIZE;
+		}
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Encode a dungeon at the position of the buffer, and move it after the encoded dungeon. The only
+	 * object created is a sorted array of the values of the structures.
+	 *
+	 * @param dungeon   the dungeon
+	 * @param buffer    the destination, with at least {@link #getMaxEncodedSize(Dungeon, boolean)}
+	 *                  bytes remaining
+	 * @param tilePlane true to encode the tiles too
+	 * @return the number of bytes written
+	 * @throws BufferOverflowException if the buffer is too small
+	 */
+	public static int encode(Dungeon dungeon, ByteBuffer buffer, boolean tilePlane) {
+		int start = buffer.position();
+		buffer.put((byte) VERSION);
+		boolean roomShapes = hasRoomShapes(dungeon);
+		buffer.put((byte) ((tilePlane ? FLAG_TILE_PLANE : 0) | (roomShapes ? FLAG_ROOM_SHAPES : 0)));
+		putVarint(buffer, dungeon.width);
+		putVarint(buffer, dungeon.height);
+		putVarint(buffer, dungeon.hallwaysWidth);
+
+		long[] values = getStructureValues(dungeon, tilePlane);
+		List<DungeonRoom> rooms = dungeon.rooms;
+		putVarint(buffer, rooms.size());
+		for (int roomId = 0; roomId < rooms.size(); roomId++) {
+			DungeonRoom room = rooms.get(roomId);
+			putVarint(buffer, room.getX());
+			putVarint(buffer, room.getY());
+			putVarint(buffer, room.getWidth() * 2 + (room.getType() == DungeonRoom.RoomType.MAIN_ROOM ? 1 : 0));
+			putVarint(buffer, room.getHeight());
+			if (roomShapes) {
+				putVarint(buffer, room.getShape().ordinal());
+			}
+		}
+
+		List<DungeonHallway> hallways = dungeon.hallways;
+		putVarint(buffer, hallways.size());
+		for (int hallwayId = 0; hallwayId < hallways.size(); hallwayId++) {
+			DungeonHallway hallway = hallways.get(hallwayId);
+			putVarint(buffer, getValue(dungeon, values, hallway.getRoomFrom()));
+			putVarint(buffer, getValue(dungeon, values, hallway.getRoomTo()));
+
+			List<Position> path = hallway.getPath();
+			putVarint(buffer, path.size());
+			int lastX = 0;
+			int lastY = 0;
+			for (int positionId = 0; positionId < path.size(); positionId++) {
+				Position position = path.get(positionId);
+				putSignedVarint(buffer, position.x - lastX);
+				putSignedVarint(buffer, position.y - lastY);
+				lastX = position.x;
+				lastY = position.y;
+			}
+		}
+
+		if (tilePlane) {
+			putTilePlane(dungeon, values, buffer);
+		}
+		return buffer.position() - start;
+	}
+
+	/**
+	 * Decode a dungeon in a {@link ArrayTileStore}
+	 *
+	 * @see #decode(ByteBuffer, TileStoreFactory)
+	 */
+	public static Dungeon decode(ByteBuffer buffer) {
+		return decode(buffer, ArrayTileStore::new);
+	}
+
+	/**
+	 * Decode a dungeon at the position of the buffer, and move it after the encoded dungeon. The
+	 * tiles are rasterized like the generator does : main rooms, hallways, then hallway rooms.
+	 *
+	 * @param buffer           the source
+	 * @param tileStoreFactory the factory of the tile store of the dungeon
+	 * @return the dungeon, with new room ids
+	 * @throws IllegalArgumentException if the buffer doesn't contain an encoded dungeon
+	 */
+	public static Dungeon decode(ByteBuffer buffer, TileStoreFactory tileStoreFactory) {
+		int version = buffer.get();
+		if (version != VERSION) {
+			throw new IllegalArgumentException("Unknown version " + version);
+		}
+		int flags = buffer.get() & 0xFF;
+		if ((flags & ~KNOWN_FLAGS) != 0) {
+			throw new IllegalArgumentException("Unknown flags " + (flags & ~KNOWN_FLAGS));
+		}
+
+		Dungeon dungeon = new Dungeon();
+		dungeon.width = getVarint(buffer);
+		dungeon.height = getVarint(buffer);
+		dungeon.hallwaysWidth = getVarint(buffer);
+
+		int roomCount = getVarint(buffer);
+		for (int roomId = 0; roomId < roomCount; roomId++) {
+			DungeonRoom room = new DungeonRoom();
+			room.setX(getVarint(buffer));
+			room.setY(getVarint(buffer));
+			int widthAndType = getVarint(buffer);
+			room.setWidth(widthAndType >>> 1);
+			room.setHeight(getVarint(buffer));
+			room.setType((widthAndType & 1) == 1 ? DungeonRoom.RoomType.MAIN_ROOM : DungeonRoom.RoomType.HALLWAY_ROOM);
+			if ((flags & FLAG_ROOM_SHAPES) != 0) {
+				int shape = getVarint(buffer);
+				if (shape >= ROOM_SHAPES.length) {
+					throw new IllegalArgumentException("Unknown room shape " + shape);
+				}
+				room.setShape(ROOM_SHAPES[shape]);
+			}
+			dungeon.addRoom(room);
+		}
+
+		int hallwayCount = getVarint(buffer);
+		for (int hallwayId = 0; hallwayId < hallwayCount; hallwayId++) {
+			DungeonRoom roomFrom = getRoom(dungeon, getVarint(buffer));
+			DungeonRoom roomTo = getRoom(dungeon, getVarint(buffer));
+			DungeonHallway hallway = new DungeonHallway(roomFrom, roomTo);
+
+			int pathSize = getVarint(buffer);
+			int x = 0;
+			int y = 0;
+			for (int positionId = 0; positionId < pathSize; positionId++) {
+				x += getSignedVarint(buffer);
+				y += getSignedVarint(buffer);
+				hallway.addPosition(new Position(x, y));
+			}
+			dungeon.hallways.add(hallway);
+		}
+
+		dungeon.tileStore = tileStoreFactory.create(dungeon.width, dungeon.height);
+		if ((flags & FLAG_TILE_PLANE) != 0) {
+			getTilePlane(dungeon, buffer);
+		} else {
+			DungeonGenerator.rasterizeDungeon(dungeon);
+		}
+		return dungeon;
+	}
+
+	private static boolean hasRoomShapes(Dungeon dungeon) {
+		for (int roomId = 0; roomId < dungeon.rooms.size(); roomId++) {
+			if (dungeon.rooms.get(roomId).getShape() != RoomShape.RECTANGLE) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The value of each structure is 1 + the index of a room, then 1 + the number of rooms + the
+	 * index of an hallway. The structures are found without boxing : each entry holds the identity
+	 * hash code of a structure in its high bits and its value in its low bits, and the entries are
+	 * sorted.
+	 *
+	 * @param withHallways false to only find the rooms
+	 */
+	private static long[] getStructureValues(Dungeon dungeon, boolean withHallways) {
+		int roomCount = dungeon.rooms.size();
+		long[] values = new long[roomCount + (withHallways ? dungeon.hallways.size() : 0)];
+		for (int roomId = 0; roomId < roomCount; roomId++) {
+			values[roomId] = getValueEntry(dungeon.rooms.get(roomId), 1 + roomId);
+		}
+		for (int hallwayId = 0; roomCount + hallwayId < values.length; hallwayId++) {
+			values[roomCount + hallwayId] = getValueEntry(dungeon.hallways.get(hallwayId), 1 + roomCount + hallwayId);
+		}
+		Arrays.sort(values);
+		return values;
+	}
+
+	private static long getValueEntry(DungeonStructure structure, int value) {
+		return (long) System.identityHashCode(structure) << 32 | value;
+	}
+
+	/**
+	 * Search the first entry of the identity hash code of the structure, then the entry of the
+	 * structure among the ones with the same hash code
+	 *
+	 * @return the value of the structure, or 0 for none, or a structure out of the dungeon
+	 */
+	private static int getValue(Dungeon dungeon, long[] values, DungeonStructure structure) {
+		if (structure == null) {
+			return 0;
+		}
+		int hashCode = System.identityHashCode(structure);
+		int roomCount = dungeon.rooms.size();
+		int low = 0;
+		int high = values.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if ((int) (values[middle] >> 32) < hashCode) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		for (int entry = low; entry < values.length && (int) (values[entry] >> 32) == hashCode; entry++) {
+			int value = (int) values[entry];
+			DungeonStructure candidate = value <= roomCount ? dungeon.rooms.get(value - 1) : dungeon.hallways.get(value - 1 - roomCount);
+			if (candidate == structure) {
+				return value;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @param values the values of the rooms and the hallways. They are only searched at the end of
+	 *               the runs of tiles.
+	 */
+	private static void putTilePlane(Dungeon dungeon, long[] values, ByteBuffer buffer) {
+		DungeonStructure runStructure = null;
+		int runValue = -1;
+		int runLength = 0;
+		for (int y = 0; y < dungeon.height; y++) {
+			for (int x = 0; x < dungeon.width; x++) {
+				DungeonStructure structure = dungeon.tileStore.get(x, y);
+				int tileValue = structure == runStructure && runLength > 0 ? runValue : getValue(dungeon, values, structure);
+				runStructure = structure;
+				if (tileValue != runValue && runLength > 0) {
+					putVarint(buffer, runLength);
+					putVarint(buffer, runValue);
+					runLength = 0;
+				}
+				runValue = tileValue;
+				runLength++;
+			}
+		}
+		if (runLength > 0) {
+			putVarint(buffer, runLength);
+			putVarint(buffer, runValue);
+		}
+	}
+
+	private static void getTilePlane(Dungeon dungeon, ByteBuffer buffer) {
+		List<DungeonStructure> structures = new ArrayList<>(dungeon.rooms.size() + dungeon.hallways.size());
+		structures.addAll(dungeon.rooms);
+		structures.addAll(dungeon.hallways);
+
+		int tileCount = dungeon.width * dungeon.height;
+		int tile = 0;
+		while (tile < tileCount) {
+			int runLength = getVarint(buffer);
+			int value = getVarint(buffer);
+			if (runLength <= 0 || tile + runLength > tileCount || value > structures.size()) {
+				throw new IllegalArgumentException("Invalid tile plane");
+			}
+			if (value != 0) {
+				DungeonStructure structure = structures.get(value - 1);
+				for (int runTile = tile; runTile < tile + runLength; runTile++) {
+					dungeon.tileStore.set(runTile % dungeon.width, runTile / dungeon.width, structure);
+				}
+			}
+			tile += runLength;
+		}
+	}
+
+	private static DungeonRoom getRoom(Dungeon dungeon, int value) {
+		if (value > dungeon.rooms.size()) {
+			throw new IllegalArgumentException("Invalid room index " + (value - 1));
+		}
+		return value == 0 ? null : dungeon.rooms.get(value - 1);
+	}
+
+	private static void putVarint(ByteBuffer buffer, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	private static void putSignedVarint(ByteBuffer buffer, int value) {
+		putVarint(buffer, (value << 1) ^ (value >> 31));
+	}
+
+	private static int getVarint(ByteBuffer buffer) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Invalid varint");
+	}
+
+	private static int getSignedVarint(ByteBuffer buffer) {
+		int value = getVarint(buffer);
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
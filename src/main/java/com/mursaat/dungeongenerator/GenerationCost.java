@@ -0,0 +1,85 @@
+package com.mursaat.dungeongenerator;
+
+/**
+ * The cost of a generation predicted by a {@link GenerationCostModel}
+ */
+public final class GenerationCost {
+
+	private final double density;
+	private final double separationPasses;
+	private final long mapArea;
+	private final long separationNanos;
+	private final long otherNanos;
+	private final long bytes;
+
+	GenerationCost(double density, double separationPasses, long mapArea, long separationNanos, long otherNanos,
+	               long bytes) {
+		this.density = density;
+		this.separationPasses = separationPasses;
+		this.mapArea = mapArea;
+		this.separationNanos = separationNanos;
+		this.otherNanos = otherNanos;
+		this.bytes = bytes;
+	}
+
+	/**
+	 * @return the tiles of the rooms divided by the area of the circle the rooms are created in
+	 */
+	public double getDensity() {
+		return density;
+	}
+
+	/**
+	 * @return the number of times all the pairs of rooms are tested during the separation
+	 */
+	public double getSeparationPasses() {
+		return separationPasses;
+	}
+
+	/**
+	 * @return the number of tiles of the dungeon
+	 */
+	public long getMapArea() {
+		return mapArea;
+	}
+
+	/**
+	 * @return the duration of the separation of the rooms
+	 */
+	public long getSeparationNanos() {
+		return separationNanos;
+	}
+
+	/**
+	 * @return the duration of the other phases, which mostly depends on the number of tiles
+	 */
+	public long getOtherNanos() {
+		return otherNanos;
+	}
+
+	/**
+	 * @return the duration of the whole generation
+	 */
+	public long getNanos() {
+		return separationNanos + otherNanos;
+	}
+
+	/**
+	 * @return the memory of the dungeon with an {@link ArrayTileStore}, in bytes
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return "GenerationCost{" +
+				"density=" + density +
+				", separationPasses=" + separationPasses +
+				", mapArea=" + mapArea +
+				", separationNanos=" + separationNanos +
+				", otherNanos=" + otherNanos +
+				", bytes=" + bytes +
+				'}';
+	}
+}
@@ -0,0 +1,266 @@
+package com.mursaat.dungeongenerator;
+
+/**
+ * Predict the duration and the memory of a generation from its params, and choose the radius and
+ * the space between the rooms to generate within a given duration.
+ * <p>
+ * The separation tests all the pairs of rooms at each pass, and the number of passes grows with the
+ * number of rooms and with their density in the circle they are created in : the tiles of the rooms
+ * with the space around them, divided by the area of the circle. The other phases depend on the
+ * number of tiles of the map and on the number of pairs of rooms (the triangulation). The costs of
+ * a pair test, of a tile and of a pair of rooms are measured on this machine by {@link
+ * #calibrate()} ; the memory is computed for an {@link ArrayTileStore}.
+ */
+public class GenerationCostModel {
+
+	/**
+	 * The passes of the separation are 1 + PASS_FACTOR * roomCount ^ PASS_EXPONENT * ln(1 +
+	 * density), fitted on generations from 30 to 480 rooms
+	 */
+	static final double PASS_FACTOR = 0.35;
+	static final double PASS_EXPONENT = 1.15;
+
+	/**
+	 * The area of the map divided by the area of the rooms with their space, when the rooms had to
+	 * be pushed out of their circle
+	 */
+	static final double MAP_AREA_FACTOR = 3;
+
+	/**
+	 * The memory of a tile (a compressed reference), of a row of tiles, of a room and of a position
+	 * of an hallway
+	 */
+	static final int TILE_BYTES = 4;
+	static final int ROW_BYTES = 16;
+	static final int ROOM_BYTES = 96;
+	static final int HALLWAY_POSITION_BYTES = 32;
+
+	/**
+	 * The density of the layouts below which the rooms barely touch each other : the auto-tune does
+	 * not grow the radius further
+	 */
+	static final double MIN_DENSITY = 0.01;
+
+	private final double pairTestNanos;
+	private final double packedPairTestNanos;
+	private final double tileNanos;
+	private final double roomPairNanos;
+
+	/**
+	 * A model with costs measured on a desktop machine. Use {@link #calibrate()} for the costs of
+	 * the current machine.
+	 */
+	public GenerationCostModel() {
+		this(6, 2, 15, 80);
+	}
+
+	/**
+	 * @param pairTestNanos       the duration of the test of a pair of rooms during the separation
+	 * @param packedPairTestNanos the same duration with {@link DungeonParams#setPackedSeparation(boolean)}
+	 * @param tileNanos           the duration of the other phases per tile of the map
+	 * @param roomPairNanos       the duration of the other phases per pair of rooms
+	 */
+	public GenerationCostModel(double pairTestNanos, double packedPairTestNanos, double tileNanos,
+	                           double roomPairNanos) {
+		this.pairTestNanos = pairTestNanos;
+		this.packedPairTestNanos = packedPairTestNanos;
+		this.tileNanos = tileNanos;
+		this.roomPairNanos = roomPairNanos;
+	}
+
+	/**
+	 * Measure the costs of this machine, by generating a few dungeons from 60 to 120 rooms (about
+	 * a second)
+	 *
+	 * @return the model of this machine
+	 */
+	public static GenerationCostModel calibrate() {
+		int[][] configs = {{60, 8}, {60, 150}, {120, 8}, {120, 150}};
+		GenerationCostModel unitModel = new GenerationCostModel(1, 1, 1, 1);
+		RoomParams roomParams = new RoomParams();
+
+		// Least squares of duration = cost * pair tests, for the pairwise and the packed separations
+		double[] pairTestsTimesDuration = new double[2];
+		double[] squaredPairTests = new double[2];
+
+		// Least squares of duration = tile cost * tiles + room pair cost * room pairs, for the other
+		// phases : the sums of the products of (tiles, room pairs, duration)
+		double tilesTimesTiles = 0;
+		double tilesTimesRoomPairs = 0;
+		double roomPairsTimesRoomPairs = 0;
+		double tilesTimesDuration = 0;
+		double roomPairsTimesDuration = 0;
+
+		// The first round only warms up the JIT
+		for (int round = 0; round < 2; round++) {
+			for (int[] config : configs) {
+				for (boolean packed : new boolean[]{false, true}) {
+					DungeonParams params = new DungeonParams()
+							.setMaxRoomCount(config[0])
+							.setMinRoomCount(config[0])
+							.setMaxRadius(config[1])
+							.setMinRadius(config[1])
+							.setPackedSeparation(packed);
+					double pairTests = unitModel.estimate(params, roomParams).getSeparationNanos();
+					for (long seed = 0; seed < 3; seed++) {
+						PhaseTimer timer = new PhaseTimer();
+						Dungeon dungeon = new DungeonGenerator(params, roomParams).setListener(timer).generateDungeon(seed);
+						if (round == 0) {
+							continue;
+						}
+						int separation = packed ? 1 : 0;
+						pairTestsTimesDuration[separation] += pairTests * timer.separationNanos;
+						squaredPairTests[separation] += pairTests * pairTests;
+
+						double tiles = (double) dungeon.getWidth() * dungeon.getHeight();
+						double roomPairs = (double) config[0] * config[0];
+						tilesTimesTiles += tiles * tiles;
+						tilesTimesRoomPairs += tiles * roomPairs;
+						roomPairsTimesRoomPairs += roomPairs * roomPairs;
+						tilesTimesDuration += tiles * timer.otherNanos;
+						roomPairsTimesDuration += roomPairs * timer.otherNanos;
+					}
+				}
+			}
+		}
+
+		// Solve the 2x2 normal equations by Cramer's rule
+		double determinant = tilesTimesTiles * roomPairsTimesRoomPairs - tilesTimesRoomPairs * tilesTimesRoomPairs;
+		double tileNanos = (tilesTimesDuration * roomPairsTimesRoomPairs
+				- roomPairsTimesDuration * tilesTimesRoomPairs) / determinant;
+		double roomPairNanos = (roomPairsTimesDuration * tilesTimesTiles
+				- tilesTimesDuration * tilesTimesRoomPairs) / determinant;
+		return new GenerationCostModel(pairTestsTimesDuration[0] / squaredPairTests[0],
+				pairTestsTimesDuration[1] / squaredPairTests[1], Math.max(tileNanos, 0), Math.max(roomPairNanos, 0));
+	}
+
+	/**
+	 * @return the cost of a generation with these params, on average over the room counts, the
+	 * radiuses and the sizes of the rooms
+	 */
+	public GenerationCost estimate(DungeonParams params, RoomParams roomParams) {
+		int space = Math.max(params.getMinSpaceBetweenRooms(), 0);
+		double roomCount = (params.getMinRoomCount() + params.getMaxRoomCount()) / 2.0;
+		double roomWidth = (roomParams.getMinWidth() + roomParams.getMaxWidth()) / 2.0;
+		double roomHeight = (roomParams.getMinHeight() + roomParams.getMaxHeight()) / 2.0;
+		double roomArea = roomWidth * roomHeight;
+		double spacedRoomArea = (roomWidth + space) * (roomHeight + space);
+		double circleArea = Math.PI * getMeanSquaredRadius(params.getMinRadius(), params.getMaxRadius());
+
+		double spacedDensity = roomCount * spacedRoomArea / circleArea;
+		double passes = 1 + PASS_FACTOR * Math.pow(roomCount, PASS_EXPONENT) * Math.log1p(spacedDensity);
+		double pairNanos = params.isPackedSeparation() ? packedPairTestNanos : pairTestNanos;
+		double separationNanos = pairNanos * roomCount * roomCount * passes;
+
+		double mapArea = Math.max(MAP_AREA_FACTOR * roomCount * spacedRoomArea, circleArea);
+		double otherNanos = tileNanos * mapArea + roomPairNanos * roomCount * roomCount;
+
+		// About 0.6 hallway per room (a spanning tree of the main rooms and 20% more edges), as long
+		// as the distance between two main rooms
+		double hallwayCount = 0.6 * roomCount;
+		double hallwayLength = Math.sqrt(mapArea / Math.max(roomCount / 2, 1));
+		double bytes = mapArea * TILE_BYTES + Math.sqrt(mapArea) * ROW_BYTES + roomCount * ROOM_BYTES
+				+ hallwayCount * hallwayLength * HALLWAY_POSITION_BYTES;
+
+		return new GenerationCost(roomCount * roomArea / circleArea, passes, (long) mapArea,
+				(long) separationNanos, (long) otherNanos, (long) bytes);
+	}
+
+	/**
+	 * Choose the radius for the asked density, and the greatest space between the rooms (up to the
+	 * one of the params) for which the generation is predicted to last at most targetNanos. If even
+	 * rooms without space are too slow, the radius grows, lowering the density, until the target is
+	 * met or the generation stops getting faster. A negative space of the params is replaced by 0.
+	 *
+	 * @param params      the params to tune, whose radiuses and space are replaced
+	 * @param roomParams  the params of the rooms
+	 * @param targetNanos the wanted duration of a generation
+	 * @param density     the wanted tiles of the rooms divided by the area of the circle they are
+	 *                    created in, above 0
+	 * @return the params
+	 */
+	public DungeonParams autoTune(DungeonParams params, RoomParams roomParams, long targetNanos, double density) {
+		if (density <= 0) {
+			throw new IllegalArgumentException("density must be above 0");
+		}
+		double roomCount = (params.getMinRoomCount() + params.getMaxRoomCount()) / 2.0;
+		double roomArea = (roomParams.getMinWidth() + roomParams.getMaxWidth()) / 2.0
+				* (roomParams.getMinHeight() + roomParams.getMaxHeight()) / 2.0;
+		int radius = Math.max((int) Math.round(Math.sqrt(roomCount * roomArea / (Math.PI * density))), 1);
+		int maxRadius = Math.max((int) Math.ceil(Math.sqrt(roomCount * roomArea / (Math.PI * MIN_DENSITY))), radius);
+
+		int requestedSpace = Math.max(params.getMinSpaceBetweenRooms(), 0);
+		setRadius(params, radius);
+		for (int space = requestedSpace; space >= 0; space--) {
+			params.setMinSpaceBetweenRooms(space);
+			if (estimate(params, roomParams).getNanos() <= targetNanos) {
+				return params;
+			}
+		}
+		params.setMinSpaceBetweenRooms(0);
+
+		// Grow the radius by about 10% at a time, as long as the smaller separation is not outweighed
+		// by the larger map
+		long nanos = estimate(params, roomParams).getNanos();
+		while (radius < maxRadius && nanos > targetNanos) {
+			int nextRadius = Math.min(radius + Math.max(radius / 10, 1), maxRadius);
+			setRadius(params, nextRadius);
+			long nextNanos = estimate(params, roomParams).getNanos();
+			if (nextNanos >= nanos) {
+				setRadius(params, radius);
+				break;
+			}
+			radius = nextRadius;
+			nanos = nextNanos;
+		}
+		return params;
+	}
+
+	/**
+	 * @return the mean of the squares of the radiuses between min and max, included
+	 */
+	private static double getMeanSquaredRadius(int min, int max) {
+		double count = max - min + 1;
+		double sumOfSquares = (sumOfSquares(max) - sumOfSquares(min - 1));
+		return Math.max(sumOfSquares / count, 1);
+	}
+
+	/**
+	 * @return 1 + 4 + ... + n * n
+	 */
+	private static double sumOfSquares(double n) {
+		return n * (n + 1) * (2 * n + 1) / 6;
+	}
+
+	private static void setRadius(DungeonParams params, int radius) {
+		if (radius >= params.getMinRadius()) {
+			params.setMaxRadius(radius).setMinRadius(radius);
+		} else {
+			params.setMinRadius(radius).setMaxRadius(radius);
+		}
+	}
+
+	/**
+	 * Measure the duration of the separation and of the other phases
+	 */
+	private static class PhaseTimer implements GenerationListener {
+		long separationNanos;
+		long otherNanos;
+		long phaseStart;
+
+		@Override
+		public void onPhaseStart(GenerationPhase phase) {
+			phaseStart = System.nanoTime();
+		}
+
+		@Override
+		public void onPhaseEnd(GenerationPhase phase) {
+			long duration = System.nanoTime() - phaseStart;
+			if (phase == GenerationPhase.SEPARATION) {
+				separationNanos += duration;
+			} else {
+				otherNanos += duration;
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.mursaat.dungeongenerator;
+
+import com.mursaat.dungeongenerator.graphs.Graph;
+
+import java.util.List;
+
+/**
+ * Receive the progress of a {@link DungeonGenerator}. The methods are called on the generating
+ * thread. When the generation fails, the end of the current phase is not notified.
+ * <p>
+ * The rooms, graphs and hallways given are the ones of the generation, not copies.
+ */
+public interface GenerationListener {
+
+	/**
+	 * @param phase the phase which starts
+	 */
+	default void onPhaseStart(GenerationPhase phase) {
+	}
+
+	/**
+	 * @param phase the phase which ends
+	 */
+	default void onPhaseEnd(GenerationPhase phase) {
+	}
+
+	/**
+	 * @param rooms the rooms at their random positions, before the separation. They are moved
+	 *              afterwards.
+	 */
+	default void onRoomsPlaced(List<DungeonRoom> rooms) {
+	}
+
+	/**
+	 * @param rooms the rooms at their final positions. The main rooms are chosen afterwards.
+	 */
+	default void onRoomsSeparated(List<DungeonRoom> rooms) {
+	}
+
+	/**
+	 * @param graph the Delaunay triangulation of the main rooms
+	 */
+	default void onMainRoomGraph(Graph graph) {
+	}
+
+	/**
+	 * @param graph the minimum spanning tree of the main rooms, with some more edges : one hallway
+	 *              is carved per edge
+	 */
+	default void onSpanningTree(Graph graph) {
+	}
+
+	/**
+	 * @param hallway an hallway, routed and written in the tiles
+	 */
+	default void onHallwayCarved(DungeonHallway hallway) {
+	}
+
+	/**
+	 * @param dungeon the generated dungeon, after the end of the last phase
+	 */
+	default void onDungeonGenerated(Dungeon dungeon) {
+	}
+}
@@ -0,0 +1,31 @@
+package com.mursaat.dungeongenerator;
+
+/**
+ * The phases of {@link DungeonGenerator#generateDungeon(java.util.Random)}, in order
+ */
+public enum GenerationPhase {
+	/**
+	 * Creation of the rooms around the center
+	 */
+	ROOMS,
+	/**
+	 * Moving the rooms until they don't collide
+	 */
+	SEPARATION,
+	/**
+	 * Delaunay triangulation of the main rooms
+	 */
+	TRIANGULATION,
+	/**
+	 * Minimum spanning tree and additional edges
+	 */
+	SPANNING_TREE,
+	/**
+	 * Writing the main rooms in the tiles, and routing the hallways
+	 */
+	CARVING,
+	/**
+	 * Adding the hallway rooms crossed by the hallways
+	 */
+	HALLWAY_ROOMS
+}
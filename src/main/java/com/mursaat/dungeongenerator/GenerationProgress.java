@@ -0,0 +1,209 @@
+package com.mursaat.dungeongenerator;
+
+import com.mursaat.dungeongenerator.graphs.Edge;
+import com.mursaat.dungeongenerator.graphs.Graph;
+import com.mursaat.dungeongenerator.graphs.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A partial result of a generation, published by a {@link DungeonPublisher} : the rooms are
+ * placed, then separated, then the graph and the spanning tree of the main rooms are built, then
+ * the hallways are carved one by one, then the dungeon is complete.
+ */
+public abstract class GenerationProgress {
+
+	GenerationProgress() {
+	}
+
+	/**
+	 * Copy rooms, as the rooms of the generation are still moved and typed
+	 */
+	static List<DungeonRoom> copyRooms(List<DungeonRoom> rooms) {
+		List<DungeonRoom> copies = new ArrayList<>(rooms.size());
+		for (DungeonRoom room : rooms) {
+			DungeonRoom copy = new DungeonRoom(room.getId());
+			copy.setPosition(new Position(room.getX(), room.getY()));
+			copy.setWidth(room.getWidth()).setHeight(room.getHeight()).setShape(room.getShape());
+			copy.setType(room.getType());
+			copies.add(copy);
+		}
+		return Collections.unmodifiableList(copies);
+	}
+
+	/**
+	 * Copy the rooms of the nodes of a graph, as the graph is still changed by the generation
+	 */
+	static List<DungeonRoom> copyNodeRooms(Graph graph) {
+		List<DungeonRoom> rooms = new ArrayList<>(graph.countNodes());
+		for (Node node : graph.getNodes()) {
+			rooms.add(node.getRoom());
+		}
+		return copyRooms(rooms);
+	}
+
+	/**
+	 * Copy the edges of a graph, as links between the copies of their rooms
+	 *
+	 * @param graph     the graph
+	 * @param roomsCopy the copies of the rooms of the nodes, in the order of the nodes
+	 */
+	static List<RoomLink> copyLinks(Graph graph, List<DungeonRoom> roomsCopy) {
+		Map<DungeonRoom, DungeonRoom> copies = new IdentityHashMap<>();
+		for (int nodeId = 0; nodeId < roomsCopy.size(); nodeId++) {
+			copies.put(graph.getNode(nodeId).getRoom(), roomsCopy.get(nodeId));
+		}
+		List<RoomLink> links = new ArrayList<>(graph.getEdges().size());
+		for (Edge edge : graph.getEdges()) {
+			links.add(new RoomLink(copies.get(edge.getFirstNode().getRoom()), copies.get(edge.getSecondNode().getRoom())));
+		}
+		return Collections.unmodifiableList(links);
+	}
+
+	/**
+	 * An edge of a graph of the main rooms, between copies of the rooms
+	 */
+	public static final class RoomLink {
+		private final DungeonRoom firstRoom;
+		private final DungeonRoom secondRoom;
+
+		RoomLink(DungeonRoom firstRoom, DungeonRoom secondRoom) {
+			this.firstRoom = firstRoom;
+			this.secondRoom = secondRoom;
+		}
+
+		public DungeonRoom getFirstRoom() {
+			return firstRoom;
+		}
+
+		public DungeonRoom getSecondRoom() {
+			return secondRoom;
+		}
+	}
+
+	/**
+	 * All the rooms at their random positions, before the separation (copies)
+	 */
+	public static final class RoomsPlaced extends GenerationProgress {
+		private final List<DungeonRoom> rooms;
+
+		RoomsPlaced(List<DungeonRoom> rooms) {
+			this.rooms = copyRooms(rooms);
+		}
+
+		public List<DungeonRoom> getRooms() {
+			return rooms;
+		}
+	}
+
+	/**
+	 * All the rooms at their final positions, in the coordinates of the dungeon (copies). The main
+	 * rooms are not chosen yet.
+	 */
+	public static final class RoomsSeparated extends GenerationProgress {
+		private final List<DungeonRoom> rooms;
+
+		RoomsSeparated(List<DungeonRoom> rooms) {
+			this.rooms = copyRooms(rooms);
+		}
+
+		public List<DungeonRoom> getRooms() {
+			return rooms;
+		}
+	}
+
+	/**
+	 * The Delaunay triangulation of the main rooms (copies of its rooms and of its edges)
+	 */
+	public static final class MainRoomGraph extends GenerationProgress {
+		private final List<DungeonRoom> rooms;
+		private final List<RoomLink> links;
+
+		MainRoomGraph(Graph graph) {
+			this.rooms = copyNodeRooms(graph);
+			this.links = copyLinks(graph, rooms);
+		}
+
+		public List<DungeonRoom> getRooms() {
+			return rooms;
+		}
+
+		public List<RoomLink> getLinks() {
+			return links;
+		}
+	}
+
+	/**
+	 * The spanning tree of the main rooms, with some more edges (copies). Each link becomes an
+	 * hallway, so its number of links is the number of {@link HallwayCarved} to come.
+	 */
+	public static final class SpanningTree extends GenerationProgress {
+		private final List<DungeonRoom> rooms;
+		private final List<RoomLink> links;
+
+		SpanningTree(Graph graph) {
+			this.rooms = copyNodeRooms(graph);
+			this.links = copyLinks(graph, rooms);
+		}
+
+		public List<DungeonRoom> getRooms() {
+			return rooms;
+		}
+
+		public List<RoomLink> getLinks() {
+			return links;
+		}
+	}
+
+	/**
+	 * An hallway, routed and written in the tiles (copies of its rooms and of its path)
+	 */
+	public static final class HallwayCarved extends GenerationProgress {
+		private final DungeonRoom roomFrom;
+		private final DungeonRoom roomTo;
+		private final List<Position> path;
+
+		HallwayCarved(DungeonHallway hallway) {
+			List<DungeonRoom> roomsCopy = copyRooms(Arrays.asList(hallway.getRoomFrom(), hallway.getRoomTo()));
+			this.roomFrom = roomsCopy.get(0);
+			this.roomTo = roomsCopy.get(1);
+			List<Position> pathCopy = new ArrayList<>(hallway.getPath().size());
+			for (Position position : hallway.getPath()) {
+				pathCopy.add(new Position(position.x, position.y));
+			}
+			this.path = Collections.unmodifiableList(pathCopy);
+		}
+
+		public DungeonRoom getRoomFrom() {
+			return roomFrom;
+		}
+
+		public DungeonRoom getRoomTo() {
+			return roomTo;
+		}
+
+		public List<Position> getPath() {
+			return path;
+		}
+	}
+
+	/**
+	 * The generated dungeon, always the last progress
+	 */
+	public static final class Completed extends GenerationProgress {
+		private final Dungeon dungeon;
+
+		Completed(Dungeon dungeon) {
+			this.dungeon = dungeon;
+		}
+
+		public Dungeon getDungeon() {
+			return dungeon;
+		}
+	}
+}
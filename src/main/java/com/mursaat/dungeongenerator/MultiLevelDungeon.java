@@ -0,0 +1,74 @@
+package com.mursaat.dungeongenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A stack of dungeons linked by staircases. All the floors have the same size and share one
+ * {@link StackedTileStore}.
+ */
+public class MultiLevelDungeon {
+
+	private final List<Dungeon> floors;
+	private final List<Staircase> staircases;
+	private final StackedTileStore tileStore;
+
+	MultiLevelDungeon(List<Dungeon> floors, List<Staircase> staircases, StackedTileStore tileStore) {
+		this.floors = floors;
+		this.staircases = staircases;
+		this.tileStore = tileStore;
+	}
+
+	/**
+	 * @return the floors, from the lowest one
+	 */
+	public List<Dungeon> getFloors() {
+		return Collections.unmodifiableList(floors);
+	}
+
+	public Dungeon getFloor(int floor) {
+		return floors.get(floor);
+	}
+
+	public int getFloorCount() {
+		return floors.size();
+	}
+
+	public List<Staircase> getStaircases() {
+		return Collections.unmodifiableList(staircases);
+	}
+
+	/**
+	 * @param floor the index of a floor
+	 * @return the staircases between this floor and the next one
+	 */
+	public List<Staircase> getStaircasesFrom(int floor) {
+		List<Staircase> floorStaircases = new ArrayList<>();
+		for (Staircase staircase : staircases) {
+			if (staircase.getLowerFloor() == floor) {
+				floorStaircases.add(staircase);
+			}
+		}
+		return floorStaircases;
+	}
+
+	public StackedTileStore getTileStore() {
+		return tileStore;
+	}
+
+	public int getWidth() {
+		return tileStore.getWidth();
+	}
+
+	public int getHeight() {
+		return tileStore.getHeight();
+	}
+
+	/**
+	 * @return the room or hallway at this position, or null for a wall
+	 */
+	public DungeonStructure getStructureAt(int floor, int x, int y) {
+		return tileStore.get(floor, x, y);
+	}
+}
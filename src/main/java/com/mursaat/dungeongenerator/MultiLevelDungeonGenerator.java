@@ -0,0 +1,243 @@
+package com.mursaat.dungeongenerator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Create dungeons of several floors. Each floor is generated by its own task on an executor, with a
+ * {@link SparseTileStore}. The floors are then written in one {@link StackedTileStore}, and linked by
+ * staircases between the rooms which overlap on adjacent floors.
+ */
+public class MultiLevelDungeonGenerator {
+
+	private final DungeonParams dungeonParams;
+	private final DungeonGenerator floorGenerator;
+
+	/**
+	 * The executor running the tasks of the floors
+	 */
+	private Executor executor = ForkJoinPool.commonPool();
+
+	/**
+	 * The maximum number of staircases between two adjacent floors
+	 */
+	private int staircasesPerFloor = 1;
+
+	public MultiLevelDungeonGenerator(DungeonParams dungeonParams, RoomParams roomParams) {
+		this.dungeonParams = dungeonParams;
+		this.floorGenerator = new DungeonGenerator(dungeonParams, roomParams)
+				.setTileStoreFactory(SparseTileStore::new);
+	}
+
+	/**
+	 * @param executor the executor running the tasks of the floors
+	 * @return this generator
+	 */
+	public MultiLevelDungeonGenerator setExecutor(Executor executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * @param staircasesPerFloor the maximum number of staircases between two adjacent floors
+	 * @return this generator
+	 */
+	public MultiLevelDungeonGenerator setStaircasesPerFloor(int staircasesPerFloor) {
+		if (staircasesPerFloor < 1) {
+			throw new IllegalArgumentException("staircasesPerFloor must be at least 1");
+		}
+		this.staircasesPerFloor = staircasesPerFloor;
+		return this;
+	}
+
+	/**
+	 * @param floorCount the number of floors
+	 * @return a new dungeon of the given number of floors
+	 */
+	public MultiLevelDungeon generate(int floorCount) {
+		return generate(floorCount, ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * Create a dungeon from a seed. The same seed and the same params always give the same floors,
+	 * whatever the executor.
+	 *
+	 * @param floorCount the number of floors
+	 * @param seed       the seed of the dungeon
+	 * @return a new dungeon of the given number of floors
+	 */
+	public MultiLevelDungeon generate(int floorCount, long seed) {
+		if (floorCount < 1) {
+			throw new IllegalArgumentException("floorCount must be at least 1");
+		}
+
+		// 1 - Generate the floors
+		List<CompletableFuture<Dungeon>> floorTasks = new ArrayList<>(floorCount);
+		for (int floor = 0; floor < floorCount; floor++) {
+			Random random = new Random(mix(seed, floor));
+			floorTasks.add(CompletableFuture.supplyAsync(() -> floorGenerator.generateDungeon(random), executor));
+		}
+		List<Dungeon> floors = joinAll(floorTasks);
+
+		// 2 - Write them in one tile store, as large as the largest floor
+		int width = 0;
+		int height = 0;
+		for (Dungeon floor : floors) {
+			width = Math.max(width, floor.width);
+			height = Math.max(height, floor.height);
+		}
+		StackedTileStore tileStore = new StackedTileStore(width, height, floorCount);
+
+		List<CompletableFuture<Dungeon>> copyTasks = new ArrayList<>(floorCount);
+		for (int floor = 0; floor < floorCount; floor++) {
+			Dungeon dungeon = floors.get(floor);
+			TileStore floorTiles = tileStore.getFloor(floor);
+			copyTasks.add(CompletableFuture.supplyAsync(() -> moveToStore(dungeon, floorTiles), executor));
+		}
+		joinAll(copyTasks);
+
+		// 3 - Link the adjacent floors
+		List<CompletableFuture<List<Staircase>>> staircaseTasks = new ArrayList<>(floorCount - 1);
+		for (int floor = 0; floor < floorCount - 1; floor++) {
+			int lowerFloor = floor;
+			staircaseTasks.add(CompletableFuture.supplyAsync(
+					() -> findStaircases(lowerFloor, floors.get(lowerFloor), floors.get(lowerFloor + 1)), executor));
+		}
+		List<Staircase> staircases = new ArrayList<>();
+		for (List<Staircase> floorStaircases : joinAll(staircaseTasks)) {
+			staircases.addAll(floorStaircases);
+		}
+
+		return new MultiLevelDungeon(floors, staircases, tileStore);
+	}
+
+	/**
+	 * Write the structures of a floor in its part of the stacked store, in the order of precedence
+	 * of the tiles : hallways, then rooms
+	 */
+	private Dungeon moveToStore(Dungeon dungeon, TileStore floorTiles) {
+		dungeon.width = floorTiles.getWidth();
+		dungeon.height = floorTiles.getHeight();
+		for (DungeonHallway hallway : dungeon.hallways) {
+			DungeonGenerator.rasterizeHallway(floorTiles, hallway, dungeon.hallwaysWidth);
+		}
+		for (DungeonRoom room : dungeon.rooms) {
+			DungeonGenerator.rasterizeRoom(floorTiles, room);
+		}
+		dungeon.tileStore = floorTiles;
+		dungeon.invalidateStructureIndex();
+		if (dungeonParams.isNavigationGraphGenerated()) {
+			dungeon.getNavigationGraph();
+		}
+		if (dungeonParams.isSnapshotGenerated()) {
+			dungeon.getSnapshot();
+		}
+		return dungeon;
+	}
+
+	/**
+	 * Find the pairs of rooms overlapping on two floors, largest overlaps first. The staircase is
+	 * on the common tile of the two rooms which is the closest to the center of their rectangles
+	 * overlap, and the rooms whose shapes don't share a tile have no staircase. A room has at most
+	 * one staircase to the upper floor and one from the lower floor.
+	 */
+	private List<Staircase> findStaircases(int lowerFloor, Dungeon lower, Dungeon upper) {
+		List<Staircase> candidates = new ArrayList<>();
+		Map<Staircase, Integer> commonTileCounts = new HashMap<>();
+		for (DungeonRoom lowerRoom : lower.rooms) {
+			for (DungeonStructure structure : upper.getStructuresIn(lowerRoom.getX(), lowerRoom.getY(),
+					lowerRoom.getWidth(), lowerRoom.getHeight())) {
+				if (structure instanceof DungeonRoom) {
+					DungeonRoom upperRoom = (DungeonRoom) structure;
+					RoomMask lowerMask = getMask(lowerRoom);
+					RoomMask upperMask = getMask(upperRoom);
+					int dx = upperRoom.getX() - lowerRoom.getX();
+					int dy = upperRoom.getY() - lowerRoom.getY();
+					int commonTileCount = lowerMask.countCommonTiles(upperMask, dx, dy);
+					if (commonTileCount == 0) {
+						continue;
+					}
+
+					int[] overlap = getOverlap(lowerRoom, upperRoom);
+					Position tile = lowerMask.findCommonTile(upperMask, dx, dy,
+							(overlap[0] + overlap[2]) / 2 - lowerRoom.getX(), (overlap[1] + overlap[3]) / 2 - lowerRoom.getY());
+					Position position = new Position(lowerRoom.getX() + tile.x, lowerRoom.getY() + tile.y);
+					Staircase staircase = new Staircase(lowerFloor, lowerRoom, upperRoom, position);
+					candidates.add(staircase);
+					commonTileCounts.put(staircase, commonTileCount);
+				}
+			}
+		}
+
+		candidates.sort(Comparator.comparingInt((Staircase staircase) -> -commonTileCounts.get(staircase))
+				.thenComparingInt(staircase -> staircase.getLowerRoom().getId())
+				.thenComparingInt(staircase -> staircase.getUpperRoom().getId()));
+
+		List<Staircase> staircases = new ArrayList<>();
+		Set<DungeonRoom> usedRooms = new HashSet<>();
+		for (Staircase candidate : candidates) {
+			if (staircases.size() == staircasesPerFloor) {
+				break;
+			}
+			if (!usedRooms.contains(candidate.getLowerRoom()) && !usedRooms.contains(candidate.getUpperRoom())) {
+				usedRooms.add(candidate.getLowerRoom());
+				usedRooms.add(candidate.getUpperRoom());
+				staircases.add(candidate);
+			}
+		}
+		return staircases;
+	}
+
+	/**
+	 * @return the mask of the room, a full one for a rectangle room
+	 */
+	private static RoomMask getMask(DungeonRoom room) {
+		RoomMask mask = room.getMask();
+		return mask != null ? mask : RoomShape.RECTANGLE.getMask(room.getWidth(), room.getHeight());
+	}
+
+	/**
+	 * @return the intersection of two overlapping rooms : min x, min y, max x, max y (included)
+	 */
+	private static int[] getOverlap(DungeonRoom r1, DungeonRoom r2) {
+		return new int[]{
+				Math.max(r1.getX(), r2.getX()),
+				Math.max(r1.getY(), r2.getY()),
+				Math.min(r1.getX() + r1.getWidth(), r2.getX() + r2.getWidth()) - 1,
+				Math.min(r1.getY() + r1.getHeight(), r2.getY() + r2.getHeight()) - 1
+		};
+	}
+
+	private static <T> List<T> joinAll(List<CompletableFuture<T>> tasks) {
+		List<T> results = new ArrayList<>(tasks.size());
+		try {
+			for (CompletableFuture<T> task : tasks) {
+				results.add(task.join());
+			}
+		} catch (CompletionException e) {
+			throw new IllegalStateException("Unable to generate the floors", e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * Mix a seed with a floor index (SplitMix64 finalizer)
+	 */
+	private static long mix(long seed, int floor) {
+		long z = seed + 0x9E3779B97F4A7C15L * (floor + 1);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,243 @@
+package com.mursaat.dungeongenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A {@link TileStore} kept out of the heap, for very large dungeons. The tiles are stored in two
+ * planes : the kind of each tile (wall, room or hallway) on one byte, and the id of its structure on
+ * four bytes. The planes are split into segments of whole rows, each one being a direct or a
+ * memory-mapped {@link ByteBuffer}.
+ * <p>
+ * The structures are read without lock, so the tiles can be read by many threads at once. Close
+ * the store to delete its mapped file : it must not be used afterwards.
+ */
+public class OffHeapTileStore implements TileStore, Closeable {
+
+	public static final byte KIND_WALL = 0;
+	public static final byte KIND_ROOM = 1;
+	public static final byte KIND_HALLWAY = 2;
+
+	/**
+	 * The maximum size of a segment, in bytes
+	 */
+	private static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+	private final int width;
+	private final int height;
+
+	/**
+	 * The number of rows in each segment
+	 */
+	private final int rowsPerSegment;
+
+	private final ByteBuffer[] kindSegments;
+	private final ByteBuffer[] idSegments;
+
+	/**
+	 * The mapped file, null for direct buffers
+	 */
+	private final Path file;
+
+	/**
+	 * The structures, by id - 1 (0 is a wall). The array is replaced when it grows, and published
+	 * again after each new structure, so the readers don't take a lock.
+	 */
+	private volatile DungeonStructure[] structures = new DungeonStructure[16];
+	private int structureCount;
+	private final Map<DungeonStructure, Integer> structureIds = new IdentityHashMap<>();
+
+	private OffHeapTileStore(int width, int height, Path file, SegmentAllocator allocator) throws IOException {
+		this.width = width;
+		this.height = height;
+		this.file = file;
+		this.rowsPerSegment = Math.max(1, MAX_SEGMENT_SIZE / Math.max(1, width * 4));
+
+		int segmentCount = Math.max(1, (height + rowsPerSegment - 1) / rowsPerSegment);
+		kindSegments = new ByteBuffer[segmentCount];
+		idSegments = new ByteBuffer[segmentCount];
+		for (int segmentId = 0; segmentId < segmentCount; segmentId++) {
+			int rows = Math.min(rowsPerSegment, height - segmentId * rowsPerSegment);
+			kindSegments[segmentId] = allocator.allocate(rows * width);
+			idSegments[segmentId] = allocator.allocate(rows * width * 4).order(ByteOrder.nativeOrder());
+		}
+	}
+
+	/**
+	 * @return a factory of tile stores backed by direct buffers
+	 */
+	public static TileStoreFactory direct() {
+		return (width, height) -> {
+			try {
+				return new OffHeapTileStore(width, height, null, ByteBuffer::allocateDirect);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+	}
+
+	/**
+	 * @param directory the directory of the mapped files. They are deleted when their store is
+	 *                  closed, or else when the JVM exits.
+	 * @return a factory of tile stores backed by memory-mapped files
+	 */
+	public static TileStoreFactory mapped(Path directory) {
+		return (width, height) -> {
+			try {
+				Path file = Files.createTempFile(directory, "tiles", ".bin");
+				file.toFile().deleteOnExit();
+				try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+					long[] offset = {0};
+					return new OffHeapTileStore(width, height, file, size -> {
+						ByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, offset[0], size);
+						offset[0] += size;
+						return segment;
+					});
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @param x the column of the tile
+	 * @param y the row of the tile
+	 * @return the kind of the tile ({@link #KIND_WALL}, {@link #KIND_ROOM} or {@link #KIND_HALLWAY})
+	 */
+	public byte getKind(int x, int y) {
+		return kindSegments[y / rowsPerSegment].get((y % rowsPerSegment) * width + x);
+	}
+
+	/**
+	 * @param x the column of the tile
+	 * @param y the row of the tile
+	 * @return the id of the structure of the tile, 0 for a wall
+	 */
+	public int getStructureId(int x, int y) {
+		return idSegments[y / rowsPerSegment].getInt(((y % rowsPerSegment) * width + x) * 4);
+	}
+
+	/**
+	 * @param id the id of a structure, as returned by {@link #getStructureId(int, int)}
+	 * @return the structure with this id, or null for a wall
+	 */
+	public DungeonStructure getStructure(int id) {
+		return id == 0 ? null : structures[id - 1];
+	}
+
+	@Override
+	public DungeonStructure get(int x, int y) {
+		int id = getStructureId(x, y);
+		return id == 0 ? null : getStructure(id);
+	}
+
+	@Override
+	public void set(int x, int y, DungeonStructure structure) {
+		int id = getOrCreateId(structure);
+		int index = (y % rowsPerSegment) * width + x;
+		kindSegments[y / rowsPerSegment].put(index, kindOf(structure));
+		idSegments[y / rowsPerSegment].putInt(index * 4, id);
+	}
+
+	@Override
+	public void fill(int minX, int minY, int maxX, int maxY, DungeonStructure structure, boolean overwrite) {
+		int id = getOrCreateId(structure);
+		byte kind = kindOf(structure);
+		for (int y = minY; y <= maxY; y++) {
+			ByteBuffer kinds = kindSegments[y / rowsPerSegment];
+			ByteBuffer ids = idSegments[y / rowsPerSegment];
+			int rowStart = (y % rowsPerSegment) * width;
+			for (int index = rowStart + minX; index <= rowStart + maxX; index++) {
+				if (overwrite || kinds.get(index) == KIND_WALL) {
+					kinds.put(index, kind);
+					ids.putInt(index * 4, id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return a copy of the tiles on the heap. Avoid it on very large dungeons.
+	 */
+	@Override
+	public DungeonStructure[][] toArray() {
+		DungeonStructure[][] tiles = new DungeonStructure[height][width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				tiles[y][x] = get(x, y);
+			}
+		}
+		return tiles;
+	}
+
+	/**
+	 * Release the buffers and delete the mapped file. On the systems which can't delete a file
+	 * still mapped, it is deleted when the JVM exits.
+	 */
+	@Override
+	public void close() {
+		// The buffers are unmapped once garbage collected
+		Arrays.fill(kindSegments, null);
+		Arrays.fill(idSegments, null);
+		if (file != null) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				// Still deleted on exit
+			}
+		}
+	}
+
+	private synchronized int getOrCreateId(DungeonStructure structure) {
+		if (structure == null) {
+			return 0;
+		}
+		Integer id = structureIds.get(structure);
+		if (id == null) {
+			DungeonStructure[] grown = structures;
+			if (structureCount == grown.length) {
+				grown = Arrays.copyOf(grown, grown.length * 2);
+			}
+			grown[structureCount++] = structure;
+			structures = grown;
+			id = structureCount;
+			structureIds.put(structure, id);
+		}
+		return id;
+	}
+
+	private static byte kindOf(DungeonStructure structure) {
+		if (structure instanceof DungeonRoom) {
+			return KIND_ROOM;
+		}
+		return structure == null ? KIND_WALL : KIND_HALLWAY;
+	}
+
+	/**
+	 * Allocate a segment of the given size, in bytes
+	 */
+	private interface SegmentAllocator {
+		ByteBuffer allocate(int size) throws IOException;
+	}
+}
@@ -0,0 +1,141 @@
+package com.mursaat.dungeongenerator;
+
+import com.mursaat.dungeongenerator.graphs.Edge;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.stream.IntStream;
+
+/**
+ * Route the hallways of a dungeon in rounds. In each round, all the pending edges are routed in
+ * parallel against the current tiles. The routes are then committed in the order of the edges : a
+ * route crossing an hallway committed earlier in the same round is in conflict, and its edge is
+ * routed again in the next round.
+ * <p>
+ * Each edge has its own source of randomness, created again for each route from the seed and the
+ * index of the edge, so the result only depends on the seed.
+ */
+final class ParallelHallwayRouter {
+
+	private ParallelHallwayRouter() {
+	}
+
+	/**
+	 * Create the hallways of the edges, and write them in the tiles. The hallways are added to the
+	 * dungeon in the order they are written.
+	 *
+	 * @param dungeon the dungeon, with its rooms in the tiles
+	 * @param edges   the edges to route
+	 * @param seed    the seed of the routes
+	 */
+	static void route(Dungeon dungeon, List<Edge> edges, long seed) {
+		List<Integer> pending = new ArrayList<>(edges.size());
+		for (int edgeId = 0; edgeId < edges.size(); edgeId++) {
+			pending.add(edgeId);
+		}
+
+		while (!pending.isEmpty()) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new CancellationException("The dungeon generation was interrupted");
+			}
+
+			// 1 - Route all the pending edges against the same tiles
+			List<Integer> routed = pending;
+			DungeonHallway[] proposals = new DungeonHallway[routed.size()];
+			IntStream.range(0, routed.size()).parallel().forEach(proposalId -> {
+				int edgeId = routed.get(proposalId);
+				Random random = new Random(mix(seed, edgeId));
+				proposals[proposalId] = DungeonGenerator.createHallwayFromEdge(dungeon, edges.get(edgeId), random, false);
+			});
+
+			// 2 - Commit the routes which don't cross the hallways committed in this round
+			pending = new ArrayList<>();
+			List<int[]> committedBounds = new ArrayList<>();
+			for (int proposalId = 0; proposalId < proposals.length; proposalId++) {
+				DungeonHallway hallway = proposals[proposalId];
+				// The first route of a round can't be in conflict, so each round commits one at least
+				if (isInConflict(dungeon, hallway, committedBounds)) {
+					pending.add(routed.get(proposalId));
+					continue;
+				}
+				dungeon.hallways.add(hallway);
+				DungeonGenerator.rasterizeHallway(dungeon.tileStore, hallway, dungeon.hallwaysWidth);
+				if (!hallway.getPath().isEmpty()) {
+					committedBounds.add(getBounds(hallway, dungeon.hallwaysWidth));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true if a tile of the path of the hallway belongs to an hallway committed in the
+	 * current round. The tiles are only read where the bounds of the path and of a committed
+	 * hallway intersect.
+	 */
+	private static boolean isInConflict(Dungeon dungeon, DungeonHallway hallway, List<int[]> committedBounds) {
+		List<Position> path = hallway.getPath();
+		if (path.isEmpty()) {
+			// A route which was not found can't be found with more hallways
+			return false;
+		}
+
+		int[] bounds = getBounds(hallway, 1);
+		boolean intersects = false;
+		for (int[] committed : committedBounds) {
+			if (bounds[0] <= committed[2] && committed[0] <= bounds[2]
+					&& bounds[1] <= committed[3] && committed[1] <= bounds[3]) {
+				intersects = true;
+				break;
+			}
+		}
+		if (!intersects) {
+			return false;
+		}
+
+		// The previous hallways were already avoided by the route, so the hallways are new ones
+		Position lastPosition = path.get(0);
+		for (int posId = 0; posId < path.size(); posId++) {
+			Position position = path.get(posId);
+			int minX = Math.max(Math.min(lastPosition.x, position.x), 0);
+			int maxX = Math.min(Math.max(lastPosition.x, position.x), dungeon.width - 1);
+			int minY = Math.max(Math.min(lastPosition.y, position.y), 0);
+			int maxY = Math.min(Math.max(lastPosition.y, position.y), dungeon.height - 1);
+			for (int y = minY; y <= maxY; y++) {
+				for (int x = minX; x <= maxX; x++) {
+					if (dungeon.tileStore.get(x, y) instanceof DungeonHallway) {
+						return true;
+					}
+				}
+			}
+			lastPosition = position;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the bounds (min x, min y, max x, max y, included) of the tiles of the hallway
+	 */
+	private static int[] getBounds(DungeonHallway hallway, int hallwaysWidth) {
+		int halfWidth = (hallwaysWidth - 1) / 2;
+		int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+		for (Position position : hallway.getPath()) {
+			bounds[0] = Math.min(bounds[0], position.x - halfWidth);
+			bounds[1] = Math.min(bounds[1], position.y - halfWidth);
+			bounds[2] = Math.max(bounds[2], position.x + halfWidth);
+			bounds[3] = Math.max(bounds[3], position.y + halfWidth);
+		}
+		return bounds;
+	}
+
+	/**
+	 * Mix a seed with an edge index (SplitMix64 finalizer)
+	 */
+	private static long mix(long seed, int edge) {
+		long z = seed + 0x9E3779B97F4A7C15L * (edge + 1);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
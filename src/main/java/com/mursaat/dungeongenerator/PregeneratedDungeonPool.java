@@ -0,0 +1,215 @@
+package com.mursaat.dungeongenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a number of ready-to-use dungeons for each registered profile. Low priority worker
+ * threads refill the pools in background, so handing out a dungeon is only a dequeue.
+ */
+public class PregeneratedDungeonPool {
+
+	/**
+	 * The profiles, by name
+	 */
+	private final Map<String, Profile> profiles = new ConcurrentHashMap<>();
+
+	/**
+	 * The number of worker threads refilling each profile
+	 */
+	private final int workersPerProfile;
+
+	private volatile boolean shutdown;
+
+	public PregeneratedDungeonPool() {
+		this(1);
+	}
+
+	/**
+	 * @param workersPerProfile the number of worker threads refilling each profile
+	 */
+	public PregeneratedDungeonPool(int workersPerProfile) {
+		if (workersPerProfile < 1) {
+			throw new IllegalArgumentException("workersPerProfile must be at least 1");
+		}
+		this.workersPerProfile = workersPerProfile;
+	}
+
+	/**
+	 * Register a profile and start filling its pool in background
+	 *
+	 * @param name      the name of the profile
+	 * @param generator the generator used to create the dungeons of this profile
+	 * @param capacity  the number of dungeons kept ready for this profile
+	 * @return this pool
+	 */
+	public PregeneratedDungeonPool addProfile(String name, DungeonGenerator generator, int capacity) {
+		if (shutdown) {
+			throw new IllegalStateException("The pool has been shut down");
+		}
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+
+		Profile profile = new Profile(name, generator, capacity);
+		if (profiles.putIfAbsent(name, profile) != null) {
+			throw new IllegalArgumentException("The profile " + name + " already exists");
+		}
+		profile.startWorkers(workersPerProfile);
+		return this;
+	}
+
+	/**
+	 * Take a dungeon of the given profile. If none is ready, the dungeon is generated in the
+	 * calling thread, so this method never waits for the workers.
+	 *
+	 * @param name the name of the profile
+	 * @return a dungeon which has never been handed out before
+	 */
+	public Dungeon take(String name) {
+		Profile profile = getProfile(name);
+		Dungeon dungeon = profile.readyDungeons.poll();
+		return dungeon != null ? dungeon : profile.generator.generateDungeon();
+	}
+
+	/**
+	 * @param name the name of the profile
+	 * @return a ready dungeon of the given profile, or null if the pool is empty
+	 */
+	public Dungeon poll(String name) {
+		return getProfile(name).readyDungeons.poll();
+	}
+
+	/**
+	 * Wait until the pool of the given profile is full
+	 *
+	 * @param name    the name of the profile
+	 * @param timeout the maximum time to wait
+	 * @param unit    the unit of the timeout
+	 * @return true if the pool is full, false if the timeout elapsed before
+	 * @throws InterruptedException if the current thread is interrupted while waiting
+	 */
+	public boolean warmUp(String name, long timeout, TimeUnit unit) throws InterruptedException {
+		Profile profile = getProfile(name);
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (profile) {
+			while (profile.readyDungeons.remainingCapacity() > 0) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return false;
+				}
+				TimeUnit.NANOSECONDS.timedWait(profile, remaining);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param name the name of the profile
+	 * @return the number of dungeons currently ready for the given profile
+	 */
+	public int available(String name) {
+		return getProfile(name).readyDungeons.size();
+	}
+
+	/**
+	 * @param name the name of the profile
+	 * @return the number of generations of the workers of the given profile which failed
+	 */
+	public long failures(String name) {
+		return getProfile(name).failures.get();
+	}
+
+	/**
+	 * Stop all the workers. Dungeons already generated can still be taken.
+	 */
+	public void shutdown() {
+		shutdown = true;
+		for (Profile profile : profiles.values()) {
+			profile.stopWorkers();
+		}
+	}
+
+	private Profile getProfile(String name) {
+		Profile profile = profiles.get(name);
+		if (profile == null) {
+			throw new IllegalArgumentException("Unknown profile " + name);
+		}
+		return profile;
+	}
+
+	/**
+	 * A generator and the bounded queue of the dungeons it has already generated
+	 */
+	private class Profile {
+		private final String name;
+		private final DungeonGenerator generator;
+		private final BlockingQueue<Dungeon> readyDungeons;
+		private final List<Thread> workers = new ArrayList<>();
+		private final AtomicLong failures = new AtomicLong();
+
+		Profile(String name, DungeonGenerator generator, int capacity) {
+			this.name = name;
+			this.generator = generator;
+			this.readyDungeons = new ArrayBlockingQueue<>(capacity);
+		}
+
+		void startWorkers(int count) {
+			for (int workerId = 0; workerId < count; workerId++) {
+				Thread worker = new Thread(this::refill, "dungeon-pool-" + name + "-" + workerId);
+				worker.setDaemon(true);
+				worker.setPriority(Thread.MIN_PRIORITY);
+				workers.add(worker);
+				worker.start();
+			}
+		}
+
+		void stopWorkers() {
+			for (Thread worker : workers) {
+				worker.interrupt();
+			}
+		}
+
+		/**
+		 * Generate dungeons until the shutdown. A failed generation is reported to the uncaught
+		 * exception handler of the worker, which waits a bit longer after each failure in a row
+		 * (up to a second) and tries again.
+		 */
+		private void refill() {
+			try {
+				int failuresInARow = 0;
+				while (!shutdown) {
+					Dungeon dungeon;
+					try {
+						dungeon = generator.generateDungeon();
+					} catch (CancellationException e) {
+						throw e;
+					} catch (RuntimeException e) {
+						failures.incrementAndGet();
+						Thread worker = Thread.currentThread();
+						worker.getUncaughtExceptionHandler().uncaughtException(worker, e);
+						Thread.sleep(Math.min(1L << Math.min(failuresInARow++, 10), 1000));
+						continue;
+					}
+					failuresInARow = 0;
+
+					// Blocks while the pool is full
+					readyDungeons.put(dungeon);
+					synchronized (this) {
+						notifyAll();
+					}
+				}
+			} catch (InterruptedException | CancellationException e) {
+				// Stopped by shutdown(), while waiting or while generating
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -2,6 +2,9 @@ package com.mursaat.dungeongenerator;
 
 import com.mursaat.dungeongenerator.util.MathUtils;
 
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
 public class RoomGenerator {
 
 	RoomParams params;
@@ -14,11 +17,17 @@ public class RoomGenerator {
 	}
 
 	public DungeonRoom generateRoom(int radius) {
-		int height = params.getRandomHeight();
-		int width = params.getRandomWidth();
+		return generateRoom(radius, ThreadLocalRandom.current());
+	}
+
+	public DungeonRoom generateRoom(int radius, Random random) {
+		int height = params.getRandomHeight(random);
+		int width = params.getRandomWidth(random);
+
+		Position position = MathUtils.getRandomPositionInCircle(radius, random);
 
-		Position position = MathUtils.getRandomPositionInCircle(radius);
+		RoomShape shape = params.getRandomShape(random);
 
-		return new DungeonRoom().setWidth(width).setHeight(height).setX(position.x).setY(position.y);
+		return new DungeonRoom().setWidth(width).setHeight(height).setX(position.x).setY(position.y).setShape(shape);
 	}
 }
@@ -0,0 +1,333 @@
+package com.mursaat.dungeongenerator;
+
+import com.mursaat.dungeongenerator.util.MathUtils;
+import com.mursaat.dungeongenerator.util.RectangleConsumer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The tiles of a room shape, as a bitmask : one array of longs per row, the bit x % 64 of the word
+ * x / 64 being the column x. A mask is immutable, it is shared by all the rooms with the same shape
+ * and size.
+ * <p>
+ * The first and last tiles of each row and of each column are computed once, for the doors of the
+ * hallways.
+ */
+public final class RoomMask {
+
+	private final int width;
+	private final int height;
+	private final long[][] rows;
+	private final int tileCount;
+
+	/**
+	 * The first and last columns of each row, and the first and last rows of each column (-1 if
+	 * empty)
+	 */
+	private final int[] firstColumns;
+	private final int[] lastColumns;
+	private final int[] firstRows;
+	private final int[] lastRows;
+
+	/**
+	 * The dilated masks, by radius
+	 */
+	private final Map<Integer, RoomMask> dilatedMasks = new ConcurrentHashMap<>();
+
+	/**
+	 * @param width  the number of columns
+	 * @param height the number of rows
+	 * @param rows   the bits of each row, without bits beyond the width. They are not copied.
+	 */
+	RoomMask(int width, int height, long[][] rows) {
+		this.width = width;
+		this.height = height;
+		this.rows = rows;
+
+		firstColumns = new int[height];
+		lastColumns = new int[height];
+		firstRows = new int[width];
+		lastRows = new int[width];
+		Arrays.fill(firstRows, -1);
+		Arrays.fill(lastRows, -1);
+		int count = 0;
+		for (int y = 0; y < height; y++) {
+			firstColumns[y] = -1;
+			lastColumns[y] = -1;
+			long[] row = rows[y];
+			for (int word = 0; word < row.length; word++) {
+				long bits = row[word];
+				count += Long.bitCount(bits);
+				while (bits != 0) {
+					int x = word * 64 + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					if (firstColumns[y] < 0) {
+						firstColumns[y] = x;
+					}
+					lastColumns[y] = x;
+					if (firstRows[x] < 0) {
+						firstRows[x] = y;
+					}
+					lastRows[x] = y;
+				}
+			}
+		}
+		tileCount = count;
+	}
+
+	/**
+	 * @return an empty row of the given width
+	 */
+	static long[] createRow(int width) {
+		return new long[(width + 63) / 64];
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the number of tiles of the mask
+	 */
+	public int getTileCount() {
+		return tileCount;
+	}
+
+	/**
+	 * @param x the column, relative to the mask
+	 * @param y the row, relative to the mask
+	 * @return true if the tile is in the mask
+	 */
+	public boolean contains(int x, int y) {
+		return x >= 0 && y >= 0 && x < width && y < height && (rows[y][x >>> 6] & (1L << x)) != 0;
+	}
+
+	/**
+	 * @return the first column of the row in the mask, or -1 if the row is empty
+	 */
+	public int getFirstColumn(int y) {
+		return firstColumns[y];
+	}
+
+	/**
+	 * @return the last column of the row in the mask, or -1 if the row is empty
+	 */
+	public int getLastColumn(int y) {
+		return lastColumns[y];
+	}
+
+	/**
+	 * @return the first row of the column in the mask, or -1 if the column is empty
+	 */
+	public int getFirstRow(int x) {
+		return firstRows[x];
+	}
+
+	/**
+	 * @return the last row of the column in the mask, or -1 if the column is empty
+	 */
+	public int getLastRow(int x) {
+		return lastRows[x];
+	}
+
+	/**
+	 * Test if this mask and another one placed at (dx, dy) relatively to this one have a common
+	 * tile. The rows are compared a word at a time.
+	 *
+	 * @param other the other mask
+	 * @param dx    the column of the other mask in this one
+	 * @param dy    the row of the other mask in this one
+	 * @return true if a tile is in both masks
+	 */
+	public boolean intersects(RoomMask other, int dx, int dy) {
+		if (dx >= width || dy >= height || dx + other.width <= 0 || dy + other.height <= 0) {
+			return false;
+		}
+		int fromWord = Math.max(dx, 0) >>> 6;
+		int toWord = (Math.min(dx + other.width, width) - 1) >>> 6;
+		int maxY = Math.min(dy + other.height, height);
+		for (int y = Math.max(dy, 0); y < maxY; y++) {
+			long[] row = rows[y];
+			long[] otherRow = other.rows[y - dy];
+			for (int word = fromWord; word <= toWord; word++) {
+				if ((row[word] & getBits(otherRow, other.width, word * 64 - dx)) != 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Find the common tile of this mask and another one placed at (dx, dy) relatively to this one
+	 * which is the closest to a target tile. The rows are intersected a word at a time.
+	 *
+	 * @param other   the other mask
+	 * @param dx      the column of the other mask in this one
+	 * @param dy      the row of the other mask in this one
+	 * @param targetX the column of the target, in this mask
+	 * @param targetY the row of the target, in this mask
+	 * @return the closest common tile, in this mask (the first one of the rows in case of tie), or
+	 * null if the masks have no common tile
+	 */
+	public Position findCommonTile(RoomMask other, int dx, int dy, int targetX, int targetY) {
+		if (dx >= width || dy >= height || dx + other.width <= 0 || dy + other.height <= 0) {
+			return null;
+		}
+		int fromWord = Math.max(dx, 0) >>> 6;
+		int toWord = (Math.min(dx + other.width, width) - 1) >>> 6;
+		int maxY = Math.min(dy + other.height, height);
+		Position closest = null;
+		long closestDist = Long.MAX_VALUE;
+		for (int y = Math.max(dy, 0); y < maxY; y++) {
+			long[] row = rows[y];
+			long[] otherRow = other.rows[y - dy];
+			for (int word = fromWord; word <= toWord; word++) {
+				long common = row[word] & getBits(otherRow, other.width, word * 64 - dx);
+				while (common != 0) {
+					int x = word * 64 + Long.numberOfTrailingZeros(common);
+					common &= common - 1;
+					long dist = MathUtils.squaredDist(x, y, targetX, targetY);
+					if (dist < closestDist) {
+						closest = new Position(x, y);
+						closestDist = dist;
+					}
+				}
+			}
+		}
+		return closest;
+	}
+
+	/**
+	 * @return the number of common tiles of this mask and another one placed at (dx, dy)
+	 * relatively to this one
+	 */
+	public int countCommonTiles(RoomMask other, int dx, int dy) {
+		if (dx >= width || dy >= height || dx + other.width <= 0 || dy + other.height <= 0) {
+			return 0;
+		}
+		int fromWord = Math.max(dx, 0) >>> 6;
+		int toWord = (Math.min(dx + other.width, width) - 1) >>> 6;
+		int maxY = Math.min(dy + other.height, height);
+		int count = 0;
+		for (int y = Math.max(dy, 0); y < maxY; y++) {
+			long[] row = rows[y];
+			long[] otherRow = other.rows[y - dy];
+			for (int word = fromWord; word <= toWord; word++) {
+				count += Long.bitCount(row[word] & getBits(otherRow, other.width, word * 64 - dx));
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * The tiles at a distance of at most radius (on each axis) from a tile of this mask. The
+	 * dilated mask is larger by radius on each side, so its tile (x + radius, y + radius) is the
+	 * tile (x, y) of this mask.
+	 *
+	 * @param radius the distance, 0 or more
+	 * @return the dilated mask, computed once per radius
+	 */
+	public RoomMask dilate(int radius) {
+		if (radius <= 0) {
+			return this;
+		}
+		return dilatedMasks.computeIfAbsent(radius, this::createDilated);
+	}
+
+	private RoomMask createDilated(int radius) {
+		int dilatedWidth = width + 2 * radius;
+		int dilatedHeight = height + 2 * radius;
+
+		// Grow each row, then merge the rows
+		long[][] grownRows = new long[height][];
+		for (int y = 0; y < height; y++) {
+			long[] grown = createRow(dilatedWidth);
+			for (int word = 0; word < grown.length; word++) {
+				for (int shift = 0; shift <= 2 * radius; shift++) {
+					grown[word] |= getBits(rows[y], width, word * 64 - shift);
+				}
+			}
+			grownRows[y] = grown;
+		}
+		long[][] dilatedRows = new long[dilatedHeight][];
+		for (int y = 0; y < dilatedHeight; y++) {
+			long[] dilated = createRow(dilatedWidth);
+			for (int sourceY = Math.max(y - 2 * radius, 0); sourceY <= Math.min(y, height - 1); sourceY++) {
+				for (int word = 0; word < dilated.length; word++) {
+					dilated[word] |= grownRows[sourceY][word];
+				}
+			}
+			dilatedRows[y] = dilated;
+		}
+		return new RoomMask(dilatedWidth, dilatedHeight, dilatedRows);
+	}
+
+	/**
+	 * Give the runs of consecutive tiles of each row, as rectangles of one row
+	 *
+	 * @param x        the column of the mask
+	 * @param y        the row of the mask
+	 * @param consumer the receiver of the runs, with their bounds included
+	 */
+	public void forEachRun(int x, int y, RectangleConsumer consumer) {
+		for (int row = 0; row < height; row++) {
+			long[] bits = rows[row];
+			int column = firstColumns[row];
+			while (column >= 0 && column < width) {
+				int runEnd = nextClearColumn(bits, column);
+				consumer.accept(x + column, y + row, x + runEnd - 1, y + row);
+				column = runEnd < width ? nextSetColumn(bits, runEnd) : -1;
+			}
+		}
+	}
+
+	/**
+	 * @return the first column from the given one which is not in the row
+	 */
+	private int nextClearColumn(long[] row, int from) {
+		int word = from >>> 6;
+		long clear = ~row[word] & (-1L << from);
+		while (clear == 0 && ++word < row.length) {
+			clear = ~row[word];
+		}
+		return word == row.length ? width : Math.min(word * 64 + Long.numberOfTrailingZeros(clear), width);
+	}
+
+	/**
+	 * @return the first column from the given one which is in the row, or -1
+	 */
+	private static int nextSetColumn(long[] row, int from) {
+		int word = from >>> 6;
+		long set = row[word] & (-1L << from);
+		while (set == 0 && ++word < row.length) {
+			set = row[word];
+		}
+		return word == row.length ? -1 : word * 64 + Long.numberOfTrailingZeros(set);
+	}
+
+	/**
+	 * @param row   the bits of a row
+	 * @param width the number of columns of the row
+	 * @param from  the first column, which may be negative or beyond the row
+	 * @return the 64 bits of the row from this column, 0 outside of the row
+	 */
+	private static long getBits(long[] row, int width, int from) {
+		if (from >= width || from <= -64) {
+			return 0;
+		}
+		int word = Math.floorDiv(from, 64);
+		int shift = Math.floorMod(from, 64);
+		long bits = word >= 0 ? row[word] >>> shift : 0;
+		if (shift != 0 && word + 1 < row.length) {
+			bits |= row[word + 1] << (64 - shift);
+		}
+		return bits;
+	}
+}
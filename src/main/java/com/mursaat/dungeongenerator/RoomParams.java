@@ -1,5 +1,6 @@
 package com.mursaat.dungeongenerator;
 
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class RoomParams {
@@ -23,6 +24,11 @@ public class RoomParams {
 	 */
 	private int maxHeight = 15;
 
+	/**
+	 * The shapes of the generated rooms, picked with the same probability
+	 */
+	private RoomShape[] shapes = {RoomShape.RECTANGLE};
+
 	public RoomParams() {
 	}
 
@@ -63,10 +69,38 @@ public class RoomParams {
 	}
 
 	public int getRandomWidth() {
-		return ThreadLocalRandom.current().nextInt(minWidth, maxWidth + 1);
+		return getRandomWidth(ThreadLocalRandom.current());
+	}
+
+	public int getRandomWidth(Random random) {
+		return minWidth + random.nextInt(maxWidth - minWidth + 1);
 	}
 
 	public int getRandomHeight() {
-		return ThreadLocalRandom.current().nextInt(minHeight, maxHeight + 1);
+		return getRandomHeight(ThreadLocalRandom.current());
+	}
+
+	public int getRandomHeight(Random random) {
+		return minHeight + random.nextInt(maxHeight - minHeight + 1);
+	}
+
+	public RoomShape[] getShapes() {
+		return shapes.clone();
+	}
+
+	public RoomParams setShapes(RoomShape... shapes) {
+		if (shapes.length == 0) {
+			throw new IllegalArgumentException("At least one shape is needed");
+		}
+		this.shapes = shapes.clone();
+		return this;
+	}
+
+	/**
+	 * @param random the source of randomness, only used if there are several shapes
+	 * @return a shape of the generated rooms
+	 */
+	public RoomShape getRandomShape(Random random) {
+		return shapes.length == 1 ? shapes[0] : shapes[random.nextInt(shapes.length)];
 	}
 }
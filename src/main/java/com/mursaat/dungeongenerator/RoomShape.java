@@ -0,0 +1,178 @@
+package com.mursaat.dungeongenerator;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The shape of a room in its width x height rectangle. The masks of the shapes are computed once
+ * per size, and shared by all the rooms.
+ */
+public enum RoomShape {
+	/**
+	 * All the tiles of the rectangle
+	 */
+	RECTANGLE {
+		@Override
+		boolean contains(int x, int y, int width, int height) {
+			return true;
+		}
+	},
+
+	/**
+	 * The ellipse inscribed in the rectangle
+	 */
+	ELLIPSE {
+		@Override
+		boolean contains(int x, int y, int width, int height) {
+			// Compare the centers of the tiles to the ellipse, in units of half a tile
+			long dx = 2L * x + 1 - width;
+			long dy = 2L * y + 1 - height;
+			return dx * dx * height * height + dy * dy * width * width <= (long) width * width * height * height;
+		}
+	},
+
+	/**
+	 * The rectangle without its top right quarter
+	 */
+	L_SHAPE {
+		@Override
+		boolean contains(int x, int y, int width, int height) {
+			return x < Math.max(width / 2, 1) || y >= height / 2;
+		}
+	},
+
+	/**
+	 * An irregular cave, grown by a cellular automaton. The cave of a size is always the same.
+	 */
+	CAVE {
+		@Override
+		boolean contains(int x, int y, int width, int height) {
+			return getMask(width, height).contains(x, y);
+		}
+
+		@Override
+		RoomMask createMask(int width, int height) {
+			Random random = new Random(31L * width + height);
+			boolean[][] open = new boolean[height][width];
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					open[y][x] = random.nextInt(100) < 60;
+				}
+			}
+
+			// Smooth : a tile is open if most of the tiles around it are open
+			for (int step = 0; step < 4; step++) {
+				boolean[][] next = new boolean[height][width];
+				for (int y = 0; y < height; y++) {
+					for (int x = 0; x < width; x++) {
+						int openCount = 0;
+						for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, height - 1); ny++) {
+							for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, width - 1); nx++) {
+								openCount += open[ny][nx] ? 1 : 0;
+							}
+						}
+						next[y][x] = openCount >= 5;
+					}
+				}
+				open = next;
+			}
+
+			// Keep the largest group of connected tiles, so the whole cave is reachable
+			long[][] rows = keepLargestGroup(open, width, height);
+			RoomMask mask = new RoomMask(width, height, rows);
+			return mask.getTileCount() * 3 >= width * height ? mask : ELLIPSE.createMask(width, height);
+		}
+	};
+
+	/**
+	 * The masks of all the shapes, by shape and size
+	 */
+	private static final Map<Long, RoomMask> masks = new ConcurrentHashMap<>();
+
+	/**
+	 * @return true if the tile (x, y) of a rectangle of the given size is in the shape
+	 */
+	abstract boolean contains(int x, int y, int width, int height);
+
+	/**
+	 * @return a new mask of the shape
+	 */
+	RoomMask createMask(int width, int height) {
+		long[][] rows = new long[height][];
+		for (int y = 0; y < height; y++) {
+			rows[y] = RoomMask.createRow(width);
+			for (int x = 0; x < width; x++) {
+				if (contains(x, y, width, height)) {
+					rows[y][x >>> 6] |= 1L << x;
+				}
+			}
+		}
+		return new RoomMask(width, height, rows);
+	}
+
+	/**
+	 * @param width  the width of the room
+	 * @param height the height of the room
+	 * @return the mask of the shape for this size, computed on the first call
+	 */
+	public RoomMask getMask(int width, int height) {
+		long key = ((long) ordinal() << 48) | ((long) width << 24) | height;
+		RoomMask mask = masks.get(key);
+		if (mask == null) {
+			mask = createMask(width, height);
+			RoomMask previous = masks.putIfAbsent(key, mask);
+			if (previous != null) {
+				mask = previous;
+			}
+		}
+		return mask;
+	}
+
+	private static long[][] keepLargestGroup(boolean[][] open, int width, int height) {
+		int[] groups = new int[width * height];
+		int largestGroup = 0;
+		int largestSize = 0;
+		int groupCount = 0;
+		ArrayDeque<Integer> toVisit = new ArrayDeque<>();
+		for (int start = 0; start < groups.length; start++) {
+			if (groups[start] != 0 || !open[start / width][start % width]) {
+				continue;
+			}
+			int group = ++groupCount;
+			int size = 0;
+			groups[start] = group;
+			toVisit.add(start);
+			while (!toVisit.isEmpty()) {
+				int tile = toVisit.poll();
+				size++;
+				int x = tile % width;
+				int y = tile / width;
+				int[] neighbors = {x > 0 ? tile - 1 : -1, x < width - 1 ? tile + 1 : -1,
+						y > 0 ? tile - width : -1, y < height - 1 ? tile + width : -1};
+				for (int neighbor : neighbors) {
+					if (neighbor >= 0 && groups[neighbor] == 0 && open[neighbor / width][neighbor % width]) {
+						groups[neighbor] = group;
+						toVisit.add(neighbor);
+					}
+				}
+			}
+			if (size > largestSize) {
+				largestSize = size;
+				largestGroup = group;
+			}
+		}
+
+		long[][] rows = new long[height][];
+		for (int y = 0; y < height; y++) {
+			rows[y] = RoomMask.createRow(width);
+			for (int x = 0; x < width; x++) {
+				if (largestGroup != 0 && groups[y * width + x] == largestGroup) {
+					rows[y][x >>> 6] |= 1L << x;
+				}
+			}
+		}
+		return rows;
+	}
+}
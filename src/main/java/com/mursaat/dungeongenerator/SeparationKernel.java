@@ -0,0 +1,211 @@
+package com.mursaat.dungeongenerator;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Separate the rooms like {@link DungeonGenerator} does, with the rectangles packed in int arrays.
+ * A room is tested against a block of 64 others at once : the block gives a collision mask, one bit
+ * per room, computed without branches from the signs of the differences of the bounds.
+ * <p>
+ * The rooms are moved in the same order as by the pairwise tests, so the result is the same : a
+ * block is tested again from the room after each move. The penetration depths of the colliding rooms
+ * are computed with the mask, from its bounds.
+ * <p>
+ * The loop is scalar, written for the JIT to unroll. The Vector API would test the block with
+ * explicit SIMD instructions, but it is an incubator module : it needs JDK 16 or later, and
+ * {@code --add-modules jdk.incubator.vector} to compile and run the code using it, while this
+ * library runs on Java 9.
+ */
+final class SeparationKernel {
+
+	/**
+	 * The number of rooms tested at once, one per bit of the mask
+	 */
+	static final int BLOCK_SIZE = 64;
+
+	private final List<DungeonRoom> rooms;
+	private final int space;
+	private final int[] xs;
+	private final int[] ys;
+	private final int[] widths;
+	private final int[] heights;
+
+	/**
+	 * True if at least a room has a mask, the colliding rectangles are then tested tile by tile
+	 */
+	private final boolean shaped;
+
+	/**
+	 * The penetration depths of the tested room in each room of the last collision mask, by index in
+	 * the block : how far its right, left, bottom and top sides are inside the other room (without
+	 * the space)
+	 */
+	private final int[] rightDepths = new int[BLOCK_SIZE];
+	private final int[] leftDepths = new int[BLOCK_SIZE];
+	private final int[] bottomDepths = new int[BLOCK_SIZE];
+	private final int[] topDepths = new int[BLOCK_SIZE];
+
+	SeparationKernel(List<DungeonRoom> rooms, int space) {
+		this.rooms = rooms;
+		this.space = space;
+		int count = rooms.size();
+		xs = new int[count];
+		ys = new int[count];
+		widths = new int[count];
+		heights = new int[count];
+		boolean anyMask = false;
+		for (int roomId = 0; roomId < count; roomId++) {
+			DungeonRoom room = rooms.get(roomId);
+			xs[roomId] = room.getX();
+			ys[roomId] = room.getY();
+			widths[roomId] = room.getWidth();
+			heights[roomId] = room.getHeight();
+			anyMask |= room.getMask() != null;
+		}
+		shaped = anyMask;
+	}
+
+	/**
+	 * Move the rooms until no room is too close to another one. The generation stops with a {@link
+	 * CancellationException} if the current thread is interrupted.
+	 */
+	void separate() {
+		int count = xs.length;
+		boolean collide = true;
+		while (collide) {
+			if (Thread.currentThread().isInterrupted()) {
+				throw new CancellationException("The dungeon generation was interrupted");
+			}
+			collide = false;
+			for (int room = 0; room < count; room++) {
+				for (int from = 0; from < count; ) {
+					int to = Math.min(from + BLOCK_SIZE, count);
+					long mask = getCollisionMask(room, from, to);
+					if (mask == 0) {
+						from = to;
+						continue;
+					}
+
+					int other = from + Long.numberOfTrailingZeros(mask);
+					if (!shaped || DungeonGenerator.masksCollide(rooms.get(room), rooms.get(other), space)) {
+						push(room, other, other - from);
+						collide = true;
+					}
+					from = other + 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compute the collision mask of a room with a block of other rooms, and keep the penetration
+	 * depths of the room in each room of the mask, for {@link #getRightDepth(int)} and the other
+	 * getters.
+	 *
+	 * @param room the tested room
+	 * @param from the first other room
+	 * @param to   the last other room, excluded, at most {@link #BLOCK_SIZE} after the first one
+	 * @return the bit i is set if the room from + i is too close to the tested room (which is
+	 * never set for the tested room itself)
+	 */
+	long getCollisionMask(int room, int from, int to) {
+		int minX = xs[room] - space;
+		int maxX = xs[room] + widths[room] + space;
+		int minY = ys[room] - space;
+		int maxY = ys[room] + heights[room] + space;
+
+		long mask = 0;
+		for (int other = from; other < to; other++) {
+			// Each difference is negative if its inequality is true, the sign of the AND is the result
+			int inside = (minX - xs[other] - widths[other])
+					& (xs[other] - maxX)
+					& (minY - ys[other] - heights[other])
+					& (ys[other] - maxY);
+			mask |= (long) (inside >>> 31) << (other - from);
+		}
+		if (room >= from && room < to) {
+			mask &= ~(1L << (room - from));
+		}
+
+		// The depths are the differences of the bounds without the space, only kept for the rooms of
+		// the mask : most blocks don't collide, and storing them for all the rooms costs more than
+		// computing them again
+		for (long colliding = mask; colliding != 0; colliding &= colliding - 1) {
+			int slot = Long.numberOfTrailingZeros(colliding);
+			int other = from + slot;
+			rightDepths[slot] = maxX - space - xs[other];
+			leftDepths[slot] = xs[other] + widths[other] - minX - space;
+			bottomDepths[slot] = maxY - space - ys[other];
+			topDepths[slot] = ys[other] + heights[other] - minY - space;
+		}
+		return mask;
+	}
+
+	/**
+	 * @param slot the index of a room of the last collision mask in its block
+	 * @return how far the right side of the tested room is inside the other room
+	 */
+	int getRightDepth(int slot) {
+		return rightDepths[slot];
+	}
+
+	/**
+	 * @param slot the index of a room of the last collision mask in its block
+	 * @return how far the left side of the tested room is inside the other room
+	 */
+	int getLeftDepth(int slot) {
+		return leftDepths[slot];
+	}
+
+	/**
+	 * @param slot the index of a room of the last collision mask in its block
+	 * @return how far the bottom side of the tested room is inside the other room
+	 */
+	int getBottomDepth(int slot) {
+		return bottomDepths[slot];
+	}
+
+	/**
+	 * @param slot the index of a room of the last collision mask in its block
+	 * @return how far the top side of the tested room is inside the other room
+	 */
+	int getTopDepth(int slot) {
+		return topDepths[slot];
+	}
+
+	/**
+	 * Move two colliding rooms away from each other by one tile, on the axis of the smallest
+	 * penetration (the first one of right, left, bottom, top on a tie)
+	 *
+	 * @param slot the index of the other room in the block of the last collision mask
+	 */
+	private void push(int room, int other, int slot) {
+		int right = rightDepths[slot];
+		int left = leftDepths[slot];
+		int bottom = bottomDepths[slot];
+		int top = topDepths[slot];
+
+		if (right <= left && right <= bottom && right <= top) {
+			move(other, 1, 0);
+			move(room, -1, 0);
+		} else if (left <= bottom && left <= top) {
+			move(other, -1, 0);
+			move(room, 1, 0);
+		} else if (bottom <= top) {
+			move(other, 0, 1);
+			move(room, 0, -1);
+		} else {
+			move(other, 0, -1);
+			move(room, 0, 1);
+		}
+	}
+
+	private void move(int room, int dx, int dy) {
+		xs[room] += dx;
+		ys[room] += dy;
+		DungeonRoom dungeonRoom = rooms.get(room);
+		dungeonRoom.setX(xs[room]);
+		dungeonRoom.setY(ys[room]);
+	}
+}
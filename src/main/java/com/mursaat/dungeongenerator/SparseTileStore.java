@@ -0,0 +1,116 @@
+package com.mursaat.dungeongenerator;
+
+import com.mursaat.dungeongenerator.util.RectangleIndex;
+
+import java.util.BitSet;
+
+/**
+ * A {@link TileStore} which only keeps the filled rectangles (the rooms and the hallway segments),
+ * in a spatial index. Its memory depends on the number of structures, not on the size of the
+ * dungeon. A dense array is only built when {@link #toArray()} is called.
+ */
+public class SparseTileStore implements TileStore {
+
+	/**
+	 * The width and height of the cells of the spatial index
+	 */
+	private static final int CELL_SIZE = 32;
+
+	private final int width;
+	private final int height;
+
+	/**
+	 * The filled rectangles, in the order they were filled
+	 */
+	private final RectangleIndex<DungeonStructure> rectangles;
+
+	/**
+	 * The ids of the rectangles which replace the structures below them
+	 */
+	private final BitSet overwritingRectangles = new BitSet();
+
+	/**
+	 * The dense array, built on demand
+	 */
+	private volatile DungeonStructure[][] tiles;
+
+	public SparseTileStore(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.rectangles = new RectangleIndex<>(width, height, CELL_SIZE);
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Replay the fills touching the tile, in order
+	 */
+	@Override
+	public DungeonStructure get(int x, int y) {
+		DungeonStructure structure = null;
+		int cell = rectangles.getCell(x, y);
+		int cellSize = rectangles.getCellSize(cell);
+		for (int index = 0; index < cellSize; index++) {
+			int id = rectangles.getCellEntry(cell, index);
+			if (rectangles.contains(id, x, y) && (structure == null || overwritingRectangles.get(id))) {
+				structure = rectangles.getValue(id);
+			}
+		}
+		return structure;
+	}
+
+	@Override
+	public void set(int x, int y, DungeonStructure structure) {
+		fill(x, y, x, y, structure, true);
+	}
+
+	@Override
+	public void fill(int minX, int minY, int maxX, int maxY, DungeonStructure structure, boolean overwrite) {
+		int id = rectangles.add(minX, minY, maxX, maxY, structure);
+		if (overwrite) {
+			overwritingRectangles.set(id);
+		}
+		tiles = null;
+	}
+
+	/**
+	 * @return the number of filled rectangles
+	 */
+	public int getRectangleCount() {
+		return rectangles.size();
+	}
+
+	/**
+	 * Build the dense array on first call. It is kept until the next change.
+	 */
+	@Override
+	public DungeonStructure[][] toArray() {
+		if (tiles == null) {
+			DungeonStructure[][] newTiles = new DungeonStructure[height][width];
+			for (int id = 0; id < rectangles.size(); id++) {
+				DungeonStructure structure = rectangles.getValue(id);
+				boolean overwrite = overwritingRectangles.get(id);
+				int minX = Math.max(rectangles.getMinX(id), 0);
+				int maxX = Math.min(rectangles.getMaxX(id), width - 1);
+				int maxY = Math.min(rectangles.getMaxY(id), height - 1);
+				for (int y = Math.max(rectangles.getMinY(id), 0); y <= maxY; y++) {
+					for (int x = minX; x <= maxX; x++) {
+						if (overwrite || newTiles[y][x] == null) {
+							newTiles[y][x] = structure;
+						}
+					}
+				}
+			}
+			tiles = newTiles;
+		}
+		return tiles;
+	}
+}
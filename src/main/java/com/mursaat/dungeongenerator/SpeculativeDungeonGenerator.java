@@ -0,0 +1,262 @@
+package com.mursaat.dungeongenerator;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Generate candidate dungeons in parallel until one is acceptable. The other candidates are then
+ * cancelled. If no candidate is acceptable before the deadline, the candidate with the best fitness
+ * is returned.
+ */
+public class SpeculativeDungeonGenerator {
+
+	private final DungeonGenerator generator;
+
+	/**
+	 * The number of candidates generated at the same time
+	 */
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Tells if a candidate can be returned at once
+	 */
+	private Predicate<Dungeon> validator = dungeon -> true;
+
+	/**
+	 * The score of a candidate, the highest is the best
+	 */
+	private ToDoubleFunction<Dungeon> fitness = dungeon -> 0;
+
+	/**
+	 * The constraints used as validator and fitness, whose violations are counted once per candidate
+	 */
+	private DungeonConstraints constraints;
+
+	/**
+	 * The executor running the workers. By default, a pool of daemon threads owned by this
+	 * generator, created on the first call and reused by the next ones.
+	 */
+	private Executor executor;
+
+	public SpeculativeDungeonGenerator(DungeonGenerator generator) {
+		this.generator = generator;
+	}
+
+	/**
+	 * @param parallelism the number of candidates generated at the same time
+	 * @return this generator
+	 */
+	public SpeculativeDungeonGenerator setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1");
+		}
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * @param validator tells if a candidate can be returned at once
+	 * @return this generator
+	 */
+	public SpeculativeDungeonGenerator setValidator(Predicate<Dungeon> validator) {
+		this.validator = validator;
+		this.constraints = null;
+		return this;
+	}
+
+	/**
+	 * @param fitness the score of a candidate, the highest is the best
+	 * @return this generator
+	 */
+	public SpeculativeDungeonGenerator setFitness(ToDoubleFunction<Dungeon> fitness) {
+		this.fitness = fitness;
+		this.constraints = null;
+		return this;
+	}
+
+	/**
+	 * Use some constraints as validator and as fitness. Their violations are counted once per
+	 * candidate.
+	 *
+	 * @param constraints the constraints
+	 * @return this generator
+	 */
+	public SpeculativeDungeonGenerator setConstraints(DungeonConstraints constraints) {
+		this.validator = constraints;
+		this.fitness = constraints;
+		this.constraints = constraints;
+		return this;
+	}
+
+	/**
+	 * @param executor the executor running the workers. The workers of a call are interrupted when
+	 *                 it returns, and the ones still waiting in the executor stop at once.
+	 * @return this generator
+	 */
+	public SpeculativeDungeonGenerator setExecutor(Executor executor) {
+		this.executor = Objects.requireNonNull(executor);
+		return this;
+	}
+
+	/**
+	 * @see #generate(long, long, TimeUnit)
+	 */
+	public Dungeon generate(long timeout, TimeUnit unit) throws InterruptedException {
+		return generate(ThreadLocalRandom.current().nextLong(), timeout, unit);
+	}
+
+	/**
+	 * Candidate i is generated from a seed mixed from the given seed and i. Which candidate is
+	 * returned depends on the timing of the threads.
+	 *
+	 * @param seed    the seed of the candidates
+	 * @param timeout the time budget
+	 * @param unit    the unit of the time budget
+	 * @return the first acceptable candidate, else the best candidate generated within the time
+	 * budget, or null if no candidate was finished
+	 * @throws InterruptedException if the current thread is interrupted while waiting
+	 */
+	public Dungeon generate(long seed, long timeout, TimeUnit unit) throws InterruptedException {
+		Search search = new Search(seed);
+		Executor workerExecutor = getExecutor();
+		try {
+			for (int workerId = 0; workerId < parallelism; workerId++) {
+				workerExecutor.execute(search::run);
+			}
+			return search.accepted.get(timeout, unit);
+		} catch (TimeoutException e) {
+			return search.getBest();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Unable to generate a candidate", e.getCause());
+		} finally {
+			search.stop();
+		}
+	}
+
+	private synchronized Executor getExecutor() {
+		if (executor == null) {
+			// The idle threads end after a minute
+			executor = Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "dungeon-candidate");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * The state shared by the workers of one call
+	 */
+	private class Search {
+		private final long seed;
+		private final AtomicLong nextCandidate = new AtomicLong();
+		private final CompletableFuture<Dungeon> accepted = new CompletableFuture<>();
+
+		/**
+		 * The threads running a worker, interrupted when the call returns
+		 */
+		private final Set<Thread> workers = new HashSet<>();
+		private volatile boolean stopped;
+
+		private Dungeon best;
+		private double bestFitness;
+
+		Search(long seed) {
+			this.seed = seed;
+		}
+
+		void run() {
+			if (!startWorker()) {
+				return;
+			}
+			try {
+				while (!accepted.isDone() && !stopped && !Thread.currentThread().isInterrupted()) {
+					Dungeon candidate = generator.generateDungeon(mix(seed, nextCandidate.getAndIncrement()));
+					if (constraints != null) {
+						int violations = constraints.countViolations(candidate);
+						if (violations == 0) {
+							accepted.complete(candidate);
+						} else {
+							offer(candidate, -violations);
+						}
+					} else if (validator.test(candidate)) {
+						accepted.complete(candidate);
+					} else {
+						offer(candidate, fitness.applyAsDouble(candidate));
+					}
+				}
+			} catch (CancellationException e) {
+				// Stopped by the interruption
+			} catch (RuntimeException e) {
+				if (!Thread.currentThread().isInterrupted()) {
+					accepted.completeExceptionally(e);
+				}
+			} finally {
+				endWorker();
+			}
+		}
+
+		private synchronized boolean startWorker() {
+			if (stopped) {
+				return false;
+			}
+			workers.add(Thread.currentThread());
+			return true;
+		}
+
+		/**
+		 * Clear the interruption of the call, which must not reach the next task of the thread
+		 */
+		private synchronized void endWorker() {
+			workers.remove(Thread.currentThread());
+			if (stopped) {
+				Thread.interrupted();
+			}
+		}
+
+		/**
+		 * Interrupting the workers makes the generators stop where they are
+		 */
+		synchronized void stop() {
+			stopped = true;
+			for (Thread worker : workers) {
+				worker.interrupt();
+			}
+		}
+
+		synchronized void offer(Dungeon candidate, double candidateFitness) {
+			if (best == null || candidateFitness > bestFitness) {
+				best = candidate;
+				bestFitness = candidateFitness;
+			}
+		}
+
+		synchronized Dungeon getBest() {
+			// An acceptable candidate may have been found at the deadline
+			return accepted.isDone() && !accepted.isCompletedExceptionally() ? accepted.join() : best;
+		}
+	}
+
+	/**
+	 * Mix a seed with a candidate index (SplitMix64 finalizer)
+	 */
+	private static long mix(long seed, long candidate) {
+		long z = seed + 0x9E3779B97F4A7C15L * (candidate + 1);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
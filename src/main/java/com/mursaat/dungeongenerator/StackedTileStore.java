@@ -0,0 +1,173 @@
+package com.mursaat.dungeongenerator;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The tiles of all the floors of a {@link MultiLevelDungeon}, in two flat planes shared by the
+ * floors : the kind of each tile on one byte (see {@link OffHeapTileStore#KIND_WALL}), and the id of
+ * its structure on four bytes. Each floor is seen as a {@link TileStore} with {@link #getFloor(int)}.
+ */
+public class StackedTileStore {
+
+	private final int width;
+	private final int height;
+	private final int floorCount;
+
+	/**
+	 * The planes, at index (floor * height + y) * width + x
+	 */
+	private final byte[] kinds;
+	private final int[] ids;
+
+	private final Floor[] floors;
+
+	/**
+	 * @param width      the number of columns of each floor
+	 * @param height     the number of rows of each floor
+	 * @param floorCount the number of floors
+	 */
+	public StackedTileStore(int width, int height, int floorCount) {
+		if ((long) width * height * floorCount > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many tiles for a stacked tile store");
+		}
+		this.width = width;
+		this.height = height;
+		this.floorCount = floorCount;
+		this.kinds = new byte[width * height * floorCount];
+		this.ids = new int[width * height * floorCount];
+
+		floors = new Floor[floorCount];
+		for (int floor = 0; floor < floorCount; floor++) {
+			floors[floor] = new Floor(floor * width * height);
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getFloorCount() {
+		return floorCount;
+	}
+
+	/**
+	 * @param floor the index of the floor
+	 * @return the tiles of this floor. Floors can be written concurrently by different threads.
+	 */
+	public TileStore getFloor(int floor) {
+		return floors[floor];
+	}
+
+	/**
+	 * @return the kind of the tile ({@link OffHeapTileStore#KIND_WALL}, {@link
+	 * OffHeapTileStore#KIND_ROOM} or {@link OffHeapTileStore#KIND_HALLWAY})
+	 */
+	public byte getKind(int floor, int x, int y) {
+		return kinds[(floor * height + y) * width + x];
+	}
+
+	/**
+	 * @return the room or hallway at this position, or null for a wall
+	 */
+	public DungeonStructure get(int floor, int x, int y) {
+		return floors[floor].get(x, y);
+	}
+
+	/**
+	 * The view of one floor. Its structures have their own ids.
+	 */
+	private class Floor implements TileStore {
+
+		private final int offset;
+
+		/**
+		 * The structures, by id - 1 (0 is a wall), published like the ones of {@link
+		 * OffHeapTileStore} so the readers don't take a lock
+		 */
+		private volatile DungeonStructure[] structures = new DungeonStructure[16];
+		private int structureCount;
+		private final Map<DungeonStructure, Integer> structureIds = new IdentityHashMap<>();
+
+		Floor(int offset) {
+			this.offset = offset;
+		}
+
+		@Override
+		public int getWidth() {
+			return width;
+		}
+
+		@Override
+		public int getHeight() {
+			return height;
+		}
+
+		@Override
+		public DungeonStructure get(int x, int y) {
+			int id = ids[offset + y * width + x];
+			return id == 0 ? null : structures[id - 1];
+		}
+
+		@Override
+		public void set(int x, int y, DungeonStructure structure) {
+			fill(x, y, x, y, structure, true);
+		}
+
+		@Override
+		public synchronized void fill(int minX, int minY, int maxX, int maxY, DungeonStructure structure, boolean overwrite) {
+			int id = getOrCreateId(structure);
+			byte kind = kindOf(structure);
+			for (int y = minY; y <= maxY; y++) {
+				int rowStart = offset + y * width;
+				for (int index = rowStart + minX; index <= rowStart + maxX; index++) {
+					if (overwrite || kinds[index] == OffHeapTileStore.KIND_WALL) {
+						kinds[index] = kind;
+						ids[index] = id;
+					}
+				}
+			}
+		}
+
+		@Override
+		public DungeonStructure[][] toArray() {
+			DungeonStructure[][] tiles = new DungeonStructure[height][width];
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					tiles[y][x] = get(x, y);
+				}
+			}
+			return tiles;
+		}
+
+		private int getOrCreateId(DungeonStructure structure) {
+			if (structure == null) {
+				return 0;
+			}
+			Integer id = structureIds.get(structure);
+			if (id == null) {
+				DungeonStructure[] grown = structures;
+				if (structureCount == grown.length) {
+					grown = Arrays.copyOf(grown, grown.length * 2);
+				}
+				grown[structureCount++] = structure;
+				structures = grown;
+				id = structureCount;
+				structureIds.put(structure, id);
+			}
+			return id;
+		}
+	}
+
+	private static byte kindOf(DungeonStructure structure) {
+		if (structure instanceof DungeonRoom) {
+			return OffHeapTileStore.KIND_ROOM;
+		}
+		return structure == null ? OffHeapTileStore.KIND_WALL : OffHeapTileStore.KIND_HALLWAY;
+	}
+}
@@ -0,0 +1,48 @@
+package com.mursaat.dungeongenerator;
+
+/**
+ * A staircase between a room and the room above it, on the next floor
+ */
+public class Staircase {
+
+	private final int lowerFloor;
+	private final DungeonRoom lowerRoom;
+	private final DungeonRoom upperRoom;
+	private final Position position;
+
+	Staircase(int lowerFloor, DungeonRoom lowerRoom, DungeonRoom upperRoom, Position position) {
+		this.lowerFloor = lowerFloor;
+		this.lowerRoom = lowerRoom;
+		this.upperRoom = upperRoom;
+		this.position = position;
+	}
+
+	/**
+	 * @return the index of the floor of {@link #getLowerRoom()}
+	 */
+	public int getLowerFloor() {
+		return lowerFloor;
+	}
+
+	/**
+	 * @return the index of the floor of {@link #getUpperRoom()}
+	 */
+	public int getUpperFloor() {
+		return lowerFloor + 1;
+	}
+
+	public DungeonRoom getLowerRoom() {
+		return lowerRoom;
+	}
+
+	public DungeonRoom getUpperRoom() {
+		return upperRoom;
+	}
+
+	/**
+	 * @return the position of the staircase, inside both rooms
+	 */
+	public Position getPosition() {
+		return position;
+	}
+}
@@ -0,0 +1,242 @@
+package com.mursaat.dungeongenerator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Write rooms and hallways in the tiles in parallel. The map is cut in horizontal stripes, each
+ * rectangle is binned in the stripes it touches, and the stripes are filled by the tasks of a
+ * fork-join pool. In a stripe, the rooms are written first, then the hallways never overwrite a
+ * room nor an earlier hallway : the tiles are the same as with a sequential rasterization.
+ * <p>
+ * Only an {@link ArrayTileStore} is filled in parallel, as its rows are independent arrays. The
+ * other tile stores are filled sequentially, as are all the stores when the pool has one thread.
+ */
+public class StripedRasterizer {
+
+	/**
+	 * The pool running the stripes
+	 */
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * The number of rows of a stripe
+	 */
+	private int stripeHeight = 32;
+
+	/**
+	 * @param pool the pool running the stripes
+	 * @return this rasterizer
+	 */
+	public StripedRasterizer setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * @param stripeHeight the number of rows of a stripe
+	 * @return this rasterizer
+	 */
+	public StripedRasterizer setStripeHeight(int stripeHeight) {
+		if (stripeHeight < 1) {
+			throw new IllegalArgumentException("stripeHeight must be at least 1");
+		}
+		this.stripeHeight = stripeHeight;
+		return this;
+	}
+
+	/**
+	 * Write all the structures of a dungeon in its tiles
+	 *
+	 * @param dungeon the dungeon, with an empty tile store
+	 */
+	public void rasterize(Dungeon dungeon) {
+		rasterize(dungeon.tileStore, dungeon.rooms, dungeon.hallways, dungeon.hallwaysWidth);
+	}
+
+	/**
+	 * Write rooms, over anything else
+	 */
+	void rasterizeRooms(TileStore tileStore, List<DungeonRoom> rooms) {
+		rasterize(tileStore, rooms, Collections.<DungeonHallway>emptyList(), 1);
+	}
+
+	/**
+	 * Write rooms then hallways. Among the rooms, the main rooms are written first.
+	 */
+	void rasterize(TileStore tileStore, List<DungeonRoom> rooms, List<DungeonHallway> hallways, int hallwaysWidth) {
+		if (!(tileStore instanceof ArrayTileStore) || pool.getParallelism() < 2) {
+			writeRooms(tileStore, rooms, DungeonRoom.RoomType.MAIN_ROOM);
+			writeRooms(tileStore, rooms, DungeonRoom.RoomType.HALLWAY_ROOM);
+			for (DungeonHallway hallway : hallways) {
+				DungeonGenerator.rasterizeHallway(tileStore, hallway, hallwaysWidth);
+			}
+			return;
+		}
+
+		Rectangles rectangles = new Rectangles(rooms.size() + 2 * hallways.size());
+		addRooms(rectangles, rooms, DungeonRoom.RoomType.MAIN_ROOM);
+		addRooms(rectangles, rooms, DungeonRoom.RoomType.HALLWAY_ROOM);
+		for (DungeonHallway hallway : hallways) {
+			hallway.forEachSegment(hallwaysWidth, tileStore.getWidth(), tileStore.getHeight(),
+					(minX, minY, maxX, maxY) -> rectangles.add(minX, minY, maxX, maxY, hallway, false));
+		}
+		if (rectangles.size == 0) {
+			return;
+		}
+
+		int stripeCount = Math.max(1, (tileStore.getHeight() + stripeHeight - 1) / stripeHeight);
+		Stripes stripes = new Stripes(rectangles, stripeCount, stripeHeight, tileStore.getHeight());
+		pool.invoke(new StripeTask(tileStore.toArray(), stripes, 0, stripeCount));
+	}
+
+	private static void writeRooms(TileStore tileStore, List<DungeonRoom> rooms, DungeonRoom.RoomType type) {
+		for (DungeonRoom room : rooms) {
+			if (room.getType() == type) {
+				DungeonGenerator.rasterizeRoom(tileStore, room);
+			}
+		}
+	}
+
+	private static void addRooms(Rectangles rectangles, List<DungeonRoom> rooms, DungeonRoom.RoomType type) {
+		for (DungeonRoom room : rooms) {
+			if (room.getType() == type) {
+				room.forEachRectangle((minX, minY, maxX, maxY) -> rectangles.add(minX, minY, maxX, maxY, room, true));
+			}
+		}
+	}
+
+	/**
+	 * The rectangles to write, in order, with their bounds included
+	 */
+	private static class Rectangles {
+		int size;
+		int[] bounds;
+		DungeonStructure[] structures;
+		boolean[] overwrites;
+
+		Rectangles(int capacity) {
+			capacity = Math.max(capacity, 4);
+			bounds = new int[4 * capacity];
+			structures = new DungeonStructure[capacity];
+			overwrites = new boolean[capacity];
+		}
+
+		void add(int minX, int minY, int maxX, int maxY, DungeonStructure structure, boolean overwrite) {
+			if (size == structures.length) {
+				bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+				structures = Arrays.copyOf(structures, 2 * structures.length);
+				overwrites = Arrays.copyOf(overwrites, 2 * overwrites.length);
+			}
+			bounds[4 * size] = minX;
+			bounds[4 * size + 1] = minY;
+			bounds[4 * size + 2] = maxX;
+			bounds[4 * size + 3] = maxY;
+			structures[size] = structure;
+			overwrites[size] = overwrite;
+			size++;
+		}
+	}
+
+	/**
+	 * The ids of the rectangles touching each stripe, in order. The ids of stripe i are in
+	 * entries, from offsets[i] to offsets[i + 1] excluded.
+	 */
+	private static class Stripes {
+		final Rectangles rectangles;
+		final int stripeHeight;
+		final int height;
+		final int[] offsets;
+		final int[] entries;
+
+		Stripes(Rectangles rectangles, int stripeCount, int stripeHeight, int height) {
+			this.rectangles = rectangles;
+			this.stripeHeight = stripeHeight;
+			this.height = height;
+
+			// Count the rectangles of each stripe, then place them
+			offsets = new int[stripeCount + 1];
+			for (int id = 0; id < rectangles.size; id++) {
+				int lastStripe = getLastStripe(id);
+				for (int stripe = getFirstStripe(id); stripe <= lastStripe; stripe++) {
+					offsets[stripe + 1]++;
+				}
+			}
+			for (int stripe = 0; stripe < stripeCount; stripe++) {
+				offsets[stripe + 1] += offsets[stripe];
+			}
+			entries = new int[offsets[stripeCount]];
+			int[] next = Arrays.copyOf(offsets, stripeCount);
+			for (int id = 0; id < rectangles.size; id++) {
+				int lastStripe = getLastStripe(id);
+				for (int stripe = getFirstStripe(id); stripe <= lastStripe; stripe++) {
+					entries[next[stripe]++] = id;
+				}
+			}
+		}
+
+		private int getFirstStripe(int id) {
+			return Math.max(rectangles.bounds[4 * id + 1], 0) / stripeHeight;
+		}
+
+		private int getLastStripe(int id) {
+			return Math.min(rectangles.bounds[4 * id + 3], height - 1) / stripeHeight;
+		}
+	}
+
+	/**
+	 * Fill a range of stripes, splitting it while it has several stripes
+	 */
+	private static class StripeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final DungeonStructure[][] tiles;
+		private final Stripes stripes;
+		private final int fromStripe;
+		private final int toStripe;
+
+		StripeTask(DungeonStructure[][] tiles, Stripes stripes, int fromStripe, int toStripe) {
+			this.tiles = tiles;
+			this.stripes = stripes;
+			this.fromStripe = fromStripe;
+			this.toStripe = toStripe;
+		}
+
+		@Override
+		protected void compute() {
+			if (toStripe - fromStripe > 1) {
+				int middle = (fromStripe + toStripe) >>> 1;
+				invokeAll(new StripeTask(tiles, stripes, fromStripe, middle),
+						new StripeTask(tiles, stripes, middle, toStripe));
+				return;
+			}
+
+			int stripeMinY = fromStripe * stripes.stripeHeight;
+			int stripeMaxY = Math.min(stripeMinY + stripes.stripeHeight, stripes.height) - 1;
+			Rectangles rectangles = stripes.rectangles;
+			for (int entry = stripes.offsets[fromStripe]; entry < stripes.offsets[fromStripe + 1]; entry++) {
+				int id = stripes.entries[entry];
+				int minX = Math.max(rectangles.bounds[4 * id], 0);
+				int maxX = Math.min(rectangles.bounds[4 * id + 2], tiles.length == 0 ? -1 : tiles[0].length - 1);
+				int minY = Math.max(rectangles.bounds[4 * id + 1], stripeMinY);
+				int maxY = Math.min(rectangles.bounds[4 * id + 3], stripeMaxY);
+				DungeonStructure structure = rectangles.structures[id];
+				for (int y = minY; y <= maxY; y++) {
+					DungeonStructure[] row = tiles[y];
+					if (rectangles.overwrites[id]) {
+						Arrays.fill(row, minX, maxX + 1, structure);
+					} else {
+						for (int x = minX; x <= maxX; x++) {
+							if (row[x] == null) {
+								row[x] = structure;
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package com.mursaat.dungeongenerator;
+
+/**
+ * The storage of the tiles of a dungeon. Each tile refers to a room, an hallway or null=wall
+ */
+public interface TileStore {
+
+	/**
+	 * @return the number of columns
+	 */
+	int getWidth();
+
+	/**
+	 * @return the number of rows
+	 */
+	int getHeight();
+
+	/**
+	 * @param x the column of the tile
+	 * @param y the row of the tile
+	 * @return the room or hallway at this position, or null for a wall
+	 */
+	DungeonStructure get(int x, int y);
+
+	/**
+	 * @param x         the column of the tile
+	 * @param y         the row of the tile
+	 * @param structure the room or hallway at this position, or null for a wall
+	 */
+	void set(int x, int y, DungeonStructure structure);
+
+	/**
+	 * Fill a rectangle of tiles (bounds included)
+	 *
+	 * @param minX      the first column
+	 * @param minY      the first row
+	 * @param maxX      the last column
+	 * @param maxY      the last row
+	 * @param structure the structure written in the tiles
+	 * @param overwrite if false, only the walls are replaced
+	 */
+	void fill(int minX, int minY, int maxX, int maxY, DungeonStructure structure, boolean overwrite);
+
+	/**
+	 * @return the tiles in an array, indexed by [y][x]. It may be a copy, depending on the storage.
+	 */
+	DungeonStructure[][] toArray();
+}
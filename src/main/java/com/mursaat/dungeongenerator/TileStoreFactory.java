@@ -0,0 +1,14 @@
+package com.mursaat.dungeongenerator;
+
+/**
+ * Create the {@link TileStore} of the generated dungeons
+ */
+public interface TileStoreFactory {
+
+	/**
+	 * @param width  the number of columns
+	 * @param height the number of rows
+	 * @return an empty tile store (only walls)
+	 */
+	TileStore create(int width, int height);
+}
@@ -0,0 +1,433 @@
+package com.mursaat.dungeongenerator.analysis;
+
+import com.mursaat.dungeongenerator.Dungeon;
+import com.mursaat.dungeongenerator.DungeonRoom;
+import com.mursaat.dungeongenerator.Position;
+import com.mursaat.dungeongenerator.navigation.NavigationGraph;
+import com.mursaat.dungeongenerator.navigation.Portal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * The distances between all the rooms of a dungeon, through its hallways. Two distances are kept :
+ * the number of hallways taken (hops), and the number of tiles walked from the center of a room to
+ * the center of the other one (length).
+ * <p>
+ * One search is run from each room, in parallel on a fork-join pool. The hallways can be taken both
+ * ways, so the distances are symmetric and only the lower triangles of the matrices are kept : the
+ * hops as chars, the lengths as ints. The search from a room only writes its own row of the
+ * triangles.
+ */
+public class RoomDistanceMatrix {
+
+	public enum Metric {
+		HOPS,
+		LENGTH
+	}
+
+	private final List<DungeonRoom> rooms;
+	private final Map<DungeonRoom, Integer> roomIndexes;
+
+	/**
+	 * The links between rooms, in compressed rows
+	 */
+	private final int[] linkOffsets;
+	private final int[] linkTargets;
+	private final int[] linkLengths;
+
+	/**
+	 * The largest number of rooms : the hops of each pair of rooms fit in a char, and the triangles
+	 * in an array
+	 */
+	private static final int MAX_ROOM_COUNT = 0xFFFF;
+
+	/**
+	 * The hops of the rooms which can't be reached
+	 */
+	private static final char UNREACHABLE_HOPS = 0xFFFF;
+
+	/**
+	 * The distances between the rooms i >= j, at index i * (i + 1) / 2 + j. Unreachable rooms have
+	 * {@link #UNREACHABLE_HOPS} hops and a length of -1.
+	 */
+	private final char[] hops;
+	private final int[] lengths;
+
+	/**
+	 * @param withDistances false to only keep the links, for the searches which don't fill the
+	 *                      triangles
+	 */
+	private RoomDistanceMatrix(List<DungeonRoom> rooms, List<int[]> links, boolean withDistances) {
+		if (withDistances && rooms.size() > MAX_ROOM_COUNT) {
+			throw new IllegalArgumentException("At most " + MAX_ROOM_COUNT + " rooms are supported, not " + rooms.size());
+		}
+		this.rooms = new ArrayList<>(rooms);
+		this.roomIndexes = new HashMap<>();
+		for (int roomId = 0; roomId < rooms.size(); roomId++) {
+			roomIndexes.put(rooms.get(roomId), roomId);
+		}
+
+		int roomCount = rooms.size();
+		linkOffsets = new int[roomCount + 1];
+		for (int[] link : links) {
+			linkOffsets[link[0] + 1]++;
+		}
+		for (int roomId = 0; roomId < roomCount; roomId++) {
+			linkOffsets[roomId + 1] += linkOffsets[roomId];
+		}
+		linkTargets = new int[links.size()];
+		linkLengths = new int[links.size()];
+		int[] nextLink = Arrays.copyOf(linkOffsets, roomCount);
+		for (int[] link : links) {
+			linkTargets[nextLink[link[0]]] = link[1];
+			linkLengths[nextLink[link[0]]++] = link[2];
+		}
+
+		int triangleSize = withDistances ? (int) ((long) roomCount * (roomCount + 1) / 2) : 0;
+		hops = new char[triangleSize];
+		lengths = new int[triangleSize];
+	}
+
+	/**
+	 * Compute the distances on the common fork-join pool
+	 *
+	 * @param dungeon a generated dungeon
+	 * @return the distances between its rooms
+	 */
+	public static RoomDistanceMatrix compute(Dungeon dungeon) {
+		return compute(dungeon, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param dungeon a generated dungeon
+	 * @param pool    the pool running the searches
+	 * @return the distances between its rooms
+	 */
+	public static RoomDistanceMatrix compute(Dungeon dungeon, ForkJoinPool pool) {
+		List<DungeonRoom> rooms = dungeon.getRooms();
+		RoomDistanceMatrix matrix = new RoomDistanceMatrix(rooms, getLinks(dungeon), true);
+		try {
+			pool.submit(() -> IntStream.range(0, rooms.size()).parallel().forEach(source -> {
+				int[] distances = new int[rooms.size()];
+				matrix.computeHops(source, distances);
+				matrix.computeLengths(source, distances);
+			})).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while computing the distances", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Unable to compute the distances", e.getCause());
+		}
+		return matrix;
+	}
+
+	/**
+	 * Tell if the greatest number of hallways between two connected rooms reaches a minimum,
+	 * without computing the matrix.
+	 * <p>
+	 * A search from a room, then from the farthest room found, gives a lower bound of the diameter
+	 * (exact if the rooms form a tree). A search from the middle of the path found gives an upper
+	 * bound : twice the distance to its farthest room. The searches from all the rooms are only run
+	 * if the minimum is between the bounds, or if the rooms are not all connected.
+	 *
+	 * @param dungeon     a generated dungeon
+	 * @param minDiameter the minimum number of hallways
+	 * @return true if the diameter, in hops, is at least the minimum
+	 */
+	public static boolean hasHopDiameter(Dungeon dungeon, int minDiameter) {
+		if (minDiameter <= 0) {
+			return true;
+		}
+		List<DungeonRoom> rooms = dungeon.getRooms();
+		if (rooms.isEmpty()) {
+			return false;
+		}
+		return new RoomDistanceMatrix(rooms, getLinks(dungeon), false).hasHopDiameter(minDiameter);
+	}
+
+	private boolean hasHopDiameter(int minDiameter) {
+		int roomCount = rooms.size();
+		int[] distances = new int[roomCount];
+		int[] queue = new int[roomCount];
+
+		int reached = searchHops(0, distances, queue);
+		int first = queue[reached - 1];
+		int[] distancesFromFirst = new int[roomCount];
+		searchHops(first, distancesFromFirst, queue);
+		int last = queue[reached - 1];
+		int lowerBound = distancesFromFirst[last];
+		if (lowerBound >= minDiameter) {
+			return true;
+		}
+
+		if (reached == roomCount) {
+			searchHops(last, distances, queue);
+			int middle = first;
+			for (int roomId = 0; roomId < roomCount; roomId++) {
+				if (distancesFromFirst[roomId] == lowerBound / 2 && distances[roomId] == lowerBound - lowerBound / 2) {
+					middle = roomId;
+					break;
+				}
+			}
+			searchHops(middle, distances, queue);
+			if (2 * distances[queue[roomCount - 1]] < minDiameter) {
+				return false;
+			}
+		}
+
+		for (int source = 0; source < roomCount; source++) {
+			reached = searchHops(source, distances, queue);
+			if (distances[queue[reached - 1]] >= minDiameter) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Two rooms are linked when an hallway goes from a portal of one to a portal of the other
+	 *
+	 * @return the links, as {from, to, length}, with the indexes of the rooms in the dungeon
+	 */
+	private static List<int[]> getLinks(Dungeon dungeon) {
+		List<DungeonRoom> rooms = dungeon.getRooms();
+		Map<DungeonRoom, Integer> indexes = new HashMap<>();
+		for (int roomId = 0; roomId < rooms.size(); roomId++) {
+			indexes.put(rooms.get(roomId), roomId);
+		}
+
+		NavigationGraph navigationGraph = dungeon.getNavigationGraph();
+		List<int[]> links = new ArrayList<>();
+		for (Portal portal : navigationGraph.getPortals()) {
+			for (Portal neighbor : navigationGraph.getNeighbors(portal)) {
+				if (!neighbor.getRoom().equals(portal.getRoom())) {
+					int length = distance(portal.getRoom().getCenterPosition(), portal.getPosition())
+							+ navigationGraph.getLinkCost(portal, neighbor)
+							+ distance(neighbor.getPosition(), neighbor.getRoom().getCenterPosition());
+					links.add(new int[]{indexes.get(portal.getRoom()), indexes.get(neighbor.getRoom()), length});
+				}
+			}
+		}
+		return links;
+	}
+
+	/**
+	 * Breadth-first search from a room, writing its row of {@link #hops}
+	 *
+	 * @param distances a buffer for the hops to every room, of the size of the room count
+	 */
+	private void computeHops(int source, int[] distances) {
+		searchHops(source, distances, new int[rooms.size()]);
+
+		int rowOffset = getRowOffset(source);
+		for (int to = 0; to <= source; to++) {
+			hops[rowOffset + to] = distances[to] == -1 ? UNREACHABLE_HOPS : (char) distances[to];
+		}
+	}
+
+	/**
+	 * Breadth-first search from a room
+	 *
+	 * @param distances a buffer for the hops to every room, -1 for the rooms not reached
+	 * @param queue     a buffer of the size of the room count, holding the rooms reached in the
+	 *                  order of their distance
+	 * @return the number of rooms reached
+	 */
+	private int searchHops(int source, int[] distances, int[] queue) {
+		Arrays.fill(distances, -1);
+		distances[source] = 0;
+
+		int queueStart = 0;
+		int queueEnd = 0;
+		queue[queueEnd++] = source;
+		while (queueStart < queueEnd) {
+			int roomId = queue[queueStart++];
+			for (int link = linkOffsets[roomId]; link < linkOffsets[roomId + 1]; link++) {
+				int target = linkTargets[link];
+				if (distances[target] == -1) {
+					distances[target] = distances[roomId] + 1;
+					queue[queueEnd++] = target;
+				}
+			}
+		}
+		return queueEnd;
+	}
+
+	/**
+	 * Dijkstra from a room, writing its row of {@link #lengths}
+	 *
+	 * @param distances a buffer for the lengths to every room, of the size of the room count
+	 */
+	private void computeLengths(int source, int[] distances) {
+		int roomCount = rooms.size();
+		Arrays.fill(distances, -1);
+
+		boolean[] done = new boolean[roomCount];
+		PriorityQueue<Long> queue = new PriorityQueue<>();
+		distances[source] = 0;
+		queue.add((long) source);
+		while (!queue.isEmpty()) {
+			long entry = queue.poll();
+			int roomId = (int) entry;
+			if (done[roomId]) {
+				continue;
+			}
+			done[roomId] = true;
+
+			int length = (int) (entry >>> 32);
+			for (int link = linkOffsets[roomId]; link < linkOffsets[roomId + 1]; link++) {
+				int target = linkTargets[link];
+				int newLength = length + linkLengths[link];
+				int oldLength = distances[target];
+				if (oldLength == -1 || newLength < oldLength) {
+					distances[target] = newLength;
+					queue.add(((long) newLength << 32) | target);
+				}
+			}
+		}
+
+		System.arraycopy(distances, 0, lengths, getRowOffset(source), source + 1);
+	}
+
+	public List<DungeonRoom> getRooms() {
+		return Collections.unmodifiableList(rooms);
+	}
+
+	/**
+	 * @return the distance between two rooms, or -1 if there is no path
+	 */
+	public int getDistance(DungeonRoom from, DungeonRoom to, Metric metric) {
+		return getDistance(indexOf(from), indexOf(to), metric);
+	}
+
+	/**
+	 * @return the number of hallways between two rooms, or -1 if there is no path
+	 */
+	public int getHops(DungeonRoom from, DungeonRoom to) {
+		return getDistance(from, to, Metric.HOPS);
+	}
+
+	/**
+	 * @return the number of tiles between the centers of two rooms, or -1 if there is no path
+	 */
+	public int getLength(DungeonRoom from, DungeonRoom to) {
+		return getDistance(from, to, Metric.LENGTH);
+	}
+
+	/**
+	 * @return the distance to the farthest room reachable from the given one
+	 */
+	public int getEccentricity(DungeonRoom room, Metric metric) {
+		return getEccentricity(indexOf(room), metric);
+	}
+
+	/**
+	 * @return the greatest distance between two connected rooms
+	 */
+	public int getDiameter(Metric metric) {
+		int diameter = 0;
+		for (int roomId = 0; roomId < rooms.size(); roomId++) {
+			diameter = Math.max(diameter, getEccentricity(roomId, metric));
+		}
+		return diameter;
+	}
+
+	/**
+	 * @return the shortest path between the two farthest connected rooms, which is a natural path
+	 * from an entrance to a boss
+	 */
+	public List<DungeonRoom> getCriticalPath(Metric metric) {
+		int bestFrom = -1;
+		int bestTo = -1;
+		int bestDistance = -1;
+		int roomCount = rooms.size();
+		for (int from = 0; from < roomCount; from++) {
+			for (int to = 0; to < roomCount; to++) {
+				int distance = getDistance(from, to, metric);
+				if (distance > bestDistance) {
+					bestDistance = distance;
+					bestFrom = from;
+					bestTo = to;
+				}
+			}
+		}
+		return bestFrom == -1 ? new ArrayList<>() : getShortestPath(bestFrom, bestTo, metric);
+	}
+
+	/**
+	 * @return the rooms of a shortest path, both ends included, or null if there is no path
+	 */
+	public List<DungeonRoom> getShortestPath(DungeonRoom from, DungeonRoom to, Metric metric) {
+		return getShortestPath(indexOf(from), indexOf(to), metric);
+	}
+
+	/**
+	 * Follow, from the first room, a link which keeps the path shortest
+	 */
+	private List<DungeonRoom> getShortestPath(int from, int to, Metric metric) {
+		if (getDistance(from, to, metric) == -1) {
+			return null;
+		}
+
+		List<DungeonRoom> path = new ArrayList<>();
+		path.add(rooms.get(from));
+		int current = from;
+		while (current != to) {
+			int remaining = getDistance(current, to, metric);
+			for (int link = linkOffsets[current]; link < linkOffsets[current + 1]; link++) {
+				int target = linkTargets[link];
+				int linkDistance = metric == Metric.HOPS ? 1 : linkLengths[link];
+				if (getDistance(target, to, metric) == remaining - linkDistance) {
+					current = target;
+					break;
+				}
+			}
+			path.add(rooms.get(current));
+		}
+		return path;
+	}
+
+	private int getDistance(int from, int to, Metric metric) {
+		int index = getRowOffset(Math.max(from, to)) + Math.min(from, to);
+		if (metric == Metric.HOPS) {
+			return hops[index] == UNREACHABLE_HOPS ? -1 : hops[index];
+		}
+		return lengths[index];
+	}
+
+	/**
+	 * @return the index of the first distance of the row of a room in the triangles
+	 */
+	private static int getRowOffset(int roomId) {
+		return (int) ((long) roomId * (roomId + 1) / 2);
+	}
+
+	private int getEccentricity(int roomId, Metric metric) {
+		int eccentricity = 0;
+		for (int to = 0; to < rooms.size(); to++) {
+			eccentricity = Math.max(eccentricity, getDistance(roomId, to, metric));
+		}
+		return eccentricity;
+	}
+
+	private int indexOf(DungeonRoom room) {
+		Integer index = roomIndexes.get(room);
+		if (index == null) {
+			throw new IllegalArgumentException("The room " + room.getId() + " is not in the dungeon");
+		}
+		return index;
+	}
+
+	private static int distance(Position p1, Position p2) {
+		return Math.abs(p1.x - p2.x) + Math.abs(p1.y - p2.y);
+	}
+}
@@ -0,0 +1,305 @@
+package com.mursaat.dungeongenerator.analysis;
+
+import com.mursaat.dungeongenerator.Dungeon;
+import com.mursaat.dungeongenerator.DungeonRoom;
+import com.mursaat.dungeongenerator.DungeonStructure;
+import com.mursaat.dungeongenerator.RoomMask;
+
+import java.util.Arrays;
+
+/**
+ * Connectivity and distances between the tiles of a dungeon. The walkable tiles (rooms and
+ * hallways) are kept in a bit mask, one bit per tile and whole 64-bit words per row, so most
+ * operations work on 64 tiles at a time.
+ */
+public class TileConnectivity {
+
+	private final Dungeon dungeon;
+	private final int width;
+	private final int height;
+	private final int wordsPerRow;
+
+	/**
+	 * The walkable tiles, bit (x % 64) of word [y * wordsPerRow + x / 64]
+	 */
+	private final long[] walkable;
+
+	/**
+	 * The component of each tile (0 for a wall), computed on demand
+	 */
+	private int[] labels;
+	private int componentCount;
+
+	/**
+	 * @param dungeon a generated dungeon
+	 */
+	public TileConnectivity(Dungeon dungeon) {
+		this.dungeon = dungeon;
+		this.width = dungeon.getWidth();
+		this.height = dungeon.getHeight();
+		this.wordsPerRow = (width + 63) >>> 6;
+		this.walkable = new long[wordsPerRow * height];
+
+		DungeonStructure[] row = new DungeonStructure[width];
+		for (int y = 0; y < height; y++) {
+			dungeon.copyTiles(0, y, width, 1, row);
+			int rowOffset = y * wordsPerRow;
+			for (int x = 0; x < width; x++) {
+				if (row[x] != null) {
+					walkable[rowOffset + (x >>> 6)] |= 1L << x;
+				}
+			}
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public boolean isWalkable(int x, int y) {
+		return (walkable[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	/**
+	 * Label the connected groups of walkable tiles, with a scanline flood fill
+	 *
+	 * @return the component of each tile, at index y * width + x. 0 for a wall, components start at 1.
+	 */
+	public synchronized int[] labelComponents() {
+		if (labels != null) {
+			return labels;
+		}
+
+		int[] newLabels = new int[width * height];
+		int[] stack = new int[64];
+		int label = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (newLabels[y * width + x] != 0 || !isWalkable(x, y)) {
+					continue;
+				}
+
+				label++;
+				int stackSize = 0;
+				stack[stackSize++] = y * width + x;
+				while (stackSize > 0) {
+					int seed = stack[--stackSize];
+					int seedX = seed % width;
+					int seedY = seed / width;
+					if (newLabels[seed] != 0) {
+						continue;
+					}
+
+					// Fill the whole span of the seed
+					int minX = seedX;
+					while (minX > 0 && isWalkable(minX - 1, seedY) && newLabels[seed - seedX + minX - 1] == 0) {
+						minX--;
+					}
+					int maxX = seedX;
+					while (maxX < width - 1 && isWalkable(maxX + 1, seedY) && newLabels[seed - seedX + maxX + 1] == 0) {
+						maxX++;
+					}
+					Arrays.fill(newLabels, seedY * width + minX, seedY * width + maxX + 1, label);
+
+					// One seed for each span of the rows above and below
+					for (int neighborY = seedY - 1; neighborY <= seedY + 1; neighborY += 2) {
+						if (neighborY < 0 || neighborY >= height) {
+							continue;
+						}
+						boolean inSpan = false;
+						for (int neighborX = minX; neighborX <= maxX; neighborX++) {
+							boolean free = isWalkable(neighborX, neighborY) && newLabels[neighborY * width + neighborX] == 0;
+							if (free && !inSpan) {
+								if (stackSize == stack.length) {
+									stack = Arrays.copyOf(stack, stackSize * 2);
+								}
+								stack[stackSize++] = neighborY * width + neighborX;
+							}
+							inSpan = free;
+						}
+					}
+				}
+			}
+		}
+
+		componentCount = label;
+		labels = newLabels;
+		return labels;
+	}
+
+	/**
+	 * @return the number of connected groups of walkable tiles
+	 */
+	public synchronized int getComponentCount() {
+		labelComponents();
+		return componentCount;
+	}
+
+	/**
+	 * @return true if all the rooms of the dungeon can be reached from each other
+	 */
+	public boolean areRoomsConnected() {
+		int[] componentLabels = labelComponents();
+		int firstLabel = 0;
+		for (DungeonRoom room : dungeon.getRooms()) {
+			int label = componentLabels[getRoomTile(room)];
+			if (firstLabel == 0) {
+				firstLabel = label;
+			} else if (label != firstLabel) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the index of a tile of the room : its top left corner, or the first tile of its mask
+	 * for a shaped room, whose corner can be a wall
+	 */
+	private int getRoomTile(DungeonRoom room) {
+		RoomMask mask = room.getMask();
+		int maskX = 0;
+		int maskY = 0;
+		if (mask != null) {
+			while (maskY < mask.getHeight() - 1 && mask.getFirstColumn(maskY) < 0) {
+				maskY++;
+			}
+			maskX = Math.max(mask.getFirstColumn(maskY), 0);
+		}
+		return (room.getY() + maskY) * width + room.getX() + maskX;
+	}
+
+	/**
+	 * @param x the column of the start tile
+	 * @param y the row of the start tile
+	 * @return the walking distance from the start tile to each tile, at index y * width + x. -1 for
+	 * the tiles which can't be reached.
+	 */
+	public int[] computeDistanceField(int x, int y) {
+		int[] distances = new int[width * height];
+		computeDistanceField(x, y, distances);
+		return distances;
+	}
+
+	/**
+	 * @param x         the column of the start tile
+	 * @param y         the row of the start tile
+	 * @param distances receives the walking distance to each tile, at index y * width + x. -1 for the
+	 *                  tiles which can't be reached.
+	 */
+	public void computeDistanceField(int x, int y, int[] distances) {
+		Arrays.fill(distances, 0, width * height, -1);
+		spreadFrom(x, y, distances, null);
+	}
+
+	/**
+	 * Same as {@link #computeDistanceField(int, int, int[])}, with half the memory. Distances greater
+	 * than {@link Short#MAX_VALUE} are written as {@link Short#MAX_VALUE}.
+	 */
+	public void computeDistanceField(int x, int y, short[] distances) {
+		Arrays.fill(distances, 0, width * height, (short) -1);
+		spreadFrom(x, y, null, distances);
+	}
+
+	/**
+	 * Breadth-first search on bit sets : each step grows the whole frontier by one tile with shifts
+	 * and masks, 64 tiles per operation
+	 */
+	private void spreadFrom(int startX, int startY, int[] intDistances, short[] shortDistances) {
+		if (!isWalkable(startX, startY)) {
+			return;
+		}
+
+		long[] visited = new long[walkable.length];
+		long[] frontier = new long[walkable.length];
+		long[] nextFrontier = new long[walkable.length];
+		frontier[startY * wordsPerRow + (startX >>> 6)] = 1L << startX;
+		visited[startY * wordsPerRow + (startX >>> 6)] = 1L << startX;
+
+		// The rows having frontier tiles, and their range
+		boolean[] activeRows = new boolean[height];
+		boolean[] nextActiveRows = new boolean[height];
+		activeRows[startY] = true;
+		int minRow = startY;
+		int maxRow = startY;
+
+		for (int distance = 0; minRow <= maxRow; distance++) {
+			// Write the distances of the frontier
+			for (int y = minRow; y <= maxRow; y++) {
+				if (!activeRows[y]) {
+					continue;
+				}
+				for (int word = 0; word < wordsPerRow; word++) {
+					long bits = frontier[y * wordsPerRow + word];
+					while (bits != 0) {
+						int index = y * width + (word << 6) + Long.numberOfTrailingZeros(bits);
+						if (intDistances != null) {
+							intDistances[index] = distance;
+						} else {
+							shortDistances[index] = (short) Math.min(distance, Short.MAX_VALUE);
+						}
+						bits &= bits - 1;
+					}
+				}
+			}
+
+			// Grow the frontier, only around the active rows
+			int nextMinRow = Integer.MAX_VALUE;
+			int nextMaxRow = -1;
+			int fromRow = Math.max(minRow - 1, 0);
+			int toRow = Math.min(maxRow + 1, height - 1);
+			for (int y = fromRow; y <= toRow; y++) {
+				if (!activeRows[y] && (y == 0 || !activeRows[y - 1]) && (y == height - 1 || !activeRows[y + 1])) {
+					continue;
+				}
+				boolean rowUsed = false;
+				for (int word = 0; word < wordsPerRow; word++) {
+					int index = y * wordsPerRow + word;
+					long bits = frontier[index];
+					long grown = (bits << 1) | (bits >>> 1);
+					if (word > 0) {
+						grown |= frontier[index - 1] >>> 63;
+					}
+					if (word < wordsPerRow - 1) {
+						grown |= frontier[index + 1] << 63;
+					}
+					if (y > 0) {
+						grown |= frontier[index - wordsPerRow];
+					}
+					if (y < height - 1) {
+						grown |= frontier[index + wordsPerRow];
+					}
+					grown &= walkable[index] & ~visited[index];
+					nextFrontier[index] = grown;
+					visited[index] |= grown;
+					rowUsed |= grown != 0;
+				}
+				if (rowUsed) {
+					nextActiveRows[y] = true;
+					nextMinRow = Math.min(nextMinRow, y);
+					nextMaxRow = y;
+				}
+			}
+
+			// The old frontier is reused for the next step, it must be empty
+			for (int y = minRow; y <= maxRow; y++) {
+				if (activeRows[y]) {
+					Arrays.fill(frontier, y * wordsPerRow, (y + 1) * wordsPerRow, 0);
+					activeRows[y] = false;
+				}
+			}
+			long[] swap = frontier;
+			frontier = nextFrontier;
+			nextFrontier = swap;
+			boolean[] swapRows = activeRows;
+			activeRows = nextActiveRows;
+			nextActiveRows = swapRows;
+			minRow = nextMinRow;
+			maxRow = nextMaxRow;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.mursaat.dungeongenerator.graphs;
 
+import com.mursaat.dungeongenerator.Position;
 import com.mursaat.dungeongenerator.util.MathUtils;
 
 /**
@@ -9,8 +10,7 @@ import com.mursaat.dungeongenerator.util.MathUtils;
 public class Edge {
 	private Node[] nodes;
 
-	private double dist = -1;
-	private double dist2 = -1;
+	private long squaredLength = -1;
 
 	public Edge(Node firstNode, Node secondNode) {
 		nodes = new Node[2];
@@ -21,24 +21,20 @@ public class Edge {
 	/**
 	 * @return the Euclidian distance of the edge
 	 */
-	public Double getEulidianDist() {
-		if (dist == -1) {
-			dist = MathUtils.euclidianDist(nodes[0].getRoom().getPosition(), nodes[1].getRoom().getPosition());
-		}
-		return dist;
+	public double getEulidianDist() {
+		return Math.sqrt(getSquaredLength());
 	}
 
 	/**
-	 * Compute the squared distance of the edge. This is faster than the real distance ({@link
-	 * Edge#getEulidianDist()})
-	 *
-	 * @return the squared distance of the edge
+	 * @return the exact squared distance of the edge, to compare edges without rounding
 	 */
-	public Double getEulidianDist2() {
-		if (dist2 == -1) {
-			dist2 = MathUtils.euclidianDist2(nodes[0].getRoom().getPosition(), nodes[1].getRoom().getPosition());
+	public long getSquaredLength() {
+		if (squaredLength == -1) {
+			Position p1 = nodes[0].getRoom().getPosition();
+			Position p2 = nodes[1].getRoom().getPosition();
+			squaredLength = MathUtils.squaredDist(p1.x, p1.y, p2.x, p2.y);
 		}
-		return dist2;
+		return squaredLength;
 	}
 
 	/**
@@ -2,6 +2,8 @@ package com.mursaat.dungeongenerator.graphs;
 
 import com.mursaat.dungeongenerator.DungeonRoom;
 import com.mursaat.dungeongenerator.Position;
+import com.mursaat.dungeongenerator.util.IndexedList;
+import com.mursaat.dungeongenerator.util.MathUtils;
 
 import java.util.*;
 import java.util.List;
@@ -12,6 +14,10 @@ import java.util.stream.Collectors;
  * This class can be used to represent a graph using nodes and edges.
  */
 public class Graph {
+	/**
+	 * The edges and nodes, each held once after the construction, so they are removed without
+	 * reading the whole lists
+	 */
 	List<Edge> edges;
 	List<Node> nodes;
 
@@ -19,8 +25,8 @@ public class Graph {
 	Map<Node, List<Node>> neighbors;
 
 	public Graph() {
-		edges = new ArrayList<>();
-		nodes = new ArrayList<>();
+		edges = new IndexedList<>();
+		nodes = new IndexedList<>();
 		edgesByNodes = new HashMap<>();
 		neighbors = new HashMap<>();
 	}
@@ -79,7 +85,7 @@ public class Graph {
 
 		// Remove duplicates
 		triangulatedGraph.edges =
-				triangulatedGraph.edges.stream().distinct().collect(Collectors.toList());
+				new IndexedList<>(triangulatedGraph.edges.stream().distinct().collect(Collectors.toList()));
 
 		return triangulatedGraph;
 	}
@@ -151,6 +157,61 @@ public class Graph {
 		}
 	}
 
+	/**
+	 * Remove an edge from this graph, with all its copies in the lists of its nodes
+	 *
+	 * @param edge the edge removed
+	 * @return true if the edge was in the graph
+	 */
+	public boolean removeEdge(Edge edge) {
+		boolean removed = edges.remove(edge);
+
+		Node[] nodesInEdge = edge.getNodes();
+		for (int i = 0; i < 2; i++) {
+			Node node = nodesInEdge[i];
+			Node otherNode = nodesInEdge[(i + 1) % 2];
+			List<Edge> edgesForNode = edgesByNodes.get(node);
+			if (edgesForNode == null) {
+				continue;
+			}
+
+			// The nodes lists hold the copies of an edge, even if they are not in the edges list
+			List<Node> neighborsOfNode = neighbors.get(node);
+			for (Iterator<Edge> iterator = edgesForNode.iterator(); iterator.hasNext(); ) {
+				if (iterator.next().equals(edge)) {
+					iterator.remove();
+					neighborsOfNode.remove(node);
+					neighborsOfNode.remove(otherNode);
+					removed = true;
+				}
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Remove a node and all its edges from this graph
+	 *
+	 * @param node the node removed
+	 */
+	public void removeNode(Node node) {
+		for (Edge edge : getEdges(node)) {
+			removeEdge(edge);
+		}
+		nodes.remove(node);
+		edgesByNodes.remove(node);
+		neighbors.remove(node);
+	}
+
+	/**
+	 * @param node a node of this graph
+	 * @return a copy of the list of edges of the given node
+	 */
+	public List<Edge> getEdges(Node node) {
+		List<Edge> edgesOfNode = edgesByNodes.get(node);
+		return edgesOfNode == null ? new ArrayList<>() : new ArrayList<>(edgesOfNode);
+	}
+
 	/**
 	 * @param node the node for which we want the neighbors
 	 * @return The list of neighbors nodes of the given node
@@ -172,7 +233,7 @@ public class Graph {
 		Edge minEdge = edgesOfNode.get(0);
 		for (int i = 1; i < edgesOfNode.size(); i++) {
 			Edge currEdge = edgesOfNode.get(i);
-			if (currEdge.getEulidianDist2() < minEdge.getEulidianDist2()) {
+			if (currEdge.getSquaredLength() < minEdge.getSquaredLength()) {
 				minEdge = currEdge;
 			}
 		}
@@ -181,6 +242,10 @@ public class Graph {
 	}
 
 	/**
+	 * The next neighbor is the one seeing the edge under the widest angle, so no other neighbor on
+	 * this side is inside the circle through the edge and it. The angles are compared exactly, with
+	 * the in-circle predicate.
+	 *
 	 * @param side
 	 * @param edge
 	 * @return the next neighbor node, in left or right direction
@@ -189,36 +254,22 @@ public class Graph {
 		Position p1 = edge.getFirstNode().getRoom().getPosition();
 		Position p2 = edge.getSecondNode().getRoom().getPosition();
 
-		double cosMin = 2;
 		Node neighborMin = null;
+		Position posMin = null;
+		long orientationMin = 0;
 
 		for (Node neighbor : nodes) {
 			if (neighbor != edge.getFirstNode() && neighbor != edge.getSecondNode()) {
 				Position neighborPos = neighbor.getRoom().getPosition();
-				Position v1 = new Position(p2.x - p1.x, p2.y - p1.y);
-				Position v2 = new Position(neighborPos.x - p1.x, neighborPos.y - p1.y);
-				int det = v1.x * v2.y - v1.y * v2.x;
-
-				if (det < 0 && side == Side.RIGHT || det > 0 && side == Side.LEFT) {
-					double prodscal =
-							(double) (p1.x - neighborPos.x) * (double) (p2.x - neighborPos.x)
-									+ (double) (p1.y - neighborPos.y) * (double) (p2.y - neighborPos.y);
+				long orientation = MathUtils.orientation(p1.x, p1.y, p2.x, p2.y, neighborPos.x, neighborPos.y);
 
-					double longki2 =
-							Math.pow((double) (p1.x - neighborPos.x), 2)
-									+ Math.pow((double) (p1.y - neighborPos.y), 2);
-
-					double longkj2 =
-							Math.pow((double) (p2.x - neighborPos.x), 2)
-									+ Math.pow((double) (p2.y - neighborPos.y), 2);
-
-					double longki = Math.sqrt(longki2);
-					double longkj = Math.sqrt(longkj2);
-
-					double coskij = prodscal / (longki * longkj);
-					if (coskij < cosMin) {
-						cosMin = coskij;
+				if (orientation < 0 && side == Side.RIGHT || orientation > 0 && side == Side.LEFT) {
+					// A wider angle than the widest one so far is strictly inside its circle
+					if (neighborMin == null || MathUtils.inCircle(p1.x, p1.y, p2.x, p2.y,
+							posMin.x, posMin.y, neighborPos.x, neighborPos.y) == Long.signum(orientationMin)) {
 						neighborMin = neighbor;
+						posMin = neighborPos;
+						orientationMin = orientation;
 					}
 				}
 			}
@@ -232,11 +283,21 @@ public class Graph {
 	 * @return another graph, which is the minimum spanning tree of this graph
 	 */
 	public Graph getMinimumSpanningTree(float additionalEdge) {
+		return getMinimumSpanningTree(additionalEdge, ThreadLocalRandom.current());
+	}
+
+	/**
+	 * @param additionalEdge The percentage of random added edges, taken in all the remaining edges
+	 *                       which does not belong to the MST. (float between 0 [0%] and 1 [100%])
+	 * @param random         the source of randomness used to pick the additional edges
+	 * @return another graph, which is the minimum spanning tree of this graph
+	 */
+	public Graph getMinimumSpanningTree(float additionalEdge, Random random) {
 		Graph mstGraph = new Graph();
 		mstGraph.nodes = nodes;
 
 		// Sort edges by distance
-		Collections.sort(edges, (o1, o2) -> o1.getEulidianDist2().compareTo(o2.getEulidianDist2()));
+		edges.sort((o1, o2) -> Long.compare(o1.getSquaredLength(), o2.getSquaredLength()));
 
 		// Kruskal : Edges added in ascending cost order
 		for (Edge edge : edges) {
@@ -256,7 +317,7 @@ public class Graph {
 			int additionalEdgesCount = Math.round(remainingEdges.size() * additionalEdge);
 
 			for (int i = 0; i < additionalEdgesCount; i++) {
-				int additionalEdgeArrayId = ThreadLocalRandom.current().nextInt(remainingEdges.size());
+				int additionalEdgeArrayId = random.nextInt(remainingEdges.size());
 				mstGraph.addEdge(remainingEdges.get(additionalEdgeArrayId));
 				remainingEdges.remove(additionalEdgeArrayId);
 			}
@@ -0,0 +1,93 @@
+package com.mursaat.dungeongenerator.metrics;
+
+import com.mursaat.dungeongenerator.Dungeon;
+import com.mursaat.dungeongenerator.DungeonHallway;
+import com.mursaat.dungeongenerator.GenerationListener;
+import com.mursaat.dungeongenerator.GenerationPhase;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link GenerationListener} recording the generations in a {@link MetricsRegistry} : the
+ * duration of each phase and of the whole generation in nanoseconds, and the number of rooms, tiles
+ * and hallways without path of each dungeon. It can be shared by generators running on several
+ * threads.
+ * <p>
+ * The metrics are {@code dungeon_phase_nanoseconds{phase="..."}}, {@code
+ * dungeon_generation_nanoseconds}, {@code dungeon_rooms}, {@code dungeon_tiles}, {@code
+ * dungeon_failed_hallways} and the counters {@code dungeon_generations_total} and {@code
+ * dungeon_failed_hallways_total}.
+ */
+public class GenerationMetrics implements GenerationListener {
+
+	private final MetricsRegistry registry;
+	private final LogLinearHistogram[] phaseDurations;
+	private final LogLinearHistogram generationDurations;
+	private final LogLinearHistogram roomCounts;
+	private final LogLinearHistogram tileCounts;
+	private final LogLinearHistogram failedHallwayCounts;
+	private final LongAdder generations;
+	private final LongAdder failedHallways;
+
+	/**
+	 * The start of each phase of the generation in progress on each thread
+	 */
+	private final ThreadLocal<long[]> phaseStarts;
+
+	/**
+	 * @param registry the registry of the metrics, which are registered at once
+	 */
+	public GenerationMetrics(MetricsRegistry registry) {
+		this.registry = registry;
+		GenerationPhase[] phases = GenerationPhase.values();
+		phaseDurations = new LogLinearHistogram[phases.length];
+		for (GenerationPhase phase : phases) {
+			phaseDurations[phase.ordinal()] = registry.histogram(
+					"dungeon_phase_nanoseconds{phase=\"" + phase.name().toLowerCase(Locale.ROOT) + "\"}");
+		}
+		generationDurations = registry.histogram("dungeon_generation_nanoseconds");
+		roomCounts = registry.histogram("dungeon_rooms");
+		tileCounts = registry.histogram("dungeon_tiles");
+		failedHallwayCounts = registry.histogram("dungeon_failed_hallways");
+		generations = registry.counter("dungeon_generations_total");
+		failedHallways = registry.counter("dungeon_failed_hallways_total");
+		phaseStarts = ThreadLocal.withInitial(() -> new long[phases.length]);
+	}
+
+	/**
+	 * @return the registry of the metrics
+	 */
+	public MetricsRegistry getRegistry() {
+		return registry;
+	}
+
+	@Override
+	public void onPhaseStart(GenerationPhase phase) {
+		phaseStarts.get()[phase.ordinal()] = System.nanoTime();
+	}
+
+	@Override
+	public void onPhaseEnd(GenerationPhase phase) {
+		phaseDurations[phase.ordinal()].record(System.nanoTime() - phaseStarts.get()[phase.ordinal()]);
+	}
+
+	@Override
+	public void onDungeonGenerated(Dungeon dungeon) {
+		generationDurations.record(System.nanoTime() - phaseStarts.get()[GenerationPhase.ROOMS.ordinal()]);
+		roomCounts.record(dungeon.getRooms().size());
+		tileCounts.record((long) dungeon.getWidth() * dungeon.getHeight());
+
+		List<DungeonHallway> hallways = dungeon.getHallways();
+		int failed = 0;
+		for (int hallway = 0; hallway < hallways.size(); hallway++) {
+			if (hallways.get(hallway).getPath().isEmpty()) {
+				failed++;
+			}
+		}
+		failedHallwayCounts.record(failed);
+		failedHallways.add(failed);
+		generations.increment();
+	}
+}
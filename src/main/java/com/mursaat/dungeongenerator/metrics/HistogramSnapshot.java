@@ -0,0 +1,72 @@
+package com.mursaat.dungeongenerator.metrics;
+
+/**
+ * The values recorded by a {@link LogLinearHistogram} at a time. The percentiles are the greatest
+ * value of their bucket, so they are at most 1/16 above the exact ones.
+ */
+public final class HistogramSnapshot {
+
+	private final long[] counts;
+	private final long count;
+	private final long sum;
+	private final long max;
+
+	HistogramSnapshot(long[] counts, long sum, long max) {
+		this.counts = counts;
+		this.sum = sum;
+		this.max = max;
+		long total = 0;
+		for (long bucketCount : counts) {
+			total += bucketCount;
+		}
+		count = total;
+	}
+
+	/**
+	 * @return the number of recorded values
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the sum of the recorded values
+	 */
+	public long getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return the greatest recorded value, 0 if there is none
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the mean of the recorded values, 0 if there is none
+	 */
+	public double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * @param percentile the percentile, between 0 and 100
+	 * @return a value greater than or equal to this percentage of the recorded values, 0 if there is
+	 * none
+	 */
+	public long getPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("percentile must be between 0 and 100");
+		}
+		long rank = Math.max((long) Math.ceil(percentile / 100 * count), 1);
+		long seen = 0;
+		for (int bucket = 0; bucket < counts.length; bucket++) {
+			seen += counts[bucket];
+			if (seen >= rank) {
+				return Math.min(LogLinearHistogram.getBucketUpperBound(bucket), max);
+			}
+		}
+		return max;
+	}
+}
@@ -0,0 +1,88 @@
+package com.mursaat.dungeongenerator.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative values with fixed log-linear buckets : the values below 16 have their
+ * own bucket, then each power of two is cut in 16 buckets of the same width, so a bucket is at most
+ * 1/16 of its values wide.
+ * <p>
+ * Recording a value takes no lock and allocates nothing : the bucket is found from the leading
+ * zeros of the value, and each bucket is a {@link LongAdder}, so the threads recording at the same
+ * time write in different cells.
+ */
+public final class LogLinearHistogram {
+
+	/**
+	 * The number of buckets per power of two
+	 */
+	static final int SUB_BUCKET_BITS = 4;
+	static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * The number of buckets, up to Long.MAX_VALUE
+	 */
+	static final int BUCKET_COUNT = getBucketIndex(Long.MAX_VALUE) + 1;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	LogLinearHistogram() {
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			buckets[bucket] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @param value the value, a negative one is recorded as 0
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		buckets[getBucketIndex(value)].increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * @return the counts of the buckets, the sum and the max. The values recorded during the copy
+	 * may be missing.
+	 */
+	public HistogramSnapshot snapshot() {
+		long[] counts = new long[BUCKET_COUNT];
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			counts[bucket] = buckets[bucket].sum();
+		}
+		return new HistogramSnapshot(counts, sum.sum(), max.get());
+	}
+
+	/**
+	 * @param value a value, 0 or more
+	 * @return the bucket of the value
+	 */
+	static int getBucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * @param bucket a bucket
+	 * @return the greatest value of the bucket
+	 */
+	static long getBucketUpperBound(int bucket) {
+		if (bucket < SUB_BUCKET_COUNT) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+		int shift = exponent - SUB_BUCKET_BITS;
+		long lowerBound = (long) (SUB_BUCKET_COUNT + bucket % SUB_BUCKET_COUNT) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,141 @@
+package com.mursaat.dungeongenerator.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * The counters and the histograms of a process, by name. A metric is registered once, then recorded
+ * without lock nor allocation ; the values are read with {@link #snapshot()}, or written in the
+ * Prometheus text format with {@link #writePrometheus(Writer)}.
+ * <p>
+ * A name is a Prometheus metric name, with its labels if any : {@code
+ * dungeon_phase_nanoseconds{phase="separation"}}.
+ */
+public class MetricsRegistry {
+
+	/**
+	 * The percentiles written for each histogram
+	 */
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+	private static final Pattern NAME = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*(\\{[^{}]+})?");
+
+	private static final String COUNTER = "counter";
+	private static final String SUMMARY = "summary";
+
+	private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+	private final Map<String, LogLinearHistogram> histograms = new ConcurrentHashMap<>();
+
+	/**
+	 * The Prometheus type of each name without its labels : all the metrics with the same base name
+	 * are written under one # TYPE line, so they must have the same type
+	 */
+	private final Map<String, String> types = new ConcurrentHashMap<>();
+
+	/**
+	 * @param name the name of the counter
+	 * @return the counter, created on the first call
+	 */
+	public LongAdder counter(String name) {
+		LongAdder counter = counters.get(name);
+		if (counter == null) {
+			checkName(name, COUNTER);
+			counter = counters.computeIfAbsent(name, key -> new LongAdder());
+		}
+		return counter;
+	}
+
+	/**
+	 * @param name the name of the histogram
+	 * @return the histogram, created on the first call
+	 */
+	public LogLinearHistogram histogram(String name) {
+		LogLinearHistogram histogram = histograms.get(name);
+		if (histogram == null) {
+			checkName(name, SUMMARY);
+			histogram = histograms.computeIfAbsent(name, key -> new LogLinearHistogram());
+		}
+		return histogram;
+	}
+
+	/**
+	 * @return the current values of all the metrics
+	 */
+	public MetricsSnapshot snapshot() {
+		TreeMap<String, Long> counterValues = new TreeMap<>();
+		for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+			counterValues.put(counter.getKey(), counter.getValue().sum());
+		}
+		TreeMap<String, HistogramSnapshot> histogramValues = new TreeMap<>();
+		for (Map.Entry<String, LogLinearHistogram> histogram : histograms.entrySet()) {
+			histogramValues.put(histogram.getKey(), histogram.getValue().snapshot());
+		}
+		return new MetricsSnapshot(counterValues, histogramValues);
+	}
+
+	/**
+	 * Write the current values in the Prometheus text format (version 0.0.4). The counters are
+	 * counters, and the histograms are summaries with their 50th, 90th, 99th and 99.9th percentiles.
+	 *
+	 * @param writer the destination, which is not closed
+	 */
+	public void writePrometheus(Writer writer) throws IOException {
+		MetricsSnapshot snapshot = snapshot();
+		Set<String> typedNames = new HashSet<>();
+		for (Map.Entry<String, Long> counter : snapshot.getCounters().entrySet()) {
+			String name = getBaseName(counter.getKey());
+			if (typedNames.add(name)) {
+				writer.write("# TYPE " + name + " " + COUNTER + "\n");
+			}
+			writer.write(counter.getKey() + " " + counter.getValue() + "\n");
+		}
+		for (Map.Entry<String, HistogramSnapshot> histogram : snapshot.getHistograms().entrySet()) {
+			String name = getBaseName(histogram.getKey());
+			String labels = histogram.getKey().substring(name.length());
+			if (typedNames.add(name)) {
+				writer.write("# TYPE " + name + " " + SUMMARY + "\n");
+			}
+			HistogramSnapshot values = histogram.getValue();
+			String labelPrefix = labels.isEmpty() ? "{" : labels.substring(0, labels.length() - 1) + ",";
+			for (double quantile : QUANTILES) {
+				writer.write(name + labelPrefix + "quantile=\"" + quantile + "\"} "
+						+ values.getPercentile(quantile * 100) + "\n");
+			}
+			writer.write(name + "_sum" + labels + " " + values.getSum() + "\n");
+			writer.write(name + "_count" + labels + " " + values.getCount() + "\n");
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Check the name of a new metric, and register the type of its base name
+	 *
+	 * @param type the Prometheus type of the metric
+	 */
+	private void checkName(String name, String type) {
+		if (!NAME.matcher(name).matches()) {
+			throw new IllegalArgumentException("Invalid metric name " + name);
+		}
+		String baseName = getBaseName(name);
+		String registeredType = types.putIfAbsent(baseName, type);
+		if (registeredType != null && !registeredType.equals(type)) {
+			throw new IllegalArgumentException("The metric " + baseName + " is already registered as a "
+					+ registeredType);
+		}
+	}
+
+	/**
+	 * @return the name without its labels
+	 */
+	private static String getBaseName(String name) {
+		int labels = name.indexOf('{');
+		return labels < 0 ? name : name.substring(0, labels);
+	}
+}
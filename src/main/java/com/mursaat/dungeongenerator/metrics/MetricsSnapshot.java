@@ -0,0 +1,47 @@
+package com.mursaat.dungeongenerator.metrics;
+
+import java.util.Collections;
+import java.util.SortedMap;
+
+/**
+ * The values of the metrics of a {@link MetricsRegistry} at a time, by name
+ */
+public final class MetricsSnapshot {
+
+	private final SortedMap<String, Long> counters;
+	private final SortedMap<String, HistogramSnapshot> histograms;
+
+	MetricsSnapshot(SortedMap<String, Long> counters, SortedMap<String, HistogramSnapshot> histograms) {
+		this.counters = Collections.unmodifiableSortedMap(counters);
+		this.histograms = Collections.unmodifiableSortedMap(histograms);
+	}
+
+	/**
+	 * @return the counters, sorted by name
+	 */
+	public SortedMap<String, Long> getCounters() {
+		return counters;
+	}
+
+	/**
+	 * @return the histograms, sorted by name
+	 */
+	public SortedMap<String, HistogramSnapshot> getHistograms() {
+		return histograms;
+	}
+
+	/**
+	 * @return the value of the counter, 0 if it is not registered
+	 */
+	public long getCounter(String name) {
+		Long value = counters.get(name);
+		return value == null ? 0 : value;
+	}
+
+	/**
+	 * @return the histogram, or null if it is not registered
+	 */
+	public HistogramSnapshot getHistogram(String name) {
+		return histograms.get(name);
+	}
+}
@@ -0,0 +1,429 @@
+package com.mursaat.dungeongenerator.navigation;
+
+import com.mursaat.dungeongenerator.Dungeon;
+import com.mursaat.dungeongenerator.DungeonHallway;
+import com.mursaat.dungeongenerator.DungeonRoom;
+import com.mursaat.dungeongenerator.DungeonStructure;
+import com.mursaat.dungeongenerator.Position;
+import com.mursaat.dungeongenerator.RoomMask;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * A navigation graph over the rooms of a dungeon, for hierarchical path finding. Its nodes are the
+ * {@link Portal}s, where hallways enter rooms. Two portals are linked when they are in the same room
+ * (the cost is the walking distance inside the room, which stays in the mask of a shaped room), or
+ * when they follow each other along an hallway (the cost is the tile distance along the hallway).
+ * <p>
+ * A path is first searched between portals, then only the parts inside a room or an hallway have to
+ * be refined tile by tile.
+ */
+public class NavigationGraph {
+
+	private final Dungeon dungeon;
+
+	private final List<Portal> portals = new ArrayList<>();
+	private final Map<DungeonRoom, List<Portal>> portalsByRoom = new LinkedHashMap<>();
+
+	/**
+	 * The links between portals, in compressed rows : the links of the portal i are at the indexes
+	 * linkOffsets[i] to linkOffsets[i + 1] - 1 of linkTargets and linkCosts
+	 */
+	private int[] linkOffsets;
+	private int[] linkTargets;
+	private int[] linkCosts;
+
+	private NavigationGraph(Dungeon dungeon) {
+		this.dungeon = dungeon;
+	}
+
+	/**
+	 * @param dungeon a generated dungeon
+	 * @return the navigation graph of the dungeon
+	 */
+	public static NavigationGraph build(Dungeon dungeon) {
+		NavigationGraph graph = new NavigationGraph(dungeon);
+		List<int[]> links = new ArrayList<>();
+
+		for (DungeonHallway hallway : dungeon.getHallways()) {
+			graph.addHallway(hallway, links);
+		}
+
+		// Inside a room, every portal is linked to the others
+		for (Map.Entry<DungeonRoom, List<Portal>> entry : graph.portalsByRoom.entrySet()) {
+			DungeonRoom room = entry.getKey();
+			List<Portal> roomPortals = entry.getValue();
+			for (int i = 0; i < roomPortals.size(); i++) {
+				Portal p1 = roomPortals.get(i);
+				int[] distances = computeDistancesInRoom(room, p1.getPosition());
+				for (int j = i + 1; j < roomPortals.size(); j++) {
+					Portal p2 = roomPortals.get(j);
+					links.add(new int[]{p1.getId(), p2.getId(), distanceInRoom(room, distances, p1.getPosition(), p2.getPosition())});
+				}
+			}
+		}
+
+		graph.buildLinks(links);
+		return graph;
+	}
+
+	public Dungeon getDungeon() {
+		return dungeon;
+	}
+
+	public List<Portal> getPortals() {
+		return Collections.unmodifiableList(portals);
+	}
+
+	/**
+	 * @param room a room of the dungeon
+	 * @return the portals of the room (empty if no hallway reaches it)
+	 */
+	public List<Portal> getPortals(DungeonRoom room) {
+		List<Portal> roomPortals = portalsByRoom.get(room);
+		return roomPortals == null ? Collections.<Portal>emptyList() : Collections.unmodifiableList(roomPortals);
+	}
+
+	/**
+	 * @param portal a portal of this graph
+	 * @return the portals directly linked to the given one
+	 */
+	public List<Portal> getNeighbors(Portal portal) {
+		List<Portal> neighbors = new ArrayList<>();
+		for (int link = linkOffsets[portal.getId()]; link < linkOffsets[portal.getId() + 1]; link++) {
+			neighbors.add(portals.get(linkTargets[link]));
+		}
+		return neighbors;
+	}
+
+	/**
+	 * @return the cost of the direct link between two portals, or -1 if they are not linked
+	 */
+	public int getLinkCost(Portal p1, Portal p2) {
+		int cost = -1;
+		for (int link = linkOffsets[p1.getId()]; link < linkOffsets[p1.getId() + 1]; link++) {
+			if (linkTargets[link] == p2.getId() && (cost == -1 || linkCosts[link] < cost)) {
+				cost = linkCosts[link];
+			}
+		}
+		return cost;
+	}
+
+	/**
+	 * @param from the room where the path starts
+	 * @param to   the room where the path ends
+	 * @return the portals to go through, from a portal of the first room to a portal of the last one.
+	 * Empty if the rooms are the same, null if there is no path.
+	 */
+	public List<Portal> findPath(DungeonRoom from, DungeonRoom to) {
+		if (from.equals(to)) {
+			return new ArrayList<>();
+		}
+		return findPath(from, null, to, null);
+	}
+
+	/**
+	 * @param start a tile inside a room
+	 * @param goal  a tile inside a room
+	 * @return the portals to go through, or null if there is no path. Empty if both tiles are in
+	 * the same room.
+	 */
+	public List<Portal> findPath(Position start, Position goal) {
+		DungeonRoom from = getRoomAt(start);
+		DungeonRoom to = getRoomAt(goal);
+		if (from.equals(to)) {
+			return new ArrayList<>();
+		}
+		return findPath(from, start, to, goal);
+	}
+
+	private DungeonRoom getRoomAt(Position position) {
+		DungeonStructure structure = position.x < 0 || position.y < 0
+				|| position.x >= dungeon.getWidth() || position.y >= dungeon.getHeight()
+				? null : dungeon.getStructureAt(position.x, position.y);
+		if (!(structure instanceof DungeonRoom)) {
+			throw new IllegalArgumentException("The position " + position + " is not in a room");
+		}
+		return (DungeonRoom) structure;
+	}
+
+	/**
+	 * Dijkstra from all the portals of a room to any portal of another room
+	 *
+	 * @param start if not null, the tile where the path starts in the first room
+	 * @param goal  if not null, the tile where the path ends in the last room
+	 */
+	private List<Portal> findPath(DungeonRoom from, Position start, DungeonRoom to, Position goal) {
+		int[] costs = new int[portals.size()];
+		int[] previous = new int[portals.size()];
+		Arrays.fill(costs, Integer.MAX_VALUE);
+		Arrays.fill(previous, -1);
+
+		// Encode (cost, portal) in a long to keep the queue free of wrappers
+		PriorityQueue<Long> queue = new PriorityQueue<>();
+		int[] startDistances = start == null ? null : computeDistancesInRoom(from, start);
+		int[] goalDistances = goal == null ? null : computeDistancesInRoom(to, goal);
+		for (Portal portal : getPortals(from)) {
+			int cost = start == null ? 0 : distanceInRoom(from, startDistances, start, portal.getPosition());
+			costs[portal.getId()] = cost;
+			queue.add(((long) cost << 32) | portal.getId());
+		}
+
+		int bestCost = Integer.MAX_VALUE;
+		int bestPortal = -1;
+		while (!queue.isEmpty()) {
+			long entry = queue.poll();
+			int cost = (int) (entry >>> 32);
+			int portalId = (int) entry;
+			if (cost > costs[portalId]) {
+				continue;
+			}
+			if (cost >= bestCost) {
+				break;
+			}
+
+			Portal portal = portals.get(portalId);
+			if (portal.getRoom().equals(to)) {
+				int totalCost = goal == null ? cost : cost + distanceInRoom(to, goalDistances, goal, portal.getPosition());
+				if (totalCost < bestCost) {
+					bestCost = totalCost;
+					bestPortal = portalId;
+				}
+			}
+
+			for (int link = linkOffsets[portalId]; link < linkOffsets[portalId + 1]; link++) {
+				int target = linkTargets[link];
+				int newCost = cost + linkCosts[link];
+				if (newCost < costs[target]) {
+					costs[target] = newCost;
+					previous[target] = portalId;
+					queue.add(((long) newCost << 32) | target);
+				}
+			}
+		}
+
+		if (bestPortal == -1) {
+			return null;
+		}
+		LinkedList<Portal> path = new LinkedList<>();
+		for (int portalId = bestPortal; portalId != -1; portalId = previous[portalId]) {
+			path.addFirst(portals.get(portalId));
+		}
+		return new ArrayList<>(path);
+	}
+
+	/**
+	 * Add the portals of an hallway : one at each end, and one in each room it crosses
+	 */
+	private void addHallway(DungeonHallway hallway, List<int[]> links) {
+		List<Position> path = hallway.getPath();
+		if (path.isEmpty()) {
+			return;
+		}
+
+		Position start = path.get(0);
+		Position end = path.get(path.size() - 1);
+		DungeonRoom startRoom = hallway.getRoomFrom();
+		DungeonRoom endRoom = hallway.getRoomTo();
+		if (distanceToRoom(start, startRoom) > distanceToRoom(start, endRoom)) {
+			startRoom = hallway.getRoomTo();
+			endRoom = hallway.getRoomFrom();
+		}
+
+		// Each waypoint is a portal, its step along the hallway and its distance to the hallway center
+		Position startPosition = clampInRoom(start, startRoom);
+		Portal lastPortal = addPortal(startRoom, hallway, startPosition);
+		int lastStep = 0;
+		int lastLateral = distance(startPosition, start);
+
+		int halfWidth = (dungeon.getHallwaysWidth() - 1) / 2;
+		List<DungeonRoom> crossedRooms = new ArrayList<>();
+		int step = 0;
+		for (int posId = 1; posId < path.size(); posId++) {
+			Position from = path.get(posId - 1);
+			Position to = path.get(posId);
+			int dx = Integer.signum(to.x - from.x);
+			int dy = Integer.signum(to.y - from.y);
+			int length = Math.abs(to.x - from.x) + Math.abs(to.y - from.y);
+			for (int tile = posId == 1 ? 0 : 1; tile <= length; tile++) {
+				int x = from.x + dx * tile;
+				int y = from.y + dy * tile;
+
+				// Look across the hallway, nearest tiles first
+				for (int lateral = 0; lateral <= halfWidth; lateral++) {
+					for (int sign = 1; sign >= (lateral == 0 ? 1 : -1); sign -= 2) {
+						int tileX = dx == 0 ? x + sign * lateral : x;
+						int tileY = dx == 0 ? y : y + sign * lateral;
+						DungeonRoom room = getRoomAt(tileX, tileY);
+						if (room != null && !room.equals(startRoom) && !room.equals(endRoom)
+								&& !crossedRooms.contains(room)) {
+							crossedRooms.add(room);
+							Portal portal = addPortal(room, hallway, new Position(tileX, tileY));
+							links.add(new int[]{lastPortal.getId(), portal.getId(), step - lastStep + lastLateral + lateral});
+							lastPortal = portal;
+							lastStep = step;
+							lastLateral = lateral;
+						}
+					}
+				}
+				step++;
+			}
+		}
+
+		Position endPosition = clampInRoom(end, endRoom);
+		Portal endPortal = addPortal(endRoom, hallway, endPosition);
+		links.add(new int[]{lastPortal.getId(), endPortal.getId(),
+				Math.max(step - 1, 0) - lastStep + lastLateral + distance(endPosition, end)});
+	}
+
+	private DungeonRoom getRoomAt(int x, int y) {
+		if (x < 0 || y < 0 || x >= dungeon.getWidth() || y >= dungeon.getHeight()) {
+			return null;
+		}
+		DungeonStructure structure = dungeon.getStructureAt(x, y);
+		return structure instanceof DungeonRoom ? (DungeonRoom) structure : null;
+	}
+
+	private Portal addPortal(DungeonRoom room, DungeonHallway hallway, Position position) {
+		Portal portal = new Portal(portals.size(), room, hallway, position);
+		portals.add(portal);
+		List<Portal> roomPortals = portalsByRoom.get(room);
+		if (roomPortals == null) {
+			roomPortals = new ArrayList<>();
+			portalsByRoom.put(room, roomPortals);
+		}
+		roomPortals.add(portal);
+		return portal;
+	}
+
+	private void buildLinks(List<int[]> links) {
+		linkOffsets = new int[portals.size() + 1];
+		for (int[] link : links) {
+			linkOffsets[link[0] + 1]++;
+			linkOffsets[link[1] + 1]++;
+		}
+		for (int portalId = 0; portalId < portals.size(); portalId++) {
+			linkOffsets[portalId + 1] += linkOffsets[portalId];
+		}
+
+		linkTargets = new int[links.size() * 2];
+		linkCosts = new int[links.size() * 2];
+		int[] nextLink = Arrays.copyOf(linkOffsets, portals.size());
+		for (int[] link : links) {
+			linkTargets[nextLink[link[0]]] = link[1];
+			linkCosts[nextLink[link[0]]++] = link[2];
+			linkTargets[nextLink[link[1]]] = link[0];
+			linkCosts[nextLink[link[1]]++] = link[2];
+		}
+	}
+
+	/**
+	 * @return the tile of the room nearest to the position : in its rectangle, or in its mask for a
+	 * shaped room
+	 */
+	private static Position clampInRoom(Position position, DungeonRoom room) {
+		if (room.getMask() == null) {
+			return new Position(
+					Math.max(room.getX(), Math.min(position.x, room.getX() + room.getWidth() - 1)),
+					Math.max(room.getY(), Math.min(position.y, room.getY() + room.getHeight() - 1)));
+		}
+
+		// The nearest tile of each run of the mask, as {x, y, distance}
+		int[] nearest = {room.getX(), room.getY(), Integer.MAX_VALUE};
+		room.forEachRectangle((minX, minY, maxX, maxY) -> {
+			int x = Math.max(minX, Math.min(position.x, maxX));
+			int y = Math.max(minY, Math.min(position.y, maxY));
+			int tileDistance = Math.abs(position.x - x) + Math.abs(position.y - y);
+			if (tileDistance < nearest[2]) {
+				nearest[0] = x;
+				nearest[1] = y;
+				nearest[2] = tileDistance;
+			}
+		});
+		return new Position(nearest[0], nearest[1]);
+	}
+
+	/**
+	 * Breadth first search in the mask of a shaped room, which can have to walk around its walls
+	 *
+	 * @param room a room
+	 * @param from a tile of the room
+	 * @return the walking distance from the tile to each tile of the room, at index
+	 * (y - room.getY()) * room.getWidth() + x - room.getX(), -1 for the tiles out of the mask. Null
+	 * for a rectangle room, where the walking distance is the Manhattan distance.
+	 */
+	private static int[] computeDistancesInRoom(DungeonRoom room, Position from) {
+		RoomMask mask = room.getMask();
+		if (mask == null) {
+			return null;
+		}
+
+		int width = room.getWidth();
+		int height = room.getHeight();
+		int[] distances = new int[width * height];
+		Arrays.fill(distances, -1);
+		int startX = from.x - room.getX();
+		int startY = from.y - room.getY();
+		if (startX < 0 || startY < 0 || startX >= width || startY >= height || !mask.contains(startX, startY)) {
+			return distances;
+		}
+
+		int[] queue = new int[distances.length];
+		int head = 0;
+		int tail = 0;
+		distances[startY * width + startX] = 0;
+		queue[tail++] = startY * width + startX;
+		while (head < tail) {
+			int tile = queue[head++];
+			int x = tile % width;
+			int y = tile / width;
+			for (int direction = 0; direction < 4; direction++) {
+				int neighborX = x + (direction == 0 ? -1 : direction == 1 ? 1 : 0);
+				int neighborY = y + (direction == 2 ? -1 : direction == 3 ? 1 : 0);
+				if (neighborX >= 0 && neighborY >= 0 && neighborX < width && neighborY < height
+						&& distances[neighborY * width + neighborX] == -1 && mask.contains(neighborX, neighborY)) {
+					distances[neighborY * width + neighborX] = distances[tile] + 1;
+					queue[tail++] = neighborY * width + neighborX;
+				}
+			}
+		}
+		return distances;
+	}
+
+	/**
+	 * @param distances the distances from the first position, given by
+	 *                  {@link #computeDistancesInRoom(DungeonRoom, Position)}
+	 * @return the walking distance between two tiles of the room. The Manhattan distance if the
+	 * second tile can't be reached in the mask.
+	 */
+	private static int distanceInRoom(DungeonRoom room, int[] distances, Position from, Position to) {
+		if (distances != null) {
+			int x = to.x - room.getX();
+			int y = to.y - room.getY();
+			if (x >= 0 && y >= 0 && x < room.getWidth() && y < room.getHeight()
+					&& distances[y * room.getWidth() + x] >= 0) {
+				return distances[y * room.getWidth() + x];
+			}
+		}
+		return distance(from, to);
+	}
+
+	private static int distanceToRoom(Position position, DungeonRoom room) {
+		return distance(position, clampInRoom(position, room));
+	}
+
+	/**
+	 * @return the Manhattan distance between two positions, which is the walking distance inside a
+	 * rectangle room
+	 */
+	private static int distance(Position p1, Position p2) {
+		return Math.abs(p1.x - p2.x) + Math.abs(p1.y - p2.y);
+	}
+}
@@ -0,0 +1,52 @@
+package com.mursaat.dungeongenerator.navigation;
+
+import com.mursaat.dungeongenerator.DungeonHallway;
+import com.mursaat.dungeongenerator.DungeonRoom;
+import com.mursaat.dungeongenerator.Position;
+
+/**
+ * A doorway between a room and an hallway, in a {@link NavigationGraph}
+ */
+public class Portal {
+
+	/**
+	 * The index of the portal in its graph
+	 */
+	private final int id;
+
+	private final DungeonRoom room;
+	private final DungeonHallway hallway;
+
+	/**
+	 * The tile of the room where the hallway enters
+	 */
+	private final Position position;
+
+	Portal(int id, DungeonRoom room, DungeonHallway hallway, Position position) {
+		this.id = id;
+		this.room = room;
+		this.hallway = hallway;
+		this.position = position;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public DungeonRoom getRoom() {
+		return room;
+	}
+
+	public DungeonHallway getHallway() {
+		return hallway;
+	}
+
+	public Position getPosition() {
+		return new Position(position.x, position.y);
+	}
+
+	@Override
+	public String toString() {
+		return "Portal{" + "room=" + room.getId() + ", position=" + position + '}';
+	}
+}
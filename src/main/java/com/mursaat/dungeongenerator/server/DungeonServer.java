@@ -0,0 +1,413 @@
+package com.mursaat.dungeongenerator.server;
+
+import com.mursaat.dungeongenerator.Dungeon;
+import com.mursaat.dungeongenerator.DungeonGenerator;
+import com.mursaat.dungeongenerator.DungeonHallway;
+import com.mursaat.dungeongenerator.DungeonParams;
+import com.mursaat.dungeongenerator.DungeonRoom;
+import com.mursaat.dungeongenerator.DungeonStructure;
+import com.mursaat.dungeongenerator.DungeonWireCodec;
+import com.mursaat.dungeongenerator.RoomParams;
+import com.mursaat.dungeongenerator.metrics.GenerationMetrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small HTTP server generating dungeons, bound to the loopback address only.
+ * <p>
+ * {@code GET /dungeon?seed=42&minRoomCount=30&format=text} answers a generated dungeon. Each
+ * request is handled on its own virtual thread when the JVM has them, and the generations run on a
+ * bounded pool of workers. When the queue of this pool is full, the request is rejected at once
+ * with a 503. Identical requests with a seed share the same generation.
+ * <p>
+ * Params : seed, minRoomCount, maxRoomCount, maxRadius, minSpaceBetweenRooms, hallwaysWidth,
+ * minRoomWidth, maxRoomWidth, minRoomHeight, maxRoomHeight, and format ({@code text}, or {@code
+ * binary} for the encoding of {@link DungeonWireCodec}).
+ * <p>
+ * With {@link #setMetrics(GenerationMetrics)}, the generations are recorded and {@code GET
+ * /metrics} answers the metrics in the Prometheus text format.
+ */
+public class DungeonServer {
+
+	/**
+	 * The bounds of the numeric params, to keep a request from taking the whole machine
+	 */
+	private static final int MAX_ROOM_COUNT = 2000;
+	private static final int MAX_SIZE = 512;
+
+	private final int port;
+	private int workerCount = Runtime.getRuntime().availableProcessors();
+	private int queueCapacity = 64;
+	private GenerationMetrics metrics;
+
+	private HttpServer httpServer;
+	private ExecutorService requestExecutor;
+	private ThreadPoolExecutor workers;
+
+	/**
+	 * The generations in progress, by request
+	 */
+	private final Map<GenerationKey, CompletableFuture<Dungeon>> inProgress = new ConcurrentHashMap<>();
+
+	/**
+	 * @param port the port, 0 for any free port
+	 */
+	public DungeonServer(int port) {
+		this.port = port;
+	}
+
+	/**
+	 * @param workerCount the number of threads generating the dungeons
+	 * @return this server
+	 */
+	public DungeonServer setWorkerCount(int workerCount) {
+		if (workerCount < 1) {
+			throw new IllegalArgumentException("workerCount must be at least 1");
+		}
+		this.workerCount = workerCount;
+		return this;
+	}
+
+	/**
+	 * @param queueCapacity the number of generations waiting for a worker before the new ones are
+	 *                      rejected
+	 * @return this server
+	 */
+	public DungeonServer setQueueCapacity(int queueCapacity) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("queueCapacity must be at least 1");
+		}
+		this.queueCapacity = queueCapacity;
+		return this;
+	}
+
+	/**
+	 * @param metrics the metrics of the generations, answered on {@code /metrics}. Null (the
+	 *                default) to record nothing.
+	 * @return this server
+	 */
+	public DungeonServer setMetrics(GenerationMetrics metrics) {
+		this.metrics = metrics;
+		return this;
+	}
+
+	/**
+	 * Start listening on the loopback address
+	 *
+	 * @return this server
+	 * @throws IOException if the port can't be bound
+	 */
+	public synchronized DungeonServer start() throws IOException {
+		if (httpServer != null) {
+			throw new IllegalStateException("The server is already started");
+		}
+
+		AtomicInteger workerId = new AtomicInteger();
+		workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+			Thread thread = new Thread(runnable, "dungeon-server-worker-" + workerId.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+		requestExecutor = newRequestExecutor();
+
+		httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		httpServer.setExecutor(requestExecutor);
+		httpServer.createContext("/dungeon", this::handle);
+		if (metrics != null) {
+			httpServer.createContext("/metrics", exchange -> MetricsServer.handle(metrics.getRegistry(), exchange));
+		}
+		httpServer.start();
+		return this;
+	}
+
+	/**
+	 * Stop the server, and the generations in progress
+	 */
+	public synchronized void stop() {
+		if (httpServer == null) {
+			return;
+		}
+		httpServer.stop(0);
+		workers.shutdownNow();
+		requestExecutor.shutdown();
+		httpServer = null;
+	}
+
+	/**
+	 * @return the port the server listens to
+	 */
+	public synchronized int getPort() {
+		if (httpServer == null) {
+			throw new IllegalStateException("The server is not started");
+		}
+		return httpServer.getAddress().getPort();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				sendError(exchange, 405, "Only GET is supported");
+				return;
+			}
+
+			Map<String, String> query;
+			GenerationKey key;
+			try {
+				query = parseQuery(exchange.getRequestURI().getRawQuery());
+				key = new GenerationKey(query);
+			} catch (IllegalArgumentException e) {
+				sendError(exchange, 400, e.getMessage());
+				return;
+			}
+			String format = query.getOrDefault("format", "text");
+			if (!format.equals("text") && !format.equals("binary")) {
+				sendError(exchange, 400, "Unknown format " + format);
+				return;
+			}
+
+			Dungeon dungeon;
+			try {
+				dungeon = generate(key).join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RejectedExecutionException) {
+					exchange.getResponseHeaders().set("Retry-After", "1");
+					sendError(exchange, 503, "Too many generations in progress");
+				} else {
+					sendError(exchange, 500, "Unable to generate the dungeon");
+				}
+				return;
+			}
+
+			if (format.equals("text")) {
+				exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+				exchange.sendResponseHeaders(200, 0);
+				writeText(dungeon, exchange.getResponseBody());
+			} else {
+				exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+				writeBinary(dungeon, exchange);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Start a generation, or join the same one if it is in progress. The generation is rejected at
+	 * once if the queue of the workers is full.
+	 */
+	private CompletableFuture<Dungeon> generate(GenerationKey key) {
+		CompletableFuture<Dungeon> newGeneration = new CompletableFuture<>();
+		CompletableFuture<Dungeon> generation = key.seeded ? inProgress.putIfAbsent(key, newGeneration) : null;
+		if (generation != null) {
+			return generation;
+		}
+
+		try {
+			workers.execute(() -> {
+				try {
+					DungeonGenerator generator = key.createGenerator();
+					if (metrics != null) {
+						generator.setListener(metrics);
+					}
+					newGeneration.complete(generator.generateDungeon(key.seed));
+				} catch (Throwable e) {
+					// An error must not leave the requests waiting for this generation forever
+					newGeneration.completeExceptionally(e);
+				} finally {
+					inProgress.remove(key, newGeneration);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			inProgress.remove(key, newGeneration);
+			newGeneration.completeExceptionally(e);
+		}
+		return newGeneration;
+	}
+
+	/**
+	 * The tiles, one line per row : X for a room, O for an hallway, a space for a wall
+	 */
+	private static void writeText(Dungeon dungeon, OutputStream output) throws IOException {
+		try (Writer writer = new OutputStreamWriter(new BufferedOutputStream(output), StandardCharsets.UTF_8)) {
+			char[] row = new char[dungeon.getWidth() + 1];
+			row[row.length - 1] = '\n';
+			for (int y = 0; y < dungeon.getHeight(); y++) {
+				for (int x = 0; x < dungeon.getWidth(); x++) {
+					DungeonStructure structure = dungeon.getStructureAt(x, y);
+					row[x] = structure instanceof DungeonRoom ? 'X' : structure instanceof DungeonHallway ? 'O' : ' ';
+				}
+				writer.write(row);
+			}
+		}
+	}
+
+	/**
+	 * The rooms and the hallways, encoded by {@link DungeonWireCodec}
+	 */
+	private static void writeBinary(Dungeon dungeon, HttpExchange exchange) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(DungeonWireCodec.getMaxEncodedSize(dungeon, false));
+		DungeonWireCodec.encode(dungeon, buffer, false);
+		exchange.sendResponseHeaders(200, buffer.position());
+		exchange.getResponseBody().write(buffer.array(), 0, buffer.position());
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		exchange.getResponseBody().write(body);
+	}
+
+	private static Map<String, String> parseQuery(String rawQuery) {
+		Map<String, String> query = new TreeMap<>();
+		if (rawQuery == null || rawQuery.isEmpty()) {
+			return query;
+		}
+		for (String param : rawQuery.split("&")) {
+			int separator = param.indexOf('=');
+			String name = separator < 0 ? param : param.substring(0, separator);
+			String value = separator < 0 ? "" : param.substring(separator + 1);
+			try {
+				query.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+			} catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return query;
+	}
+
+	/**
+	 * Run each request on a virtual thread when the JVM has them (Java 21+), else on a cached pool
+	 */
+	private static ExecutorService newRequestExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			AtomicInteger threadId = new AtomicInteger();
+			return Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "dungeon-server-request-" + threadId.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * The seed and the params of a generation. Two requests with the same key give the same dungeon.
+	 */
+	private static final class GenerationKey {
+		private final long seed;
+		private final boolean seeded;
+		private final int[] params;
+
+		GenerationKey(Map<String, String> query) {
+			seeded = query.containsKey("seed");
+			seed = seeded ? parseLong(query, "seed") : ThreadLocalRandom.current().nextLong();
+			DungeonParams dungeonParams = new DungeonParams();
+			RoomParams roomParams = new RoomParams();
+			params = new int[]{
+					parseInt(query, "minRoomCount", dungeonParams.getMinRoomCount(), 1, MAX_ROOM_COUNT),
+					parseInt(query, "maxRoomCount", dungeonParams.getMaxRoomCount(), 1, MAX_ROOM_COUNT),
+					parseInt(query, "maxRadius", dungeonParams.getMaxRadius(), dungeonParams.getMinRadius(), MAX_SIZE),
+					parseInt(query, "minSpaceBetweenRooms", dungeonParams.getMinSpaceBetweenRooms(), 0, MAX_SIZE),
+					parseInt(query, "hallwaysWidth", dungeonParams.getHallwaysWidth(), 1, MAX_SIZE),
+					parseInt(query, "minRoomWidth", roomParams.getMinWidth(), 1, MAX_SIZE),
+					parseInt(query, "maxRoomWidth", roomParams.getMaxWidth(), 1, MAX_SIZE),
+					parseInt(query, "minRoomHeight", roomParams.getMinHeight(), 1, MAX_SIZE),
+					parseInt(query, "maxRoomHeight", roomParams.getMaxHeight(), 1, MAX_SIZE)
+			};
+			if (params[0] > params[1] || params[5] > params[6] || params[7] > params[8]) {
+				throw new IllegalArgumentException("A minimum is greater than its maximum");
+			}
+			if (params[4] % 2 == 0) {
+				throw new IllegalArgumentException("hallwaysWidth must be odd");
+			}
+		}
+
+		DungeonGenerator createGenerator() {
+			DungeonParams dungeonParams = new DungeonParams()
+					.setMinRoomCount(1)
+					.setMaxRoomCount(params[1])
+					.setMinRoomCount(params[0])
+					.setMaxRadius(params[2])
+					.setMinSpaceBetweenRooms(params[3])
+					.setHallwaysWidth(params[4]);
+			RoomParams roomParams = new RoomParams()
+					.setMinWidth(params[5])
+					.setMaxWidth(params[6])
+					.setMinHeight(params[7])
+					.setMaxHeight(params[8]);
+			return new DungeonGenerator(dungeonParams, roomParams);
+		}
+
+		private static long parseLong(Map<String, String> query, String name) {
+			try {
+				return Long.parseLong(query.get(name));
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException(name + " must be a number");
+			}
+		}
+
+		private static int parseInt(Map<String, String> query, String name, int defaultValue, int min, int max) {
+			if (!query.containsKey(name)) {
+				return defaultValue;
+			}
+			long value = parseLong(query, name);
+			if (value < min || value > max) {
+				throw new IllegalArgumentException(name + " must be between " + min + " and " + max);
+			}
+			return (int) value;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+
+			GenerationKey key = (GenerationKey) o;
+
+			return seed == key.seed && seeded == key.seeded && Arrays.equals(params, key.params);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Long.hashCode(seed) + Arrays.hashCode(params);
+		}
+	}
+
+	/**
+	 * Run a server on the given port (8080 by default), until the JVM is stopped
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		DungeonServer server = new DungeonServer(port).start();
+		System.out.println("Generating dungeons on http://localhost:" + server.getPort() + "/dungeon");
+	}
+}
@@ -0,0 +1,94 @@
+package com.mursaat.dungeongenerator.server;
+
+import com.mursaat.dungeongenerator.metrics.MetricsRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A small HTTP server answering the metrics of a {@link MetricsRegistry} in the Prometheus text
+ * format on {@code GET /metrics}, bound to the loopback address only. The scrapes are answered one
+ * at a time on the thread of the server.
+ */
+public class MetricsServer {
+
+	/**
+	 * The content type of the Prometheus text format
+	 */
+	static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private final MetricsRegistry registry;
+	private final int port;
+	private HttpServer httpServer;
+
+	/**
+	 * @param registry the metrics to answer
+	 * @param port     the port, 0 for any free port
+	 */
+	public MetricsServer(MetricsRegistry registry, int port) {
+		this.registry = registry;
+		this.port = port;
+	}
+
+	/**
+	 * Start listening on the loopback address
+	 *
+	 * @return this server
+	 * @throws IOException if the port can't be bound
+	 */
+	public synchronized MetricsServer start() throws IOException {
+		if (httpServer != null) {
+			throw new IllegalStateException("The server is already started");
+		}
+		httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		httpServer.createContext("/metrics", exchange -> handle(registry, exchange));
+		httpServer.start();
+		return this;
+	}
+
+	/**
+	 * Stop the server
+	 */
+	public synchronized void stop() {
+		if (httpServer == null) {
+			return;
+		}
+		httpServer.stop(0);
+		httpServer = null;
+	}
+
+	/**
+	 * @return the port the server listens to
+	 */
+	public synchronized int getPort() {
+		if (httpServer == null) {
+			throw new IllegalStateException("The server is not started");
+		}
+		return httpServer.getAddress().getPort();
+	}
+
+	/**
+	 * Answer the metrics of the registry
+	 */
+	static void handle(MetricsRegistry registry, HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, 0);
+			try (Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+				registry.writePrometheus(writer);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+}
@@ -0,0 +1,380 @@
+package com.mursaat.dungeongenerator.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A list whose elements can be found and removed without reading the whole list, for the lists of a
+ * dungeon which are edited after their generation.
+ * <p>
+ * The elements are kept in slots. Removing an element only empties its slot, and the slots are
+ * compacted once they are mostly empty, which keeps the order of the elements. The slot of each
+ * element is found in a hash map built on the first search, so a list which is never searched
+ * costs the same as an {@link java.util.ArrayList}. While some slots are empty, the position of an
+ * element is found with a Fenwick tree of the filled slots.
+ * <p>
+ * The elements must be distinct (for {@link Object#equals(Object)}) and not null. Like an
+ * {@link java.util.ArrayList}, the list is not thread safe, but its reads don't modify it.
+ *
+ * @param <T> the type of the elements
+ */
+public class IndexedList<T> extends AbstractList<T> implements RandomAccess {
+
+	/**
+	 * The number of empty slots always accepted before a compaction
+	 */
+	private static final int MIN_EMPTY_SLOTS = 16;
+
+	private Object[] slots;
+	private int slotCount;
+	private int size;
+
+	/**
+	 * The slot of each element, built on the first search
+	 */
+	private Map<Object, Integer> slotsByElement;
+
+	/**
+	 * The Fenwick tree of the filled slots, by slot index plus one, built on the first removal
+	 * after a compaction
+	 */
+	private int[] filledSlots;
+
+	public IndexedList() {
+		slots = new Object[10];
+	}
+
+	public IndexedList(Collection<? extends T> elements) {
+		slots = elements.toArray();
+		if (slots.getClass() != Object[].class) {
+			slots = Arrays.copyOf(slots, slots.length, Object[].class);
+		}
+		for (Object element : slots) {
+			Objects.requireNonNull(element);
+		}
+		slotCount = slots.length;
+		size = slots.length;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		return (T) slots[getSlot(index)];
+	}
+
+	@Override
+	public boolean add(T element) {
+		Objects.requireNonNull(element);
+		if (slotCount == slots.length) {
+			grow();
+		}
+		if (slotsByElement != null) {
+			slotsByElement.put(element, slotCount);
+		}
+		if (filledSlots != null) {
+			updateFilledSlots(slotCount, 1);
+		}
+		slots[slotCount++] = element;
+		size++;
+		modCount++;
+		return true;
+	}
+
+	/**
+	 * Insert an element, moving the next ones. Adding at the end is as fast as {@link #add(Object)}.
+	 */
+	@Override
+	public void add(int index, T element) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		if (index == size) {
+			add(element);
+			return;
+		}
+		Objects.requireNonNull(element);
+		compact();
+		if (slotCount == slots.length) {
+			grow();
+		}
+		System.arraycopy(slots, index, slots, index + 1, slotCount - index);
+		slots[index] = element;
+		slotCount++;
+		size++;
+		modCount++;
+		if (slotsByElement != null) {
+			indexSlots(index);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T set(int index, T element) {
+		Objects.requireNonNull(element);
+		int slot = getSlot(index);
+		T oldElement = (T) slots[slot];
+		slots[slot] = element;
+		if (slotsByElement != null) {
+			slotsByElement.remove(oldElement);
+			slotsByElement.put(element, slot);
+		}
+		return oldElement;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T remove(int index) {
+		int slot = getSlot(index);
+		T element = (T) slots[slot];
+		if (slotsByElement != null) {
+			slotsByElement.remove(element);
+		}
+		emptySlot(slot);
+		compactIfSparse();
+		return element;
+	}
+
+	@Override
+	public boolean remove(Object element) {
+		Integer slot = getSlotsByElement().remove(element);
+		if (slot == null) {
+			return false;
+		}
+		emptySlot(slot);
+		compactIfSparse();
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object element) {
+		return getSlotsByElement().containsKey(element);
+	}
+
+	@Override
+	public int indexOf(Object element) {
+		Integer slot = getSlotsByElement().get(element);
+		if (slot == null) {
+			return -1;
+		}
+		return filledSlots == null ? slot : countFilledSlots(slot);
+	}
+
+	@Override
+	public int lastIndexOf(Object element) {
+		return indexOf(element);
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(slots, 0, slotCount, null);
+		slotCount = 0;
+		size = 0;
+		slotsByElement = null;
+		filledSlots = null;
+		modCount++;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void sort(Comparator<? super T> comparator) {
+		compact();
+		Arrays.sort((T[]) slots, 0, size, comparator);
+		if (slotsByElement != null) {
+			indexSlots(0);
+		}
+		modCount++;
+	}
+
+	/**
+	 * Iterate on the filled slots, without searching the slot of each index
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private int nextSlot = skipEmptySlots(0);
+			private int lastSlot = -1;
+			private int expectedModCount = modCount;
+
+			@Override
+			public boolean hasNext() {
+				return nextSlot < slotCount;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public T next() {
+				if (modCount != expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (nextSlot >= slotCount) {
+					throw new NoSuchElementException();
+				}
+				lastSlot = nextSlot;
+				nextSlot = skipEmptySlots(nextSlot + 1);
+				return (T) slots[lastSlot];
+			}
+
+			/**
+			 * Empty the slot without compaction, which would move the next elements
+			 */
+			@Override
+			public void remove() {
+				if (lastSlot < 0) {
+					throw new IllegalStateException();
+				}
+				if (modCount != expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (slotsByElement != null) {
+					slotsByElement.remove(slots[lastSlot]);
+				}
+				emptySlot(lastSlot);
+				lastSlot = -1;
+				expectedModCount = modCount;
+			}
+		};
+	}
+
+	private int skipEmptySlots(int slot) {
+		while (slot < slotCount && slots[slot] == null) {
+			slot++;
+		}
+		return slot;
+	}
+
+	private int getSlot(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return filledSlots == null ? index : findFilledSlot(index);
+	}
+
+	private Map<Object, Integer> getSlotsByElement() {
+		if (slotsByElement == null) {
+			slotsByElement = new HashMap<>(Math.max(2 * size, 16));
+			indexSlots(0);
+		}
+		return slotsByElement;
+	}
+
+	private void indexSlots(int fromSlot) {
+		for (int slot = fromSlot; slot < slotCount; slot++) {
+			if (slots[slot] != null) {
+				slotsByElement.put(slots[slot], slot);
+			}
+		}
+	}
+
+	private void emptySlot(int slot) {
+		if (filledSlots == null) {
+			buildFilledSlots();
+		}
+		slots[slot] = null;
+		updateFilledSlots(slot, -1);
+		size--;
+		modCount++;
+	}
+
+	private void grow() {
+		slots = Arrays.copyOf(slots, Math.max(slots.length + (slots.length >> 1), 10));
+		if (filledSlots != null) {
+			buildFilledSlots();
+		}
+	}
+
+	private void compactIfSparse() {
+		if (slotCount - size > Math.max(size, MIN_EMPTY_SLOTS)) {
+			compact();
+		}
+	}
+
+	/**
+	 * Move the elements to the first slots, in order
+	 */
+	private void compact() {
+		if (filledSlots == null) {
+			return;
+		}
+		int filled = 0;
+		for (int slot = 0; slot < slotCount; slot++) {
+			Object element = slots[slot];
+			if (element != null) {
+				if (slot != filled) {
+					slots[filled] = element;
+					if (slotsByElement != null) {
+						slotsByElement.put(element, filled);
+					}
+				}
+				filled++;
+			}
+		}
+		Arrays.fill(slots, filled, slotCount, null);
+		slotCount = filled;
+		filledSlots = null;
+	}
+
+	/**
+	 * Build the Fenwick tree in linear time, each node adding its count to its parent
+	 */
+	private void buildFilledSlots() {
+		filledSlots = new int[slots.length + 1];
+		for (int slot = 0; slot < slotCount; slot++) {
+			if (slots[slot] != null) {
+				filledSlots[slot + 1]++;
+			}
+		}
+		for (int node = 1; node < filledSlots.length; node++) {
+			int parent = node + (node & -node);
+			if (parent < filledSlots.length) {
+				filledSlots[parent] += filledSlots[node];
+			}
+		}
+	}
+
+	private void updateFilledSlots(int slot, int delta) {
+		for (int node = slot + 1; node < filledSlots.length; node += node & -node) {
+			filledSlots[node] += delta;
+		}
+	}
+
+	/**
+	 * @return the number of filled slots before the given one
+	 */
+	private int countFilledSlots(int slot) {
+		int count = 0;
+		for (int node = slot; node > 0; node -= node & -node) {
+			count += filledSlots[node];
+		}
+		return count;
+	}
+
+	/**
+	 * Descend the Fenwick tree to the slot which holds the element at the given index
+	 */
+	private int findFilledSlot(int index) {
+		int node = 0;
+		int remaining = index;
+		for (int step = Integer.highestOneBit(filledSlots.length - 1); step > 0; step >>= 1) {
+			int next = node + step;
+			if (next < filledSlots.length && filledSlots[next] <= remaining) {
+				node = next;
+				remaining -= filledSlots[next];
+			}
+		}
+		return node;
+	}
+}
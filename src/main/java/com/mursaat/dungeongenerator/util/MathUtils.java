@@ -2,6 +2,8 @@ package com.mursaat.dungeongenerator.util;
 
 import com.mursaat.dungeongenerator.Position;
 
+import java.math.BigInteger;
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -9,13 +11,38 @@ import java.util.concurrent.ThreadLocalRandom;
  */
 public class MathUtils {
 
+	/**
+	 * The coordinate differences below which the in-circle determinant fits in a long
+	 */
+	private static final long EXACT_LONG_IN_CIRCLE_DIFF = 1L << 14;
+
+	/**
+	 * The coordinate differences below which a double holds them exactly
+	 */
+	private static final long EXACT_DOUBLE_DIFF = 1L << 53;
+
+	/**
+	 * The relative error bound of the in-circle determinant computed with doubles (iccerrboundA of
+	 * Shewchuk, with the machine epsilon 2^-53)
+	 */
+	private static final double IN_CIRCLE_ERROR_BOUND = (10.0 + 96.0 * 0x1p-53) * 0x1p-53;
+
 	/**
 	 * @param radius the radius of the circle
 	 * @return a random position, in a circle of given radius
 	 */
 	public static Position getRandomPositionInCircle(int radius) {
-		double t = 2 * Math.PI * ThreadLocalRandom.current().nextDouble();
-		double u = Math.random() + Math.random();
+		return getRandomPositionInCircle(radius, ThreadLocalRandom.current());
+	}
+
+	/**
+	 * @param radius the radius of the circle
+	 * @param random the source of randomness
+	 * @return a random position, in a circle of given radius
+	 */
+	public static Position getRandomPositionInCircle(int radius, Random random) {
+		double t = 2 * Math.PI * random.nextDouble();
+		double u = random.nextDouble() + random.nextDouble();
 		double r = (u > 1) ? (2 - u) : u;
 
 		int x = (int) (radius * r * Math.cos(t));
@@ -31,7 +58,7 @@ public class MathUtils {
 	 * @return the distance between the two positions
 	 */
 	public static double euclidianDist(Position p1, Position p2) {
-		return Math.sqrt(Math.pow(p2.x - p1.x, 2) + Math.pow(p2.y - p1.y, 2));
+		return Math.sqrt(squaredDist(p1.x, p1.y, p2.x, p2.y));
 	}
 
 	/**
@@ -43,6 +70,106 @@ public class MathUtils {
 	 * @return the squared distance between the two positions
 	 */
 	public static double euclidianDist2(Position p1, Position p2) {
-		return Math.pow(p2.x - p1.x, 2) + Math.pow(p2.y - p1.y, 2);
+		return squaredDist(p1.x, p1.y, p2.x, p2.y);
+	}
+
+	/**
+	 * Compute the exact squared distance between two points
+	 *
+	 * @return the squared distance between (x1, y1) and (x2, y2)
+	 */
+	public static long squaredDist(long x1, long y1, long x2, long y2) {
+		long dx = x2 - x1;
+		long dy = y2 - y1;
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Compute the exact orientation of three points.
+	 *
+	 * @return a positive number if a, b, c turn counterclockwise (with the y axis going up), a
+	 * negative number if they turn clockwise, 0 if they are aligned
+	 */
+	public static long orientation(long ax, long ay, long bx, long by, long cx, long cy) {
+		return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+	}
+
+	/**
+	 * Compute the exact sign of the in-circle determinant of four points, whose coordinate
+	 * differences fit in a long. Close points are computed exactly with longs; far points are
+	 * computed with doubles, and again with {@link BigInteger} when the rounding error could change
+	 * the sign.
+	 *
+	 * @return the sign of {@link #orientation} of a, b, c if d is strictly inside the circle through
+	 * a, b, c, the other sign if d is strictly outside, 0 if d is on the circle
+	 */
+	public static int inCircle(long ax, long ay, long bx, long by, long cx, long cy, long dx, long dy) {
+		long adx = ax - dx;
+		long ady = ay - dy;
+		long bdx = bx - dx;
+		long bdy = by - dy;
+		long cdx = cx - dx;
+		long cdy = cy - dy;
+		long maxDiff = Math.max(Math.max(Math.max(Math.abs(adx), Math.abs(ady)), Math.max(Math.abs(bdx), Math.abs(bdy))),
+				Math.max(Math.abs(cdx), Math.abs(cdy)));
+		if (maxDiff < EXACT_LONG_IN_CIRCLE_DIFF) {
+			return Long.signum((adx * adx + ady * ady) * (bdx * cdy - cdx * bdy)
+					- (bdx * bdx + bdy * bdy) * (adx * cdy - cdx * ady)
+					+ (cdx * cdx + cdy * cdy) * (adx * bdy - bdx * ady));
+		}
+		if (maxDiff < EXACT_DOUBLE_DIFF) {
+			int sign = inCircleFiltered(adx, ady, bdx, bdy, cdx, cdy);
+			if (sign != 0) {
+				return sign;
+			}
+		}
+		return inCircleExact(adx, ady, bdx, bdy, cdx, cdy);
+	}
+
+	/**
+	 * The in-circle determinant with doubles, whose sign is right when it is farther from 0 than the
+	 * error bound of Shewchuk's adaptive predicates
+	 *
+	 * @return the sign of the determinant, or 0 if it is within the error bound
+	 */
+	private static int inCircleFiltered(double adx, double ady, double bdx, double bdy, double cdx, double cdy) {
+		double bdxcdy = bdx * cdy;
+		double cdxbdy = cdx * bdy;
+		double cdxady = cdx * ady;
+		double adxcdy = adx * cdy;
+		double adxbdy = adx * bdy;
+		double bdxady = bdx * ady;
+		double alift = adx * adx + ady * ady;
+		double blift = bdx * bdx + bdy * bdy;
+		double clift = cdx * cdx + cdy * cdy;
+
+		double det = alift * (bdxcdy - cdxbdy) + blift * (cdxady - adxcdy) + clift * (adxbdy - bdxady);
+		double permanent = (Math.abs(bdxcdy) + Math.abs(cdxbdy)) * alift
+				+ (Math.abs(cdxady) + Math.abs(adxcdy)) * blift
+				+ (Math.abs(adxbdy) + Math.abs(bdxady)) * clift;
+		double errorBound = IN_CIRCLE_ERROR_BOUND * permanent;
+		if (det > errorBound) {
+			return 1;
+		}
+		if (-det > errorBound) {
+			return -1;
+		}
+		return 0;
+	}
+
+	private static int inCircleExact(long adx, long ady, long bdx, long bdy, long cdx, long cdy) {
+		BigInteger bigAdx = BigInteger.valueOf(adx);
+		BigInteger bigAdy = BigInteger.valueOf(ady);
+		BigInteger bigBdx = BigInteger.valueOf(bdx);
+		BigInteger bigBdy = BigInteger.valueOf(bdy);
+		BigInteger bigCdx = BigInteger.valueOf(cdx);
+		BigInteger bigCdy = BigInteger.valueOf(cdy);
+		BigInteger alift = bigAdx.multiply(bigAdx).add(bigAdy.multiply(bigAdy));
+		BigInteger blift = bigBdx.multiply(bigBdx).add(bigBdy.multiply(bigBdy));
+		BigInteger clift = bigCdx.multiply(bigCdx).add(bigCdy.multiply(bigCdy));
+		return alift.multiply(bigBdx.multiply(bigCdy).subtract(bigCdx.multiply(bigBdy)))
+				.subtract(blift.multiply(bigAdx.multiply(bigCdy).subtract(bigCdx.multiply(bigAdy))))
+				.add(clift.multiply(bigAdx.multiply(bigBdy).subtract(bigBdx.multiply(bigAdy))))
+				.signum();
 	}
 }
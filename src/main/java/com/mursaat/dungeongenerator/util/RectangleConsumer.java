@@ -0,0 +1,8 @@
+package com.mursaat.dungeongenerator.util;
+
+/**
+ * Receive a rectangle, given by its bounds (included)
+ */
+public interface RectangleConsumer {
+	void accept(int minX, int minY, int maxX, int maxY);
+}
@@ -0,0 +1,222 @@
+package com.mursaat.dungeongenerator.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A spatial index of rectangles, on a bounded area. The area is divided in square cells, and each
+ * cell knows the rectangles touching it. Rectangles keep their insertion order, which is also their
+ * id.
+ *
+ * @param <T> the type of the values attached to the rectangles
+ */
+public class RectangleIndex<T> {
+
+	private final int width;
+	private final int height;
+	private final int cellSize;
+	private final int cellColumns;
+
+	/**
+	 * The ids of the rectangles touching each cell, in insertion order
+	 */
+	private final int[][] cellEntries;
+	private final int[] cellSizes;
+
+	/**
+	 * The bounds (included) of the rectangles, by id
+	 */
+	private int[] bounds = new int[4 * 16];
+	private final List<T> values = new ArrayList<>();
+
+	/**
+	 * @param width    the width of the indexed area
+	 * @param height   the height of the indexed area
+	 * @param cellSize the width and height of a cell
+	 */
+	public RectangleIndex(int width, int height, int cellSize) {
+		this.width = width;
+		this.height = height;
+		this.cellSize = cellSize;
+		this.cellColumns = Math.max(1, (width + cellSize - 1) / cellSize);
+		int cellRows = Math.max(1, (height + cellSize - 1) / cellSize);
+		this.cellEntries = new int[cellColumns * cellRows][];
+		this.cellSizes = new int[cellColumns * cellRows];
+	}
+
+	/**
+	 * Add a rectangle (bounds included). The parts outside of the indexed area are ignored.
+	 *
+	 * @return the id of the rectangle
+	 */
+	public int add(int minX, int minY, int maxX, int maxY, T value) {
+		int id = values.size();
+		values.add(value);
+		if (bounds.length < 4 * (id + 1)) {
+			bounds = Arrays.copyOf(bounds, bounds.length * 2);
+		}
+		bounds[4 * id] = minX;
+		bounds[4 * id + 1] = minY;
+		bounds[4 * id + 2] = maxX;
+		bounds[4 * id + 3] = maxY;
+		if (maxX < 0 || maxY < 0 || minX >= width || minY >= height || minX > maxX || minY > maxY) {
+			return id;
+		}
+
+		int minCellX = Math.max(minX, 0) / cellSize;
+		int minCellY = Math.max(minY, 0) / cellSize;
+		int maxCellX = Math.min(maxX, width - 1) / cellSize;
+		int maxCellY = Math.min(maxY, height - 1) / cellSize;
+		for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+			for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+				int cell = cellY * cellColumns + cellX;
+				int[] entries = cellEntries[cell];
+				if (entries == null) {
+					entries = new int[4];
+					cellEntries[cell] = entries;
+				} else if (entries.length == cellSizes[cell]) {
+					entries = Arrays.copyOf(entries, entries.length * 2);
+					cellEntries[cell] = entries;
+				}
+				entries[cellSizes[cell]++] = id;
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Remove a rectangle. Its id is not given again, and its value becomes null.
+	 */
+	public void remove(int id) {
+		values.set(id, null);
+		int minX = bounds[4 * id];
+		int minY = bounds[4 * id + 1];
+		int maxX = bounds[4 * id + 2];
+		int maxY = bounds[4 * id + 3];
+		if (maxX < 0 || maxY < 0 || minX >= width || minY >= height || minX > maxX || minY > maxY) {
+			return;
+		}
+
+		int minCellX = Math.max(minX, 0) / cellSize;
+		int minCellY = Math.max(minY, 0) / cellSize;
+		int maxCellX = Math.min(maxX, width - 1) / cellSize;
+		int maxCellY = Math.min(maxY, height - 1) / cellSize;
+		for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+			for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+				int cell = cellY * cellColumns + cellX;
+				int[] entries = cellEntries[cell];
+				// The ids of a cell are sorted, and stay sorted
+				int index = Arrays.binarySearch(entries, 0, cellSizes[cell], id);
+				if (index >= 0) {
+					System.arraycopy(entries, index + 1, entries, index, cellSizes[cell] - index - 1);
+					cellSizes[cell]--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of rectangles, removed ones included
+	 */
+	public int size() {
+		return values.size();
+	}
+
+	public T getValue(int id) {
+		return values.get(id);
+	}
+
+	public int getMinX(int id) {
+		return bounds[4 * id];
+	}
+
+	public int getMinY(int id) {
+		return bounds[4 * id + 1];
+	}
+
+	public int getMaxX(int id) {
+		return bounds[4 * id + 2];
+	}
+
+	public int getMaxY(int id) {
+		return bounds[4 * id + 3];
+	}
+
+	/**
+	 * @return true if the rectangle with the given id contains the position
+	 */
+	public boolean contains(int id, int x, int y) {
+		return x >= bounds[4 * id] && x <= bounds[4 * id + 2] && y >= bounds[4 * id + 1] && y <= bounds[4 * id + 3];
+	}
+
+	/**
+	 * @return true if the rectangle with the given id intersects the given rectangle (bounds included)
+	 */
+	public boolean intersects(int id, int minX, int minY, int maxX, int maxY) {
+		return minX <= bounds[4 * id + 2] && maxX >= bounds[4 * id] && minY <= bounds[4 * id + 3] && maxY >= bounds[4 * id + 1];
+	}
+
+	/**
+	 * @return the cell containing the given position. Use it with {@link #getCellSize(int)} and
+	 * {@link #getCellEntry(int, int)} to iterate the rectangles which may contain the position.
+	 */
+	public int getCell(int x, int y) {
+		return (y / cellSize) * cellColumns + x / cellSize;
+	}
+
+	/**
+	 * @return the number of rectangles touching the given cell
+	 */
+	public int getCellSize(int cell) {
+		return cellSizes[cell];
+	}
+
+	/**
+	 * @return the id of a rectangle touching the given cell. Ids are sorted in insertion order.
+	 */
+	public int getCellEntry(int cell, int index) {
+		return cellEntries[cell][index];
+	}
+
+	/**
+	 * @return the ids of the rectangles intersecting the given rectangle (bounds included), in
+	 * insertion order
+	 */
+	public int[] findIntersecting(int minX, int minY, int maxX, int maxY) {
+		if (maxX < 0 || maxY < 0 || minX >= width || minY >= height) {
+			return new int[0];
+		}
+		int minCellX = Math.max(minX, 0) / cellSize;
+		int minCellY = Math.max(minY, 0) / cellSize;
+		int maxCellX = Math.min(maxX, width - 1) / cellSize;
+		int maxCellY = Math.min(maxY, height - 1) / cellSize;
+
+		int[] found = new int[8];
+		int foundCount = 0;
+		for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+			for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+				int cell = cellY * cellColumns + cellX;
+				for (int index = 0; index < cellSizes[cell]; index++) {
+					int id = cellEntries[cell][index];
+					if (intersects(id, minX, minY, maxX, maxY)) {
+						if (foundCount == found.length) {
+							found = Arrays.copyOf(found, found.length * 2);
+						}
+						found[foundCount++] = id;
+					}
+				}
+			}
+		}
+
+		// A rectangle may be found in several cells
+		Arrays.sort(found, 0, foundCount);
+		int uniqueCount = 0;
+		for (int index = 0; index < foundCount; index++) {
+			if (uniqueCount == 0 || found[uniqueCount - 1] != found[index]) {
+				found[uniqueCount++] = found[index];
+			}
+		}
+		return Arrays.copyOf(found, uniqueCount);
+	}
+}
@@ -0,0 +1,202 @@
+package com.mursaat.dungeongenerator.world;
+
+import com.mursaat.dungeongenerator.Direction;
+import com.mursaat.dungeongenerator.Dungeon;
+import com.mursaat.dungeongenerator.DungeonGenerator;
+import com.mursaat.dungeongenerator.DungeonParams;
+import com.mursaat.dungeongenerator.DungeonStructure;
+import com.mursaat.dungeongenerator.RoomParams;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * An unbounded world made of square chunks. Each chunk contains a dungeon generated from the world
+ * seed and the chunk position, so a chunk is always the same, whenever it is built. Chunks are built
+ * on first access, and the least recently used ones are evicted when too many are loaded.
+ * <p>
+ * Each border between two chunks has a gate, computed from the world seed and the border position.
+ * Both chunks carve a hallway from this gate to their nearest room, so the hallways meet on the
+ * border.
+ */
+public class ChunkedWorld {
+
+	/**
+	 * The number of dungeons tried for a chunk before giving up
+	 */
+	private static final int MAX_ATTEMPTS_PER_CHUNK = 16;
+
+	private final long worldSeed;
+
+	/**
+	 * The width and height of a chunk, in tiles
+	 */
+	private final int chunkSize;
+
+	private final DungeonParams dungeonParams;
+	private final DungeonGenerator generator;
+
+	/**
+	 * The maximum number of chunks kept in memory
+	 */
+	private final int maxLoadedChunks;
+
+	/**
+	 * The loaded chunks, by packed position, in access order
+	 */
+	private final LinkedHashMap<Long, WorldChunk> loadedChunks;
+
+	/**
+	 * @param worldSeed       the seed of the world
+	 * @param chunkSize       the width and height of a chunk, in tiles. Must be bigger than the dungeons
+	 *                        generated with the given params
+	 * @param dungeonParams   the params of the dungeon of each chunk
+	 * @param roomParams      the params of the rooms of each chunk
+	 * @param maxLoadedChunks the maximum number of chunks kept in memory
+	 */
+	public ChunkedWorld(long worldSeed, int chunkSize, DungeonParams dungeonParams, RoomParams roomParams,
+						final int maxLoadedChunks) {
+		if (chunkSize <= 2 * dungeonParams.getHallwaysWidth()) {
+			throw new IllegalArgumentException("chunkSize is too small for the hallways width");
+		}
+		if (maxLoadedChunks < 1) {
+			throw new IllegalArgumentException("maxLoadedChunks must be at least 1");
+		}
+		this.worldSeed = worldSeed;
+		this.chunkSize = chunkSize;
+		this.dungeonParams = dungeonParams;
+		this.generator = new DungeonGenerator(dungeonParams, roomParams);
+		this.maxLoadedChunks = maxLoadedChunks;
+		this.loadedChunks = new LinkedHashMap<Long, WorldChunk>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, WorldChunk> eldest) {
+				return size() > maxLoadedChunks;
+			}
+		};
+	}
+
+	/**
+	 * Get a chunk, building it if it is not loaded
+	 *
+	 * @param chunkX the x position of the chunk, in chunks
+	 * @param chunkY the y position of the chunk, in chunks
+	 * @return the chunk
+	 */
+	public WorldChunk getChunk(int chunkX, int chunkY) {
+		Long key = ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+		synchronized (loadedChunks) {
+			WorldChunk chunk = loadedChunks.get(key);
+			if (chunk != null) {
+				return chunk;
+			}
+		}
+
+		// Build outside the lock: another thread may build the same chunk, but it will be identical
+		WorldChunk builtChunk = buildChunk(chunkX, chunkY);
+		synchronized (loadedChunks) {
+			WorldChunk chunk = loadedChunks.get(key);
+			if (chunk == null) {
+				chunk = builtChunk;
+				loadedChunks.put(key, chunk);
+			}
+			return chunk;
+		}
+	}
+
+	/**
+	 * @param x the x position in the world
+	 * @param y the y position in the world
+	 * @return the room or hallway at this position, or null for a wall
+	 */
+	public DungeonStructure getStructureAt(long x, long y) {
+		WorldChunk chunk = getChunk((int) Math.floorDiv(x, chunkSize), (int) Math.floorDiv(y, chunkSize));
+		return chunk.getStructureAt(Math.floorMod(x, chunkSize), Math.floorMod(y, chunkSize));
+	}
+
+	/**
+	 * Remove a chunk from memory. It will be built again on next access.
+	 *
+	 * @param chunkX the x position of the chunk, in chunks
+	 * @param chunkY the y position of the chunk, in chunks
+	 */
+	public void evictChunk(int chunkX, int chunkY) {
+		synchronized (loadedChunks) {
+			loadedChunks.remove(((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL));
+		}
+	}
+
+	/**
+	 * @return the number of chunks currently in memory
+	 */
+	public int getLoadedChunkCount() {
+		synchronized (loadedChunks) {
+			return loadedChunks.size();
+		}
+	}
+
+	public long getWorldSeed() {
+		return worldSeed;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public int getMaxLoadedChunks() {
+		return maxLoadedChunks;
+	}
+
+	private WorldChunk buildChunk(int chunkX, int chunkY) {
+		long chunkSeed = mix(worldSeed, 0, chunkX, chunkY);
+		int margin = dungeonParams.getHallwaysWidth();
+		int availableSize = chunkSize - 2 * margin;
+
+		for (int attempt = 0; attempt < MAX_ATTEMPTS_PER_CHUNK; attempt++) {
+			Random random = new Random(mix(chunkSeed, attempt + 1, chunkX, chunkY));
+			Dungeon dungeon = generator.generateDungeon(random);
+			if (dungeon.getWidth() > availableSize || dungeon.getHeight() > availableSize) {
+				continue;
+			}
+
+			int dungeonX = margin + random.nextInt(availableSize - dungeon.getWidth() + 1);
+			int dungeonY = margin + random.nextInt(availableSize - dungeon.getHeight() + 1);
+			WorldChunk chunk = new WorldChunk(chunkX, chunkY, chunkSize, dungeon, dungeonX, dungeonY);
+
+			int hallwaysWidth = dungeonParams.getHallwaysWidth();
+			chunk.carveBorderHallway(Direction.LEFT, getGate(1, chunkX, chunkY), hallwaysWidth);
+			chunk.carveBorderHallway(Direction.RIGHT, getGate(1, chunkX + 1, chunkY), hallwaysWidth);
+			chunk.carveBorderHallway(Direction.TOP, getGate(2, chunkX, chunkY), hallwaysWidth);
+			chunk.carveBorderHallway(Direction.BOTTOM, getGate(2, chunkX, chunkY + 1), hallwaysWidth);
+			return chunk;
+		}
+		throw new IllegalStateException("Unable to fit a dungeon in the chunk (" + chunkX + ", " + chunkY
+				+ "), chunkSize is too small for the dungeon params");
+	}
+
+	/**
+	 * The gate of a border only depends on the border, so the two chunks sharing it find the same one
+	 *
+	 * @param borderType 1 for the left border of the given chunk, 2 for its top border
+	 * @param chunkX     the x position of the chunk, in chunks
+	 * @param chunkY     the y position of the chunk, in chunks
+	 * @return the position of the gate along the border
+	 */
+	private int getGate(int borderType, int chunkX, int chunkY) {
+		int halfWidth = (dungeonParams.getHallwaysWidth() - 1) / 2;
+		Random random = new Random(mix(worldSeed, borderType, chunkX, chunkY));
+		return halfWidth + random.nextInt(chunkSize - 2 * halfWidth);
+	}
+
+	/**
+	 * Mix a seed with some values (SplitMix64 finalizer)
+	 */
+	private static long mix(long seed, int salt, int x, int y) {
+		long z = seed + 0x9E3779B97F4A7C15L * (salt + 1);
+		z ^= x * 0xC2B2AE3D27D4EB4FL;
+		z ^= y * 0x165667B19E3779F9L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,213 @@
+package com.mursaat.dungeongenerator.world;
+
+import com.mursaat.dungeongenerator.Direction;
+import com.mursaat.dungeongenerator.Dungeon;
+import com.mursaat.dungeongenerator.DungeonHallway;
+import com.mursaat.dungeongenerator.DungeonRoom;
+import com.mursaat.dungeongenerator.DungeonStructure;
+import com.mursaat.dungeongenerator.Position;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A square region of a {@link ChunkedWorld}. It contains one dungeon, and a hallway from each of its
+ * four borders to the nearest room of the dungeon.
+ */
+public class WorldChunk {
+
+	/**
+	 * The position of the chunk, in chunks
+	 */
+	private final int chunkX;
+	private final int chunkY;
+
+	/**
+	 * The width and height of the chunk, in tiles
+	 */
+	private final int size;
+
+	/**
+	 * The dungeon of this chunk, the only copy of its tiles. Its positions are relative to {@link
+	 * #dungeonX} and {@link #dungeonY}
+	 */
+	private final Dungeon dungeon;
+
+	/**
+	 * The position of the dungeon in the chunk
+	 */
+	private final int dungeonX;
+	private final int dungeonY;
+
+	/**
+	 * The hallways linking the borders of the chunk to the dungeon. Their paths are relative to the
+	 * chunk
+	 */
+	private final List<DungeonHallway> borderHallways;
+
+	/**
+	 * The width of the border hallways
+	 */
+	private int borderHallwaysWidth = 1;
+
+	WorldChunk(int chunkX, int chunkY, int size, Dungeon dungeon, int dungeonX, int dungeonY) {
+		this.chunkX = chunkX;
+		this.chunkY = chunkY;
+		this.size = size;
+		this.dungeon = dungeon;
+		this.dungeonX = dungeonX;
+		this.dungeonY = dungeonY;
+		this.borderHallways = new ArrayList<>(4);
+	}
+
+	/**
+	 * Carve a hallway from a gate of a border to the nearest room of the dungeon
+	 *
+	 * @param border        the border of the gate
+	 * @param gate          the position of the gate along the border
+	 * @param hallwaysWidth the width of the hallway
+	 */
+	void carveBorderHallway(Direction border, int gate, int hallwaysWidth) {
+		Position gatePosition;
+		switch (border) {
+			case LEFT:
+				gatePosition = new Position(0, gate);
+				break;
+			case RIGHT:
+				gatePosition = new Position(size - 1, gate);
+				break;
+			case TOP:
+				gatePosition = new Position(gate, 0);
+				break;
+			default:
+				gatePosition = new Position(gate, size - 1);
+				break;
+		}
+
+		// Find the nearest room
+		DungeonRoom nearestRoom = null;
+		Position nearestCenter = null;
+		long nearestDist = Long.MAX_VALUE;
+		for (DungeonRoom room : dungeon.getRooms()) {
+			Position center = room.getCenterPosition();
+			center.x += dungeonX;
+			center.y += dungeonY;
+			long dist = Math.abs((long) center.x - gatePosition.x) + Math.abs((long) center.y - gatePosition.y);
+			if (dist < nearestDist) {
+				nearestDist = dist;
+				nearestRoom = room;
+				nearestCenter = center;
+			}
+		}
+		if (nearestRoom == null) {
+			return;
+		}
+
+		// Leave the border perpendicularly, then turn to the center of the room
+		DungeonHallway hallway = new DungeonHallway(nearestRoom, null);
+		hallway.addPosition(gatePosition);
+		if (border == Direction.LEFT || border == Direction.RIGHT) {
+			hallway.addPosition(new Position(nearestCenter.x, gatePosition.y));
+		} else {
+			hallway.addPosition(new Position(gatePosition.x, nearestCenter.y));
+		}
+		hallway.addPosition(nearestCenter);
+		borderHallways.add(hallway);
+		borderHallwaysWidth = hallwaysWidth;
+	}
+
+	/**
+	 * @return true if one of the segments of the hallway, as wide as the border hallways, covers the
+	 * position (relative to the chunk)
+	 */
+	private boolean isOnHallway(DungeonHallway hallway, int x, int y) {
+		int halfWidth = (borderHallwaysWidth - 1) / 2;
+		List<Position> path = hallway.getPath();
+		for (int posId = 1; posId < path.size(); posId++) {
+			Position lastPosition = path.get(posId - 1);
+			Position currPosition = path.get(posId);
+			if (lastPosition.x != currPosition.x
+					&& x >= Math.min(lastPosition.x, currPosition.x) && x <= Math.max(lastPosition.x, currPosition.x)
+					&& y >= currPosition.y - halfWidth && y <= currPosition.y + halfWidth) {
+				return true;
+			}
+			if (lastPosition.y != currPosition.y
+					&& y >= Math.min(lastPosition.y, currPosition.y) && y <= Math.max(lastPosition.y, currPosition.y)
+					&& x >= currPosition.x - halfWidth && x <= currPosition.x + halfWidth) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int getChunkX() {
+		return chunkX;
+	}
+
+	public int getChunkY() {
+		return chunkY;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public Dungeon getDungeon() {
+		return dungeon;
+	}
+
+	public int getDungeonX() {
+		return dungeonX;
+	}
+
+	public int getDungeonY() {
+		return dungeonY;
+	}
+
+	public List<DungeonHallway> getBorderHallways() {
+		return Collections.unmodifiableList(borderHallways);
+	}
+
+	/**
+	 * @return the tiles of the chunk, a copy built on each call. Each cell refers to a room, an
+	 * hallway or null=wall
+	 */
+	public DungeonStructure[][] getTiles() {
+		DungeonStructure[][] tiles = new DungeonStructure[size][size];
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				tiles[y][x] = getStructureAt(x, y);
+			}
+		}
+		return tiles;
+	}
+
+	/**
+	 * The tiles of the dungeon come first, then the border hallways in the order they were carved.
+	 *
+	 * @param x the x position, relative to the chunk
+	 * @param y the y position, relative to the chunk
+	 * @return the room or hallway at this position, or null for a wall
+	 */
+	public DungeonStructure getStructureAt(int x, int y) {
+		if (x < 0 || y < 0 || x >= size || y >= size) {
+			throw new IndexOutOfBoundsException("(" + x + ", " + y + ") is out of the chunk");
+		}
+		int dungeonTileX = x - dungeonX;
+		int dungeonTileY = y - dungeonY;
+		if (dungeonTileX >= 0 && dungeonTileY >= 0 && dungeonTileX < dungeon.getWidth()
+				&& dungeonTileY < dungeon.getHeight()) {
+			DungeonStructure structure = dungeon.getStructureAt(dungeonTileX, dungeonTileY);
+			if (structure != null) {
+				return structure;
+			}
+		}
+		for (DungeonHallway hallway : borderHallways) {
+			if (isOnHallway(hallway, x, y)) {
+				return hallway;
+			}
+		}
+		return null;
+	}
+}
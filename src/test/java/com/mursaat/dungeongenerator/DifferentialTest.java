@@ -0,0 +1,1288 @@
+package com.mursaat.dungeongenerator;
+
+import com.mursaat.dungeongenerator.analysis.RoomDistanceMatrix;
+import com.mursaat.dungeongenerator.analysis.RoomDistanceMatrix.Metric;
+import com.mursaat.dungeongenerator.analysis.TileConnectivity;
+import com.mursaat.dungeongenerator.graphs.Edge;
+import com.mursaat.dungeongenerator.graphs.Graph;
+import com.mursaat.dungeongenerator.graphs.Node;
+import com.mursaat.dungeongenerator.navigation.NavigationGraph;
+import com.mursaat.dungeongenerator.navigation.Portal;
+import com.mursaat.dungeongenerator.util.MathUtils;
+import com.mursaat.dungeongenerator.util.RectangleConsumer;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Run the reference pipeline and the other implementations of its stages on many random
+ * configurations, and compare their results. A failing configuration is shrunk to a minimal one
+ * before being reported.
+ * <p>
+ * The number of configurations is the system property {@code dungeon.differential.configs} (1000
+ * by default).
+ */
+public class DifferentialTest {
+
+	private static final int CONFIG_COUNT = Integer.getInteger("dungeon.differential.configs", 1000);
+	private static final long MASTER_SEED = 0x5EEDL;
+
+	/**
+	 * The maximum number of shrinking steps of a failing configuration
+	 */
+	private static final int MAX_SHRINK_STEPS = 200;
+
+	@Test
+	public void triangulationOnlyHasDelaunayEdges() throws Exception {
+		runDifferential(config -> {
+			Dungeon dungeon = config.generate(new DungeonParams());
+			List<Node> nodes = dungeon.triangulationGraph.getNodes();
+			Set<Long> admissibleEdges = getDelaunayAdmissibleEdges(nodes);
+			for (Edge edge : dungeon.triangulationGraph.getEdges()) {
+				if (!admissibleEdges.contains(getKey(nodes, edge))) {
+					return "non Delaunay edge " + edge.getFirstNode().getRoom().getPosition()
+							+ " - " + edge.getSecondNode().getRoom().getPosition();
+				}
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Points far apart, where the in-circle determinant does not fit in a long, and points around
+	 * large circles through integer points, where the doubles are too close to 0 to be trusted
+	 */
+	@Test
+	public void inCircleMatchesBigIntegersOnFarPoints() throws Exception {
+		Random random = new Random(MASTER_SEED);
+		for (int test = 0; test < CONFIG_COUNT * 10; test++) {
+			long[] coordinates = new long[8];
+			if (test % 2 == 0) {
+				int shift = test % 4 == 0 ? 61 : 20;
+				for (int i = 0; i < coordinates.length; i++) {
+					coordinates[i] = random.nextLong() >> (63 - shift);
+				}
+			} else {
+				// (r, 0), (0, r), (-r, 0), (0, -r) with r = m^2 + n^2 rotated by (m^2 - n^2, 2mn)
+				long m = 1 + random.nextInt(1 << (test % 3 == 0 ? 14 : 25));
+				long n = 1 + random.nextInt(1 << (test % 3 == 0 ? 14 : 25));
+				long cos = m * m - n * n;
+				long sin = 2 * m * n;
+				long centerX = random.nextInt();
+				long centerY = random.nextInt();
+				long[][] points = {{cos, sin}, {-sin, cos}, {-cos, -sin}, {sin, -cos}};
+				for (int i = 0; i < 4; i++) {
+					coordinates[2 * i] = centerX + points[i][0];
+					coordinates[2 * i + 1] = centerY + points[i][1];
+				}
+				coordinates[6] += random.nextInt(3) - 1;
+				coordinates[7] += random.nextInt(3) - 1;
+			}
+
+			int expected = getExactInCircle(coordinates);
+			int actual = MathUtils.inCircle(coordinates[0], coordinates[1], coordinates[2], coordinates[3],
+					coordinates[4], coordinates[5], coordinates[6], coordinates[7]);
+			assertEquals(Arrays.toString(coordinates), expected, actual);
+		}
+	}
+
+	@Test
+	public void spanningTreeMatchesUnionFindKruskal() throws Exception {
+		runDifferential(config -> {
+			Dungeon dungeon = config.generate(new DungeonParams());
+			Graph triangulation = dungeon.triangulationGraph;
+			Graph reference = triangulation.getMinimumSpanningTree(0);
+
+			int nodeCount = triangulation.countNodes();
+			if (reference.getEdges().size() != Math.max(nodeCount - 1, 0)) {
+				return "the reference tree has " + reference.getEdges().size() + " edges for " + nodeCount + " nodes";
+			}
+			double referenceWeight = 0;
+			for (Edge edge : reference.getEdges()) {
+				referenceWeight += edge.getEulidianDist();
+			}
+			double candidateWeight = getUnionFindTreeWeight(triangulation);
+			if (Math.abs(referenceWeight - candidateWeight) > 1e-6 * Math.max(1, referenceWeight)) {
+				return "tree weights differ : reference " + referenceWeight + ", union-find " + candidateWeight;
+			}
+			return null;
+		});
+	}
+
+	@Test
+	public void fastRasterizationsMatchTheReferenceTiles() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			runDifferential(config -> findRasterizationDifference(config, new RoomParams(),
+					config.generate(new DungeonParams()), pool));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * The rooms of all the shapes, whose rectangles may overlap while their tiles don't
+	 */
+	@Test
+	public void shapedRoomsMatchTheReference() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			runDifferential(config -> {
+				RoomParams roomParams = new RoomParams().setShapes(RoomShape.values());
+				Dungeon reference = config.generate(new DungeonParams(), roomParams);
+				String difference = findRoomOverlap(reference);
+				if (difference == null) {
+					difference = findRasterizationDifference(config, roomParams, reference, pool);
+				}
+				if (difference == null) {
+					difference = findCompactDifference(reference);
+				}
+				return difference == null ? null : "shaped rooms : " + difference;
+			});
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void offHeapStoresMatchTheReferenceTiles() throws Exception {
+		Path directory = Files.createTempDirectory("tiles");
+		try {
+			List<TileStoreFactory> factories = Arrays.asList(OffHeapTileStore.direct(),
+					OffHeapTileStore.mapped(directory), (width, height) -> new StackedTileStore(width, height, 2).getFloor(1));
+			runDifferential(config -> {
+				Dungeon reference = config.generate(new DungeonParams());
+				for (int factoryId = 0; factoryId < factories.size(); factoryId++) {
+					Dungeon candidate = config.generate(new DungeonParams(), factories.get(factoryId));
+					try {
+						String difference = findTileDifference(reference, candidate);
+						if (difference != null) {
+							return "off-heap store " + factoryId + " : " + difference;
+						}
+						if (candidate.getTileStore() instanceof OffHeapTileStore) {
+							String kindDifference = findKindDifference((OffHeapTileStore) candidate.getTileStore());
+							if (kindDifference != null) {
+								return "off-heap store " + factoryId + " : " + kindDifference;
+							}
+						}
+					} finally {
+						if (candidate.getTileStore() instanceof Closeable) {
+							((Closeable) candidate.getTileStore()).close();
+						}
+					}
+				}
+				return null;
+			});
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+				assertFalse("the closed stores left their files", files.iterator().hasNext());
+			}
+		} finally {
+			Files.deleteIfExists(directory);
+		}
+	}
+
+	@Test
+	public void sparseStoreMatchesTheReferenceTiles() throws Exception {
+		runDifferential(config -> {
+			Dungeon reference = config.generate(new DungeonParams());
+			Dungeon candidate = config.generate(new DungeonParams(), SparseTileStore::new);
+			String difference = findTileDifference(reference, candidate);
+			if (difference != null) {
+				return "sparse store : " + difference;
+			}
+
+			// The dense array is built from the rectangles by another code path
+			DungeonStructure[][] tiles = candidate.getTileStore().toArray();
+			for (int y = 0; y < candidate.getHeight(); y++) {
+				for (int x = 0; x < candidate.getWidth(); x++) {
+					if (tiles[y][x] != candidate.getStructureAt(x, y)) {
+						return "the dense array of the sparse store differs at (" + x + ", " + y + ")";
+					}
+				}
+			}
+			return null;
+		});
+	}
+
+	@Test
+	public void regionQueriesMatchTheTiles() throws Exception {
+		runDifferential(config -> {
+			Random random = new Random(config.seed);
+			for (TileStoreFactory factory : Arrays.<TileStoreFactory>asList(ArrayTileStore::new, SparseTileStore::new)) {
+				Dungeon dungeon = config.generate(new DungeonParams(), factory);
+				for (int regionId = 0; regionId < 8; regionId++) {
+					int x = random.nextInt(dungeon.getWidth() + 20) - 10;
+					int y = random.nextInt(dungeon.getHeight() + 20) - 10;
+					int width = 1 + random.nextInt(40);
+					int height = 1 + random.nextInt(40);
+					String region = "region (" + x + ", " + y + ", " + width + ", " + height + ")";
+
+					DungeonStructure[] buffer = new DungeonStructure[width * height];
+					dungeon.copyTiles(x, y, width, height, buffer);
+					Set<DungeonStructure> visible = Collections.newSetFromMap(new IdentityHashMap<>());
+					for (int row = 0; row < height; row++) {
+						for (int column = 0; column < width; column++) {
+							boolean inside = x + column >= 0 && y + row >= 0
+									&& x + column < dungeon.getWidth() && y + row < dungeon.getHeight();
+							DungeonStructure structure = inside ? dungeon.getStructureAt(x + column, y + row) : null;
+							if (buffer[row * width + column] != structure) {
+								return "copyTiles differs at (" + (x + column) + ", " + (y + row) + ") in the " + region;
+							}
+							if (structure != null) {
+								visible.add(structure);
+							}
+						}
+					}
+
+					List<DungeonStructure> found = dungeon.getStructuresIn(x, y, width, height);
+					Set<DungeonStructure> foundSet = Collections.newSetFromMap(new IdentityHashMap<>());
+					foundSet.addAll(found);
+					if (foundSet.size() != found.size()) {
+						return "getStructuresIn gives a structure twice in the " + region;
+					}
+					if (!foundSet.containsAll(visible)) {
+						return "getStructuresIn misses a visible structure in the " + region;
+					}
+					for (DungeonStructure structure : found) {
+						if (!intersects(dungeon, structure, x, y, x + width - 1, y + height - 1)) {
+							return "getStructuresIn gives a structure out of the " + region;
+						}
+					}
+				}
+			}
+			return null;
+		});
+	}
+
+	@Test
+	public void navigationPathsMatchDijkstra() throws Exception {
+		runDifferential(config -> {
+			Dungeon dungeon = config.generate(new DungeonParams());
+			NavigationGraph graph = NavigationGraph.build(dungeon);
+			for (Portal portal : graph.getPortals()) {
+				if (!isInRoom(portal.getRoom(), portal.getPosition())) {
+					return "the portal " + portal + " is out of its room";
+				}
+			}
+
+			List<DungeonRoom> rooms = dungeon.getRooms();
+			Random random = new Random(config.seed);
+			for (int pairId = 0; pairId < 8; pairId++) {
+				DungeonRoom from = rooms.get(random.nextInt(rooms.size()));
+				DungeonRoom to = rooms.get(random.nextInt(rooms.size()));
+				if (from == to) {
+					continue;
+				}
+				int expectedCost = getShortestPortalCost(graph, from, to);
+				List<Portal> path = graph.findPath(from, to);
+				String pair = "rooms " + rooms.indexOf(from) + " and " + rooms.indexOf(to);
+				if (path == null) {
+					if (expectedCost != Integer.MAX_VALUE) {
+						return "no path found between the " + pair;
+					}
+					continue;
+				}
+				if (path.isEmpty() || path.get(0).getRoom() != from || path.get(path.size() - 1).getRoom() != to) {
+					return "the path between the " + pair + " doesn't join them";
+				}
+				int cost = 0;
+				for (int portalId = 1; portalId < path.size(); portalId++) {
+					int linkCost = graph.getLinkCost(path.get(portalId - 1), path.get(portalId));
+					if (linkCost < 0) {
+						return "the path between the " + pair + " goes through unlinked portals";
+					}
+					cost += linkCost;
+				}
+				if (cost != expectedCost) {
+					return "the path between the " + pair + " costs " + cost + " instead of " + expectedCost;
+				}
+			}
+			return null;
+		});
+	}
+
+	@Test
+	public void roomDistancesMatchAPlainSearch() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			runDifferential(config -> {
+				Dungeon dungeon = config.generate(new DungeonParams());
+				RoomDistanceMatrix matrix = RoomDistanceMatrix.compute(dungeon, pool);
+				List<DungeonRoom> rooms = dungeon.getRooms();
+				int[][] links = getRoomLinks(dungeon);
+
+				for (Metric metric : Metric.values()) {
+					int diameter = 0;
+					for (int from = 0; from < rooms.size(); from++) {
+						int[] expected = getPlainDistances(links, from, metric);
+						for (int to = 0; to < rooms.size(); to++) {
+							int distance = matrix.getDistance(rooms.get(from), rooms.get(to), metric);
+							if (distance != expected[to]) {
+								return metric + " between the rooms " + from + " and " + to + " is " + distance
+										+ " instead of " + expected[to];
+							}
+							diameter = Math.max(diameter, distance);
+						}
+					}
+					if (matrix.getDiameter(metric) != diameter) {
+						return "the " + metric + " diameter is " + matrix.getDiameter(metric) + " instead of " + diameter;
+					}
+
+					List<DungeonRoom> criticalPath = matrix.getCriticalPath(metric);
+					String pathError = checkPath(criticalPath, links, rooms, metric, diameter);
+					if (pathError != null) {
+						return "critical path : " + pathError;
+					}
+					Random random = new Random(config.seed);
+					for (int pairId = 0; pairId < 8; pairId++) {
+						DungeonRoom from = rooms.get(random.nextInt(rooms.size()));
+						DungeonRoom to = rooms.get(random.nextInt(rooms.size()));
+						List<DungeonRoom> path = matrix.getShortestPath(from, to, metric);
+						int distance = matrix.getDistance(from, to, metric);
+						if (distance == -1 ? path != null : path == null || path.get(0) != from || path.get(path.size() - 1) != to) {
+							return "the " + metric + " path between the rooms " + rooms.indexOf(from) + " and "
+									+ rooms.indexOf(to) + " doesn't join them";
+						}
+						pathError = distance == -1 ? null : checkPath(path, links, rooms, metric, distance);
+						if (pathError != null) {
+							return "shortest path : " + pathError;
+						}
+					}
+				}
+				return null;
+			});
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void hopDiameterCheckMatchesTheMatrix() throws Exception {
+		runDifferential(config -> {
+			Dungeon dungeon = config.generate(new DungeonParams());
+			int diameter = RoomDistanceMatrix.compute(dungeon).getDiameter(Metric.HOPS);
+			for (int minDiameter = Math.max(diameter - 2, 0); minDiameter <= diameter + 2; minDiameter++) {
+				if (RoomDistanceMatrix.hasHopDiameter(dungeon, minDiameter) != diameter >= minDiameter) {
+					return "hasHopDiameter(" + minDiameter + ") is wrong for a diameter of " + diameter;
+				}
+			}
+			return null;
+		});
+	}
+
+	@Test
+	public void tileConnectivityMatchesAPlainFloodFill() throws Exception {
+		runDifferential(config -> {
+			Dungeon dungeon = config.generate(new DungeonParams());
+			TileConnectivity connectivity = new TileConnectivity(dungeon);
+			int width = dungeon.getWidth();
+			int height = dungeon.getHeight();
+
+			// Number the components with plain breadth-first searches
+			int[] components = new int[width * height];
+			int componentCount = 0;
+			for (int tile = 0; tile < components.length; tile++) {
+				if (components[tile] == 0 && dungeon.getStructureAt(tile % width, tile / width) != null) {
+					componentCount++;
+					int[] distances = getPlainDistanceField(dungeon, tile % width, tile / width);
+					for (int other = 0; other < components.length; other++) {
+						if (distances[other] >= 0) {
+							components[other] = componentCount;
+						}
+					}
+				}
+			}
+			if (connectivity.getComponentCount() != componentCount) {
+				return connectivity.getComponentCount() + " components instead of " + componentCount;
+			}
+
+			// The labels must group the tiles the same way
+			int[] labels = connectivity.labelComponents();
+			int[] componentsOfLabels = new int[componentCount + 1];
+			for (int tile = 0; tile < components.length; tile++) {
+				if ((labels[tile] == 0) != (components[tile] == 0)) {
+					return "the tile (" + tile % width + ", " + tile / width + ") is walkable in one labelling only";
+				}
+				if (labels[tile] != 0) {
+					if (componentsOfLabels[labels[tile]] == 0) {
+						componentsOfLabels[labels[tile]] = components[tile];
+					} else if (componentsOfLabels[labels[tile]] != components[tile]) {
+						return "the label " + labels[tile] + " joins two components";
+					}
+				}
+			}
+
+			Set<Integer> roomComponents = new HashSet<>();
+			for (DungeonRoom room : dungeon.getRooms()) {
+				room.forEachRectangle((minX, minY, maxX, maxY) -> {
+					for (int y = minY; y <= maxY; y++) {
+						for (int x = minX; x <= maxX; x++) {
+							roomComponents.add(components[y * width + x]);
+						}
+					}
+				});
+			}
+			if (connectivity.areRoomsConnected() != (roomComponents.size() == 1)) {
+				return "the rooms are in " + roomComponents.size() + " components, areRoomsConnected is "
+						+ connectivity.areRoomsConnected();
+			}
+
+			// Distance fields from a few tiles, walls included
+			Random random = new Random(config.seed);
+			short[] shortDistances = new short[width * height];
+			for (int startId = 0; startId < 4; startId++) {
+				int x = random.nextInt(width);
+				int y = random.nextInt(height);
+				int[] expected = getPlainDistanceField(dungeon, x, y);
+				int[] distances = connectivity.computeDistanceField(x, y);
+				connectivity.computeDistanceField(x, y, shortDistances);
+				for (int tile = 0; tile < expected.length; tile++) {
+					if (distances[tile] != expected[tile] || shortDistances[tile] != expected[tile]) {
+						return "the distance from (" + x + ", " + y + ") to (" + tile % width + ", " + tile / width
+								+ ") is " + distances[tile] + " (short " + shortDistances[tile] + ") instead of " + expected[tile];
+					}
+				}
+			}
+			return null;
+		});
+	}
+
+	@Test
+	public void snapshotsMatchTheReferenceTiles() throws Exception {
+		runDifferential(config -> {
+			Dungeon reference = config.generate(new DungeonParams());
+			DungeonSnapshot snapshot = DungeonSnapshot.of(reference);
+			int[] referenceTiles = getTileIndexes(reference);
+
+			String difference = findSnapshotDifference(reference, referenceTiles, snapshot);
+			if (difference != null) {
+				return difference;
+			}
+
+			// The snapshot keeps the state of the dungeon when it was taken
+			List<Node> nodes = reference.spanningGraph.getNodes();
+			if (nodes.size() > 2) {
+				Dungeon before = CompactDungeon.of(reference).toDungeon();
+				new DungeonEditor(reference, new DungeonParams().setMinSpaceBetweenRooms(config.minSpaceBetweenRooms),
+						new Random(config.seed)).removeRoom(nodes.get(0).getRoom());
+				difference = findSnapshotDifference(before, referenceTiles, snapshot);
+				if (difference != null) {
+					return "after an edit, " + difference;
+				}
+			}
+			return null;
+		});
+	}
+
+	@Test
+	public void compactDungeonsMatchTheReference() throws Exception {
+		runDifferential(config -> findCompactDifference(config.generate(new DungeonParams())));
+	}
+
+	@Test
+	public void parallelRoutingKeepsTheInvariants() throws Exception {
+		runDifferential(config -> {
+			Dungeon reference = config.generate(new DungeonParams());
+			Dungeon candidate = config.generate(new DungeonParams().setParallelHallwayRouting(true));
+
+			String overlap = findRoomOverlap(candidate);
+			if (overlap != null) {
+				return overlap;
+			}
+			// The reference has a few misplaced doors, the candidate must not add any
+			Set<Long> referenceDetached = getDetachedHallways(reference);
+			for (Long detached : getDetachedHallways(candidate)) {
+				if (!referenceDetached.contains(detached)) {
+					return "detached hallway between rooms " + (detached >>> 32) + " and " + (int) (long) detached;
+				}
+			}
+			return null;
+		});
+	}
+
+	@Test
+	public void parallelRoutedDungeonsCanBeEdited() throws Exception {
+		runDifferential(config -> {
+			Dungeon dungeon = config.generate(new DungeonParams().setParallelHallwayRouting(true));
+			List<Node> nodes = dungeon.spanningGraph.getNodes();
+			if (dungeon.spanningGraph.getEdges().isEmpty()) {
+				return null;
+			}
+			DungeonRoom removed = nodes.get((int) (config.seed % nodes.size())).getRoom();
+			new DungeonEditor(dungeon, new DungeonParams().setMinSpaceBetweenRooms(config.minSpaceBetweenRooms),
+					new Random(config.seed)).removeRoom(removed);
+
+			for (DungeonHallway hallway : dungeon.getHallways()) {
+				if (hallway.getRoomFrom() == removed || hallway.getRoomTo() == removed) {
+					return "an hallway of the removed room " + removed.getId() + " was kept";
+				}
+			}
+			Set<DungeonStructure> structures = new HashSet<>(dungeon.getRooms());
+			structures.addAll(dungeon.getHallways());
+			for (int y = 0; y < dungeon.height; y++) {
+				for (int x = 0; x < dungeon.width; x++) {
+					DungeonStructure structure = dungeon.getStructureAt(x, y);
+					if (structure != null && !structures.contains(structure)) {
+						return "the tile (" + x + ", " + y + ") refers to a removed structure";
+					}
+				}
+			}
+			return null;
+		});
+	}
+
+	@Test
+	public void shrinkingFindsTheSmallestFailingConfig() throws Exception {
+		Check check = config -> config.roomCount >= 12 && config.hallwaysWidth == 3 ? "failure" : null;
+		Config failing = new Config(987654, 40, 3, 4);
+		assertNotNull(check.run(failing));
+
+		Config shrunk = shrink(failing, check);
+		assertEquals(0, shrunk.seed);
+		assertEquals(12, shrunk.roomCount);
+		assertEquals(3, shrunk.hallwaysWidth);
+		assertEquals(1, shrunk.minSpaceBetweenRooms);
+	}
+
+	/**
+	 * A comparison on one configuration
+	 */
+	private interface Check {
+		/**
+		 * @return null if the check passes, else the description of the difference
+		 */
+		String run(Config config) throws Exception;
+	}
+
+	/**
+	 * Run a check on random configurations, and fail with the shrunk first failing one
+	 */
+	private static void runDifferential(Check check) throws Exception {
+		Random random = new Random(MASTER_SEED);
+		for (int configId = 0; configId < CONFIG_COUNT; configId++) {
+			Config config = Config.random(random);
+			if (check.run(config) != null) {
+				Config shrunk = shrink(config, check);
+				fail("Failing config " + config + ", shrunk to " + shrunk + " : " + check.run(shrunk));
+			}
+		}
+	}
+
+	/**
+	 * Replace a failing config with a smaller failing one, until none of its reductions fails
+	 */
+	private static Config shrink(Config config, Check check) throws Exception {
+		for (int step = 0; step < MAX_SHRINK_STEPS; step++) {
+			Config smaller = null;
+			for (Config candidate : config.getReductions()) {
+				if (check.run(candidate) != null) {
+					smaller = candidate;
+					break;
+				}
+			}
+			if (smaller == null) {
+				return config;
+			}
+			config = smaller;
+		}
+		return config;
+	}
+
+	/**
+	 * The params of one generation
+	 */
+	private static class Config {
+		final long seed;
+		final int roomCount;
+		final int hallwaysWidth;
+		final int minSpaceBetweenRooms;
+
+		Config(long seed, int roomCount, int hallwaysWidth, int minSpaceBetweenRooms) {
+			this.seed = seed;
+			this.roomCount = roomCount;
+			this.hallwaysWidth = hallwaysWidth;
+			this.minSpaceBetweenRooms = minSpaceBetweenRooms;
+		}
+
+		static Config random(Random random) {
+			return new Config(random.nextInt(1_000_000), 4 + random.nextInt(45),
+					1 + 2 * random.nextInt(3), 1 + random.nextInt(4));
+		}
+
+		/**
+		 * @return the smaller configs, the smallest first
+		 */
+		List<Config> getReductions() {
+			List<Config> reductions = new ArrayList<>();
+			if (seed > 0) {
+				reductions.add(new Config(0, roomCount, hallwaysWidth, minSpaceBetweenRooms));
+				reductions.add(new Config(seed / 2, roomCount, hallwaysWidth, minSpaceBetweenRooms));
+				reductions.add(new Config(seed - 1, roomCount, hallwaysWidth, minSpaceBetweenRooms));
+			}
+			if (roomCount > 2) {
+				reductions.add(new Config(seed, Math.max(2, roomCount / 2), hallwaysWidth, minSpaceBetweenRooms));
+				reductions.add(new Config(seed, roomCount - 1, hallwaysWidth, minSpaceBetweenRooms));
+			}
+			if (hallwaysWidth > 1) {
+				reductions.add(new Config(seed, roomCount, hallwaysWidth - 2, minSpaceBetweenRooms));
+			}
+			if (minSpaceBetweenRooms > 1) {
+				reductions.add(new Config(seed, roomCount, hallwaysWidth, minSpaceBetweenRooms - 1));
+			}
+			return reductions;
+		}
+
+		Dungeon generate(DungeonParams dungeonParams) {
+			return generate(dungeonParams, ArrayTileStore::new);
+		}
+
+		Dungeon generate(DungeonParams dungeonParams, TileStoreFactory tileStoreFactory) {
+			return generate(dungeonParams, new RoomParams(), tileStoreFactory);
+		}
+
+		Dungeon generate(DungeonParams dungeonParams, RoomParams roomParams) {
+			return generate(dungeonParams, roomParams, ArrayTileStore::new);
+		}
+
+		Dungeon generate(DungeonParams dungeonParams, RoomParams roomParams, TileStoreFactory tileStoreFactory) {
+			dungeonParams.setMaxRoomCount(roomCount).setMinRoomCount(roomCount)
+					.setHallwaysWidth(hallwaysWidth)
+					.setMinSpaceBetweenRooms(minSpaceBetweenRooms);
+			return new DungeonGenerator(dungeonParams, roomParams).setTileStoreFactory(tileStoreFactory)
+					.generateDungeon(seed);
+		}
+
+		@Override
+		public String toString() {
+			return "{seed=" + seed + ", roomCount=" + roomCount + ", hallwaysWidth=" + hallwaysWidth
+					+ ", minSpaceBetweenRooms=" + minSpaceBetweenRooms + '}';
+		}
+	}
+
+	/**
+	 * @return null if the other rasterizations and the wire codec give the tiles of the reference,
+	 * else the first difference
+	 */
+	private static String findRasterizationDifference(Config config, RoomParams roomParams, Dungeon reference,
+	                                                  ForkJoinPool pool) {
+		String tiles = reference.toString();
+
+		Dungeon striped = config.generate(new DungeonParams().setParallelRasterization(true), roomParams);
+		if (!striped.toString().equals(tiles)) {
+			return "parallel rasterization changed the tiles";
+		}
+
+		Dungeon packed = config.generate(new DungeonParams().setPackedSeparation(true), roomParams);
+		if (!packed.toString().equals(tiles)) {
+			return "packed separation changed the tiles";
+		}
+
+		Dungeon copy = CompactDungeon.of(reference).toDungeon();
+		if (!copy.toString().equals(tiles)) {
+			return "compact dungeon changed the tiles";
+		}
+		copy.tileStore = new ArrayTileStore(copy.width, copy.height);
+		new StripedRasterizer().setPool(pool).setStripeHeight(1 + (int) (config.seed % 16)).rasterize(copy);
+		if (!copy.toString().equals(tiles)) {
+			return "striped rasterizer changed the tiles";
+		}
+
+		for (boolean tilePlane : new boolean[]{false, true}) {
+			ByteBuffer buffer = ByteBuffer.allocate(DungeonWireCodec.getMaxEncodedSize(reference, tilePlane));
+			DungeonWireCodec.encode(reference, buffer, tilePlane);
+			buffer.flip();
+			if (!DungeonWireCodec.decode(buffer).toString().equals(tiles)) {
+				return "wire codec changed the tiles (tile plane " + tilePlane + ")";
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return null if the compact dungeon has the rooms, the hallways and the tiles of the
+	 * reference, else the first difference
+	 */
+	private static String findCompactDifference(Dungeon reference) {
+		CompactDungeon compact = CompactDungeon.of(reference);
+		if (compact.getWidth() != reference.getWidth() || compact.getHeight() != reference.getHeight()
+				|| compact.getHallwaysWidth() != reference.getHallwaysWidth()) {
+			return "the size or the hallways width changed";
+		}
+
+		List<DungeonRoom> rooms = reference.getRooms();
+		if (compact.getRoomCount() != rooms.size() || compact.getRooms().size() != rooms.size()) {
+			return compact.getRoomCount() + " rooms instead of " + rooms.size();
+		}
+		Map<DungeonRoom, Integer> roomIndexes = new IdentityHashMap<>();
+		for (int roomId = 0; roomId < rooms.size(); roomId++) {
+			DungeonRoom room = rooms.get(roomId);
+			DungeonRoom view = compact.getRooms().get(roomId);
+			roomIndexes.put(room, roomId);
+			if (compact.getRoomId(roomId) != room.getId() || compact.getRoomX(roomId) != room.getX()
+					|| compact.getRoomY(roomId) != room.getY() || compact.getRoomWidth(roomId) != room.getWidth()
+					|| compact.getRoomHeight(roomId) != room.getHeight() || compact.getRoomType(roomId) != room.getType()
+					|| compact.getRoomShape(roomId) != room.getShape()) {
+				return "the room " + roomId + " is different";
+			}
+			if (view.getId() != room.getId() || !view.getPosition().equals(room.getPosition())
+					|| view.getWidth() != room.getWidth() || view.getHeight() != room.getHeight()
+					|| view.getType() != room.getType() || view.getShape() != room.getShape()
+					|| !view.getCenterPosition().equals(room.getCenterPosition())) {
+				return "the view of the room " + roomId + " is different";
+			}
+		}
+
+		List<DungeonHallway> hallways = reference.getHallways();
+		if (compact.getHallwayCount() != hallways.size() || compact.getHallways().size() != hallways.size()) {
+			return compact.getHallwayCount() + " hallways instead of " + hallways.size();
+		}
+		for (int hallwayId = 0; hallwayId < hallways.size(); hallwayId++) {
+			DungeonHallway hallway = hallways.get(hallwayId);
+			DungeonHallway view = compact.getHallways().get(hallwayId);
+			int from = hallway.getRoomFrom() == null ? -1 : roomIndexes.getOrDefault(hallway.getRoomFrom(), -2);
+			int to = hallway.getRoomTo() == null ? -1 : roomIndexes.getOrDefault(hallway.getRoomTo(), -2);
+			if (compact.getHallwayRoomFrom(hallwayId) != from || compact.getHallwayRoomTo(hallwayId) != to) {
+				return "the rooms of the hallway " + hallwayId + " are different";
+			}
+			if (getRoomId(view.getRoomFrom()) != getRoomId(hallway.getRoomFrom())
+					|| getRoomId(view.getRoomTo()) != getRoomId(hallway.getRoomTo())) {
+				return "the view of the hallway " + hallwayId + " has other rooms";
+			}
+			List<Position> path = hallway.getPath();
+			if (compact.getPathSize(hallwayId) != path.size() || !view.getPath().equals(path)) {
+				return "the path of the hallway " + hallwayId + " is different";
+			}
+			for (int corner = 0; corner < path.size(); corner++) {
+				if (compact.getPathX(hallwayId, corner) != path.get(corner).x
+						|| compact.getPathY(hallwayId, corner) != path.get(corner).y) {
+					return "the corner " + corner + " of the hallway " + hallwayId + " is different";
+				}
+			}
+		}
+
+		// The dungeon built back from the columns has the same tiles
+		String difference = findTileDifference(reference, compact.toDungeon());
+		return difference == null ? null : "toDungeon : " + difference;
+	}
+
+	/**
+	 * @return the keys of the edges of the triangles whose circumcircle has no other node strictly
+	 * inside. All the Delaunay triangulations only use these edges.
+	 */
+	private static Set<Long> getDelaunayAdmissibleEdges(List<Node> nodes) {
+		int count = nodes.size();
+		long[] xs = new long[count];
+		long[] ys = new long[count];
+		for (int nodeId = 0; nodeId < count; nodeId++) {
+			xs[nodeId] = nodes.get(nodeId).getRoom().getX();
+			ys[nodeId] = nodes.get(nodeId).getRoom().getY();
+		}
+
+		Set<Long> edges = new HashSet<>();
+		if (count == 2) {
+			edges.add(getKey(0, 1));
+		}
+		for (int i = 0; i < count; i++) {
+			for (int j = i + 1; j < count; j++) {
+				for (int k = j + 1; k < count; k++) {
+					long orientation = (xs[j] - xs[i]) * (ys[k] - ys[i]) - (ys[j] - ys[i]) * (xs[k] - xs[i]);
+					if (orientation == 0) {
+						continue;
+					}
+					boolean empty = true;
+					for (int m = 0; m < count && empty; m++) {
+						if (m != i && m != j && m != k) {
+							long inCircle = getInCircle(xs[i] - xs[m], ys[i] - ys[m], xs[j] - xs[m], ys[j] - ys[m],
+									xs[k] - xs[m], ys[k] - ys[m]);
+							empty = (orientation > 0 ? inCircle : -inCircle) <= 0;
+						}
+					}
+					if (empty) {
+						edges.add(getKey(i, j));
+						edges.add(getKey(j, k));
+						edges.add(getKey(i, k));
+					}
+				}
+			}
+		}
+
+		// Collinear nodes only have the edges between consecutive nodes along their line
+		if (edges.isEmpty()) {
+			List<Integer> sorted = new ArrayList<>();
+			for (int nodeId = 0; nodeId < count; nodeId++) {
+				sorted.add(nodeId);
+			}
+			sorted.sort((n1, n2) -> xs[n1] != xs[n2] ? Long.compare(xs[n1], xs[n2]) : Long.compare(ys[n1], ys[n2]));
+			for (int i = 1; i < count; i++) {
+				edges.add(getKey(sorted.get(i - 1), sorted.get(i)));
+			}
+		}
+		return edges;
+	}
+
+	/**
+	 * @return the in-circle determinant of three points relative to a fourth one
+	 */
+	private static long getInCircle(long adx, long ady, long bdx, long bdy, long cdx, long cdy) {
+		return (adx * adx + ady * ady) * (bdx * cdy - cdx * bdy)
+				- (bdx * bdx + bdy * bdy) * (adx * cdy - cdx * ady)
+				+ (cdx * cdx + cdy * cdy) * (adx * bdy - bdx * ady);
+	}
+
+	/**
+	 * @return the sign of the in-circle determinant of the points (x, y) of the coordinates
+	 */
+	private static int getExactInCircle(long[] coordinates) {
+		BigInteger[][] rows = new BigInteger[3][3];
+		for (int i = 0; i < 3; i++) {
+			BigInteger dx = BigInteger.valueOf(coordinates[2 * i] - coordinates[6]);
+			BigInteger dy = BigInteger.valueOf(coordinates[2 * i + 1] - coordinates[7]);
+			rows[i][0] = dx;
+			rows[i][1] = dy;
+			rows[i][2] = dx.multiply(dx).add(dy.multiply(dy));
+		}
+		BigInteger determinant = BigInteger.ZERO;
+		for (int i = 0; i < 3; i++) {
+			BigInteger[] row1 = rows[(i + 1) % 3];
+			BigInteger[] row2 = rows[(i + 2) % 3];
+			determinant = determinant.add(rows[i][2].multiply(row1[0].multiply(row2[1]).subtract(row2[0].multiply(row1[1]))));
+		}
+		return determinant.signum();
+	}
+
+	private static double getUnionFindTreeWeight(Graph graph) {
+		List<Node> nodes = graph.getNodes();
+		List<Edge> edges = new ArrayList<>(graph.getEdges());
+		edges.sort((e1, e2) -> Long.compare(e1.getSquaredLength(), e2.getSquaredLength()));
+
+		int[] parents = new int[nodes.size()];
+		for (int nodeId = 0; nodeId < parents.length; nodeId++) {
+			parents[nodeId] = nodeId;
+		}
+		Map<Node, Integer> indexes = getIndexes(nodes);
+		double weight = 0;
+		for (Edge edge : edges) {
+			int root1 = find(parents, indexes.get(edge.getFirstNode()));
+			int root2 = find(parents, indexes.get(edge.getSecondNode()));
+			if (root1 != root2) {
+				parents[root1] = root2;
+				weight += edge.getEulidianDist();
+			}
+		}
+		return weight;
+	}
+
+	private static int find(int[] parents, int node) {
+		while (parents[node] != node) {
+			parents[node] = parents[parents[node]];
+			node = parents[node];
+		}
+		return node;
+	}
+
+	/**
+	 * @return the structure of each tile, at index y * width + x : -1 for a wall, the index of a
+	 * room, or the number of rooms + the index of an hallway. -2 for a structure which is not in the
+	 * dungeon.
+	 */
+	private static int[] getTileIndexes(Dungeon dungeon) {
+		Map<DungeonStructure, Integer> indexes = new IdentityHashMap<>();
+		for (DungeonRoom room : dungeon.getRooms()) {
+			indexes.put(room, indexes.size());
+		}
+		for (DungeonHallway hallway : dungeon.getHallways()) {
+			indexes.put(hallway, indexes.size());
+		}
+		int[] tiles = new int[dungeon.getWidth() * dungeon.getHeight()];
+		for (int y = 0; y < dungeon.getHeight(); y++) {
+			for (int x = 0; x < dungeon.getWidth(); x++) {
+				DungeonStructure structure = dungeon.getStructureAt(x, y);
+				Integer index = structure == null ? Integer.valueOf(-1) : indexes.get(structure);
+				tiles[y * dungeon.getWidth() + x] = index == null ? -2 : index;
+			}
+		}
+		return tiles;
+	}
+
+	/**
+	 * @return null if both dungeons have the same structure on each tile, else the first different
+	 * tile
+	 */
+	private static String findTileDifference(Dungeon reference, Dungeon candidate) {
+		if (reference.getWidth() != candidate.getWidth() || reference.getHeight() != candidate.getHeight()) {
+			return "the size is " + candidate.getWidth() + "x" + candidate.getHeight() + " instead of "
+					+ reference.getWidth() + "x" + reference.getHeight();
+		}
+		int[] referenceTiles = getTileIndexes(reference);
+		int[] candidateTiles = getTileIndexes(candidate);
+		for (int tile = 0; tile < referenceTiles.length; tile++) {
+			if (referenceTiles[tile] != candidateTiles[tile]) {
+				return "the tile (" + tile % reference.getWidth() + ", " + tile / reference.getWidth() + ") is "
+						+ candidateTiles[tile] + " instead of " + referenceTiles[tile];
+			}
+		}
+		return null;
+	}
+
+	private static int getRoomId(DungeonRoom room) {
+		return room == null ? -1 : room.getId();
+	}
+
+	/**
+	 * @param referenceTiles the tiles of the reference, from {@link #getTileIndexes(Dungeon)}
+	 * @return null if the snapshot has the structures and the tiles of the reference, else the first
+	 * difference
+	 */
+	private static String findSnapshotDifference(Dungeon reference, int[] referenceTiles, DungeonSnapshot snapshot) {
+		if (snapshot.getWidth() != reference.getWidth() || snapshot.getHeight() != reference.getHeight()
+				|| snapshot.getHallwaysWidth() != reference.getHallwaysWidth()) {
+			return "the size or the hallways width changed";
+		}
+
+		List<DungeonRoom> rooms = reference.getRooms();
+		if (snapshot.getRoomCount() != rooms.size()) {
+			return snapshot.getRoomCount() + " rooms instead of " + rooms.size();
+		}
+		Map<DungeonRoom, Integer> roomIndexes = new IdentityHashMap<>();
+		for (int roomId = 0; roomId < rooms.size(); roomId++) {
+			DungeonRoom room = rooms.get(roomId);
+			roomIndexes.put(room, roomId);
+			if (snapshot.getRoomId(roomId) != room.getId() || snapshot.getRoomX(roomId) != room.getX()
+					|| snapshot.getRoomY(roomId) != room.getY() || snapshot.getRoomWidth(roomId) != room.getWidth()
+					|| snapshot.getRoomHeight(roomId) != room.getHeight() || snapshot.getRoomType(roomId) != room.getType()) {
+				return "the room " + roomId + " is different";
+			}
+		}
+
+		List<DungeonHallway> hallways = reference.getHallways();
+		if (snapshot.getHallwayCount() != hallways.size()) {
+			return snapshot.getHallwayCount() + " hallways instead of " + hallways.size();
+		}
+		for (int hallwayId = 0; hallwayId < hallways.size(); hallwayId++) {
+			DungeonHallway hallway = hallways.get(hallwayId);
+			int from = hallway.getRoomFrom() == null ? -1 : roomIndexes.getOrDefault(hallway.getRoomFrom(), -2);
+			int to = hallway.getRoomTo() == null ? -1 : roomIndexes.getOrDefault(hallway.getRoomTo(), -2);
+			if (snapshot.getHallwayRoomFrom(hallwayId) != from || snapshot.getHallwayRoomTo(hallwayId) != to) {
+				return "the rooms of the hallway " + hallwayId + " are different";
+			}
+			List<Position> path = hallway.getPath();
+			if (snapshot.getPathSize(hallwayId) != path.size()) {
+				return "the path of the hallway " + hallwayId + " has " + snapshot.getPathSize(hallwayId) + " corners";
+			}
+			for (int corner = 0; corner < path.size(); corner++) {
+				if (snapshot.getPathX(hallwayId, corner) != path.get(corner).x
+						|| snapshot.getPathY(hallwayId, corner) != path.get(corner).y) {
+					return "the corner " + corner + " of the hallway " + hallwayId + " is different";
+				}
+			}
+		}
+
+		int width = reference.getWidth();
+		for (int tile = 0; tile < referenceTiles.length; tile++) {
+			int x = tile % width;
+			int y = tile / width;
+			int expected = referenceTiles[tile];
+			int expectedRoom = expected >= 0 && expected < rooms.size() ? expected : -1;
+			int expectedHallway = expected >= rooms.size() ? expected - rooms.size() : -1;
+			if (snapshot.getTile(x, y) != expected || snapshot.getRoomAt(x, y) != expectedRoom
+					|| snapshot.getHallwayAt(x, y) != expectedHallway) {
+				return "the tile (" + x + ", " + y + ") is " + snapshot.getTile(x, y) + " instead of " + expected;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return null if the kind of each tile matches its structure, else the first wrong tile
+	 */
+	private static String findKindDifference(OffHeapTileStore store) {
+		for (int y = 0; y < store.getHeight(); y++) {
+			for (int x = 0; x < store.getWidth(); x++) {
+				DungeonStructure structure = store.get(x, y);
+				byte kind = structure == null ? OffHeapTileStore.KIND_WALL
+						: structure instanceof DungeonRoom ? OffHeapTileStore.KIND_ROOM : OffHeapTileStore.KIND_HALLWAY;
+				if (store.getKind(x, y) != kind) {
+					return "the kind of the tile (" + x + ", " + y + ") is " + store.getKind(x, y) + " instead of " + kind;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return true if one of the rectangles of the structure intersects the region
+	 */
+	private static boolean intersects(Dungeon dungeon, DungeonStructure structure, int minX, int minY, int maxX, int maxY) {
+		boolean[] intersects = {false};
+		RectangleConsumer check = (rectMinX, rectMinY, rectMaxX, rectMaxY) -> intersects[0] |= rectMinX <= maxX
+				&& minX <= rectMaxX && rectMinY <= maxY && minY <= rectMaxY;
+		if (structure instanceof DungeonRoom) {
+			((DungeonRoom) structure).forEachRectangle(check);
+		} else {
+			((DungeonHallway) structure).forEachSegment(dungeon.getHallwaysWidth(), dungeon.getWidth(), dungeon.getHeight(), check);
+		}
+		return intersects[0];
+	}
+
+	/**
+	 * A plain Dijkstra over the links of the portals, with a full scan for the next portal
+	 *
+	 * @return the cost of the cheapest path from a portal of a room to a portal of another room, or
+	 * Integer.MAX_VALUE if there is none
+	 */
+	private static int getShortestPortalCost(NavigationGraph graph, DungeonRoom from, DungeonRoom to) {
+		List<Portal> portals = graph.getPortals();
+		int[] costs = new int[portals.size()];
+		boolean[] done = new boolean[portals.size()];
+		Arrays.fill(costs, Integer.MAX_VALUE);
+		for (Portal portal : graph.getPortals(from)) {
+			costs[portal.getId()] = 0;
+		}
+		int bestCost = Integer.MAX_VALUE;
+		while (true) {
+			int next = -1;
+			for (int portalId = 0; portalId < portals.size(); portalId++) {
+				if (!done[portalId] && costs[portalId] != Integer.MAX_VALUE && (next == -1 || costs[portalId] < costs[next])) {
+					next = portalId;
+				}
+			}
+			if (next == -1) {
+				return bestCost;
+			}
+			done[next] = true;
+			Portal portal = portals.get(next);
+			if (portal.getRoom() == to) {
+				bestCost = Math.min(bestCost, costs[next]);
+			}
+			for (Portal neighbor : graph.getNeighbors(portal)) {
+				int cost = costs[next] + graph.getLinkCost(portal, neighbor);
+				if (cost < costs[neighbor.getId()]) {
+					costs[neighbor.getId()] = cost;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the shortest link between each pair of rooms, by room index : the tiles from the center
+	 * of a room to a portal, along the hallway to a portal of the other room, and to its center. -1
+	 * if the rooms are not linked.
+	 */
+	private static int[][] getRoomLinks(Dungeon dungeon) {
+		List<DungeonRoom> rooms = dungeon.getRooms();
+		int[][] links = new int[rooms.size()][rooms.size()];
+		for (int[] row : links) {
+			Arrays.fill(row, -1);
+		}
+		NavigationGraph graph = dungeon.getNavigationGraph();
+		for (Portal portal : graph.getPortals()) {
+			for (Portal neighbor : graph.getNeighbors(portal)) {
+				if (portal.getRoom() != neighbor.getRoom()) {
+					int length = getManhattanDistance(portal.getRoom().getCenterPosition(), portal.getPosition())
+							+ graph.getLinkCost(portal, neighbor)
+							+ getManhattanDistance(neighbor.getPosition(), neighbor.getRoom().getCenterPosition());
+					int from = rooms.indexOf(portal.getRoom());
+					int to = rooms.indexOf(neighbor.getRoom());
+					if (links[from][to] == -1 || length < links[from][to]) {
+						links[from][to] = length;
+					}
+				}
+			}
+		}
+		return links;
+	}
+
+	/**
+	 * A plain Dijkstra over the room links, with a full scan for the next room
+	 *
+	 * @return the distance from a room to each room, -1 for the rooms which can't be reached
+	 */
+	private static int[] getPlainDistances(int[][] links, int from, Metric metric) {
+		int[] distances = new int[links.length];
+		boolean[] done = new boolean[links.length];
+		Arrays.fill(distances, -1);
+		distances[from] = 0;
+		while (true) {
+			int next = -1;
+			for (int roomId = 0; roomId < links.length; roomId++) {
+				if (!done[roomId] && distances[roomId] != -1 && (next == -1 || distances[roomId] < distances[next])) {
+					next = roomId;
+				}
+			}
+			if (next == -1) {
+				return distances;
+			}
+			done[next] = true;
+			for (int to = 0; to < links.length; to++) {
+				if (links[next][to] != -1) {
+					int distance = distances[next] + (metric == Metric.HOPS ? 1 : links[next][to]);
+					if (distances[to] == -1 || distance < distances[to]) {
+						distances[to] = distance;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return null if each room of the path is linked to the next one, and the links add up to the
+	 * expected distance
+	 */
+	private static String checkPath(List<DungeonRoom> path, int[][] links, List<DungeonRoom> rooms, Metric metric,
+			int expectedDistance) {
+		int distance = 0;
+		for (int roomId = 1; roomId < path.size(); roomId++) {
+			int link = links[rooms.indexOf(path.get(roomId - 1))][rooms.indexOf(path.get(roomId))];
+			if (link == -1) {
+				return "the rooms " + rooms.indexOf(path.get(roomId - 1)) + " and " + rooms.indexOf(path.get(roomId))
+						+ " are not linked";
+			}
+			distance += metric == Metric.HOPS ? 1 : link;
+		}
+		return distance == expectedDistance ? null
+				: "the " + metric + " distance along the path is " + distance + " instead of " + expectedDistance;
+	}
+
+	private static int getManhattanDistance(Position p1, Position p2) {
+		return Math.abs(p1.x - p2.x) + Math.abs(p1.y - p2.y);
+	}
+
+	/**
+	 * A plain breadth-first search over the tiles which are not walls
+	 *
+	 * @return the distance from the tile to each tile, at index y * width + x. -1 for the tiles
+	 * which can't be reached, and for all the tiles if the start is a wall.
+	 */
+	private static int[] getPlainDistanceField(Dungeon dungeon, int startX, int startY) {
+		int width = dungeon.getWidth();
+		int height = dungeon.getHeight();
+		int[] distances = new int[width * height];
+		Arrays.fill(distances, -1);
+		if (dungeon.getStructureAt(startX, startY) == null) {
+			return distances;
+		}
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		distances[startY * width + startX] = 0;
+		queue.add(startY * width + startX);
+		while (!queue.isEmpty()) {
+			int tile = queue.poll();
+			int x = tile % width;
+			int y = tile / width;
+			int[][] neighbors = {{x - 1, y}, {x + 1, y}, {x, y - 1}, {x, y + 1}};
+			for (int[] neighbor : neighbors) {
+				if (neighbor[0] >= 0 && neighbor[1] >= 0 && neighbor[0] < width && neighbor[1] < height
+						&& distances[neighbor[1] * width + neighbor[0]] == -1
+						&& dungeon.getStructureAt(neighbor[0], neighbor[1]) != null) {
+					distances[neighbor[1] * width + neighbor[0]] = distances[tile] + 1;
+					queue.add(neighbor[1] * width + neighbor[0]);
+				}
+			}
+		}
+		return distances;
+	}
+
+	/**
+	 * @return true if the position is a tile of the room, in its mask for a shaped room
+	 */
+	private static boolean isInRoom(DungeonRoom room, Position position) {
+		int x = position.x - room.getX();
+		int y = position.y - room.getY();
+		RoomMask mask = room.getMask();
+		return x >= 0 && y >= 0 && x < room.getWidth() && y < room.getHeight() && (mask == null || mask.contains(x, y));
+	}
+
+	/**
+	 * @return null if no tile is in two rooms (in their masks for shaped rooms), else the first
+	 * overlap found
+	 */
+	private static String findRoomOverlap(Dungeon dungeon) {
+		List<DungeonRoom> rooms = dungeon.getRooms();
+		for (int i = 0; i < rooms.size(); i++) {
+			for (int j = i + 1; j < rooms.size(); j++) {
+				DungeonRoom r1 = rooms.get(i);
+				DungeonRoom r2 = rooms.get(j);
+				int maxX = Math.min(r1.getX() + r1.getWidth(), r2.getX() + r2.getWidth());
+				int maxY = Math.min(r1.getY() + r1.getHeight(), r2.getY() + r2.getHeight());
+				for (int y = Math.max(r1.getY(), r2.getY()); y < maxY; y++) {
+					for (int x = Math.max(r1.getX(), r2.getX()); x < maxX; x++) {
+						Position tile = new Position(x, y);
+						if (isInRoom(r1, tile) && isInRoom(r2, tile)) {
+							return "rooms " + r1.getId() + " and " + r2.getId() + " overlap at " + tile;
+						}
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the pairs of room indexes (in the list of rooms) of the hallways whose path doesn't
+	 * start and end next to their rooms
+	 */
+	private static Set<Long> getDetachedHallways(Dungeon dungeon) {
+		Map<DungeonRoom, Integer> roomIndexes = new HashMap<>();
+		for (int roomId = 0; roomId < dungeon.getRooms().size(); roomId++) {
+			roomIndexes.put(dungeon.getRooms().get(roomId), roomId);
+		}
+		Set<Long> detached = new HashSet<>();
+		for (DungeonHallway hallway : dungeon.getHallways()) {
+			List<Position> path = hallway.getPath();
+			if (path.isEmpty()) {
+				continue;
+			}
+			Position first = path.get(0);
+			Position last = path.get(path.size() - 1);
+			DungeonRoom from = hallway.getRoomFrom();
+			DungeonRoom to = hallway.getRoomTo();
+			if (!(isNextTo(from, first) && isNextTo(to, last)) && !(isNextTo(to, first) && isNextTo(from, last))) {
+				detached.add(getKey(roomIndexes.get(from), roomIndexes.get(to)));
+			}
+		}
+		return detached;
+	}
+
+	/**
+	 * @return true if the position is in the room or on its border
+	 */
+	private static boolean isNextTo(DungeonRoom room, Position position) {
+		return position.x >= room.getX() - 1 && position.x <= room.getX() + room.getWidth()
+				&& position.y >= room.getY() - 1 && position.y <= room.getY() + room.getHeight();
+	}
+
+	private static Map<Node, Integer> getIndexes(List<Node> nodes) {
+		Map<Node, Integer> indexes = new HashMap<>();
+		for (int nodeId = 0; nodeId < nodes.size(); nodeId++) {
+			indexes.put(nodes.get(nodeId), nodeId);
+		}
+		return indexes;
+	}
+
+	private static long getKey(List<Node> nodes, Edge edge) {
+		Map<Node, Integer> indexes = getIndexes(nodes);
+		return getKey(indexes.get(edge.getFirstNode()), indexes.get(edge.getSecondNode()));
+	}
+
+	private static long getKey(int node1, int node2) {
+		return node1 < node2 ? ((long) node1 << 32) | node2 : ((long) node2 << 32) | node1;
+	}
+}
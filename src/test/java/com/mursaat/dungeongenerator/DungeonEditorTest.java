@@ -0,0 +1,228 @@
+package com.mursaat.dungeongenerator;
+
+import com.mursaat.dungeongenerator.graphs.Edge;
+import com.mursaat.dungeongenerator.graphs.Node;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class DungeonEditorTest {
+
+	/**
+	 * The number of random places tried for a new room, or a moved one
+	 */
+	private static final int MAX_PLACE_TRIES = 1000;
+
+	@Test
+	public void addRoomLinksTheNewRoom() throws Exception {
+		DungeonParams dungeonParams = createParams(0);
+		Dungeon dungeon = new DungeonGenerator(dungeonParams, new RoomParams()).generateDungeon(1);
+		DungeonEditor editor = new DungeonEditor(dungeon, dungeonParams, new Random(1));
+
+		Random random = new Random(2);
+		DungeonRoom room = null;
+		for (int i = 0; i < MAX_PLACE_TRIES && room == null; i++) {
+			try {
+				room = editor.addRoom(random.nextInt(dungeon.getWidth()), random.nextInt(dungeon.getHeight()), 6, 5);
+			} catch (IllegalArgumentException e) {
+				// Too close to another room, try another place
+			}
+		}
+		assertNotNull(room);
+
+		assertTrue(dungeon.getRooms().contains(room));
+		assertEquals(DungeonRoom.RoomType.MAIN_ROOM, room.getType());
+		for (int y = room.getY(); y < room.getY() + room.getHeight(); y++) {
+			for (int x = room.getX(); x < room.getX() + room.getWidth(); x++) {
+				assertSame(room, dungeon.getStructureAt(x, y));
+			}
+		}
+		assertFalse(dungeon.spanningGraph.getEdges(new Node(room)).isEmpty());
+		assertFalse(getHallwaysOf(dungeon, room).isEmpty());
+		assertNull(findEditProblem(dungeon));
+	}
+
+	@Test
+	public void moveRoomMovesItsTilesAndHallways() throws Exception {
+		DungeonParams dungeonParams = createParams(0);
+		Dungeon dungeon = new DungeonGenerator(dungeonParams, new RoomParams()).generateDungeon(3);
+		DungeonEditor editor = new DungeonEditor(dungeon, dungeonParams, new Random(3));
+
+		DungeonRoom room = dungeon.spanningGraph.getNodes().get(0).getRoom();
+		int oldX = room.getX();
+		int oldY = room.getY();
+		Random random = new Random(4);
+		boolean moved = false;
+		for (int i = 0; i < MAX_PLACE_TRIES && !moved; i++) {
+			try {
+				editor.moveRoom(room, random.nextInt(dungeon.getWidth()), random.nextInt(dungeon.getHeight()));
+				moved = true;
+			} catch (IllegalArgumentException e) {
+				// Too close to another room, try another place
+			}
+		}
+		assertTrue(moved);
+
+		for (int y = oldY; y < oldY + room.getHeight(); y++) {
+			for (int x = oldX; x < oldX + room.getWidth(); x++) {
+				boolean inNewPlace = x >= room.getX() && x < room.getX() + room.getWidth()
+						&& y >= room.getY() && y < room.getY() + room.getHeight();
+				assertEquals(inNewPlace, dungeon.getStructureAt(x, y) == room);
+			}
+		}
+		List<DungeonHallway> hallways = getHallwaysOf(dungeon, room);
+		assertFalse(hallways.isEmpty());
+		for (DungeonHallway hallway : hallways) {
+			List<Position> path = hallway.getPath();
+			assertTrue(isNextTo(room, path.get(0)) || isNextTo(room, path.get(path.size() - 1)));
+		}
+		assertNull(findEditProblem(dungeon));
+	}
+
+	/**
+	 * Random additions, removals and moves, each followed by a comparison with the tiles of the
+	 * dungeon rasterized again from its rooms and hallways
+	 */
+	@Test
+	public void editsMatchAFullRasterization() throws Exception {
+		int edits = 0;
+		for (long seed = 0; seed < 40; seed++) {
+			DungeonParams dungeonParams = createParams(seed);
+			Dungeon dungeon = new DungeonGenerator(dungeonParams, new RoomParams()).generateDungeon(seed);
+			DungeonEditor editor = new DungeonEditor(dungeon, dungeonParams, new Random(seed * 7));
+
+			Random random = new Random(seed);
+			for (int i = 0; i < 30; i++) {
+				List<DungeonRoom> rooms = dungeon.getRooms();
+				String edit;
+				try {
+					int operation = random.nextInt(3);
+					if (operation == 0) {
+						DungeonRoom room = editor.addRoom(random.nextInt(dungeon.getWidth()), random.nextInt(dungeon.getHeight()),
+								4 + random.nextInt(8), 4 + random.nextInt(8));
+						edit = "adding the room " + room.getId();
+					} else if (operation == 1) {
+						DungeonRoom room = rooms.get(random.nextInt(rooms.size()));
+						editor.removeRoom(room);
+						edit = "removing the room " + room.getId();
+					} else {
+						DungeonRoom room = rooms.get(random.nextInt(rooms.size()));
+						editor.moveRoom(room, random.nextInt(dungeon.getWidth()), random.nextInt(dungeon.getHeight()));
+						edit = "moving the room " + room.getId();
+					}
+				} catch (IllegalArgumentException e) {
+					// A place too close to another room, or an hallway room moved
+					continue;
+				}
+				edits++;
+
+				String problem = findEditProblem(dungeon);
+				if (problem != null) {
+					fail("Seed " + seed + ", after " + edit + " : " + problem);
+				}
+			}
+		}
+		assertTrue("Only " + edits + " edits", edits > 500);
+	}
+
+	private static DungeonParams createParams(long seed) {
+		DungeonParams dungeonParams = new DungeonParams().setMinRoomCount(60).setMaxRoomCount(90);
+		return seed % 3 == 0 ? dungeonParams.setHallwaysWidth(3) : dungeonParams;
+	}
+
+	/**
+	 * @return null if the dungeon has the tiles of a new rasterization of its rooms and hallways,
+	 * and one hallway per spanning edge, else the first problem found
+	 */
+	private static String findEditProblem(Dungeon dungeon) {
+		Dungeon reference = CompactDungeon.of(dungeon).toDungeon();
+		int[] referenceTiles = getTileIndexes(reference);
+		int[] tiles = getTileIndexes(dungeon);
+		for (int tile = 0; tile < tiles.length; tile++) {
+			if (tiles[tile] != referenceTiles[tile]) {
+				return "the tile (" + tile % dungeon.getWidth() + ", " + tile / dungeon.getWidth() + ") is "
+						+ tiles[tile] + " instead of " + referenceTiles[tile];
+			}
+		}
+
+		Set<Node> nodes = new HashSet<>(dungeon.spanningGraph.getNodes());
+		for (DungeonRoom room : dungeon.getRooms()) {
+			if (room.getType() == DungeonRoom.RoomType.MAIN_ROOM && !nodes.remove(new Node(room))) {
+				return "the main room " + room.getId() + " is not in the spanning graph";
+			}
+		}
+		if (!nodes.isEmpty()) {
+			return "the spanning graph has " + nodes.size() + " nodes of removed rooms";
+		}
+
+		Set<Long> hallwayPairs = new HashSet<>();
+		for (DungeonHallway hallway : dungeon.getHallways()) {
+			hallwayPairs.add(getPairKey(hallway.getRoomFrom(), hallway.getRoomTo()));
+		}
+		Set<Long> edgePairs = new HashSet<>();
+		for (Edge edge : dungeon.spanningGraph.getEdges()) {
+			edgePairs.add(getPairKey(edge.getFirstNode().getRoom(), edge.getSecondNode().getRoom()));
+		}
+		if (!hallwayPairs.equals(edgePairs)) {
+			return "the hallways link " + hallwayPairs.size() + " pairs of rooms, and the spanning edges "
+					+ edgePairs.size();
+		}
+		return null;
+	}
+
+	/**
+	 * @return the structure of each tile, at index y * width + x : -1 for a wall, the index of a
+	 * room, or the number of rooms + the index of an hallway. -2 for a structure which is not in the
+	 * dungeon.
+	 */
+	private static int[] getTileIndexes(Dungeon dungeon) {
+		Map<DungeonStructure, Integer> indexes = new IdentityHashMap<>();
+		for (DungeonRoom room : dungeon.getRooms()) {
+			indexes.put(room, indexes.size());
+		}
+		for (DungeonHallway hallway : dungeon.getHallways()) {
+			indexes.put(hallway, indexes.size());
+		}
+		int[] tiles = new int[dungeon.getWidth() * dungeon.getHeight()];
+		for (int y = 0; y < dungeon.getHeight(); y++) {
+			for (int x = 0; x < dungeon.getWidth(); x++) {
+				DungeonStructure structure = dungeon.getStructureAt(x, y);
+				Integer index = structure == null ? Integer.valueOf(-1) : indexes.get(structure);
+				tiles[y * dungeon.getWidth() + x] = index == null ? -2 : index;
+			}
+		}
+		return tiles;
+	}
+
+	private static List<DungeonHallway> getHallwaysOf(Dungeon dungeon, DungeonRoom room) {
+		List<DungeonHallway> hallways = new ArrayList<>();
+		for (DungeonHallway hallway : dungeon.getHallways()) {
+			if (hallway.getRoomFrom() == room || hallway.getRoomTo() == room) {
+				hallways.add(hallway);
+			}
+		}
+		return hallways;
+	}
+
+	/**
+	 * @return true if the position is in the room or on its border
+	 */
+	private static boolean isNextTo(DungeonRoom room, Position position) {
+		return position.x >= room.getX() - 1 && position.x <= room.getX() + room.getWidth()
+				&& position.y >= room.getY() - 1 && position.y <= room.getY() + room.getHeight();
+	}
+
+	private static long getPairKey(DungeonRoom room1, DungeonRoom room2) {
+		int id1 = room1.getId();
+		int id2 = room2.getId();
+		return ((long) Math.min(id1, id2) << 32) | Math.max(id1, id2);
+	}
+}
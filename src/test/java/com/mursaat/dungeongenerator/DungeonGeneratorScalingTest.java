@@ -0,0 +1,230 @@
+package com.mursaat.dungeongenerator;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Generate dungeons at doubling room counts, and check the growth of the time and of the allocated
+ * bytes of each phase. The growth exponent is the slope of a least squares fit in log-log scale.
+ * The time is the CPU time of the generating thread when the JVM measures it, which is less noisy
+ * on a loaded machine.
+ * <p>
+ * The room counts go from 32 to the system property {@code dungeon.scaling.maxRoomCount} (512 by
+ * default, the smallest size where all the phases with a budget are measurable, 16384 for a long
+ * run).
+ */
+public class DungeonGeneratorScalingTest {
+
+	private static final int MIN_ROOM_COUNT = 32;
+	private static final int MAX_ROOM_COUNT = Integer.getInteger("dungeon.scaling.maxRoomCount", 512);
+	private static final int SEEDS_PER_SIZE = 3;
+
+	/**
+	 * Below this time at the largest size, the time of a phase is too small to be fitted
+	 */
+	private static final long MIN_MEASURABLE_NANOS = 1_000_000;
+
+	/**
+	 * Below this number of bytes, the allocations of a phase are counted as this number
+	 */
+	private static final long MIN_MEASURABLE_BYTES = 64 * 1024;
+
+	/**
+	 * The margin added to the time budgets, as the times are noisy. It is smaller than the gap
+	 * between each budget and the next power, so a phase one power slower always fails.
+	 */
+	private static final double TIME_TOLERANCE = 0.25;
+
+	/**
+	 * The maximum growth exponents of the time of each phase
+	 */
+	private static final Map<GenerationPhase, Double> TIME_BUDGETS = new EnumMap<>(GenerationPhase.class);
+
+	/**
+	 * The maximum growth exponents of the allocated bytes of each phase
+	 */
+	private static final Map<GenerationPhase, Double> ALLOCATION_BUDGETS = new EnumMap<>(GenerationPhase.class);
+
+	static {
+		// The exponents measured from 32 to 512 rooms, rounded up. Each pass of the separation
+		// compares all the pairs, and there are about n^1.15 passes (see GenerationCostModel). The
+		// triangulation starts from the complete graph of the main rooms.
+		TIME_BUDGETS.put(GenerationPhase.SEPARATION, 3.3);
+		TIME_BUDGETS.put(GenerationPhase.TRIANGULATION, 2.0);
+		TIME_BUDGETS.put(GenerationPhase.SPANNING_TREE, 1.6);
+		TIME_BUDGETS.put(GenerationPhase.CARVING, 1.0);
+
+		ALLOCATION_BUDGETS.put(GenerationPhase.SEPARATION, 1.0);
+		ALLOCATION_BUDGETS.put(GenerationPhase.TRIANGULATION, 2.0);
+		ALLOCATION_BUDGETS.put(GenerationPhase.SPANNING_TREE, 2.0);
+		ALLOCATION_BUDGETS.put(GenerationPhase.CARVING, 1.5);
+	}
+
+	@Test
+	public void phasesStayWithinTheirBudgets() throws Exception {
+		List<Integer> roomCounts = new ArrayList<>();
+		for (int roomCount = MIN_ROOM_COUNT; roomCount <= MAX_ROOM_COUNT; roomCount *= 2) {
+			roomCounts.add(roomCount);
+		}
+		assertTrue("At least three sizes are needed", roomCounts.size() >= 3);
+
+		PhaseRecorder recorder = new PhaseRecorder();
+
+		// Warm up the JIT on a middle size, so that the smallest sizes are not measured in the
+		// interpreter
+		for (int seed = 0; seed < SEEDS_PER_SIZE; seed++) {
+			generate(Math.min(4 * MIN_ROOM_COUNT, MAX_ROOM_COUNT), seed, recorder);
+		}
+
+		Map<GenerationPhase, long[]> times = new EnumMap<>(GenerationPhase.class);
+		Map<GenerationPhase, long[]> allocations = new EnumMap<>(GenerationPhase.class);
+		for (GenerationPhase phase : GenerationPhase.values()) {
+			times.put(phase, new long[roomCounts.size()]);
+			allocations.put(phase, new long[roomCounts.size()]);
+		}
+
+		for (int sizeId = 0; sizeId < roomCounts.size(); sizeId++) {
+			Map<GenerationPhase, long[]> seedTimes = new EnumMap<>(GenerationPhase.class);
+			Map<GenerationPhase, long[]> seedAllocations = new EnumMap<>(GenerationPhase.class);
+			for (GenerationPhase phase : GenerationPhase.values()) {
+				seedTimes.put(phase, new long[SEEDS_PER_SIZE]);
+				seedAllocations.put(phase, new long[SEEDS_PER_SIZE]);
+			}
+			for (int seed = 0; seed < SEEDS_PER_SIZE; seed++) {
+				generate(roomCounts.get(sizeId), seed, recorder);
+				for (GenerationPhase phase : GenerationPhase.values()) {
+					seedTimes.get(phase)[seed] = recorder.times.get(phase);
+					seedAllocations.get(phase)[seed] = recorder.allocations.get(phase);
+				}
+			}
+			for (GenerationPhase phase : GenerationPhase.values()) {
+				times.get(phase)[sizeId] = median(seedTimes.get(phase));
+				allocations.get(phase)[sizeId] = median(seedAllocations.get(phase));
+			}
+		}
+
+		StringBuilder failures = new StringBuilder();
+		for (Map.Entry<GenerationPhase, Double> budget : TIME_BUDGETS.entrySet()) {
+			long[] phaseTimes = times.get(budget.getKey());
+			if (phaseTimes[phaseTimes.length - 1] < MIN_MEASURABLE_NANOS) {
+				continue;
+			}
+			double exponent = fitExponent(roomCounts, phaseTimes, 1);
+			if (exponent > budget.getValue() + TIME_TOLERANCE) {
+				failures.append(String.format("%s time grows as n^%.2f (budget n^%.1f) : %s ns%n",
+						budget.getKey(), exponent, budget.getValue(), Arrays.toString(phaseTimes)));
+			}
+		}
+		if (recorder.allocationsMeasured) {
+			for (Map.Entry<GenerationPhase, Double> budget : ALLOCATION_BUDGETS.entrySet()) {
+				long[] phaseAllocations = allocations.get(budget.getKey());
+				double exponent = fitExponent(roomCounts, phaseAllocations, MIN_MEASURABLE_BYTES);
+				if (exponent > budget.getValue()) {
+					failures.append(String.format("%s allocations grow as n^%.2f (budget n^%.1f) : %s bytes%n",
+							budget.getKey(), exponent, budget.getValue(), Arrays.toString(phaseAllocations)));
+				}
+			}
+		}
+		if (failures.length() > 0) {
+			fail("Room counts " + roomCounts + "\n" + failures);
+		}
+	}
+
+	private static void generate(int roomCount, long seed, PhaseRecorder recorder) {
+		DungeonParams dungeonParams = new DungeonParams()
+				.setMaxRoomCount(roomCount)
+				.setMinRoomCount(roomCount)
+				.setMaxRadius((int) Math.ceil(4 * Math.sqrt(roomCount)));
+		recorder.reset();
+		new DungeonGenerator(dungeonParams, new RoomParams()).setListener(recorder).generateDungeon(seed);
+	}
+
+	/**
+	 * @param roomCounts the sizes
+	 * @param values     the measures, one per size
+	 * @param minValue   the smallest value, the measures below are raised to it
+	 * @return the slope of ln(value) as a function of ln(size)
+	 */
+	private static double fitExponent(List<Integer> roomCounts, long[] values, long minValue) {
+		int count = roomCounts.size();
+		double sumX = 0;
+		double sumY = 0;
+		double sumXY = 0;
+		double sumXX = 0;
+		for (int sizeId = 0; sizeId < count; sizeId++) {
+			double x = Math.log(roomCounts.get(sizeId));
+			double y = Math.log(Math.max(values[sizeId], minValue));
+			sumX += x;
+			sumY += y;
+			sumXY += x * y;
+			sumXX += x * x;
+		}
+		return (count * sumXY - sumX * sumY) / (count * sumXX - sumX * sumX);
+	}
+
+	private static long median(long[] values) {
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+	/**
+	 * Measure the time and the bytes allocated by the generating thread in each phase
+	 */
+	private static class PhaseRecorder implements GenerationListener {
+		private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		private final boolean allocationsMeasured;
+		private final boolean cpuTimeMeasured;
+
+		final Map<GenerationPhase, Long> times = new EnumMap<>(GenerationPhase.class);
+		final Map<GenerationPhase, Long> allocations = new EnumMap<>(GenerationPhase.class);
+		private final Map<GenerationPhase, Long> startTimes = new EnumMap<>(GenerationPhase.class);
+		private final Map<GenerationPhase, Long> startAllocations = new EnumMap<>(GenerationPhase.class);
+
+		PhaseRecorder() {
+			allocationsMeasured = threadMXBean instanceof com.sun.management.ThreadMXBean
+					&& ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()
+					&& ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled();
+			cpuTimeMeasured = threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+		}
+
+		void reset() {
+			for (GenerationPhase phase : GenerationPhase.values()) {
+				times.put(phase, 0L);
+				allocations.put(phase, 0L);
+			}
+		}
+
+		@Override
+		public void onPhaseStart(GenerationPhase phase) {
+			startAllocations.put(phase, getAllocatedBytes());
+			startTimes.put(phase, getTime());
+		}
+
+		@Override
+		public void onPhaseEnd(GenerationPhase phase) {
+			times.put(phase, times.get(phase) + getTime() - startTimes.get(phase));
+			allocations.put(phase, allocations.get(phase) + getAllocatedBytes() - startAllocations.get(phase));
+		}
+
+		private long getTime() {
+			return cpuTimeMeasured ? threadMXBean.getCurrentThreadCpuTime() : System.nanoTime();
+		}
+
+		private long getAllocatedBytes() {
+			if (!allocationsMeasured) {
+				return 0;
+			}
+			return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+	}
+}
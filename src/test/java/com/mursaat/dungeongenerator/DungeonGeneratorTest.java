@@ -31,4 +31,15 @@ public class DungeonGeneratorTest {
 		Dungeon dungeon = new DungeonGenerator().generateDungeon();
 		System.out.println(dungeon);
 	}
+
+	@Test
+	public void generateDungeonFromSeed() throws Exception {
+		DungeonGenerator myGenerator = new DungeonGenerator();
+		Dungeon first = myGenerator.generateDungeon(42);
+		Dungeon second = myGenerator.generateDungeon(42);
+
+		assertEquals(first.getWidth(), second.getWidth());
+		assertEquals(first.getHeight(), second.getHeight());
+		assertEquals(first.toString(), second.toString());
+	}
 }
@@ -0,0 +1,251 @@
+package com.mursaat.dungeongenerator;
+
+import com.mursaat.dungeongenerator.graphs.Graph;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DungeonPublisherTest {
+
+	private static final long SEED = 17;
+
+	@Test(timeout = 30000)
+	public void resultsComeInTheOrderOfTheGeneration() throws Exception {
+		RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+		new DungeonPublisher(createGenerator(), SEED).subscribe(subscriber);
+		assertTrue(subscriber.done.await(20, TimeUnit.SECONDS));
+		assertNull(subscriber.error);
+
+		List<GenerationProgress> items = subscriber.getItems();
+		assertTrue(items.get(0) instanceof GenerationProgress.RoomsPlaced);
+		assertTrue(items.get(1) instanceof GenerationProgress.RoomsSeparated);
+		assertTrue(items.get(2) instanceof GenerationProgress.MainRoomGraph);
+		assertTrue(items.get(3) instanceof GenerationProgress.SpanningTree);
+		GenerationProgress.SpanningTree spanningTree = (GenerationProgress.SpanningTree) items.get(3);
+		int hallwayCount = items.size() - 5;
+		for (int item = 4; item < items.size() - 1; item++) {
+			assertTrue("item " + item, items.get(item) instanceof GenerationProgress.HallwayCarved);
+		}
+		assertTrue(items.get(items.size() - 1) instanceof GenerationProgress.Completed);
+
+		// One hallway per link of the spanning tree
+		Dungeon dungeon = ((GenerationProgress.Completed) items.get(items.size() - 1)).getDungeon();
+		assertEquals(spanningTree.getLinks().size(), hallwayCount);
+		assertEquals(dungeon.getHallways().size(), hallwayCount);
+	}
+
+	@Test(timeout = 30000)
+	public void theResultsMatchTheGeneratedDungeon() throws Exception {
+		DungeonGenerator generator = createGenerator();
+		RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+		new DungeonPublisher(generator, SEED).subscribe(subscriber);
+		assertTrue(subscriber.done.await(20, TimeUnit.SECONDS));
+
+		List<GenerationProgress> items = subscriber.getItems();
+		Dungeon dungeon = ((GenerationProgress.Completed) items.get(items.size() - 1)).getDungeon();
+		assertEquals(generator.generateDungeon(SEED).toString(), dungeon.toString());
+
+		// The separated rooms are where the rooms of the dungeon are
+		Map<Integer, DungeonRoom> separatedRooms = new HashMap<>();
+		for (DungeonRoom room : ((GenerationProgress.RoomsSeparated) items.get(1)).getRooms()) {
+			separatedRooms.put(room.getId(), room);
+		}
+		for (DungeonRoom room : dungeon.getRooms()) {
+			DungeonRoom separated = separatedRooms.get(room.getId());
+			assertNotNull("room " + room.getId(), separated);
+			assertEquals("room " + room.getId(), room.getPosition(), separated.getPosition());
+		}
+
+		// The hallways are carved in the order of the dungeon
+		List<DungeonHallway> hallways = dungeon.getHallways();
+		for (int hallwayId = 0; hallwayId < hallways.size(); hallwayId++) {
+			GenerationProgress.HallwayCarved carved = (GenerationProgress.HallwayCarved) items.get(4 + hallwayId);
+			assertEquals(hallways.get(hallwayId).getPath(), carved.getPath());
+			assertEquals(hallways.get(hallwayId).getRoomFrom().getId(), carved.getRoomFrom().getId());
+			assertEquals(hallways.get(hallwayId).getRoomTo().getId(), carved.getRoomTo().getId());
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void theGenerationWaitsForTheRequests() throws Exception {
+		CountingListener listener = new CountingListener();
+		RecordingSubscriber subscriber = new RecordingSubscriber(1);
+		new DungeonPublisher(createGenerator().setListener(listener), SEED).setBufferCapacity(1).subscribe(subscriber);
+
+		// One result delivered, one in the buffer, and the generation waits to submit the third one
+		assertTrue(listener.blocked(3));
+		assertEquals(1, subscriber.getItems().size());
+		assertFalse(listener.generated);
+
+		subscriber.subscription.request(Long.MAX_VALUE);
+		assertTrue(subscriber.done.await(20, TimeUnit.SECONDS));
+		assertNull(subscriber.error);
+		assertTrue(listener.generated);
+		assertEquals(listener.progressCount.get() + 1, subscriber.getItems().size());
+	}
+
+	@Test(timeout = 30000)
+	public void cancellingStopsTheGeneration() throws Exception {
+		for (boolean waiting : new boolean[]{false, true}) {
+			CountingListener listener = new CountingListener();
+			CountDownLatch generationEnded = new CountDownLatch(1);
+			Executor executor = runnable -> new Thread(() -> {
+				try {
+					runnable.run();
+				} finally {
+					generationEnded.countDown();
+				}
+			}).start();
+			RecordingSubscriber subscriber = new RecordingSubscriber(waiting ? 1 : Long.MAX_VALUE) {
+				@Override
+				public void onNext(GenerationProgress item) {
+					super.onNext(item);
+					if (!waiting && item instanceof GenerationProgress.MainRoomGraph) {
+						subscription.cancel();
+					}
+				}
+			};
+			new DungeonPublisher(createGenerator().setListener(listener), SEED).setExecutor(executor)
+					.setBufferCapacity(1).subscribe(subscriber);
+			if (waiting) {
+				// Cancel while the generation waits for a request
+				assertTrue(listener.blocked(3));
+				subscriber.subscription.cancel();
+			}
+
+			// The generation can be one result in the buffer and one being submitted past the cancellation
+			assertTrue("waiting " + waiting, generationEnded.await(20, TimeUnit.SECONDS));
+			assertFalse("waiting " + waiting, listener.generated);
+			assertTrue(listener.progressCount.get() + " results, waiting " + waiting, listener.progressCount.get() <= 6);
+			assertFalse("waiting " + waiting, subscriber.done.await(100, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void anErrorIsGivenToTheSubscriber() throws Exception {
+		DungeonGenerator generator = createGenerator().setListener(new GenerationListener() {
+			@Override
+			public void onSpanningTree(Graph graph) {
+				throw new AssertionError("Planned failure");
+			}
+		});
+		RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+		new DungeonPublisher(generator, SEED).subscribe(subscriber);
+		assertTrue(subscriber.done.await(20, TimeUnit.SECONDS));
+		assertTrue(subscriber.error instanceof AssertionError);
+		// The results not delivered yet are dropped by the error
+		List<GenerationProgress> items = subscriber.getItems();
+		assertTrue(items.size() <= 3);
+		for (GenerationProgress item : items) {
+			assertFalse(item instanceof GenerationProgress.SpanningTree || item instanceof GenerationProgress.Completed);
+		}
+	}
+
+	private static DungeonGenerator createGenerator() {
+		return new DungeonGenerator(new DungeonParams().setMinRoomCount(30).setMaxRoomCount(40), new RoomParams());
+	}
+
+	/**
+	 * Record the results, after requesting a number of them on subscription
+	 */
+	private static class RecordingSubscriber implements Flow.Subscriber<GenerationProgress> {
+		final CountDownLatch done = new CountDownLatch(1);
+		private final long initialRequest;
+		private final List<GenerationProgress> items = Collections.synchronizedList(new ArrayList<>());
+		volatile Flow.Subscription subscription;
+		volatile Throwable error;
+
+		RecordingSubscriber(long initialRequest) {
+			this.initialRequest = initialRequest;
+		}
+
+		List<GenerationProgress> getItems() {
+			synchronized (items) {
+				return new ArrayList<>(items);
+			}
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(initialRequest);
+		}
+
+		@Override
+		public void onNext(GenerationProgress item) {
+			items.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			done.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			done.countDown();
+		}
+	}
+
+	/**
+	 * Count the partial results of the generation, as they are computed
+	 */
+	private static class CountingListener implements GenerationListener {
+		final AtomicInteger progressCount = new AtomicInteger();
+		volatile boolean generated;
+
+		/**
+		 * @return true if the generation computed this number of results and no more for a while
+		 */
+		boolean blocked(int count) throws InterruptedException {
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (progressCount.get() < count && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			Thread.sleep(300);
+			return progressCount.get() == count;
+		}
+
+		@Override
+		public void onRoomsPlaced(List<DungeonRoom> rooms) {
+			progressCount.incrementAndGet();
+		}
+
+		@Override
+		public void onRoomsSeparated(List<DungeonRoom> rooms) {
+			progressCount.incrementAndGet();
+		}
+
+		@Override
+		public void onMainRoomGraph(Graph graph) {
+			progressCount.incrementAndGet();
+		}
+
+		@Override
+		public void onSpanningTree(Graph graph) {
+			progressCount.incrementAndGet();
+		}
+
+		@Override
+		public void onHallwayCarved(DungeonHallway hallway) {
+			progressCount.incrementAndGet();
+		}
+
+		@Override
+		public void onDungeonGenerated(Dungeon dungeon) {
+			generated = true;
+		}
+	}
+}
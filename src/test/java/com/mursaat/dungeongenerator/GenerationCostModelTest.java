@@ -0,0 +1,98 @@
+package com.mursaat.dungeongenerator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GenerationCostModelTest {
+
+	/**
+	 * Fixed costs, so the tests don't depend on the machine
+	 */
+	private static final GenerationCostModel MODEL = new GenerationCostModel(6, 2, 15, 80);
+
+	@Test
+	public void estimateGrowsWithTheRoomCount() throws Exception {
+		GenerationCost previous = null;
+		for (int roomCount = 25; roomCount <= 800; roomCount *= 2) {
+			GenerationCost cost = MODEL.estimate(createParams(roomCount, 40, 1), new RoomParams());
+			if (previous != null) {
+				assertTrue(roomCount + " rooms", cost.getSeparationPasses() > previous.getSeparationPasses());
+				assertTrue(roomCount + " rooms", cost.getSeparationNanos() > previous.getSeparationNanos());
+				assertTrue(roomCount + " rooms", cost.getNanos() > previous.getNanos());
+				assertTrue(roomCount + " rooms", cost.getBytes() > previous.getBytes());
+			}
+			previous = cost;
+		}
+	}
+
+	@Test
+	public void estimateGrowsWithTheDensity() throws Exception {
+		GenerationCost previous = null;
+		for (int radius = 200; radius >= 10; radius /= 2) {
+			GenerationCost cost = MODEL.estimate(createParams(100, radius, 1), new RoomParams());
+			if (previous != null) {
+				assertTrue("radius " + radius, cost.getDensity() > previous.getDensity());
+				assertTrue("radius " + radius, cost.getSeparationPasses() > previous.getSeparationPasses());
+				assertTrue("radius " + radius, cost.getSeparationNanos() > previous.getSeparationNanos());
+			}
+			previous = cost;
+		}
+
+		// More space between the rooms makes them denser for the separation
+		GenerationCost spaced = MODEL.estimate(createParams(100, 40, 4), new RoomParams());
+		GenerationCost packed = MODEL.estimate(createParams(100, 40, 0), new RoomParams());
+		assertTrue(spaced.getSeparationNanos() > packed.getSeparationNanos());
+	}
+
+	@Test
+	public void autoTuneMeetsTheTarget() throws Exception {
+		RoomParams roomParams = new RoomParams();
+		for (int roomCount = 50; roomCount <= 400; roomCount *= 2) {
+			for (double density : new double[]{0.1, 0.5, 1, 2}) {
+				long fastest = MODEL.estimate(createParams(roomCount, 1000, 0), roomParams).getNanos();
+				for (double slack : new double[]{1.5, 4, 20, 1000}) {
+					long targetNanos = (long) (fastest * slack);
+					DungeonParams params = MODEL.autoTune(createParams(roomCount, 8, 3), roomParams, targetNanos, density);
+					String config = roomCount + " rooms, density " + density + ", target " + targetNanos;
+					assertTrue(config, MODEL.estimate(params, roomParams).getNanos() <= targetNanos);
+					assertTrue(config, params.getMinSpaceBetweenRooms() >= 0 && params.getMinSpaceBetweenRooms() <= 3);
+					assertEquals(config, params.getMinRadius(), params.getMaxRadius());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void autoTuneKeepsTheSpaceWhenTheTargetAllowsIt() throws Exception {
+		RoomParams roomParams = new RoomParams();
+		DungeonParams params = MODEL.autoTune(createParams(100, 8, 3), roomParams, Long.MAX_VALUE, 0.5);
+		assertEquals(3, params.getMinSpaceBetweenRooms());
+
+		// The radius of the circle where the rooms of the mean size cover half of the area
+		double roomArea = (roomParams.getMinWidth() + roomParams.getMaxWidth()) / 2.0
+				* (roomParams.getMinHeight() + roomParams.getMaxHeight()) / 2.0;
+		assertEquals(Math.round(Math.sqrt(100 * roomArea / (Math.PI * 0.5))), params.getMinRadius());
+
+		// A negative space falls back to 0, even when the target can't be met
+		for (long targetNanos : new long[]{Long.MAX_VALUE, 1}) {
+			params = MODEL.autoTune(createParams(100, 8, -2), roomParams, targetNanos, 0.5);
+			assertEquals(0, params.getMinSpaceBetweenRooms());
+		}
+	}
+
+	@Test
+	public void autoTuneRejectsANullDensity() throws Exception {
+		try {
+			MODEL.autoTune(new DungeonParams(), new RoomParams(), 1000, 0);
+			fail("a null density is accepted");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	private static DungeonParams createParams(int roomCount, int radius, int space) {
+		return new DungeonParams().setMaxRoomCount(roomCount).setMinRoomCount(roomCount)
+				.setMaxRadius(radius).setMinRadius(radius).setMinSpaceBetweenRooms(space);
+	}
+}
@@ -0,0 +1,30 @@
+package com.mursaat.dungeongenerator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MultiLevelDungeonGeneratorTest {
+
+	@Test
+	public void staircasesAreOnTilesOfBothRooms() throws Exception {
+		MultiLevelDungeonGenerator generator = new MultiLevelDungeonGenerator(
+				new DungeonParams().setMinRoomCount(30).setMaxRoomCount(40),
+				new RoomParams().setShapes(RoomShape.values()))
+				.setStaircasesPerFloor(5);
+		int staircaseCount = 0;
+		for (long seed = 0; seed < 20; seed++) {
+			MultiLevelDungeon dungeon = generator.generate(3, seed);
+			for (Staircase staircase : dungeon.getStaircases()) {
+				Position position = staircase.getPosition();
+				String where = "Seed " + seed + ", staircase at " + position;
+				assertSame(where, staircase.getLowerRoom(),
+						dungeon.getStructureAt(staircase.getLowerFloor(), position.x, position.y));
+				assertSame(where, staircase.getUpperRoom(),
+						dungeon.getStructureAt(staircase.getUpperFloor(), position.x, position.y));
+				staircaseCount++;
+			}
+		}
+		assertTrue("Only " + staircaseCount + " staircases", staircaseCount > 40);
+	}
+}
@@ -0,0 +1,90 @@
+package com.mursaat.dungeongenerator;
+
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PregeneratedDungeonPoolTest {
+
+	private static final long TIMEOUT_SECONDS = 30;
+
+	@Test
+	public void warmUpFillsThePool() throws Exception {
+		PregeneratedDungeonPool pool = new PregeneratedDungeonPool(2);
+		try {
+			pool.addProfile("small", createGenerator(null), 3);
+			assertTrue(pool.warmUp("small", TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			assertEquals(3, pool.available("small"));
+
+			Dungeon first = pool.poll("small");
+			assertNotNull(first);
+			assertNotSame(first, pool.poll("small"));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void takeGeneratesInTheCallerWhenThePoolIsEmpty() throws Exception {
+		// The workers wait in their first generation until the end of the test
+		CountDownLatch release = new CountDownLatch(1);
+		GenerationListener blockWorkers = new GenerationListener() {
+			@Override
+			public void onPhaseStart(GenerationPhase phase) {
+				if (Thread.currentThread().getName().startsWith("dungeon-pool-")) {
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new CancellationException("Interrupted");
+					}
+				}
+			}
+		};
+
+		PregeneratedDungeonPool pool = new PregeneratedDungeonPool();
+		try {
+			pool.addProfile("blocked", createGenerator(blockWorkers), 2);
+			assertNull(pool.poll("blocked"));
+			assertNotNull(pool.take("blocked"));
+			assertEquals(0, pool.available("blocked"));
+		} finally {
+			pool.shutdown();
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void workersSurviveFailedGenerations() throws Exception {
+		AtomicInteger remainingFailures = new AtomicInteger(3);
+		GenerationListener failSomeGenerations = new GenerationListener() {
+			@Override
+			public void onPhaseStart(GenerationPhase phase) {
+				if (phase == GenerationPhase.ROOMS && remainingFailures.getAndDecrement() > 0) {
+					throw new IllegalStateException("Planned failure");
+				}
+			}
+		};
+
+		PregeneratedDungeonPool pool = new PregeneratedDungeonPool();
+		try {
+			pool.addProfile("failing", createGenerator(failSomeGenerations), 2);
+			assertTrue(pool.warmUp("failing", TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			assertEquals(2, pool.available("failing"));
+			assertEquals(3, pool.failures("failing"));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static DungeonGenerator createGenerator(GenerationListener listener) {
+		DungeonGenerator generator = new DungeonGenerator(new DungeonParams().setMinRoomCount(8).setMaxRoomCount(12),
+				new RoomParams());
+		return listener == null ? generator : generator.setListener(listener);
+	}
+}
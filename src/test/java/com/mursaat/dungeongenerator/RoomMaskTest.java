@@ -0,0 +1,158 @@
+package com.mursaat.dungeongenerator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * The word operations of the masks, compared to plain tests of their tiles, at the widths around
+ * the size of a word
+ */
+public class RoomMaskTest {
+
+	private static final int[] WIDTHS = {1, 5, 63, 64, 65, 127, 128, 130};
+
+	@Test
+	public void intersectsMatchesTheTiles() throws Exception {
+		Random random = new Random(1);
+		for (int width : WIDTHS) {
+			for (int otherWidth : WIDTHS) {
+				RoomMask mask = createRandomMask(random, width, 1 + random.nextInt(4));
+				RoomMask other = createRandomMask(random, otherWidth, 1 + random.nextInt(4));
+				for (int dx = -otherWidth - 1; dx <= width + 1; dx++) {
+					for (int dy = -other.getHeight(); dy <= mask.getHeight(); dy++) {
+						int commonTileCount = countCommonTiles(mask, other, dx, dy);
+						String where = width + " and " + otherWidth + " at (" + dx + ", " + dy + ")";
+						assertEquals(where, commonTileCount > 0, mask.intersects(other, dx, dy));
+						assertEquals(where, commonTileCount, mask.countCommonTiles(other, dx, dy));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void findCommonTileFindsTheClosestOne() throws Exception {
+		Random random = new Random(2);
+		for (int width : WIDTHS) {
+			for (int otherWidth : WIDTHS) {
+				RoomMask mask = createRandomMask(random, width, 3);
+				RoomMask other = createRandomMask(random, otherWidth, 3);
+				for (int dx = -otherWidth - 1; dx <= width + 1; dx++) {
+					int dy = random.nextInt(5) - 2;
+					int targetX = random.nextInt(width);
+					int targetY = random.nextInt(3);
+					Position tile = mask.findCommonTile(other, dx, dy, targetX, targetY);
+					String where = width + " and " + otherWidth + " at (" + dx + ", " + dy + ")";
+					if (countCommonTiles(mask, other, dx, dy) == 0) {
+						assertNull(where, tile);
+						continue;
+					}
+					assertNotNull(where, tile);
+					assertTrue(where, mask.contains(tile.x, tile.y) && other.contains(tile.x - dx, tile.y - dy));
+					long dist = getSquaredDist(tile.x, tile.y, targetX, targetY);
+					for (int y = 0; y < mask.getHeight(); y++) {
+						for (int x = 0; x < width; x++) {
+							if (mask.contains(x, y) && other.contains(x - dx, y - dy)) {
+								assertTrue(where, getSquaredDist(x, y, targetX, targetY) >= dist);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void dilateMatchesTheTiles() throws Exception {
+		Random random = new Random(3);
+		for (int width : WIDTHS) {
+			RoomMask mask = createRandomMask(random, width, 4);
+			for (int radius = 1; radius <= 3; radius++) {
+				RoomMask dilated = mask.dilate(radius);
+				assertEquals(width + 2 * radius, dilated.getWidth());
+				assertEquals(4 + 2 * radius, dilated.getHeight());
+				for (int y = 0; y < dilated.getHeight(); y++) {
+					for (int x = 0; x < dilated.getWidth(); x++) {
+						boolean expected = false;
+						for (int sourceY = y - 2 * radius; sourceY <= y && !expected; sourceY++) {
+							for (int sourceX = x - 2 * radius; sourceX <= x && !expected; sourceX++) {
+								expected = mask.contains(sourceX, sourceY);
+							}
+						}
+						assertEquals(width + ", radius " + radius + " at (" + x + ", " + y + ")",
+								expected, dilated.contains(x, y));
+					}
+				}
+				assertSame(dilated, mask.dilate(radius));
+			}
+		}
+	}
+
+	@Test
+	public void forEachRunMatchesTheTiles() throws Exception {
+		Random random = new Random(4);
+		for (int width : WIDTHS) {
+			for (int density = 0; density <= 100; density += 25) {
+				RoomMask mask = createRandomMask(random, width, 4, density);
+				List<String> expected = new ArrayList<>();
+				for (int y = 0; y < mask.getHeight(); y++) {
+					for (int x = 0; x < width; x++) {
+						if (mask.contains(x, y) && !mask.contains(x - 1, y)) {
+							int end = x;
+							while (mask.contains(end + 1, y)) {
+								end++;
+							}
+							expected.add((x - 7) + "," + (y + 3) + "," + (end - 7) + "," + (y + 3));
+						}
+					}
+				}
+				List<String> runs = new ArrayList<>();
+				mask.forEachRun(-7, 3, (minX, minY, maxX, maxY) -> runs.add(minX + "," + minY + "," + maxX + "," + maxY));
+				assertEquals(width + ", density " + density, expected, runs);
+			}
+		}
+	}
+
+	private static RoomMask createRandomMask(Random random, int width, int height) {
+		return createRandomMask(random, width, height, 50);
+	}
+
+	/**
+	 * @param density the percentage of tiles in the mask
+	 */
+	private static RoomMask createRandomMask(Random random, int width, int height, int density) {
+		long[][] rows = new long[height][];
+		for (int y = 0; y < height; y++) {
+			rows[y] = RoomMask.createRow(width);
+			for (int x = 0; x < width; x++) {
+				if (random.nextInt(100) < density) {
+					rows[y][x >>> 6] |= 1L << x;
+				}
+			}
+		}
+		return new RoomMask(width, height, rows);
+	}
+
+	private static int countCommonTiles(RoomMask mask, RoomMask other, int dx, int dy) {
+		int count = 0;
+		for (int y = 0; y < mask.getHeight(); y++) {
+			for (int x = 0; x < mask.getWidth(); x++) {
+				if (mask.contains(x, y) && other.contains(x - dx, y - dy)) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static long getSquaredDist(int x1, int y1, int x2, int y2) {
+		long dx = x2 - x1;
+		long dy = y2 - y1;
+		return dx * dx + dy * dy;
+	}
+}
@@ -0,0 +1,79 @@
+package com.mursaat.dungeongenerator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SeparationKernelTest {
+
+	@Test
+	public void collisionMaskAndDepthsMatchThePairwiseTests() throws Exception {
+		Random random = new Random(1);
+		for (int test = 0; test < 50; test++) {
+			List<DungeonRoom> rooms = new ArrayList<>();
+			int count = 1 + random.nextInt(3 * SeparationKernel.BLOCK_SIZE);
+			for (int roomId = 0; roomId < count; roomId++) {
+				DungeonRoom room = new DungeonRoom(roomId).setWidth(1 + random.nextInt(20)).setHeight(1 + random.nextInt(20));
+				room.setPosition(new Position(random.nextInt(200) - 100, random.nextInt(200) - 100));
+				rooms.add(room);
+			}
+			int space = random.nextInt(4);
+			SeparationKernel kernel = new SeparationKernel(rooms, space);
+
+			for (int room = 0; room < count; room++) {
+				DungeonRoom r1 = rooms.get(room);
+				for (int from = 0; from < count; from += SeparationKernel.BLOCK_SIZE) {
+					int to = Math.min(from + SeparationKernel.BLOCK_SIZE, count);
+					long mask = kernel.getCollisionMask(room, from, to);
+					for (int other = from; other < to; other++) {
+						DungeonRoom r2 = rooms.get(other);
+						boolean collide = other != room
+								&& r1.getX() - space < r2.getX() + r2.getWidth() && r1.getX() + r1.getWidth() + space > r2.getX()
+								&& r1.getY() - space < r2.getY() + r2.getHeight() && r1.getY() + r1.getHeight() + space > r2.getY();
+						int slot = other - from;
+						assertEquals(room + " and " + other, collide, (mask & (1L << slot)) != 0);
+						if (!collide) {
+							continue;
+						}
+						assertEquals(r1.getX() + r1.getWidth() - r2.getX(), kernel.getRightDepth(slot));
+						assertEquals(r2.getX() + r2.getWidth() - r1.getX(), kernel.getLeftDepth(slot));
+						assertEquals(r1.getY() + r1.getHeight() - r2.getY(), kernel.getBottomDepth(slot));
+						assertEquals(r2.getY() + r2.getHeight() - r1.getY(), kernel.getTopDepth(slot));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The kernel moves the rooms like the pairwise separation, with rectangles and with shapes whose
+	 * rectangles may overlap
+	 */
+	@Test
+	public void separationMatchesThePairwiseOne() throws Exception {
+		for (RoomShape[] shapes : new RoomShape[][]{{RoomShape.RECTANGLE}, RoomShape.values()}) {
+			for (long seed = 0; seed < 30; seed++) {
+				DungeonParams dungeonParams = new DungeonParams().setMinRoomCount(40).setMaxRoomCount(80)
+						.setMinSpaceBetweenRooms(1 + (int) (seed % 3));
+				List<String> expected = getRooms(new DungeonGenerator(dungeonParams, new RoomParams().setShapes(shapes))
+						.generateDungeon(seed));
+				List<String> rooms = getRooms(new DungeonGenerator(dungeonParams.setPackedSeparation(true),
+						new RoomParams().setShapes(shapes)).generateDungeon(seed));
+				assertEquals("Seed " + seed, expected, rooms);
+			}
+		}
+	}
+
+	private static List<String> getRooms(Dungeon dungeon) {
+		List<String> rooms = new ArrayList<>();
+		for (DungeonRoom room : dungeon.getRooms()) {
+			rooms.add(room.getShape() + " " + room.getX() + "," + room.getY()
+					+ " " + room.getWidth() + "x" + room.getHeight());
+		}
+		return rooms;
+	}
+}
@@ -0,0 +1,104 @@
+package com.mursaat.dungeongenerator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SpeculativeDungeonGeneratorTest {
+
+	@Test(timeout = 30000)
+	public void theFirstAcceptableCandidateStopsTheOthers() throws Exception {
+		AtomicInteger startedCandidates = new AtomicInteger();
+		DungeonGenerator generator = createGenerator(new GenerationListener() {
+			@Override
+			public void onPhaseStart(GenerationPhase phase) {
+				if (phase == GenerationPhase.ROOMS) {
+					startedCandidates.incrementAndGet();
+				}
+			}
+		});
+		AtomicInteger testedCandidates = new AtomicInteger();
+		SpeculativeDungeonGenerator speculative = new SpeculativeDungeonGenerator(generator).setParallelism(4)
+				.setValidator(dungeon -> testedCandidates.incrementAndGet() >= 3);
+
+		long start = System.nanoTime();
+		assertNotNull(speculative.generate(1, 20, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+
+		// The workers are interrupted : at most the candidates being generated are still started
+		Thread.sleep(200);
+		int started = startedCandidates.get();
+		Thread.sleep(500);
+		assertEquals(started, startedCandidates.get());
+	}
+
+	@Test(timeout = 30000)
+	public void theBestCandidateIsReturnedAtTheDeadline() throws Exception {
+		List<Integer> fitnesses = Collections.synchronizedList(new ArrayList<>());
+		SpeculativeDungeonGenerator speculative = new SpeculativeDungeonGenerator(createGenerator(null))
+				.setParallelism(1)
+				.setValidator(dungeon -> false)
+				.setFitness(dungeon -> {
+					// The fifth candidate waits for the deadline, so the fitness of the others is known
+					if (fitnesses.size() == 4) {
+						try {
+							Thread.sleep(Long.MAX_VALUE);
+						} catch (InterruptedException e) {
+							throw new CancellationException("Interrupted");
+						}
+					}
+					fitnesses.add(dungeon.getRooms().size());
+					return dungeon.getRooms().size();
+				});
+
+		Dungeon best = speculative.generate(7, 2, TimeUnit.SECONDS);
+		assertNotNull(best);
+		assertEquals(4, fitnesses.size());
+		assertEquals((int) Collections.max(fitnesses), best.getRooms().size());
+	}
+
+	@Test(timeout = 30000)
+	public void constraintsRejectTheCandidatesAndCountOncePerCandidate() throws Exception {
+		AtomicInteger finishedCandidates = new AtomicInteger();
+		DungeonGenerator generator = createGenerator(new GenerationListener() {
+			@Override
+			public void onDungeonGenerated(Dungeon dungeon) {
+				finishedCandidates.incrementAndGet();
+			}
+		});
+		AtomicInteger counts = new AtomicInteger();
+		DungeonConstraints constraints = new DungeonConstraints() {
+			@Override
+			public int countViolations(Dungeon dungeon) {
+				counts.incrementAndGet();
+				return super.countViolations(dungeon);
+			}
+		}.setMinRoomCount(1000).setMinDiameter(2);
+		SpeculativeDungeonGenerator speculative = new SpeculativeDungeonGenerator(generator).setParallelism(2)
+				.setConstraints(constraints);
+
+		Dungeon best = speculative.generate(3, 1, TimeUnit.SECONDS);
+		assertNotNull(best);
+
+		Thread.sleep(200);
+		int countCalls = counts.get();
+		assertTrue(countCalls > 0);
+		assertTrue(countCalls + " counts for " + finishedCandidates.get() + " candidates",
+				countCalls <= finishedCandidates.get());
+		assertFalse(constraints.test(best));
+		assertEquals(-1, constraints.applyAsDouble(best), 0);
+	}
+
+	private static DungeonGenerator createGenerator(GenerationListener listener) {
+		DungeonGenerator generator = new DungeonGenerator(new DungeonParams().setMinRoomCount(8).setMaxRoomCount(30),
+				new RoomParams());
+		return listener == null ? generator : generator.setListener(listener);
+	}
+}
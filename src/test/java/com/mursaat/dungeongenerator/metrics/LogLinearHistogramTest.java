@@ -0,0 +1,68 @@
+package com.mursaat.dungeongenerator.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LogLinearHistogramTest {
+
+	@Test
+	public void bucketBoundsMatchTheIndexes() throws Exception {
+		long lowerBound = 0;
+		for (int bucket = 0; bucket < LogLinearHistogram.BUCKET_COUNT; bucket++) {
+			long upperBound = LogLinearHistogram.getBucketUpperBound(bucket);
+			assertTrue("bucket " + bucket, upperBound >= lowerBound);
+			assertEquals(bucket, LogLinearHistogram.getBucketIndex(lowerBound));
+			assertEquals(bucket, LogLinearHistogram.getBucketIndex(upperBound));
+			// A bucket is at most 1/16 of its values wide
+			assertTrue("bucket " + bucket, upperBound - lowerBound < Math.max(lowerBound / 16, 1));
+			lowerBound = upperBound + 1;
+		}
+		assertEquals(Long.MAX_VALUE, LogLinearHistogram.getBucketUpperBound(LogLinearHistogram.BUCKET_COUNT - 1));
+		assertEquals(Long.MIN_VALUE, lowerBound);
+	}
+
+	@Test
+	public void valuesNearTheMaxHaveTheirBucket() throws Exception {
+		int lastBucket = LogLinearHistogram.BUCKET_COUNT - 1;
+		long[] values = {Long.MAX_VALUE, Long.MAX_VALUE - 1, Long.MAX_VALUE - (1L << 58) + 1, 1L << 62};
+		int[] buckets = {lastBucket, lastBucket, lastBucket, lastBucket - 15};
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(buckets[i], LogLinearHistogram.getBucketIndex(values[i]));
+		}
+		assertEquals(lastBucket - 1, LogLinearHistogram.getBucketIndex(Long.MAX_VALUE - (1L << 58)));
+
+		LogLinearHistogram histogram = new LogLinearHistogram();
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.snapshot().getPercentile(50));
+		assertEquals(Long.MAX_VALUE, histogram.snapshot().getMax());
+	}
+
+	@Test
+	public void percentilesAreWithinASixteenth() throws Exception {
+		Random random = new Random(1);
+		for (int test = 0; test < 20; test++) {
+			LogLinearHistogram histogram = new LogLinearHistogram();
+			long[] values = new long[1 + random.nextInt(2000)];
+			for (int i = 0; i < values.length; i++) {
+				// Values of all the magnitudes, up to about a minute in nanoseconds
+				values[i] = (long) Math.exp(random.nextDouble() * 25);
+				histogram.record(values[i]);
+			}
+			Arrays.sort(values);
+			HistogramSnapshot snapshot = histogram.snapshot();
+			assertEquals(values.length, snapshot.getCount());
+			assertEquals(values[values.length - 1], snapshot.getMax());
+			for (double percentile : new double[]{0, 1, 25, 50, 90, 99, 99.9, 100}) {
+				long exact = values[(int) Math.max(Math.ceil(percentile / 100 * values.length), 1) - 1];
+				long approximate = snapshot.getPercentile(percentile);
+				String message = "percentile " + percentile + " : " + approximate + " for " + exact;
+				assertTrue(message, approximate >= exact);
+				assertTrue(message, approximate - exact <= exact / 16.0);
+			}
+		}
+	}
+}
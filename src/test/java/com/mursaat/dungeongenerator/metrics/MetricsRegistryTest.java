@@ -0,0 +1,81 @@
+package com.mursaat.dungeongenerator.metrics;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+	@Test
+	public void labelledSummariesShareTheirType() throws Exception {
+		MetricsRegistry registry = new MetricsRegistry();
+		registry.counter("dungeon_generations_total").add(3);
+		registry.histogram("dungeon_phase_nanoseconds{phase=\"rooms\"}").record(100);
+		registry.histogram("dungeon_phase_nanoseconds{phase=\"hallways\"}").record(7);
+		registry.histogram("dungeon_phase_nanoseconds{phase=\"hallways\"}").record(9);
+		registry.histogram("dungeon_nanoseconds").record(12);
+
+		StringWriter writer = new StringWriter();
+		registry.writePrometheus(writer);
+		List<String> lines = Arrays.asList(writer.toString().split("\n"));
+
+		assertEquals(1, lines.stream().filter(line -> line.startsWith("# TYPE dungeon_phase_nanoseconds ")).count());
+		assertTrue(lines.contains("# TYPE dungeon_generations_total counter"));
+		assertTrue(lines.contains("dungeon_generations_total 3"));
+		assertTrue(lines.contains("# TYPE dungeon_phase_nanoseconds summary"));
+		assertTrue(lines.contains("dungeon_phase_nanoseconds{phase=\"rooms\",quantile=\"0.5\"} 100"));
+		assertTrue(lines.contains("dungeon_phase_nanoseconds{phase=\"hallways\",quantile=\"0.5\"} 7"));
+		assertTrue(lines.contains("dungeon_phase_nanoseconds{phase=\"hallways\",quantile=\"0.999\"} 9"));
+		assertTrue(lines.contains("dungeon_phase_nanoseconds_sum{phase=\"hallways\"} 16"));
+		assertTrue(lines.contains("dungeon_phase_nanoseconds_count{phase=\"hallways\"} 2"));
+		assertTrue(lines.contains("# TYPE dungeon_nanoseconds summary"));
+		assertTrue(lines.contains("dungeon_nanoseconds{quantile=\"0.9\"} 12"));
+		assertTrue(lines.contains("dungeon_nanoseconds_count 1"));
+
+		// The type line comes before all the samples of its name
+		int typeLine = lines.indexOf("# TYPE dungeon_phase_nanoseconds summary");
+		for (int line = 0; line < typeLine; line++) {
+			assertFalse(lines.get(line), lines.get(line).startsWith("dungeon_phase_nanoseconds"));
+		}
+	}
+
+	@Test
+	public void aNameHasOneTypeWhateverItsLabels() throws Exception {
+		MetricsRegistry registry = new MetricsRegistry();
+		registry.counter("dungeon_requests_total{status=\"200\"}");
+		registry.counter("dungeon_requests_total{status=\"503\"}");
+		registry.histogram("dungeon_request_nanoseconds{status=\"200\"}");
+
+		assertRejected(registry, true, "dungeon_requests_total{status=\"500\"}");
+		assertRejected(registry, true, "dungeon_requests_total");
+		assertRejected(registry, false, "dungeon_request_nanoseconds{status=\"503\"}");
+		assertRejected(registry, false, "dungeon_request_nanoseconds");
+		assertRejected(registry, false, "dungeon requests");
+
+		StringWriter writer = new StringWriter();
+		registry.writePrometheus(writer);
+		assertFalse(writer.toString().contains("dungeon_requests_total{status=\"500\"}"));
+	}
+
+	/**
+	 * Check that a metric can't be registered
+	 *
+	 * @param histogram true to register the name as an histogram, false as a counter
+	 */
+	private static void assertRejected(MetricsRegistry registry, boolean histogram, String name) {
+		try {
+			if (histogram) {
+				registry.histogram(name);
+			} else {
+				registry.counter(name);
+			}
+			fail(name + " is registered");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package com.mursaat.dungeongenerator.server;
+
+import com.mursaat.dungeongenerator.Dungeon;
+import com.mursaat.dungeongenerator.DungeonGenerator;
+import com.mursaat.dungeongenerator.DungeonParams;
+import com.mursaat.dungeongenerator.DungeonWireCodec;
+import com.mursaat.dungeongenerator.GenerationPhase;
+import com.mursaat.dungeongenerator.RoomParams;
+import com.mursaat.dungeongenerator.metrics.GenerationMetrics;
+import com.mursaat.dungeongenerator.metrics.MetricsRegistry;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DungeonServerTest {
+
+	private static final String SMALL_DUNGEON = "minRoomCount=8&maxRoomCount=12";
+
+	@Test(timeout = 30000)
+	public void identicalSeededRequestsShareTheGeneration() throws Exception {
+		BlockingMetrics metrics = new BlockingMetrics();
+		DungeonServer server = new DungeonServer(0).setWorkerCount(1).setMetrics(metrics).start();
+		ExecutorService clients = Executors.newCachedThreadPool();
+		try {
+			Future<Response> first = clients.submit(() -> get(server, "/dungeon?seed=5&" + SMALL_DUNGEON));
+			assertTrue(metrics.started.await(10, TimeUnit.SECONDS));
+			Future<Response> second = clients.submit(() -> get(server, "/dungeon?seed=5&" + SMALL_DUNGEON));
+			// Let the second request join the generation in progress
+			Thread.sleep(300);
+			metrics.release.countDown();
+
+			Response firstResponse = first.get();
+			Response secondResponse = second.get();
+			assertEquals(200, firstResponse.status);
+			assertEquals(200, secondResponse.status);
+			assertArrayEquals(firstResponse.body, secondResponse.body);
+			assertEquals(1, metrics.getRegistry().snapshot().getCounter("dungeon_generations_total"));
+		} finally {
+			metrics.release.countDown();
+			clients.shutdownNow();
+			server.stop();
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void aFullQueueRejectsTheRequestAtOnce() throws Exception {
+		BlockingMetrics metrics = new BlockingMetrics();
+		DungeonServer server = new DungeonServer(0).setWorkerCount(1).setQueueCapacity(1).setMetrics(metrics).start();
+		ExecutorService clients = Executors.newCachedThreadPool();
+		try {
+			Future<Response> running = clients.submit(() -> get(server, "/dungeon?seed=1&" + SMALL_DUNGEON));
+			assertTrue(metrics.started.await(10, TimeUnit.SECONDS));
+			Future<Response> queued = clients.submit(() -> get(server, "/dungeon?seed=2&" + SMALL_DUNGEON));
+			Thread.sleep(300);
+
+			Response rejected = get(server, "/dungeon?seed=3&" + SMALL_DUNGEON);
+			assertEquals(503, rejected.status);
+			assertEquals("1", rejected.retryAfter);
+
+			metrics.release.countDown();
+			assertEquals(200, running.get().status);
+			assertEquals(200, queued.get().status);
+		} finally {
+			metrics.release.countDown();
+			clients.shutdownNow();
+			server.stop();
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void badParamsAreRejected() throws Exception {
+		DungeonServer server = new DungeonServer(0).start();
+		try {
+			assertEquals(400, get(server, "/dungeon?seed=abc").status);
+			assertEquals(400, get(server, "/dungeon?minRoomCount=0").status);
+			assertEquals(400, get(server, "/dungeon?minRoomCount=20&maxRoomCount=10").status);
+			assertEquals(400, get(server, "/dungeon?hallwaysWidth=2").status);
+			assertEquals(400, get(server, "/dungeon?format=xml").status);
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void binaryDungeonsCanBeDecoded() throws Exception {
+		DungeonServer server = new DungeonServer(0).start();
+		try {
+			Response response = get(server, "/dungeon?seed=9&format=binary&" + SMALL_DUNGEON);
+			assertEquals(200, response.status);
+
+			Dungeon decoded = DungeonWireCodec.decode(ByteBuffer.wrap(response.body));
+			Dungeon expected = new DungeonGenerator(new DungeonParams().setMinRoomCount(8).setMaxRoomCount(12),
+					new RoomParams()).generateDungeon(9);
+			assertEquals(expected.getRooms().size(), decoded.getRooms().size());
+			assertEquals(expected.getHallways().size(), decoded.getHallways().size());
+			assertEquals(expected.toString(), decoded.toString());
+		} finally {
+			server.stop();
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void anErrorInTheGenerationAnswersAnError() throws Exception {
+		GenerationMetrics failingMetrics = new GenerationMetrics(new MetricsRegistry()) {
+			@Override
+			public void onPhaseStart(GenerationPhase phase) {
+				throw new AssertionError("Planned failure");
+			}
+		};
+		DungeonServer server = new DungeonServer(0).setMetrics(failingMetrics).start();
+		try {
+			assertEquals(500, get(server, "/dungeon?seed=4&" + SMALL_DUNGEON).status);
+		} finally {
+			server.stop();
+		}
+	}
+
+	/**
+	 * Metrics whose generations wait for the release, once started
+	 */
+	private static class BlockingMetrics extends GenerationMetrics {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		BlockingMetrics() {
+			super(new MetricsRegistry());
+		}
+
+		@Override
+		public void onPhaseStart(GenerationPhase phase) {
+			super.onPhaseStart(phase);
+			if (phase == GenerationPhase.ROOMS) {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new CancellationException("Interrupted");
+				}
+			}
+		}
+	}
+
+	private static final class Response {
+		final int status;
+		final String retryAfter;
+		final byte[] body;
+
+		Response(int status, String retryAfter, byte[] body) {
+			this.status = status;
+			this.retryAfter = retryAfter;
+			this.body = body;
+		}
+
+		@Override
+		public String toString() {
+			return status + " " + Arrays.toString(body);
+		}
+	}
+
+	private static Response get(DungeonServer server, String path) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path)
+				.openConnection();
+		try {
+			int status = connection.getResponseCode();
+			InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			if (input != null) {
+				try (InputStream in = input) {
+					byte[] buffer = new byte[8192];
+					for (int read; (read = in.read(buffer)) != -1; ) {
+						body.write(buffer, 0, read);
+					}
+				}
+			}
+			return new Response(status, connection.getHeaderField("Retry-After"), body.toByteArray());
+		} finally {
+			connection.disconnect();
+		}
+	}
+}
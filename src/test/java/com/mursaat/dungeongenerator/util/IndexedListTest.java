@@ -0,0 +1,78 @@
+package com.mursaat.dungeongenerator.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IndexedListTest {
+
+	@Test
+	public void randomOperationsMatchAnArrayList() throws Exception {
+		Random random = new Random(42);
+		List<Integer> expected = new ArrayList<>();
+		IndexedList<Integer> list = new IndexedList<>();
+		int nextElement = 0;
+		for (int operation = 0; operation < 20000; operation++) {
+			int kind = random.nextInt(10);
+			if (kind < 4 || expected.isEmpty()) {
+				expected.add(nextElement);
+				list.add(nextElement++);
+			} else if (kind < 6) {
+				Integer element = random.nextInt(nextElement + 1);
+				assertEquals(expected.remove(element), list.remove(element));
+			} else if (kind == 6) {
+				int index = random.nextInt(expected.size());
+				assertEquals(expected.remove(index), list.remove(index));
+			} else if (kind == 7) {
+				int index = random.nextInt(expected.size() + 1);
+				expected.add(index, nextElement);
+				list.add(index, nextElement++);
+			} else if (kind == 8) {
+				Integer element = random.nextInt(nextElement + 1);
+				assertEquals(expected.indexOf(element), list.indexOf(element));
+				assertEquals(expected.contains(element), list.contains(element));
+			} else {
+				Iterator<Integer> expectedIterator = expected.iterator();
+				Iterator<Integer> iterator = list.iterator();
+				while (expectedIterator.hasNext()) {
+					Integer element = expectedIterator.next();
+					assertEquals(element, iterator.next());
+					if (element % 7 == 0) {
+						expectedIterator.remove();
+						iterator.remove();
+					}
+				}
+				assertFalse(iterator.hasNext());
+			}
+
+			assertEquals(expected.size(), list.size());
+			if (!expected.isEmpty()) {
+				int index = random.nextInt(expected.size());
+				assertEquals(expected.get(index), list.get(index));
+			}
+		}
+		assertEquals(expected, list);
+	}
+
+	@Test
+	public void sortKeepsTheElementsFindable() throws Exception {
+		IndexedList<Integer> list = new IndexedList<>();
+		for (int element = 0; element < 100; element++) {
+			list.add(element);
+		}
+		assertTrue(list.remove((Integer) 50));
+		list.sort(Comparator.reverseOrder());
+
+		assertEquals(99, list.size());
+		assertEquals(Integer.valueOf(99), list.get(0));
+		assertEquals(0, list.indexOf(99));
+		assertEquals(98, list.indexOf(0));
+		assertFalse(list.contains(50));
+	}
+}
@@ -0,0 +1,100 @@
+package com.mursaat.dungeongenerator.world;
+
+import com.mursaat.dungeongenerator.DungeonHallway;
+import com.mursaat.dungeongenerator.DungeonParams;
+import com.mursaat.dungeongenerator.DungeonRoom;
+import com.mursaat.dungeongenerator.DungeonStructure;
+import com.mursaat.dungeongenerator.Position;
+import com.mursaat.dungeongenerator.RoomParams;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChunkedWorldTest {
+
+	private static final int CHUNK_SIZE = 400;
+
+	private static ChunkedWorld newWorld(long seed) {
+		DungeonParams dungeonParams = new DungeonParams()
+				.setMinRoomCount(20)
+				.setMaxRoomCount(30);
+		return new ChunkedWorld(seed, CHUNK_SIZE, dungeonParams, new RoomParams(), 4);
+	}
+
+	@Test
+	public void bordersHaveTheSameGate() throws Exception {
+		ChunkedWorld world = newWorld(7);
+		for (int chunkY = -1; chunkY <= 1; chunkY++) {
+			for (int chunkX = -1; chunkX <= 1; chunkX++) {
+				WorldChunk chunk = world.getChunk(chunkX, chunkY);
+				WorldChunk right = world.getChunk(chunkX + 1, chunkY);
+				WorldChunk bottom = world.getChunk(chunkX, chunkY + 1);
+
+				Position rightGate = getGate(chunk, CHUNK_SIZE - 1, -1);
+				assertEquals(rightGate.y, getGate(right, 0, -1).y);
+				assertNotNull(world.getStructureAt((long) chunkX * CHUNK_SIZE + CHUNK_SIZE - 1,
+						(long) chunkY * CHUNK_SIZE + rightGate.y));
+				assertNotNull(world.getStructureAt((long) (chunkX + 1) * CHUNK_SIZE, (long) chunkY * CHUNK_SIZE + rightGate.y));
+
+				Position bottomGate = getGate(chunk, -1, CHUNK_SIZE - 1);
+				assertEquals(bottomGate.x, getGate(bottom, -1, 0).x);
+				assertNotNull(world.getStructureAt((long) chunkX * CHUNK_SIZE + bottomGate.x,
+						(long) chunkY * CHUNK_SIZE + CHUNK_SIZE - 1));
+				assertNotNull(world.getStructureAt((long) chunkX * CHUNK_SIZE + bottomGate.x, (long) (chunkY + 1) * CHUNK_SIZE));
+			}
+		}
+	}
+
+	@Test
+	public void chunksOnlyDependOnTheSeed() throws Exception {
+		ChunkedWorld world = newWorld(42);
+		ChunkedWorld sameWorld = newWorld(42);
+		ChunkedWorld otherWorld = newWorld(43);
+
+		String first = describe(world.getChunk(3, -2));
+		// Build other chunks in between, then build it again
+		world.getChunk(0, 0);
+		world.evictChunk(3, -2);
+		assertEquals(first, describe(world.getChunk(3, -2)));
+		assertEquals(first, describe(sameWorld.getChunk(3, -2)));
+		assertFalse(first.equals(describe(otherWorld.getChunk(3, -2))));
+	}
+
+	/**
+	 * @return the first position of the border hallway starting at the given column or row (-1 for
+	 * any)
+	 */
+	private static Position getGate(WorldChunk chunk, int x, int y) {
+		for (DungeonHallway hallway : chunk.getBorderHallways()) {
+			Position start = hallway.getPath().get(0);
+			if ((x < 0 || start.x == x) && (y < 0 || start.y == y)) {
+				return start;
+			}
+		}
+		fail("No gate on the border");
+		return null;
+	}
+
+	/**
+	 * @return the position of the dungeon, then a character per tile : '.' for a wall, 'h' for an
+	 * hallway and the index of the room for a room (the ids of the rooms are given by generation)
+	 */
+	private static String describe(WorldChunk chunk) {
+		StringBuilder description = new StringBuilder();
+		description.append(chunk.getDungeonX()).append(',').append(chunk.getDungeonY()).append('\n');
+		DungeonStructure[][] tiles = chunk.getTiles();
+		for (DungeonStructure[] row : tiles) {
+			for (DungeonStructure structure : row) {
+				if (structure == null) {
+					description.append('.');
+				} else if (structure instanceof DungeonRoom) {
+					description.append((char) ('A' + chunk.getDungeon().getRooms().indexOf(structure) % 26));
+				} else {
+					description.append('h');
+				}
+			}
+			description.append('\n');
+		}
+		return description.toString();
+	}
+}